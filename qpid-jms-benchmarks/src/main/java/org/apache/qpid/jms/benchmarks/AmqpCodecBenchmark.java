@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.jms.meta.JmsConsumerId;
+import org.apache.qpid.jms.meta.JmsConsumerInfo;
+import org.apache.qpid.jms.provider.amqp.AmqpConnection;
+import org.apache.qpid.jms.provider.amqp.AmqpConsumer;
+import org.apache.qpid.jms.provider.amqp.message.AmqpCodec;
+import org.apache.qpid.jms.provider.amqp.message.AmqpJmsMessageFacade;
+import org.apache.qpid.jms.provider.amqp.message.AmqpMessageSupport;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.AmqpSequence;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Measures the encoding of outgoing and decoding of incoming messages of each of
+ * the JMS message types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmqpCodecBenchmark {
+
+    private static final int PAYLOAD_SIZE = 256;
+
+    @Param({ "MESSAGE", "BYTES", "TEXT", "MAP", "STREAM", "OBJECT" })
+    private String messageType;
+
+    @Param({ "false", "true" })
+    private boolean lazyDecoding;
+
+    private AmqpConsumer consumer;
+    private ByteBuf incoming;
+    private AmqpJmsMessageFacade outgoing;
+
+    @Setup
+    public void setUp() throws IOException {
+        JmsConsumerId consumerId = new JmsConsumerId("ID:BENCHMARK:1", 1, 1);
+
+        // Stands in for a consumer without needing a provider, session and link.
+        consumer = new AmqpConsumer(null, new JmsConsumerInfo(consumerId), null) {
+
+            @Override
+            public AmqpConnection getConnection() {
+                return null;
+            }
+
+            @Override
+            public boolean isLazyDecoding() {
+                return lazyDecoding;
+            }
+        };
+
+        incoming = AmqpMessageSupport.encodeMessage(createMessage(messageType));
+        outgoing = AmqpCodec.decodeMessage(consumer, incoming);
+    }
+
+    @Benchmark
+    public AmqpJmsMessageFacade decodeMessage() throws IOException {
+        return AmqpCodec.decodeMessage(consumer, incoming);
+    }
+
+    @Benchmark
+    public void encodeMessage(Blackhole blackhole) {
+        ByteBuf encoded = AmqpCodec.encodeMessage(outgoing);
+        blackhole.consume(encoded.readableBytes());
+        encoded.release();
+    }
+
+    private static Message createMessage(String messageType) throws IOException {
+        Message message = Proton.message();
+
+        message.setMessageId("ID:BENCHMARK:1:1:1-1");
+        message.setAddress("queue://benchmark");
+        message.setDurable(true);
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("property-1", "value");
+        properties.put("property-2", 42);
+        properties.put("property-3", true);
+        message.setApplicationProperties(new ApplicationProperties(properties));
+
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        byte jmsType;
+
+        switch (messageType) {
+            case "MESSAGE":
+                jmsType = AmqpMessageSupport.JMS_MESSAGE;
+                break;
+            case "BYTES":
+                jmsType = AmqpMessageSupport.JMS_BYTES_MESSAGE;
+                message.setContentType(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE);
+                message.setBody(new Data(new Binary(payload)));
+                break;
+            case "TEXT":
+                jmsType = AmqpMessageSupport.JMS_TEXT_MESSAGE;
+                message.setBody(new AmqpValue(new String(new char[PAYLOAD_SIZE]).replace('\0', 'a')));
+                break;
+            case "MAP":
+                jmsType = AmqpMessageSupport.JMS_MAP_MESSAGE;
+                Map<String, Object> map = new HashMap<String, Object>();
+                for (int i = 0; i < 16; ++i) {
+                    map.put("entry-" + i, i);
+                }
+                message.setBody(new AmqpValue(map));
+                break;
+            case "STREAM":
+                jmsType = AmqpMessageSupport.JMS_STREAM_MESSAGE;
+                List<Object> list = new ArrayList<Object>();
+                for (int i = 0; i < 16; ++i) {
+                    list.add(i);
+                }
+                message.setBody(new AmqpSequence(list));
+                break;
+            case "OBJECT":
+                jmsType = AmqpMessageSupport.JMS_OBJECT_MESSAGE;
+                message.setContentType(AmqpMessageSupport.SERIALIZED_JAVA_OBJECT_CONTENT_TYPE);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                    output.writeObject(new String(new char[PAYLOAD_SIZE]).replace('\0', 'a'));
+                }
+                message.setBody(new Data(new Binary(bytes.toByteArray())));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown message type: " + messageType);
+        }
+
+        Map<Symbol, Object> annotations = new HashMap<Symbol, Object>();
+        annotations.put(Symbol.valueOf(AmqpMessageSupport.JMS_MSG_TYPE), jmsType);
+        message.setMessageAnnotations(new MessageAnnotations(annotations));
+
+        return message;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+
+import org.apache.qpid.jms.message.JmsMessage;
+import org.apache.qpid.jms.message.JmsMessagePropertyIntercepter;
+import org.apache.qpid.jms.provider.amqp.AmqpConnection;
+import org.apache.qpid.jms.provider.amqp.message.AmqpJmsMessageFacade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading and writing message properties through the property intercepter,
+ * both for the JMS defined properties it maps onto the message and for application
+ * properties it passes through to the message facade.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePropertyIntercepterBenchmark {
+
+    private static final String APPLICATION_PROPERTY = "applicationProperty";
+
+    private JmsMessage message;
+
+    @Setup
+    public void setUp() throws JMSException {
+        AmqpJmsMessageFacade facade = new AmqpJmsMessageFacade();
+        facade.initialize((AmqpConnection) null);
+
+        message = facade.asJmsMessage();
+        message.setJMSMessageID("ID:BENCHMARK:1:1:1-1");
+        message.setStringProperty("JMSXGroupID", "group");
+        message.setStringProperty(APPLICATION_PROPERTY, "value");
+    }
+
+    @Benchmark
+    public Object getApplicationProperty() throws JMSException {
+        return JmsMessagePropertyIntercepter.getProperty(message, APPLICATION_PROPERTY);
+    }
+
+    @Benchmark
+    public void setApplicationProperty() throws JMSException {
+        JmsMessagePropertyIntercepter.setProperty(message, APPLICATION_PROPERTY, "value");
+    }
+
+    @Benchmark
+    public Object getJMSMessageID() throws JMSException {
+        return JmsMessagePropertyIntercepter.getProperty(message, "JMSMessageID");
+    }
+
+    @Benchmark
+    public Object getJMSXGroupID() throws JMSException {
+        return JmsMessagePropertyIntercepter.getProperty(message, "JMSXGroupID");
+    }
+
+    @Benchmark
+    public void setJMSXGroupID() throws JMSException {
+        JmsMessagePropertyIntercepter.setProperty(message, "JMSXGroupID", "group");
+    }
+
+    @Benchmark
+    public Object getPropertyNames() throws JMSException {
+        return JmsMessagePropertyIntercepter.getPropertyNames(message, false);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
+import org.apache.qpid.jms.message.JmsMessage;
+import org.apache.qpid.jms.message.facade.test.JmsTestMessageFacade;
+import org.apache.qpid.jms.util.FifoMessageQueue;
+import org.apache.qpid.jms.util.MessageQueue;
+import org.apache.qpid.jms.util.PriorityMessageQueue;
+import org.apache.qpid.jms.util.RingBufferMessageQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the message queues that hold a consumer's prefetched messages, both from
+ * a single thread and with the connection thread enqueuing while the application
+ * thread dequeues.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageQueueBenchmark {
+
+    private static final int MESSAGE_COUNT = 64;
+    private static final int MAX_BACKLOG = 1000;
+
+    @Param({ "FIFO", "PRIORITY", "RING_BUFFER" })
+    private String queueType;
+
+    private MessageQueue queue;
+    private JmsInboundMessageDispatch[] envelopes;
+
+    @Setup
+    public void setUp() {
+        switch (queueType) {
+            case "FIFO":
+                queue = new FifoMessageQueue();
+                break;
+            case "PRIORITY":
+                queue = new PriorityMessageQueue();
+                break;
+            default:
+                queue = new RingBufferMessageQueue(MAX_BACKLOG);
+        }
+        queue.start();
+
+        envelopes = new JmsInboundMessageDispatch[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            JmsTestMessageFacade facade = new JmsTestMessageFacade();
+            facade.setPriority(i % 10);
+
+            envelopes[i] = new JmsInboundMessageDispatch(i);
+            envelopes[i].setMessage(new JmsMessage(facade));
+        }
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public JmsInboundMessageDispatch enqueueThenDequeue() {
+        for (JmsInboundMessageDispatch envelope : envelopes) {
+            queue.enqueue(envelope);
+        }
+
+        JmsInboundMessageDispatch last = null;
+        for (int i = 0; i < MESSAGE_COUNT; ++i) {
+            last = queue.dequeueNoWait();
+        }
+
+        return last;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void enqueue() {
+        // Bound the backlog so a slower consumer doesn't grow the queue without limit.
+        if (queue.size() < MAX_BACKLOG) {
+            for (JmsInboundMessageDispatch envelope : envelopes) {
+                queue.enqueue(envelope);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public JmsInboundMessageDispatch dequeue() {
+        return queue.dequeueNoWait();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.benchmarks;
+
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.apache.qpid.jms.JmsMessageProducer;
+import org.apache.qpid.jms.provider.amqp.AmqpSupport;
+import org.apache.qpid.jms.test.testpeer.TestAmqpPeer;
+import org.apache.qpid.jms.test.testpeer.describedtypes.sections.AmqpValueDescribedType;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.hamcrest.Matchers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Measures sending and receiving messages through a connection to the test peer,
+ * covering the full client path from the JMS API down to the transport.
+ *
+ * The test peer must have every frame it will see scripted up front, so each
+ * invocation scripts a batch of transfers before it is timed and waits for the
+ * peer to have handled all of them afterwards. The test peer itself is not built
+ * for speed, so the results are best used to compare client changes against each
+ * other rather than as absolute figures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendReceiveBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int HANDLER_TIMEOUT = 30000;
+
+    // The test peer never widens the incoming window it gives a session beyond this
+    // many transfers, so producers are moved to a fresh session before reaching it.
+    private static final int PEER_SESSION_WINDOW = 2048;
+
+    @Param({ "PERSISTENT", "NON_PERSISTENT" })
+    private String deliveryMode;
+
+    private TestAmqpPeer testPeer;
+    private Connection connection;
+    private Session producerSession;
+    private MessageProducer producer;
+    private int transfersOnSession;
+    private MessageConsumer consumer;
+    private TextMessage message;
+    private List<Message> batch;
+    private int nextIncomingId = 1;
+
+    @Setup
+    public void setUp() throws Exception {
+        testPeer = new TestAmqpPeer();
+
+        testPeer.expectSaslPlain("guest", "guest");
+        testPeer.expectOpen(new Symbol[] { AmqpSupport.SOLE_CONNECTION_CAPABILITY }, null, null);
+        testPeer.expectBegin();
+        testPeer.expectBegin();
+        testPeer.expectReceiverAttach();
+
+        // A zero prefetch has the consumer pull each message, which keeps the receives
+        // in step with the transfers scripted for each invocation.
+        JmsConnectionFactory factory = new JmsConnectionFactory(
+            "amqp://localhost:" + testPeer.getServerPort() + "?jms.prefetchPolicy.all=0");
+        connection = factory.createConnection("guest", "guest");
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        consumer = session.createConsumer(session.createQueue("benchmark"));
+
+        message = session.createTextMessage("content");
+
+        batch = new ArrayList<Message>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            batch.add(session.createTextMessage("content"));
+        }
+
+        testPeer.waitForAllHandlersToComplete(HANDLER_TIMEOUT);
+
+        openProducerSession();
+    }
+
+    private void openProducerSession() throws Exception {
+        if (producerSession != null) {
+            testPeer.expectEnd();
+            producerSession.close();
+        }
+
+        testPeer.expectBegin();
+        // Grant the producer enough credit that it never blocks during a run.
+        testPeer.expectSenderAttach(notNullValue(), notNullValue(), false, false, false, 0, Integer.MAX_VALUE, null, null);
+
+        producerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        producer = producerSession.createProducer(producerSession.createQueue("benchmark"));
+        producer.setDeliveryMode("PERSISTENT".equals(deliveryMode) ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
+        transfersOnSession = 0;
+
+        testPeer.waitForAllHandlersToComplete(HANDLER_TIMEOUT);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        testPeer.expectClose();
+        connection.close();
+        testPeer.waitForAllHandlersToComplete(HANDLER_TIMEOUT);
+        testPeer.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void scriptBatch(BenchmarkParams params) throws Exception {
+        if (!params.getBenchmark().endsWith("receive")) {
+            if (transfersOnSession + BATCH_SIZE > PEER_SESSION_WINDOW) {
+                openProducerSession();
+            }
+
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                testPeer.expectTransfer(Matchers.notNullValue(Binary.class));
+            }
+            transfersOnSession += BATCH_SIZE;
+        } else {
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType("content"),
+                    1, false, false, Matchers.greaterThanOrEqualTo(UnsignedInteger.ONE), nextIncomingId++, false, false);
+                testPeer.expectDispositionThatIsAcceptedAndSettled();
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void awaitBatch() throws InterruptedException {
+        testPeer.waitForAllHandlersToComplete(HANDLER_TIMEOUT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void send() throws JMSException {
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            producer.send(message);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sendBatch() throws JMSException {
+        ((JmsMessageProducer) producer).send(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Message receive() throws JMSException {
+        Message received = null;
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            received = consumer.receive();
+        }
+
+        return received;
+    }
+}
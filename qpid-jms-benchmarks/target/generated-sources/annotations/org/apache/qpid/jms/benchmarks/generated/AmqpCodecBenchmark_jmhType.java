@@ -0,0 +1,4 @@
+package org.apache.qpid.jms.benchmarks.generated;
+public class AmqpCodecBenchmark_jmhType extends AmqpCodecBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.qpid.jms.benchmarks.generated;
+public class MessagePropertyIntercepterBenchmark_jmhType extends MessagePropertyIntercepterBenchmark_jmhType_B3 {
+}
+
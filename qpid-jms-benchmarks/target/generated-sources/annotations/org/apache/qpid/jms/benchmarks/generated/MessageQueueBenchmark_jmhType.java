@@ -0,0 +1,4 @@
+package org.apache.qpid.jms.benchmarks.generated;
+public class MessageQueueBenchmark_jmhType extends MessageQueueBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.qpid.jms.benchmarks.generated;
+public class SelectorParserBenchmark_jmhType extends SelectorParserBenchmark_jmhType_B3 {
+}
+
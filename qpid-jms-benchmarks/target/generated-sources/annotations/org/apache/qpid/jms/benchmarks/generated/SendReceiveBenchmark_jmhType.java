@@ -0,0 +1,4 @@
+package org.apache.qpid.jms.benchmarks.generated;
+public class SendReceiveBenchmark_jmhType extends SendReceiveBenchmark_jmhType_B3 {
+}
+
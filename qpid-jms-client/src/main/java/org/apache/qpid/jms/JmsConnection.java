@@ -18,6 +18,7 @@ package org.apache.qpid.jms;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -67,6 +68,7 @@ import org.apache.qpid.jms.meta.JmsSessionId;
 import org.apache.qpid.jms.meta.JmsSessionInfo;
 import org.apache.qpid.jms.meta.JmsTransactionId;
 import org.apache.qpid.jms.meta.JmsTransactionInfo;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
 import org.apache.qpid.jms.policy.JmsDeserializationPolicy;
 import org.apache.qpid.jms.policy.JmsMessageIDPolicy;
 import org.apache.qpid.jms.policy.JmsPrefetchPolicy;
@@ -113,6 +115,7 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
     private final AtomicLong transactionIdGenerator = new AtomicLong();
 
     private final Map<AsyncResult, AsyncResult> requests = new ConcurrentHashMap<AsyncResult, AsyncResult>();
+    private final JmsSendWindow sendWindow;
 
     protected JmsConnection(final JmsConnectionInfo connectionInfo, Provider provider) throws JMSException {
 
@@ -148,6 +151,18 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
         }
 
         this.connectionInfo = connectionInfo;
+
+        if (connectionInfo.getMaxConnectionOutstandingBytes() > 0 || connectionInfo.getMaxConnectionOutstandingSends() > 0) {
+            this.sendWindow = new JmsSendWindow(connectionInfo.getMaxConnectionOutstandingBytes(),
+                connectionInfo.getMaxConnectionOutstandingSends(), connectionInfo.isFailFastOnOutstandingLimit());
+        } else {
+            this.sendWindow = null;
+        }
+
+        if (connectionInfo.isMetricsEnabled() || connectionInfo.isMetricsJmxEnabled() || connectionInfo.isMetricsLatencyEnabled()) {
+            connectionInfo.setMetrics(new JmsConnectionMetrics(
+                connectionInfo.getId().toString(), connectionInfo.isMetricsLatencyEnabled()));
+        }
     }
 
     JmsConnection connect() throws JMSException {
@@ -167,6 +182,10 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
             throw JmsExceptionSupport.create(ex);
         }
 
+        if (connectionInfo.getMetrics() != null && connectionInfo.isMetricsJmxEnabled()) {
+            connectionInfo.getMetrics().registerMBeans();
+        }
+
         if (connectionInfo.isExplicitClientID() || !connectionInfo.isAwaitClientID()) {
             createJmsConnection();
         }
@@ -198,6 +217,11 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
 
                 closing.set(true);
 
+                // Fail any sends waiting for space so their sessions can shut down.
+                if (sendWindow != null) {
+                    sendWindow.close();
+                }
+
                 for (JmsSession session : sessions.values()) {
                     session.shutdown();
                 }
@@ -246,6 +270,10 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
                 provider = null;
             }
 
+            if (connectionInfo.getMetrics() != null) {
+                connectionInfo.getMetrics().unregisterMBeans();
+            }
+
             if (interrupted) {
                 Thread.currentThread().interrupt();
             }
@@ -267,6 +295,10 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
 
         connectionInfo.setState(ResourceState.CLOSED);
 
+        if (sendWindow != null) {
+            sendWindow.close();
+        }
+
         for (JmsSession session : sessions.values()) {
             session.shutdown(cause);
         }
@@ -278,6 +310,11 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
         tempDestinations.clear();
         started.set(false);
         connected.set(false);
+
+        if (connectionInfo.getMetrics() != null) {
+            connectionInfo.getMetrics().unregisterMBeans();
+        }
+
     }
 
     @Override
@@ -676,23 +713,156 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
         send(envelope, null);
     }
 
-    void send(JmsOutboundMessageDispatch envelope, ProviderSynchronization synchronization) throws JMSException {
-        checkClosedOrFailed();
+    void send(final JmsOutboundMessageDispatch envelope, final ProviderSynchronization synchronization) throws JMSException {
+        boolean sent = false;
 
         try {
-            ProviderFuture request = new ProviderFuture(synchronization);
+            checkClosedOrFailed();
+
+            // The encoded payload is released once the provider completes the send, which
+            // can be after this method returns if the wait for completion is interrupted.
+            // An asynchronous send completes before it is settled so the producer gives
+            // back its space in the send windows when the settlement arrives instead.
+            ProviderFuture request = new ProviderFuture(new ProviderSynchronization() {
+
+                @Override
+                public void onPendingSuccess() {
+                    try {
+                        if (synchronization != null) {
+                            synchronization.onPendingSuccess();
+                        }
+                    } finally {
+                        envelope.releasePayload();
+                        if (!envelope.isSendAsync()) {
+                            envelope.releaseSendPermit();
+                        }
+                    }
+                }
+
+                @Override
+                public void onPendingFailure(Throwable cause) {
+                    try {
+                        if (synchronization != null) {
+                            synchronization.onPendingFailure(cause);
+                        }
+                    } finally {
+                        envelope.releasePayload();
+                        envelope.releaseSendPermit();
+                        if (envelope.getBodyStream() != null) {
+                            envelope.getBodyStream().abort(cause);
+                        }
+                    }
+                }
+            });
+
             requests.put(request, request);
             try {
                 provider.send(envelope, request);
+                sent = true;
+
+                // A streamed body is read here on the sending thread as the provider
+                // writes the chunks before it, only as fast as the remote accepts them.
+                if (envelope.getBodyStream() != null) {
+                    envelope.getBodyStream().transfer();
+                }
+
+                request.sync();
+            } finally {
+                requests.remove(request);
+            }
+        } catch (Exception ioe) {
+            if (!sent) {
+                envelope.releasePayload();
+                envelope.releaseSendPermit();
+            }
+
+            if (envelope.getBodyStream() != null) {
+                envelope.getBodyStream().abort(ioe);
+            }
+
+            throw JmsExceptionSupport.create(ioe);
+        }
+    }
+
+    void send(List<JmsOutboundMessageDispatch> envelopes) throws JMSException {
+        send(envelopes, null);
+    }
+
+    void send(final List<JmsOutboundMessageDispatch> envelopes, final ProviderSynchronization synchronization) throws JMSException {
+        boolean sent = false;
+
+        try {
+            checkClosedOrFailed();
+
+            // A single request covers the whole batch and completes once every message
+            // in it has, after which all the encoded payloads can be released together.
+            ProviderFuture request = new ProviderFuture(new ProviderSynchronization() {
+
+                @Override
+                public void onPendingSuccess() {
+                    try {
+                        if (synchronization != null) {
+                            synchronization.onPendingSuccess();
+                        }
+                    } finally {
+                        releasePayloads(envelopes);
+                        for (JmsOutboundMessageDispatch envelope : envelopes) {
+                            if (!envelope.isSendAsync()) {
+                                envelope.releaseSendPermit();
+                            }
+                        }
+                    }
+                }
+
+                @Override
+                public void onPendingFailure(Throwable cause) {
+                    try {
+                        if (synchronization != null) {
+                            synchronization.onPendingFailure(cause);
+                        }
+                    } finally {
+                        releasePayloads(envelopes);
+                        releaseSendPermits(envelopes);
+                    }
+                }
+            });
+
+            requests.put(request, request);
+            try {
+                provider.send(envelopes, request);
+                sent = true;
                 request.sync();
             } finally {
                 requests.remove(request);
             }
         } catch (Exception ioe) {
+            if (!sent) {
+                releasePayloads(envelopes);
+                releaseSendPermits(envelopes);
+            }
+
             throw JmsExceptionSupport.create(ioe);
         }
     }
 
+    private static void releasePayloads(List<JmsOutboundMessageDispatch> envelopes) {
+        for (JmsOutboundMessageDispatch envelope : envelopes) {
+            envelope.releasePayload();
+        }
+    }
+
+    /*
+     * Frees the permits of the sends in a failed batch that never reached the provider's
+     * producers, those that did keep theirs until the remote settles them or they fail.
+     */
+    static void releaseSendPermits(List<JmsOutboundMessageDispatch> envelopes) {
+        for (JmsOutboundMessageDispatch envelope : envelopes) {
+            if (!envelope.isInFlight()) {
+                envelope.releaseSendPermit();
+            }
+        }
+    }
+
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws JMSException {
         acknowledge(envelope, ackType, null);
     }
@@ -703,12 +873,21 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
         try {
             ProviderFuture request = new ProviderFuture(synchronization);
             provider.acknowledge(envelope, ackType, request);
-            request.sync();
+
+            // Unless the ack forms part of a transaction we need not wait on the
+            // provider for delivered and accepted acks when configured for async.
+            if (synchronization != null || !isAsyncAcknowledge(ackType)) {
+                request.sync();
+            }
         } catch (Exception ioe) {
             throw JmsExceptionSupport.create(ioe);
         }
     }
 
+    private boolean isAsyncAcknowledge(ACK_TYPE ackType) {
+        return connectionInfo.isForceAsyncAcks() && (ackType == ACK_TYPE.DELIVERED || ackType == ACK_TYPE.ACCEPTED);
+    }
+
     void acknowledge(JmsSessionId sessionId, ACK_TYPE ackType) throws JMSException {
         acknowledge(sessionId, ackType, null);
     }
@@ -751,6 +930,17 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
     }
 
     void commit(JmsTransactionInfo transactionInfo, ProviderSynchronization synchronization) throws JMSException {
+        commit(transactionInfo, synchronization, null, null);
+    }
+
+    /**
+     * Commits the given transaction and, when a next transaction is given, begins it
+     * without waiting for the commit to complete so that the provider can pipeline the
+     * two.  Only a failure of the commit is thrown, a failure to begin the next
+     * transaction is reported to the next synchronization alone.
+     */
+    void commit(JmsTransactionInfo transactionInfo, ProviderSynchronization synchronization,
+                JmsTransactionInfo nextTransactionInfo, ProviderSynchronization nextSynchronization) throws JMSException {
         checkClosedOrFailed();
 
         try {
@@ -758,7 +948,7 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
             requests.put(request, request);
             try {
                 provider.commit(transactionInfo, request);
-                request.sync();
+                syncWithNextTransaction(request, nextTransactionInfo, nextSynchronization);
             } finally {
                 requests.remove(request);
             }
@@ -772,6 +962,17 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
     }
 
     void rollback(JmsTransactionInfo transactionInfo, ProviderSynchronization synchronization) throws JMSException {
+        rollback(transactionInfo, synchronization, null, null);
+    }
+
+    /**
+     * Rolls back the given transaction and, when a next transaction is given, begins it
+     * without waiting for the rollback to complete so that the provider can pipeline the
+     * two.  Only a failure of the rollback is thrown, a failure to begin the next
+     * transaction is reported to the next synchronization alone.
+     */
+    void rollback(JmsTransactionInfo transactionInfo, ProviderSynchronization synchronization,
+                  JmsTransactionInfo nextTransactionInfo, ProviderSynchronization nextSynchronization) throws JMSException {
         checkClosedOrFailed();
 
         try {
@@ -779,7 +980,7 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
             requests.put(request, request);
             try {
                 provider.rollback(transactionInfo, request);
-                request.sync();
+                syncWithNextTransaction(request, nextTransactionInfo, nextSynchronization);
             } finally {
                 requests.remove(request);
             }
@@ -788,6 +989,103 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
         }
     }
 
+    /**
+     * Starts the commit of the given transaction and the begin of the next one and
+     * returns without waiting for either.  Each synchronization is notified when its
+     * operation completes, or fails if the connection fails first.
+     */
+    void commitAsync(JmsTransactionInfo transactionInfo, ProviderSynchronization synchronization,
+                     JmsTransactionInfo nextTransactionInfo, ProviderSynchronization nextSynchronization) throws JMSException {
+        checkClosedOrFailed();
+
+        ProviderFuture request = createTrackedRequest(synchronization);
+        try {
+            provider.commit(transactionInfo, request);
+        } catch (Exception ex) {
+            request.onFailure(ex);
+        }
+
+        beginAsync(nextTransactionInfo, nextSynchronization);
+    }
+
+    /**
+     * Starts the rollback of the given transaction and the begin of the next one and
+     * returns without waiting for either.  Each synchronization is notified when its
+     * operation completes, or fails if the connection fails first.
+     */
+    void rollbackAsync(JmsTransactionInfo transactionInfo, ProviderSynchronization synchronization,
+                       JmsTransactionInfo nextTransactionInfo, ProviderSynchronization nextSynchronization) throws JMSException {
+        checkClosedOrFailed();
+
+        ProviderFuture request = createTrackedRequest(synchronization);
+        try {
+            provider.rollback(transactionInfo, request);
+        } catch (Exception ex) {
+            request.onFailure(ex);
+        }
+
+        beginAsync(nextTransactionInfo, nextSynchronization);
+    }
+
+    private void beginAsync(JmsTransactionInfo nextTransactionInfo, ProviderSynchronization nextSynchronization) {
+        ProviderFuture nextRequest = createTrackedRequest(nextSynchronization);
+        try {
+            provider.create(nextTransactionInfo, nextRequest);
+        } catch (Exception ex) {
+            nextRequest.onFailure(ex);
+        }
+    }
+
+    /*
+     * Creates a request that nothing waits on, it stays registered so that it fails along
+     * with the connection and is removed once it completes.
+     */
+    private ProviderFuture createTrackedRequest(ProviderSynchronization synchronization) {
+        ProviderFuture request = new ProviderFuture(synchronization) {
+
+            @Override
+            public void onSuccess() {
+                requests.remove(this);
+                super.onSuccess();
+            }
+
+            @Override
+            public void onFailure(Throwable result) {
+                requests.remove(this);
+                super.onFailure(result);
+            }
+        };
+
+        requests.put(request, request);
+        return request;
+    }
+
+    private void syncWithNextTransaction(ProviderFuture request, JmsTransactionInfo nextTransactionInfo, ProviderSynchronization nextSynchronization) throws Exception {
+        if (nextTransactionInfo == null) {
+            request.sync();
+            return;
+        }
+
+        ProviderFuture nextRequest = new ProviderFuture(nextSynchronization);
+        requests.put(nextRequest, nextRequest);
+        try {
+            try {
+                provider.create(nextTransactionInfo, nextRequest);
+            } catch (Exception ex) {
+                nextRequest.onFailure(ex);
+            }
+
+            request.sync();
+        } finally {
+            try {
+                nextRequest.sync();
+            } catch (IOException ignored) {
+                // Already reported through the next synchronization.
+            }
+            requests.remove(nextRequest);
+        }
+    }
+
     void recover(JmsSessionId sessionId) throws JMSException {
         recover(sessionId, null);
     }
@@ -995,6 +1293,49 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
         connectionInfo.setRequestTimeout(requestTimeout);
     }
 
+    public long getMaxConnectionPrefetchBytes() {
+        return connectionInfo.getMaxConnectionPrefetchBytes();
+    }
+
+    public long getMaxSessionPrefetchBytes() {
+        return connectionInfo.getMaxSessionPrefetchBytes();
+    }
+
+    public long getMaxConnectionOutstandingBytes() {
+        return connectionInfo.getMaxConnectionOutstandingBytes();
+    }
+
+    public int getMaxConnectionOutstandingSends() {
+        return connectionInfo.getMaxConnectionOutstandingSends();
+    }
+
+    public long getMaxProducerOutstandingBytes() {
+        return connectionInfo.getMaxProducerOutstandingBytes();
+    }
+
+    public int getMaxProducerOutstandingSends() {
+        return connectionInfo.getMaxProducerOutstandingSends();
+    }
+
+    public boolean isFailFastOnOutstandingLimit() {
+        return connectionInfo.isFailFastOnOutstandingLimit();
+    }
+
+    /**
+     * @return the window bounding the unsettled sends of this Connection, or null if no
+     *         limit is configured.
+     */
+    JmsSendWindow getSendWindow() {
+        return sendWindow;
+    }
+
+    /**
+     * @return the metrics recorded for this Connection, or null if they are not enabled.
+     */
+    public JmsConnectionMetrics getMetrics() {
+        return connectionInfo.getMetrics();
+    }
+
     public URI getConfiguredURI() {
         return connectionInfo.getConfiguredURI();
     }
@@ -1138,6 +1479,12 @@ public class JmsConnection implements AutoCloseable, Connection, TopicConnection
 
     @Override
     public void onConnectionInterrupted(final URI remoteURI) {
+        // Sends outstanding on the lost connection will not be settled, so stop them
+        // holding space that senders may be waiting for.
+        if (sendWindow != null) {
+            sendWindow.reset();
+        }
+
         for (JmsSession session : sessions.values()) {
             session.onConnectionInterrupted();
         }
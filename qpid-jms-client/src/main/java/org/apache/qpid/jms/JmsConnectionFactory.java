@@ -93,6 +93,16 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
     private long requestTimeout = JmsConnectionInfo.DEFAULT_REQUEST_TIMEOUT;
     private long closeTimeout = JmsConnectionInfo.DEFAULT_CLOSE_TIMEOUT;
     private long connectTimeout = JmsConnectionInfo.DEFAULT_CONNECT_TIMEOUT;
+    private long maxConnectionPrefetchBytes;
+    private long maxSessionPrefetchBytes;
+    private long maxConnectionOutstandingBytes;
+    private int maxConnectionOutstandingSends;
+    private long maxProducerOutstandingBytes;
+    private int maxProducerOutstandingSends;
+    private boolean failFastOnOutstandingLimit;
+    private boolean metricsEnabled;
+    private boolean metricsJmxEnabled;
+    private boolean metricsLatencyEnabled;
     private IdGenerator clientIdGenerator;
     private String clientIDPrefix;
     private IdGenerator connectionIdGenerator;
@@ -598,6 +608,184 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
         this.requestTimeout = requestTimeout;
     }
 
+    public long getMaxConnectionPrefetchBytes() {
+        return maxConnectionPrefetchBytes;
+    }
+
+    /**
+     * Sets the limit on the total bytes of prefetched messages that all the consumers of a
+     * Connection may hold before they are taken by the application.  Consumers stop granting
+     * the remote peer credit for further messages as the limit is approached and resume as
+     * the prefetched messages are consumed.
+     * <p>
+     * This value defaults to zero which means no limit is applied.
+     *
+     * @param maxConnectionPrefetchBytes
+     *        the number of bytes of prefetched messages allowed across the Connection.
+     */
+    public void setMaxConnectionPrefetchBytes(long maxConnectionPrefetchBytes) {
+        this.maxConnectionPrefetchBytes = maxConnectionPrefetchBytes;
+    }
+
+    public long getMaxSessionPrefetchBytes() {
+        return maxSessionPrefetchBytes;
+    }
+
+    /**
+     * Sets the limit on the total bytes of prefetched messages that the consumers of each
+     * Session may hold before they are taken by the application, in the same manner as the
+     * Connection wide limit.
+     * <p>
+     * This value defaults to zero which means no limit is applied.
+     *
+     * @param maxSessionPrefetchBytes
+     *        the number of bytes of prefetched messages allowed in each Session.
+     */
+    public void setMaxSessionPrefetchBytes(long maxSessionPrefetchBytes) {
+        this.maxSessionPrefetchBytes = maxSessionPrefetchBytes;
+    }
+
+    public long getMaxConnectionOutstandingBytes() {
+        return maxConnectionOutstandingBytes;
+    }
+
+    /**
+     * Sets the limit on the total encoded bytes of the messages sent on a Connection that
+     * the remote peer has yet to settle.  A send that would exceed the limit waits for
+     * earlier sends to be settled, for up to the send timeout if one is set, or fails at
+     * once if {@link #setFailFastOnOutstandingLimit(boolean)} is enabled.
+     * <p>
+     * This value defaults to zero which means no limit is applied.
+     *
+     * @param maxConnectionOutstandingBytes
+     *        the bytes of unsettled messages allowed across the Connection.
+     */
+    public void setMaxConnectionOutstandingBytes(long maxConnectionOutstandingBytes) {
+        this.maxConnectionOutstandingBytes = maxConnectionOutstandingBytes;
+    }
+
+    public int getMaxConnectionOutstandingSends() {
+        return maxConnectionOutstandingSends;
+    }
+
+    /**
+     * Sets the limit on the number of messages sent on a Connection that the remote peer
+     * has yet to settle, applied in the same way as the limit on bytes.
+     * <p>
+     * This value defaults to zero which means no limit is applied.
+     *
+     * @param maxConnectionOutstandingSends
+     *        the number of unsettled messages allowed across the Connection.
+     */
+    public void setMaxConnectionOutstandingSends(int maxConnectionOutstandingSends) {
+        this.maxConnectionOutstandingSends = maxConnectionOutstandingSends;
+    }
+
+    public long getMaxProducerOutstandingBytes() {
+        return maxProducerOutstandingBytes;
+    }
+
+    /**
+     * Sets the limit on the total encoded bytes of the messages sent by each
+     * MessageProducer that the remote peer has yet to settle, applied in the same way as
+     * the Connection limit.
+     * <p>
+     * This value defaults to zero which means no limit is applied.
+     *
+     * @param maxProducerOutstandingBytes
+     *        the bytes of unsettled messages allowed for each producer.
+     */
+    public void setMaxProducerOutstandingBytes(long maxProducerOutstandingBytes) {
+        this.maxProducerOutstandingBytes = maxProducerOutstandingBytes;
+    }
+
+    public int getMaxProducerOutstandingSends() {
+        return maxProducerOutstandingSends;
+    }
+
+    /**
+     * Sets the limit on the number of messages sent by each MessageProducer that the
+     * remote peer has yet to settle.
+     * <p>
+     * This value defaults to zero which means no limit is applied.
+     *
+     * @param maxProducerOutstandingSends
+     *        the number of unsettled messages allowed for each producer.
+     */
+    public void setMaxProducerOutstandingSends(int maxProducerOutstandingSends) {
+        this.maxProducerOutstandingSends = maxProducerOutstandingSends;
+    }
+
+    public boolean isFailFastOnOutstandingLimit() {
+        return failFastOnOutstandingLimit;
+    }
+
+    /**
+     * Controls what a send does when it would exceed a limit on unsettled messages, by
+     * default it waits for space, when enabled it fails at once with a
+     * ResourceAllocationException.
+     *
+     * @param failFastOnOutstandingLimit
+     *        true if sends should fail rather than wait for space.
+     */
+    public void setFailFastOnOutstandingLimit(boolean failFastOnOutstandingLimit) {
+        this.failFastOnOutstandingLimit = failFastOnOutstandingLimit;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Enables the metrics kept for each Connection, which count the messages and bytes
+     * sent and received per destination and time sends, credit stalls and the work of the
+     * provider.  The metrics are available from {@link JmsConnection#getMetrics()}.
+     * <p>
+     * This value defaults to false.
+     *
+     * @param metricsEnabled
+     *        true if Connections should record metrics.
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return metricsJmxEnabled;
+    }
+
+    /**
+     * Registers the metrics of each Connection as JMX MBeans with the platform MBean server
+     * while it is open, enabling the metrics if they are not already.
+     * <p>
+     * This value defaults to false.
+     *
+     * @param metricsJmxEnabled
+     *        true if Connection metrics should be registered with JMX.
+     */
+    public void setMetricsJmxEnabled(boolean metricsJmxEnabled) {
+        this.metricsJmxEnabled = metricsJmxEnabled;
+    }
+
+    public boolean isMetricsLatencyEnabled() {
+        return metricsLatencyEnabled;
+    }
+
+    /**
+     * Adds histograms to the metrics of each Connection, for every destination consumed
+     * from, of the time messages took to arrive from their producer as measured from their
+     * JMSTimestamp, and of the time they then waited in the prefetch queue of a consumer
+     * before being given to the application.  Enables the metrics if they are not already.
+     * <p>
+     * This value defaults to false.
+     *
+     * @param metricsLatencyEnabled
+     *        true if Connections should track the latency of received messages.
+     */
+    public void setMetricsLatencyEnabled(boolean metricsLatencyEnabled) {
+        this.metricsLatencyEnabled = metricsLatencyEnabled;
+    }
+
     public JmsPrefetchPolicy getPrefetchPolicy() {
         return prefetchPolicy;
     }
@@ -792,6 +980,10 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
      * asynchronously.  Sending the acknowledgments asynchronously can increase the
      * performance of a consumer but opens up the possibility of a missed message
      * acknowledge should the connection be unstable.
+     * <p>
+     * When enabled, the delivered and accepted acknowledgements of a non-transacted
+     * consumer are queued to the provider without waiting for them to be applied,
+     * the provider then writes any queued acknowledgements out in batches.
      *
      * @param forceAsyncAcks
      *        true to have the client send all message acknowledgments asynchronously.
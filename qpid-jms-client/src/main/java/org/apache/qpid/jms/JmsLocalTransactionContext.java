@@ -20,6 +20,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.jms.JMSException;
@@ -53,6 +58,7 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
     private JmsTransactionListener listener;
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile AsyncCompletion pendingCompletion;
 
     public JmsLocalTransactionContext(JmsSession session) {
         this.session = session;
@@ -61,9 +67,11 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
 
     @Override
     public void send(JmsConnection connection, final JmsOutboundMessageDispatch envelope) throws JMSException {
-        lock.readLock().lock();
+        acquire(lock.readLock());
         try {
             if (isInDoubt()) {
+                envelope.releasePayload();
+                envelope.releaseSendPermit();
                 return;
             }
 
@@ -87,11 +95,49 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
         }
     }
 
+    @Override
+    public void send(JmsConnection connection, final List<JmsOutboundMessageDispatch> envelopes) throws JMSException {
+        acquire(lock.readLock());
+        try {
+            if (isInDoubt()) {
+                for (JmsOutboundMessageDispatch envelope : envelopes) {
+                    envelope.releasePayload();
+                    envelope.releaseSendPermit();
+                }
+                return;
+            }
+
+            // Use the completion callback to remove the need for a sync point.
+            connection.send(envelopes, new ProviderSynchronization() {
+
+                @Override
+                public void onPendingSuccess() {
+                    LOG.trace("TX:{} has performed a batch send.", getTransactionId());
+                    addParticipants();
+                }
+
+                @Override
+                public void onPendingFailure(Throwable cause) {
+                    LOG.trace("TX:{} has a failed batch send.", getTransactionId());
+                    addParticipants();
+                }
+
+                private void addParticipants() {
+                    for (JmsOutboundMessageDispatch envelope : envelopes) {
+                        participants.put(envelope.getProducerId(), envelope.getProducerId());
+                    }
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public void acknowledge(JmsConnection connection, final JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws JMSException {
         // Consumed or delivered messages fall into a transaction otherwise just pass it in.
         if (ackType == ACK_TYPE.ACCEPTED || ackType == ACK_TYPE.DELIVERED) {
-            lock.readLock().lock();
+            acquire(lock.readLock());
             try {
                 connection.acknowledge(envelope, ackType, new ProviderSynchronization() {
 
@@ -117,7 +163,7 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
 
     @Override
     public void addSynchronization(JmsTransactionSynchronization sync) throws JMSException {
-        lock.writeLock().lock();
+        acquire(lock.writeLock());
         try {
             if (sync.validate(this)) {
                 synchronizations.add(sync);
@@ -136,33 +182,12 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
 
     @Override
     public void begin() throws JMSException {
-        lock.writeLock().lock();
+        acquire(lock.writeLock());
         try {
             reset();
-            final JmsTransactionInfo transactionInfo = getNextTransactionInfo();
-            connection.createResource(transactionInfo, new ProviderSynchronization() {
-
-                @Override
-                public void onPendingSuccess() {
-                    JmsLocalTransactionContext.this.transactionInfo = transactionInfo;
-                }
-
-                @Override
-                public void onPendingFailure(Throwable cause) {
-                    JmsLocalTransactionContext.this.transactionInfo = transactionInfo;
-                    transactionInfo.setInDoubt(true);
-                }
-            });
-
-            if (listener != null) {
-                try {
-                    listener.onTransactionStarted();
-                } catch (Throwable error) {
-                    LOG.trace("Local TX listener error ignored: {}", error);
-                }
-            }
-
-            LOG.debug("Begin: {}", transactionInfo.getId());
+            JmsTransactionInfo transactionInfo = getNextTransactionInfo();
+            connection.createResource(transactionInfo, new BeginSynchronization(transactionInfo));
+            afterBegin(transactionInfo);
         } finally {
             lock.writeLock().unlock();
         }
@@ -170,7 +195,7 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
 
     @Override
     public void commit() throws JMSException {
-        lock.writeLock().lock();
+        acquire(lock.writeLock());
         try {
             if (isInDoubt()) {
                 try {
@@ -184,6 +209,10 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
                           (synchronizations != null ? synchronizations.size() : 0));
 
                 JmsTransactionId oldTransactionId = transactionInfo.getId();
+
+                // The next transaction is begun along with the commit so the provider
+                // can have both done in a single round trip.
+                BeginSynchronization next = new BeginSynchronization(getNextTransactionInfo());
                 try {
                     connection.commit(transactionInfo, new ProviderSynchronization() {
 
@@ -196,7 +225,7 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
                         public void onPendingFailure(Throwable cause) {
                             reset();
                         }
-                    });
+                    }, next.getTransactionInfo(), next);
 
                     if (listener != null) {
                         try {
@@ -218,8 +247,8 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
                     afterRollback();
                     throw cause;
                 } finally {
-                    LOG.trace("Commit starting new TX after commit completed.");
-                    begin();
+                    LOG.trace("Commit started new TX along with the commit.");
+                    completeBegin(next);
                 }
             }
         } finally {
@@ -233,10 +262,12 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
     }
 
     private void doRollback(boolean startNewTx) throws JMSException {
-        lock.writeLock().lock();
+        acquire(lock.writeLock());
         try {
             LOG.debug("Rollback: {} syncCount: {}", transactionInfo.getId(),
                       (synchronizations != null ? synchronizations.size() : 0));
+
+            BeginSynchronization next = startNewTx ? new BeginSynchronization(getNextTransactionInfo()) : null;
             try {
                 connection.rollback(transactionInfo, new ProviderSynchronization() {
 
@@ -249,7 +280,7 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
                     public void onPendingFailure(Throwable cause) {
                         reset();
                     }
-                });
+                }, next != null ? next.getTransactionInfo() : null, next);
 
                 if (listener != null) {
                     try {
@@ -262,8 +293,8 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
                 afterRollback();
             } finally {
                 if (startNewTx) {
-                    LOG.trace("Rollback starting new TX after rollback completed.");
-                    begin();
+                    LOG.trace("Rollback started new TX along with the rollback.");
+                    completeBegin(next);
                 }
             }
         } finally {
@@ -271,6 +302,58 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
         }
     }
 
+    @Override
+    public void commit(JmsTransactionCompletionListener completionListener) throws JMSException {
+        acquire(lock.writeLock());
+        try {
+            if (isInDoubt()) {
+                try {
+                    rollback();
+                } catch (Exception e) {
+                    LOG.trace("Error during rollback of failed TX: {}", e);
+                }
+
+                notifyCompletion(completionListener, new TransactionRolledBackException("Transaction failed and has been rolled back."));
+            } else {
+                LOG.debug("Commit started: {} syncCount: {}", transactionInfo.getId(),
+                          (synchronizations != null ? synchronizations.size() : 0));
+
+                AsyncCompletion completion = new AsyncCompletion(transactionInfo.getId(), true, completionListener);
+                pendingCompletion = completion;
+                try {
+                    connection.commitAsync(transactionInfo, completion.getDischargeSynchronization(),
+                                           completion.getBeginTransactionInfo(), completion.getBeginSynchronization());
+                } catch (JMSException ex) {
+                    pendingCompletion = null;
+                    throw ex;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rollback(JmsTransactionCompletionListener completionListener) throws JMSException {
+        acquire(lock.writeLock());
+        try {
+            LOG.debug("Rollback started: {} syncCount: {}", transactionInfo.getId(),
+                      (synchronizations != null ? synchronizations.size() : 0));
+
+            AsyncCompletion completion = new AsyncCompletion(transactionInfo.getId(), false, completionListener);
+            pendingCompletion = completion;
+            try {
+                connection.rollbackAsync(transactionInfo, completion.getDischargeSynchronization(),
+                                         completion.getBeginTransactionInfo(), completion.getBeginSynchronization());
+            } catch (JMSException ex) {
+                pendingCompletion = null;
+                throw ex;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     @Override
     public void shutdown() throws JMSException {
         doRollback(false);
@@ -293,7 +376,7 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
         // If we get the lock then no TX commit / rollback / begin is in progress
         // otherwise one is and we can only assume that it should fail given the
         // connection was dropped.
-        if (lock.writeLock().tryLock()) {
+        if (pendingCompletion == null && lock.writeLock().tryLock()) {
             try {
                 // If we got the lock then there is no pending commit / rollback / begin so
                 // we can safely create a new transaction, if there is work pending on the
@@ -363,6 +446,49 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
 
     //------------- Implementation methods -----------------------------------//
 
+    /*
+     * Acquires the given lock once no asynchronous commit or rollback is in progress, so
+     * that new work never lands in the transaction being discharged.
+     */
+    private void acquire(Lock toAcquire) throws JMSException {
+        while (true) {
+            AsyncCompletion completion = pendingCompletion;
+            if (completion != null) {
+                completion.await();
+            }
+
+            toAcquire.lock();
+            if (pendingCompletion == null) {
+                return;
+            }
+            toAcquire.unlock();
+        }
+    }
+
+    private void notifyCompletion(final JmsTransactionCompletionListener completionListener, final JMSException failure) {
+        Runnable notification = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (failure == null) {
+                        completionListener.onCompletion();
+                    } else {
+                        completionListener.onException(failure);
+                    }
+                } catch (Throwable error) {
+                    LOG.debug("Transaction completion listener error ignored: {}", error);
+                }
+            }
+        };
+
+        try {
+            session.getCompletionExecutor().execute(notification);
+        } catch (RejectedExecutionException closed) {
+            notification.run();
+        }
+    }
+
     /*
      * Must be called with the write lock held to ensure the synchronizations list
      * can be safely cleared.
@@ -376,6 +502,33 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
         return new JmsTransactionInfo(session.getSessionId(), transactionId);
     }
 
+    /*
+     * Must be called with the write lock held.  Completes the begin of a transaction that
+     * was started along with the commit or rollback of the previous one, or begins a new
+     * transaction if the commit or rollback failed before it could be started.
+     */
+    private void completeBegin(BeginSynchronization next) throws JMSException {
+        if (!next.isCompleted()) {
+            begin();
+        } else if (next.getFailure() != null) {
+            throw JmsExceptionSupport.create(next.getFailure());
+        } else {
+            afterBegin(next.getTransactionInfo());
+        }
+    }
+
+    private void afterBegin(JmsTransactionInfo transactionInfo) {
+        if (listener != null) {
+            try {
+                listener.onTransactionStarted();
+            } catch (Throwable error) {
+                LOG.trace("Local TX listener error ignored: {}", error);
+            }
+        }
+
+        LOG.debug("Begin: {}", transactionInfo.getId());
+    }
+
     /*
      * Must be called with the write lock held to ensure the synchronizations list
      * can be safely cleared.
@@ -429,4 +582,214 @@ public class JmsLocalTransactionContext implements JmsTransactionContext {
             throw JmsExceptionSupport.create(firstException);
         }
     }
+
+    //------------- Begin completion -----------------------------------------//
+
+    private class BeginSynchronization implements ProviderSynchronization {
+
+        private final JmsTransactionInfo transactionInfo;
+
+        private volatile boolean completed;
+        private volatile Throwable failure;
+
+        public BeginSynchronization(JmsTransactionInfo transactionInfo) {
+            this.transactionInfo = transactionInfo;
+        }
+
+        @Override
+        public void onPendingSuccess() {
+            JmsLocalTransactionContext.this.transactionInfo = transactionInfo;
+            completed = true;
+        }
+
+        @Override
+        public void onPendingFailure(Throwable cause) {
+            JmsLocalTransactionContext.this.transactionInfo = transactionInfo;
+            transactionInfo.setInDoubt(true);
+            failure = cause;
+            completed = true;
+        }
+
+        public JmsTransactionInfo getTransactionInfo() {
+            return transactionInfo;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+
+    //------------- Asynchronous commit and rollback -------------------------//
+
+    /*
+     * Tracks a commit or rollback, and the begin of the transaction that follows it, when
+     * nothing waits on them.  Once both are done the remaining work, which may need to
+     * call the provider, runs on the session's completion thread or on the first thread
+     * that needs the transaction if that gets there sooner.  The latter keeps a thread
+     * that is itself the completion thread from waiting on a task queued behind it.
+     */
+    private final class AsyncCompletion implements Runnable {
+
+        private final JmsTransactionId transactionId;
+        private final boolean commit;
+        private final JmsTransactionCompletionListener completionListener;
+        private final BeginSynchronization next;
+
+        private final AtomicInteger pendingOperations = new AtomicInteger(2);
+        private final CountDownLatch operationsDone = new CountDownLatch(1);
+        private final AtomicBoolean completing = new AtomicBoolean();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private volatile Throwable failure;
+
+        public AsyncCompletion(JmsTransactionId transactionId, boolean commit, JmsTransactionCompletionListener completionListener) {
+            this.transactionId = transactionId;
+            this.commit = commit;
+            this.completionListener = completionListener;
+            this.next = new BeginSynchronization(getNextTransactionInfo());
+        }
+
+        public JmsTransactionInfo getBeginTransactionInfo() {
+            return next.getTransactionInfo();
+        }
+
+        public ProviderSynchronization getDischargeSynchronization() {
+            return new ProviderSynchronization() {
+
+                @Override
+                public void onPendingSuccess() {
+                    reset();
+                    operationDone();
+                }
+
+                @Override
+                public void onPendingFailure(Throwable cause) {
+                    reset();
+                    failure = cause;
+                    operationDone();
+                }
+            };
+        }
+
+        public ProviderSynchronization getBeginSynchronization() {
+            return new ProviderSynchronization() {
+
+                @Override
+                public void onPendingSuccess() {
+                    next.onPendingSuccess();
+                    operationDone();
+                }
+
+                @Override
+                public void onPendingFailure(Throwable cause) {
+                    next.onPendingFailure(cause);
+                    operationDone();
+                }
+            };
+        }
+
+        @Override
+        public void run() {
+            if (completing.compareAndSet(false, true)) {
+                JMSException error = complete();
+                try {
+                    if (error == null) {
+                        completionListener.onCompletion();
+                    } else {
+                        completionListener.onException(error);
+                    }
+                } catch (Throwable thrown) {
+                    LOG.debug("Transaction completion listener error ignored: {}", thrown);
+                }
+            }
+        }
+
+        public void await() throws JMSException {
+            try {
+                operationsDone.await();
+                if (completing.compareAndSet(false, true)) {
+                    notifyCompletion(completionListener, complete());
+                } else {
+                    completed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw JmsExceptionSupport.create(e);
+            }
+        }
+
+        private void operationDone() {
+            if (pendingOperations.decrementAndGet() == 0) {
+                operationsDone.countDown();
+                try {
+                    session.getCompletionExecutor().execute(this);
+                } catch (RejectedExecutionException closed) {
+                    LOG.trace("Session closed, TX completion left to the next user of the TX");
+                }
+            }
+        }
+
+        private JMSException complete() {
+            JMSException error = null;
+
+            lock.writeLock().lock();
+            try {
+                // The write lock now keeps out new work so the gate can be opened, which
+                // also lets the work done here use the transaction from this thread.
+                pendingCompletion = null;
+
+                if (failure == null) {
+                    if (listener != null) {
+                        try {
+                            if (commit) {
+                                listener.onTransactionCommitted();
+                            } else {
+                                listener.onTransactionRolledBack();
+                            }
+                        } catch (Throwable thrown) {
+                            LOG.trace("Local TX listener error ignored: {}", thrown);
+                        }
+                    }
+
+                    if (commit) {
+                        afterCommit();
+                    } else {
+                        afterRollback();
+                    }
+                } else if (commit) {
+                    LOG.info("Commit failed for transaction: {}", transactionId);
+                    error = JmsExceptionSupport.create(failure);
+                    if (listener != null) {
+                        try {
+                            listener.onTransactionRolledBack();
+                        } catch (Throwable thrown) {
+                            LOG.trace("Local TX listener error ignored: {}", thrown);
+                        }
+                    }
+                    afterRollback();
+                } else {
+                    error = JmsExceptionSupport.create(failure);
+                }
+            } catch (JMSException ex) {
+                error = ex;
+            } finally {
+                try {
+                    completeBegin(next);
+                } catch (JMSException ex) {
+                    if (error == null) {
+                        error = ex;
+                    }
+                } finally {
+                    completed.countDown();
+                    lock.writeLock().unlock();
+                }
+            }
+
+            return error;
+        }
+    }
 }
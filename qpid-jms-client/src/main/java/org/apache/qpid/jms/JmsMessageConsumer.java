@@ -31,20 +31,25 @@ import javax.jms.MessageListener;
 import javax.jms.Session;
 
 import org.apache.qpid.jms.exceptions.JmsExceptionSupport;
+import org.apache.qpid.jms.message.JmsBytesMessage;
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
 import org.apache.qpid.jms.message.JmsMessage;
+import org.apache.qpid.jms.message.facade.JmsBytesMessageFacade;
 import org.apache.qpid.jms.meta.JmsConsumerId;
 import org.apache.qpid.jms.meta.JmsConsumerInfo;
 import org.apache.qpid.jms.meta.JmsResource.ResourceState;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
+import org.apache.qpid.jms.metrics.JmsDestinationMetrics;
+import org.apache.qpid.jms.policy.JmsDefaultPrefetchPolicy;
 import org.apache.qpid.jms.policy.JmsDeserializationPolicy;
 import org.apache.qpid.jms.policy.JmsPrefetchPolicy;
 import org.apache.qpid.jms.policy.JmsRedeliveryPolicy;
 import org.apache.qpid.jms.provider.Provider;
 import org.apache.qpid.jms.provider.ProviderConstants.ACK_TYPE;
 import org.apache.qpid.jms.provider.ProviderFuture;
-import org.apache.qpid.jms.util.FifoMessageQueue;
 import org.apache.qpid.jms.util.MessageQueue;
 import org.apache.qpid.jms.util.PriorityMessageQueue;
+import org.apache.qpid.jms.util.RingBufferMessageQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +72,12 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
     protected final Lock lock = new ReentrantLock();
     protected final AtomicBoolean suspendedConnection = new AtomicBoolean();
     protected final AtomicReference<Throwable> failureCause = new AtomicReference<>();
+    protected final JmsDestinationMetrics destinationMetrics;
+    protected final JmsDestinationMetrics latencyMetrics;
+
+    // The last BytesMessage handed to the application, whose body may still be arriving as
+    // a stream that holds up the messages behind it until it is read or dropped.
+    private final AtomicReference<JmsMessage> lastDelivered = new AtomicReference<>();
 
     protected JmsMessageConsumer(JmsConsumerId consumerId, JmsSession session, JmsDestination destination,
                                  String selector, boolean noLocal) throws JMSException {
@@ -83,12 +94,6 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
             connection.checkConsumeFromTemporaryDestination((JmsTemporaryDestination) destination);
         }
 
-        if (connection.isLocalMessagePriority()) {
-            this.messageQueue = new PriorityMessageQueue();
-        } else {
-            this.messageQueue = new FifoMessageQueue();
-        }
-
         JmsPrefetchPolicy prefetchPolicy = session.getPrefetchPolicy();
         JmsRedeliveryPolicy redeliveryPolicy = session.getRedeliveryPolicy().copy();
         JmsDeserializationPolicy deserializationPolicy = session.getDeserializationPolicy().copy();
@@ -105,18 +110,47 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
         consumerInfo.setBrowser(isBrowser());
         consumerInfo.setPrefetchSize(
             prefetchPolicy.getConfiguredPrefetch(session, destination, isDurableSubscription(), isBrowser()));
+        if (prefetchPolicy instanceof JmsDefaultPrefetchPolicy) {
+            JmsDefaultPrefetchPolicy defaultPrefetchPolicy = (JmsDefaultPrefetchPolicy) prefetchPolicy;
+            consumerInfo.setAdaptivePrefetch(defaultPrefetchPolicy.isAdaptive());
+            consumerInfo.setMinPrefetchSize(defaultPrefetchPolicy.getMinPrefetch());
+            consumerInfo.setPrefetchBufferTime(defaultPrefetchPolicy.getBufferTime());
+            consumerInfo.setMaxPrefetchBytes(defaultPrefetchPolicy.getMaxPrefetchBytes());
+        }
         consumerInfo.setRedeliveryPolicy(redeliveryPolicy);
         consumerInfo.setLocalMessageExpiry(connection.isLocalMessageExpiry());
         consumerInfo.setPresettle(session.getPresettlePolicy().isConsumerPresttled(session, destination));
         consumerInfo.setDeserializationPolicy(deserializationPolicy);
 
+        if (connection.isLocalMessagePriority()) {
+            this.messageQueue = new PriorityMessageQueue();
+        } else {
+            this.messageQueue = new RingBufferMessageQueue(consumerInfo.getPrefetchSize());
+        }
+
+        JmsConnectionMetrics metrics = connection.getMetrics();
+        if (metrics != null) {
+            this.destinationMetrics = metrics.acquireDestinationMetrics(destination.getName());
+            this.latencyMetrics = metrics.isLatencyTracked() ? destinationMetrics : null;
+        } else {
+            this.destinationMetrics = null;
+            this.latencyMetrics = null;
+        }
+
         session.add(this);
         try {
             session.getConnection().createResource(consumerInfo);
         } catch (JMSException jmse) {
             session.remove(this);
+            if (metrics != null) {
+                metrics.releaseDestinationMetrics(destinationMetrics);
+            }
             throw jmse;
         }
+
+        if (connection.getMetrics() != null) {
+            connection.getMetrics().addConsumer(consumerId, messageQueue);
+        }
     }
 
     public void init() throws JMSException {
@@ -190,6 +224,12 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
             setFailureCause(cause);
             session.remove(this);
             stop(true);
+            releaseLastDelivered();
+
+            if (connection.getMetrics() != null) {
+                connection.getMetrics().removeConsumer(getConsumerId());
+                connection.getMetrics().releaseDestinationMetrics(destinationMetrics);
+            }
         }
     }
 
@@ -208,7 +248,9 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
             timeout = -1;
         }
 
-        return copy(ackFromReceive(dequeue(timeout, connection.isReceiveLocalOnly())));
+        releaseLastDelivered();
+
+        return trackDelivered(copy(ackFromReceive(dequeue(timeout, connection.isReceiveLocalOnly()))));
     }
 
     @Override
@@ -216,7 +258,9 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
         checkClosed();
         checkMessageListener();
 
-        return copy(ackFromReceive(dequeue(0, connection.isReceiveNoWaitLocalOnly())));
+        releaseLastDelivered();
+
+        return trackDelivered(copy(ackFromReceive(dequeue(0, connection.isReceiveNoWaitLocalOnly()))));
     }
 
     /**
@@ -353,6 +397,7 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
                     if (LOG.isTraceEnabled()) {
                         LOG.trace(getConsumerId() + " received message: " + envelope);
                     }
+                    recordPrefetchDwell(envelope);
                     return envelope;
                 }
             }
@@ -362,6 +407,14 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
         }
     }
 
+    private void recordPrefetchDwell(JmsInboundMessageDispatch envelope) {
+        if (latencyMetrics != null && envelope.getArrivalTime() != 0) {
+            latencyMetrics.recordPrefetchDwell(System.nanoTime() - envelope.getArrivalTime());
+            // Only the first wait is recorded should the message be recovered.
+            envelope.setArrivalTime(0);
+        }
+    }
+
     private boolean consumeExpiredMessage(JmsInboundMessageDispatch dispatch) {
         if (!isBrowser() && consumerInfo.isLocalMessageExpiry() && dispatch.getMessage().isExpired()) {
             return true;
@@ -413,6 +466,25 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
         return envelope.getMessage().copy();
     }
 
+    /*
+     * Once the application moves on from a message whose body is still arriving as a
+     * stream, the rest of the body is dropped so the messages behind it can arrive.
+     */
+    private void releaseLastDelivered() {
+        JmsMessage last = lastDelivered.getAndSet(null);
+        if (last != null) {
+            ((JmsBytesMessageFacade) last.getFacade()).releaseStreamedBody();
+        }
+    }
+
+    private JmsMessage trackDelivered(JmsMessage message) {
+        if (message instanceof JmsBytesMessage) {
+            lastDelivered.set(message);
+        }
+
+        return message;
+    }
+
     JmsInboundMessageDispatch ackFromReceive(final JmsInboundMessageDispatch envelope) throws JMSException {
         if (envelope != null && envelope.getMessage() != null) {
             JmsMessage message = envelope.getMessage();
@@ -738,6 +810,7 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
                             copy = copy(ackFromReceive(envelope));
                         }
                         session.clearSessionRecovered();
+                        recordPrefetchDwell(envelope);
 
                         try {
                             messageListener.onMessage(copy);
@@ -745,6 +818,10 @@ public class JmsMessageConsumer implements AutoCloseable, MessageConsumer, JmsMe
                             deliveryFailed = true;
                         }
 
+                        if (copy instanceof JmsBytesMessage) {
+                            ((JmsBytesMessageFacade) copy.getFacade()).releaseStreamedBody();
+                        }
+
                         if (autoAckOrDupsOk && !session.isSessionRecovered()) {
                             if (!deliveryFailed) {
                                 doAckConsumed(envelope);
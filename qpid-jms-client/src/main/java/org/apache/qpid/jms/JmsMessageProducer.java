@@ -16,6 +16,7 @@
  */
 package org.apache.qpid.jms;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -33,6 +34,8 @@ import org.apache.qpid.jms.message.JmsMessageIDBuilder;
 import org.apache.qpid.jms.meta.JmsProducerId;
 import org.apache.qpid.jms.meta.JmsProducerInfo;
 import org.apache.qpid.jms.meta.JmsResource.ResourceState;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
+import org.apache.qpid.jms.metrics.JmsDestinationMetrics;
 import org.apache.qpid.jms.provider.Provider;
 import org.apache.qpid.jms.provider.ProviderFuture;
 
@@ -54,6 +57,8 @@ public class JmsMessageProducer implements AutoCloseable, MessageProducer {
     protected boolean disableTimestamp;
     protected final AtomicLong messageSequence = new AtomicLong();
     protected final AtomicReference<Throwable> failureCause = new AtomicReference<>();
+    protected final JmsSendWindow sendWindow;
+    protected final JmsDestinationMetrics destinationMetrics;
 
     protected JmsMessageProducer(JmsProducerId producerId, JmsSession session, JmsDestination destination) throws JMSException {
         this.session = session;
@@ -67,11 +72,28 @@ public class JmsMessageProducer implements AutoCloseable, MessageProducer {
         this.producerInfo.setDestination(destination);
         this.producerInfo.setPresettle(session.getPresettlePolicy().isProducerPresttled(session, destination));
 
+        if (connection.getMaxProducerOutstandingBytes() > 0 || connection.getMaxProducerOutstandingSends() > 0) {
+            this.sendWindow = new JmsSendWindow(connection.getMaxProducerOutstandingBytes(),
+                connection.getMaxProducerOutstandingSends(), connection.isFailFastOnOutstandingLimit());
+        } else {
+            this.sendWindow = null;
+        }
+
+        JmsConnectionMetrics metrics = connection.getMetrics();
+        if (metrics != null && destination != null) {
+            this.destinationMetrics = metrics.acquireDestinationMetrics(destination.getName());
+        } else {
+            this.destinationMetrics = null;
+        }
+
         session.add(this);
         try {
             session.getConnection().createResource(producerInfo);
         } catch (JMSException jmse) {
             session.remove(this);
+            if (metrics != null) {
+                metrics.releaseDestinationMetrics(destinationMetrics);
+            }
             throw jmse;
         }
     }
@@ -111,6 +133,14 @@ public class JmsMessageProducer implements AutoCloseable, MessageProducer {
             producerInfo.setState(ResourceState.CLOSED);
             failureCause.set(cause);
             session.remove(this);
+
+            if (sendWindow != null) {
+                sendWindow.close();
+            }
+
+            if (connection.getMetrics() != null) {
+                connection.getMetrics().releaseDestinationMetrics(destinationMetrics);
+            }
         }
     }
 
@@ -232,6 +262,98 @@ public class JmsMessageProducer implements AutoCloseable, MessageProducer {
         sendMessage(destination, message, deliveryMode, priority, timeToLive, listener);
     }
 
+    /**
+     * Sends a batch of messages to the producer's destination using the producer's
+     * default delivery mode, priority and time to live.
+     *
+     * @param messages
+     *      the messages to send.
+     *
+     * @throws JMSException if an error occurs while sending the messages.
+     *
+     * @see #send(List, int, int, long)
+     */
+    public void send(List<? extends Message> messages) throws JMSException {
+        send(messages, deliveryMode, priority, timeToLive);
+    }
+
+    /**
+     * Sends a batch of messages to the producer's destination as a single unit of work.
+     * <p>
+     * Every message is prepared and encoded on the calling thread and the batch is then
+     * handed to the connection at once, which writes all of the messages to the remote
+     * together rather than one at a time.  The call returns once every message has been
+     * sent as it would have been by a call to {@link #send(Message, int, int, long)} for
+     * that message, or throws on the first message that fails, in which case the messages
+     * that follow it may not have been sent.
+     *
+     * @param messages
+     *      the messages to send.
+     * @param deliveryMode
+     *      the delivery mode to use for the messages.
+     * @param priority
+     *      the priority to assign to the messages.
+     * @param timeToLive
+     *      the time to live in milliseconds of the messages.
+     *
+     * @throws JMSException if an error occurs while sending the messages.
+     */
+    public void send(List<? extends Message> messages, int deliveryMode, int priority, long timeToLive) throws JMSException {
+        checkClosed();
+
+        if (anonymousProducer) {
+            throw new UnsupportedOperationException("Using this method is not supported on producers created without an explicit Destination");
+        }
+
+        sendMessages(producerInfo.getDestination(), messages, deliveryMode, priority, timeToLive);
+    }
+
+    /**
+     * Sends a batch of messages to the given destination using the producer's default
+     * delivery mode, priority and time to live.
+     *
+     * @param destination
+     *      the destination to send the messages to.
+     * @param messages
+     *      the messages to send.
+     *
+     * @throws JMSException if an error occurs while sending the messages.
+     *
+     * @see #send(List, int, int, long)
+     */
+    public void send(Destination destination, List<? extends Message> messages) throws JMSException {
+        send(destination, messages, deliveryMode, priority, timeToLive);
+    }
+
+    /**
+     * Sends a batch of messages to the given destination as a single unit of work, in
+     * the same manner as {@link #send(List, int, int, long)}.
+     *
+     * @param destination
+     *      the destination to send the messages to.
+     * @param messages
+     *      the messages to send.
+     * @param deliveryMode
+     *      the delivery mode to use for the messages.
+     * @param priority
+     *      the priority to assign to the messages.
+     * @param timeToLive
+     *      the time to live in milliseconds of the messages.
+     *
+     * @throws JMSException if an error occurs while sending the messages.
+     */
+    public void send(Destination destination, List<? extends Message> messages, int deliveryMode, int priority, long timeToLive) throws JMSException {
+        checkClosed();
+
+        checkDestinationNotInvalid(destination);
+
+        if (!anonymousProducer) {
+            throw new UnsupportedOperationException("Using this method is not supported on producers created with an explicit Destination.");
+        }
+
+        sendMessages(destination, messages, deliveryMode, priority, timeToLive);
+    }
+
     private void checkDestinationNotInvalid(Destination destination) throws InvalidDestinationException {
         if (destination == null) {
             throw new InvalidDestinationException("Destination must not be null");
@@ -242,6 +364,10 @@ public class JmsMessageProducer implements AutoCloseable, MessageProducer {
         this.session.send(this, destination, message, deliveryMode, priority, timeToLive, disableMessageId, disableTimestamp, deliveryDelay, listener);
     }
 
+    private void sendMessages(Destination destination, List<? extends Message> messages, int deliveryMode, int priority, long timeToLive) throws JMSException {
+        this.session.send(this, destination, messages, deliveryMode, priority, timeToLive, disableMessageId, disableTimestamp, deliveryDelay);
+    }
+
     @Override
     public void setDeliveryDelay(long deliveryDelay) throws JMSException {
         checkClosed();
@@ -348,6 +474,17 @@ public class JmsMessageProducer implements AutoCloseable, MessageProducer {
     ////////////////////////////////////////////////////////////////////////////
 
     protected void onConnectionInterrupted() {
+        if (sendWindow != null) {
+            sendWindow.reset();
+        }
+    }
+
+    /**
+     * @return the window bounding the unsettled sends of this producer, or null if no
+     *         limit is configured.
+     */
+    JmsSendWindow getSendWindow() {
+        return sendWindow;
     }
 
     protected void onConnectionRecovery(Provider provider) throws Exception {
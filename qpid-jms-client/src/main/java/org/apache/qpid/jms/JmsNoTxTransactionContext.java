@@ -16,6 +16,8 @@
  */
 package org.apache.qpid.jms;
 
+import java.util.List;
+
 import javax.jms.JMSException;
 
 import org.apache.qpid.jms.exceptions.JmsExceptionSupport;
@@ -37,6 +39,11 @@ public class JmsNoTxTransactionContext implements JmsTransactionContext {
         connection.send(envelope);
     }
 
+    @Override
+    public void send(JmsConnection connection, List<JmsOutboundMessageDispatch> envelopes) throws JMSException {
+        connection.send(envelopes);
+    }
+
     @Override
     public void acknowledge(JmsConnection connection, JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws JMSException {
         connection.acknowledge(envelope, ackType);
@@ -72,6 +79,16 @@ public class JmsNoTxTransactionContext implements JmsTransactionContext {
     public void commit() throws JMSException {
     }
 
+    @Override
+    public void rollback(JmsTransactionCompletionListener listener) throws JMSException {
+        listener.onCompletion();
+    }
+
+    @Override
+    public void commit(JmsTransactionCompletionListener listener) throws JMSException {
+        listener.onCompletion();
+    }
+
     @Override
     public JmsTransactionId getTransactionId() {
         return null;
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jms.IllegalStateException;
+import javax.jms.JMSException;
+import javax.jms.ResourceAllocationException;
+
+import org.apache.qpid.jms.exceptions.JmsExceptionSupport;
+
+/**
+ * Bounds the bytes and number of messages sent by a Connection or a MessageProducer that
+ * the remote peer has yet to settle.
+ * <p>
+ * A send takes space in the window before it is handed to the provider and holds it,
+ * through the {@link Permit} attached to its envelope, until the remote settles it or the
+ * send fails.  A send that does not fit waits for space, or fails at once with a
+ * {@link ResourceAllocationException} when the window is set to fail fast.  A message
+ * larger than the whole window is allowed once nothing else is outstanding, so that it
+ * can still be sent.
+ * <p>
+ * Sends outstanding when a connection is interrupted are not settled on the connection
+ * that replaces it, so the window is reset and the permits taken before the reset no
+ * longer release any space.
+ */
+public final class JmsSendWindow {
+
+    private final long maxBytes;
+    private final int maxSends;
+    private final boolean failFast;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = lock.newCondition();
+
+    private long bytes;
+    private int sends;
+    private long epoch;
+    private boolean closed;
+
+    /**
+     * @param maxBytes
+     *      the bytes that may be outstanding, or zero for no limit.
+     * @param maxSends
+     *      the messages that may be outstanding, or zero for no limit.
+     * @param failFast
+     *      true to fail a send that does not fit rather than wait for space.
+     */
+    public JmsSendWindow(long maxBytes, int maxSends, boolean failFast) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxSends = Math.max(0, maxSends);
+        this.failFast = failFast;
+    }
+
+    /**
+     * Takes space for messages in the window, waiting for it if need be.
+     *
+     * @param size
+     *      the total encoded size of the messages.
+     * @param count
+     *      the number of messages.
+     * @param timeout
+     *      the time in milliseconds to wait for space, or a negative value to wait
+     *      for as long as it takes.
+     *
+     * @return the epoch the space was taken in, to be given back when it is released, or
+     *         -1 if no space was freed before the timeout.
+     *
+     * @throws JMSException if the window fails fast and has no space, or has closed.
+     */
+    long acquire(long size, int count, long timeout) throws JMSException {
+        lock.lock();
+        try {
+            long deadline = timeout >= 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+
+            while (!closed && !fits(size, count)) {
+                if (failFast) {
+                    throw new ResourceAllocationException(
+                        "Send would exceed the limit on unsettled messages: " + this);
+                }
+
+                if (timeout < 0) {
+                    space.await();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    space.awaitNanos(remaining);
+                }
+            }
+
+            if (closed) {
+                throw new IllegalStateException("The send window has been closed");
+            }
+
+            bytes += size;
+            sends += count;
+
+            return epoch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw JmsExceptionSupport.create(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back space taken by an earlier {@link #acquire}, unless the window has been
+     * reset since.
+     */
+    void release(long size, int count, long acquiredEpoch) {
+        lock.lock();
+        try {
+            if (acquiredEpoch == epoch) {
+                bytes = Math.max(0, bytes - size);
+                sends = Math.max(0, sends - count);
+                space.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees all of the space taken, for when the sends outstanding will never be settled.
+     */
+    void reset() {
+        lock.lock();
+        try {
+            epoch++;
+            bytes = 0;
+            sends = 0;
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the window, failing any sends waiting for space and any that follow.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getOutstandingBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getOutstandingSends() {
+        lock.lock();
+        try {
+            return sends;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long size, int count) {
+        if (bytes == 0 && sends == 0) {
+            return true;
+        }
+
+        return (maxBytes == 0 || bytes + size <= maxBytes) && (maxSends == 0 || sends + count <= maxSends);
+    }
+
+    @Override
+    public String toString() {
+        return "JmsSendWindow { bytes = " + bytes + "/" + maxBytes + ", sends = " + sends + "/" + maxSends + " }";
+    }
+
+    /**
+     * The space a single send holds in the window of its producer and of its connection,
+     * either of which may be absent.  Releasing it more than once has no effect.
+     */
+    public static final class Permit {
+
+        private final JmsSendWindow producerWindow;
+        private final long producerEpoch;
+        private final JmsSendWindow connectionWindow;
+        private final long connectionEpoch;
+        private final long size;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(JmsSendWindow producerWindow, long producerEpoch, JmsSendWindow connectionWindow, long connectionEpoch, long size) {
+            this.producerWindow = producerWindow;
+            this.producerEpoch = producerEpoch;
+            this.connectionWindow = connectionWindow;
+            this.connectionEpoch = connectionEpoch;
+            this.size = size;
+        }
+
+        /**
+         * Gives back the space held by the send.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                if (producerWindow != null) {
+                    producerWindow.release(size, 1, producerEpoch);
+                }
+                if (connectionWindow != null) {
+                    connectionWindow.release(size, 1, connectionEpoch);
+                }
+            }
+        }
+    }
+}
@@ -20,8 +20,10 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
@@ -67,10 +69,14 @@ import javax.jms.TopicSession;
 import javax.jms.TopicSubscriber;
 
 import org.apache.qpid.jms.exceptions.JmsExceptionSupport;
+import org.apache.qpid.jms.jfr.JmsFlightRecorder;
+import org.apache.qpid.jms.jfr.JmsSendEvent;
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
 import org.apache.qpid.jms.message.JmsMessage;
 import org.apache.qpid.jms.message.JmsMessageTransformation;
 import org.apache.qpid.jms.message.JmsOutboundMessageDispatch;
+import org.apache.qpid.jms.message.facade.JmsBytesMessageFacade;
+import org.apache.qpid.jms.meta.JmsConnectionInfo;
 import org.apache.qpid.jms.meta.JmsConsumerId;
 import org.apache.qpid.jms.meta.JmsConsumerInfo;
 import org.apache.qpid.jms.meta.JmsProducerId;
@@ -134,6 +140,7 @@ public class JmsSession implements AutoCloseable, Session, QueueSession, TopicSe
         sessionInfo = new JmsSessionInfo(sessionId);
         sessionInfo.setAcknowledgementMode(acknowledgementMode);
         sessionInfo.setSendAcksAsync(connection.isForceAsyncAcks());
+        sessionInfo.setMaxPrefetchBytes(connection.getMaxSessionPrefetchBytes());
         sessionInfo.setMessageIDPolicy(connection.getMessageIDPolicy().copy());
         sessionInfo.setPrefetchPolicy(connection.getPrefetchPolicy().copy());
         sessionInfo.setPresettlePolicy(connection.getPresettlePolicy().copy());
@@ -221,6 +228,92 @@ public class JmsSession implements AutoCloseable, Session, QueueSession, TopicSe
 
         // Currently some consumers won't get suspended and some won't restart
         // after a failed rollback.
+        resumeAfterRollback();
+    }
+
+    /**
+     * Commits the current transaction without waiting for the outcome, which is instead
+     * passed to the given listener on the session's completion thread.
+     * <p>
+     * The session may continue to be used once this method returns.  Work done in the
+     * session after the call, such as sends and acknowledgements, waits for the commit
+     * to complete and then becomes part of the next transaction, so it is never at risk
+     * of landing in the transaction being committed.
+     *
+     * @param listener
+     *      the listener told of the outcome of the commit.
+     *
+     * @throws JMSException if the commit could not be started.
+     */
+    public void commit(JmsTransactionCompletionListener listener) throws JMSException {
+        checkClosed();
+        checkIsCompletionThread();
+
+        if (!getTransacted()) {
+            throw new javax.jms.IllegalStateException("Not a transacted session");
+        }
+
+        if (listener == null) {
+            throw new IllegalArgumentException("JmsTransactionCompletionListener cannot be null");
+        }
+
+        transactionContext.commit(listener);
+    }
+
+    /**
+     * Rolls back the current transaction without waiting for the outcome, which is
+     * instead passed to the given listener on the session's completion thread.
+     * <p>
+     * Consumers of the session stop delivering messages until the rollback completes,
+     * and work done in the session after the call waits for the rollback to complete
+     * and then becomes part of the next transaction.
+     *
+     * @param listener
+     *      the listener told of the outcome of the rollback.
+     *
+     * @throws JMSException if the rollback could not be started.
+     */
+    public void rollback(final JmsTransactionCompletionListener listener) throws JMSException {
+        checkClosed();
+        checkIsCompletionThread();
+
+        if (!getTransacted()) {
+            throw new javax.jms.IllegalStateException("Not a transacted session");
+        }
+
+        if (listener == null) {
+            throw new IllegalArgumentException("JmsTransactionCompletionListener cannot be null");
+        }
+
+        // Stop processing any new messages that arrive
+        try {
+            for (JmsMessageConsumer c : consumers.values()) {
+                c.suspendForRollback();
+            }
+        } finally {
+            transactionContext.rollback(new JmsTransactionCompletionListener() {
+
+                @Override
+                public void onCompletion() {
+                    try {
+                        resumeAfterRollback();
+                    } catch (JMSException e) {
+                        onException(e);
+                        return;
+                    }
+
+                    listener.onCompletion();
+                }
+
+                @Override
+                public void onException(JMSException exception) {
+                    listener.onException(exception);
+                }
+            });
+        }
+    }
+
+    private void resumeAfterRollback() throws JMSException {
         for (JmsMessageConsumer c : consumers.values()) {
             c.resumeAfterRollback();
         }
@@ -746,103 +839,87 @@ public class JmsSession implements AutoCloseable, Session, QueueSession, TopicSe
         send(producer, destination, msg, deliveryMode, priority, timeToLive, disableMsgId, disableTimestamp, deliveryDelay, listener);
     }
 
-    private void send(JmsMessageProducer producer, JmsDestination destination, Message original, int deliveryMode, int priority, long timeToLive, boolean disableMsgId, boolean disableTimestamp, long deliveryDelay, CompletionListener listener) throws JMSException {
-        sendLock.lock();
-        try {
-            original.setJMSDeliveryMode(deliveryMode);
-            original.setJMSPriority(priority);
-            original.setJMSRedelivered(false);
-            original.setJMSDestination(destination);
-
-            long timeStamp = System.currentTimeMillis();
-            boolean hasTTL = timeToLive > Message.DEFAULT_TIME_TO_LIVE;
-            boolean hasDelay = deliveryDelay > Message.DEFAULT_DELIVERY_DELAY;
+    protected void send(JmsMessageProducer producer, Destination dest, List<? extends Message> messages, int deliveryMode, int priority, long timeToLive, boolean disableMsgId, boolean disableTimestamp, long deliveryDelay) throws JMSException {
+        if (dest == null) {
+            throw new InvalidDestinationException("Destination must not be null");
+        }
 
-            boolean isJmsMessage = original instanceof JmsMessage;
+        if (messages == null) {
+            throw new MessageFormatException("Message list must not be null");
+        }
 
-            if (!disableTimestamp) {
-                original.setJMSTimestamp(timeStamp);
-            } else {
-                original.setJMSTimestamp(0);
+        for (Message msg : messages) {
+            if (msg == null) {
+                throw new MessageFormatException("Message must not be null");
             }
+        }
 
-            if (hasTTL) {
-                original.setJMSExpiration(timeStamp + timeToLive);
-            } else {
-                original.setJMSExpiration(0);
-            }
+        if (messages.isEmpty()) {
+            return;
+        }
 
-            long messageSequence = producer.getNextMessageSequence();
-            Object messageId = null;
-            if (!disableMsgId) {
-                messageId = producer.getMessageIDBuilder().createMessageID(producer.getProducerId().toString(), messageSequence);
-            }
+        JmsDestination destination = JmsMessageTransformation.transformDestination(connection, dest);
 
-            JmsMessage outbound = null;
-            if (isJmsMessage) {
-                outbound = (JmsMessage) original;
-            } else {
-                // Transform and assign the Destination as one of our own destination objects.
-                outbound = JmsMessageTransformation.transformMessage(connection, original);
-                outbound.setJMSDestination(destination);
-            }
+        if (destination.isTemporary() && ((JmsTemporaryDestination) destination).isDeleted()) {
+            throw new IllegalStateException("Temporary destination has been deleted");
+        }
 
-            // Set the delivery time. Purposefully avoided doing this earlier so
-            // that we use the 'outbound' JmsMessage object reference when
-            // updating our own message instances, avoids using the interface
-            // in case the JMS 1.1 Message API is actually being used due to
-            // being on the classpath too.
-            long deliveryTime = 0;
-            if (hasDelay) {
-                deliveryTime = timeStamp + deliveryDelay;
-            }
+        sendLock.lock();
+        try {
+            List<JmsOutboundMessageDispatch> envelopes = new ArrayList<JmsOutboundMessageDispatch>(messages.size());
+            try {
+                for (Message original : messages) {
+                    JmsOutboundMessageDispatch envelope = createOutboundDispatch(
+                        producer, destination, original, deliveryMode, priority, timeToLive, disableMsgId, disableTimestamp, deliveryDelay, false);
+                    envelopes.add(envelope);
+                    if (envelope.getBodyStream() != null) {
+                        throw new IllegalStateException("A message with a streamed body cannot be sent in a batch");
+                    }
+                }
+            } catch (JMSException jmsEx) {
+                for (JmsOutboundMessageDispatch envelope : envelopes) {
+                    envelope.releasePayload();
+                }
 
-            outbound.setJMSDeliveryTime(deliveryTime);
-            if(!isJmsMessage) {
-                // If the original was a foreign message, we still need to update it too.
-                setForeignMessageDeliveryTime(original, deliveryTime);
+                throw jmsEx;
             }
 
-            // Set the message ID
-            outbound.getFacade().setProviderMessageIdObject(messageId);
-            if (!isJmsMessage) {
-                // If the original was a foreign message, we still need to update it
-                // with the properly encoded Message ID String, get it from the one
-                // we transformed from now that it is set.
-                original.setJMSMessageID(outbound.getJMSMessageID());
-            }
+            try {
+                acquireSendPermits(producer, envelopes);
+            } catch (JMSException jmsEx) {
+                for (JmsOutboundMessageDispatch envelope : envelopes) {
+                    envelope.releasePayload();
+                }
 
-            // If configured set the User ID using the value we have encoded and cached,
-            // otherwise clear to prevent caller from spoofing the user ID value.
-            if (connection.isPopulateJMSXUserID()) {
-                outbound.getFacade().setUserIdBytes(connection.getEncodedUsername());
-            } else {
-                outbound.getFacade().setUserId(null);
+                throw jmsEx;
             }
 
-            boolean sync = connection.isForceSyncSend() ||
-                           (!connection.isForceAsyncSend() && deliveryMode == DeliveryMode.PERSISTENT && !getTransacted());
-
-            outbound.onSend(timeToLive);
+            try {
+                transactionContext.send(connection, envelopes);
+            } catch (JMSException jmsEx) {
+                JmsConnection.releaseSendPermits(envelopes);
+                throw jmsEx;
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
 
-            JmsOutboundMessageDispatch envelope = new JmsOutboundMessageDispatch();
-            envelope.setMessage(outbound);
-            envelope.setPayload(outbound.getFacade().encodeMessage());
-            envelope.setProducerId(producer.getProducerId());
-            envelope.setDestination(destination);
-            envelope.setSendAsync(listener == null ? !sync : true);
-            envelope.setDispatchId(messageSequence);
-            envelope.setCompletionRequired(listener != null);
+    private void send(JmsMessageProducer producer, JmsDestination destination, Message original, int deliveryMode, int priority, long timeToLive, boolean disableMsgId, boolean disableTimestamp, long deliveryDelay, CompletionListener listener) throws JMSException {
+        JmsSendEvent sendEvent = JmsFlightRecorder.isAvailable() ? JmsSendEvent.start() : null;
+        JmsOutboundMessageDispatch envelope = null;
+        boolean succeeded = false;
 
-            if (producer.isAnonymous()) {
-                envelope.setPresettle(getPresettlePolicy().isProducerPresttled(this, destination));
-            } else {
-                envelope.setPresettle(producer.isPresettled());
-            }
+        sendLock.lock();
+        try {
+            envelope = createOutboundDispatch(
+                producer, destination, original, deliveryMode, priority, timeToLive, disableMsgId, disableTimestamp, deliveryDelay, listener != null);
 
-            if (envelope.isSendAsync() && !envelope.isCompletionRequired() && !envelope.isPresettle()) {
-                envelope.setMessage(outbound.copy());
-                outbound.onSendComplete();
+            try {
+                acquireSendPermits(producer, Collections.singletonList(envelope));
+            } catch (JMSException jmsEx) {
+                envelope.releasePayload();
+                throw jmsEx;
             }
 
             SendCompletion completion = null;
@@ -854,6 +931,8 @@ public class JmsSession implements AutoCloseable, Session, QueueSession, TopicSe
             try {
                 transactionContext.send(connection, envelope);
             } catch (JMSException jmsEx) {
+                envelope.releaseSendPermit();
+
                 // If the synchronous portion of the send fails the completion be
                 // notified but might depending on the circumstances of the failures,
                 // remove it from the queue and check if is is already completed.
@@ -866,9 +945,177 @@ public class JmsSession implements AutoCloseable, Session, QueueSession, TopicSe
 
                 throw jmsEx;
             }
+
+            succeeded = true;
         } finally {
             sendLock.unlock();
+
+            if (sendEvent != null) {
+                sendEvent.finish(envelope, succeeded);
+            }
+        }
+    }
+
+    /*
+     * Takes space for the envelopes in the outbound windows of the producer and the
+     * connection, waiting for earlier sends to be settled if either is full, and attaches
+     * a permit to each envelope that gives the space back once it is settled.
+     */
+    private void acquireSendPermits(JmsMessageProducer producer, List<JmsOutboundMessageDispatch> envelopes) throws JMSException {
+        JmsSendWindow producerWindow = producer.getSendWindow();
+        JmsSendWindow connectionWindow = connection.getSendWindow();
+
+        if (producerWindow == null && connectionWindow == null) {
+            return;
+        }
+
+        long size = 0;
+        for (JmsOutboundMessageDispatch envelope : envelopes) {
+            size += envelope.getPayloadSize();
+        }
+
+        long timeout = connection.getSendTimeout();
+        long deadline = timeout != JmsConnectionInfo.INFINITE ? System.currentTimeMillis() + timeout : 0;
+
+        long producerEpoch = 0;
+        if (producerWindow != null) {
+            producerEpoch = producerWindow.acquire(size, envelopes.size(), timeout);
+            if (producerEpoch < 0) {
+                throw new JmsSendTimedOutException("Timed out waiting for space in the producer send window",
+                    envelopes.size() == 1 ? envelopes.get(0).getMessage() : null);
+            }
+        }
+
+        long connectionEpoch = 0;
+        if (connectionWindow != null) {
+            try {
+                long remaining = timeout != JmsConnectionInfo.INFINITE ? Math.max(0, deadline - System.currentTimeMillis()) : timeout;
+                connectionEpoch = connectionWindow.acquire(size, envelopes.size(), remaining);
+            } catch (JMSException jmsEx) {
+                if (producerWindow != null) {
+                    producerWindow.release(size, envelopes.size(), producerEpoch);
+                }
+
+                throw jmsEx;
+            }
+
+            if (connectionEpoch < 0) {
+                if (producerWindow != null) {
+                    producerWindow.release(size, envelopes.size(), producerEpoch);
+                }
+
+                throw new JmsSendTimedOutException("Timed out waiting for space in the connection send window",
+                    envelopes.size() == 1 ? envelopes.get(0).getMessage() : null);
+            }
+        }
+
+        for (JmsOutboundMessageDispatch envelope : envelopes) {
+            envelope.setSendPermit(new JmsSendWindow.Permit(
+                producerWindow, producerEpoch, connectionWindow, connectionEpoch, envelope.getPayloadSize()));
+        }
+    }
+
+    private JmsOutboundMessageDispatch createOutboundDispatch(JmsMessageProducer producer, JmsDestination destination, Message original, int deliveryMode, int priority, long timeToLive, boolean disableMsgId, boolean disableTimestamp, long deliveryDelay, boolean completionRequired) throws JMSException {
+        original.setJMSDeliveryMode(deliveryMode);
+        original.setJMSPriority(priority);
+        original.setJMSRedelivered(false);
+        original.setJMSDestination(destination);
+
+        long timeStamp = System.currentTimeMillis();
+        boolean hasTTL = timeToLive > Message.DEFAULT_TIME_TO_LIVE;
+        boolean hasDelay = deliveryDelay > Message.DEFAULT_DELIVERY_DELAY;
+
+        boolean isJmsMessage = original instanceof JmsMessage;
+
+        if (!disableTimestamp) {
+            original.setJMSTimestamp(timeStamp);
+        } else {
+            original.setJMSTimestamp(0);
+        }
+
+        if (hasTTL) {
+            original.setJMSExpiration(timeStamp + timeToLive);
+        } else {
+            original.setJMSExpiration(0);
+        }
+
+        long messageSequence = producer.getNextMessageSequence();
+        Object messageId = null;
+        if (!disableMsgId) {
+            messageId = producer.getMessageIDBuilder().createMessageID(producer.getProducerId().toString(), messageSequence);
+        }
+
+        JmsMessage outbound = null;
+        if (isJmsMessage) {
+            outbound = (JmsMessage) original;
+        } else {
+            // Transform and assign the Destination as one of our own destination objects.
+            outbound = JmsMessageTransformation.transformMessage(connection, original);
+            outbound.setJMSDestination(destination);
+        }
+
+        // Set the delivery time. Purposefully avoided doing this earlier so
+        // that we use the 'outbound' JmsMessage object reference when
+        // updating our own message instances, avoids using the interface
+        // in case the JMS 1.1 Message API is actually being used due to
+        // being on the classpath too.
+        long deliveryTime = 0;
+        if (hasDelay) {
+            deliveryTime = timeStamp + deliveryDelay;
+        }
+
+        outbound.setJMSDeliveryTime(deliveryTime);
+        if(!isJmsMessage) {
+            // If the original was a foreign message, we still need to update it too.
+            setForeignMessageDeliveryTime(original, deliveryTime);
+        }
+
+        // Set the message ID
+        outbound.getFacade().setProviderMessageIdObject(messageId);
+        if (!isJmsMessage) {
+            // If the original was a foreign message, we still need to update it
+            // with the properly encoded Message ID String, get it from the one
+            // we transformed from now that it is set.
+            original.setJMSMessageID(outbound.getJMSMessageID());
+        }
+
+        // If configured set the User ID using the value we have encoded and cached,
+        // otherwise clear to prevent caller from spoofing the user ID value.
+        if (connection.isPopulateJMSXUserID()) {
+            outbound.getFacade().setUserIdBytes(connection.getEncodedUsername());
+        } else {
+            outbound.getFacade().setUserId(null);
+        }
+
+        boolean sync = connection.isForceSyncSend() ||
+                       (!connection.isForceAsyncSend() && deliveryMode == DeliveryMode.PERSISTENT && !getTransacted());
+
+        outbound.onSend(timeToLive);
+
+        JmsOutboundMessageDispatch envelope = new JmsOutboundMessageDispatch();
+        envelope.setMessage(outbound);
+        envelope.setPayload(outbound.getFacade().encodeMessage());
+        if (outbound.getFacade() instanceof JmsBytesMessageFacade) {
+            envelope.setBodyStream(((JmsBytesMessageFacade) outbound.getFacade()).getBodyStream());
         }
+        envelope.setProducerId(producer.getProducerId());
+        envelope.setDestination(destination);
+        envelope.setSendAsync(completionRequired || !sync);
+        envelope.setDispatchId(messageSequence);
+        envelope.setCompletionRequired(completionRequired);
+
+        if (producer.isAnonymous()) {
+            envelope.setPresettle(getPresettlePolicy().isProducerPresttled(this, destination));
+        } else {
+            envelope.setPresettle(producer.isPresettled());
+        }
+
+        if (envelope.isSendAsync() && !envelope.isCompletionRequired() && !envelope.isPresettle()) {
+            envelope.setMessage(outbound.copy());
+            outbound.onSendComplete();
+        }
+
+        return envelope;
     }
 
     private void setForeignMessageDeliveryTime(Message foreignMessage, long deliveryTime) throws JMSException {
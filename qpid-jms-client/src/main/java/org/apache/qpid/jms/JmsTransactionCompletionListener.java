@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms;
+
+import javax.jms.JMSException;
+
+/**
+ * Notified of the outcome of a commit or rollback that was started without waiting for
+ * it to complete.  The callbacks run on the completion thread of the session, which
+ * must not be used to commit, roll back or close that session.
+ */
+public interface JmsTransactionCompletionListener {
+
+    /**
+     * Called once the transaction has completed and the next transaction has begun.
+     */
+    void onCompletion();
+
+    /**
+     * Called if the transaction or the begin of the next transaction failed.
+     *
+     * @param exception
+     *      the cause of the failure, a TransactionRolledBackException if a commit
+     *      failed and the transaction was rolled back instead.
+     */
+    void onException(JMSException exception);
+
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.qpid.jms;
 
+import java.util.List;
+
 import javax.jms.JMSException;
 
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
@@ -60,6 +62,20 @@ public interface JmsTransactionContext {
      */
     void send(JmsConnection connection, JmsOutboundMessageDispatch envelope) throws JMSException;
 
+    /**
+     * Allows the context to intercept and perform any additional logic
+     * prior to a batch of messages being sent on to the connection and
+     * subsequently the remote peer as a single unit of work.
+     *
+     * @param connection
+     *        the connection that will be do the send of the messages
+     * @param envelopes
+     *        the envelopes that contain the messages to be sent.
+     *
+     * @throws JMSException if an error occurs during the send.
+     */
+    void send(JmsConnection connection, List<JmsOutboundMessageDispatch> envelopes) throws JMSException;
+
     /**
      * Adds the given Transaction synchronization to the current list. The
      * registered synchronization will be notified of various event points
@@ -106,6 +122,32 @@ public interface JmsTransactionContext {
      */
     void commit() throws JMSException;
 
+    /**
+     * Starts a rollback of the work done in this transaction along with the begin of the
+     * next transaction and returns without waiting for them to complete.  Work done in
+     * the transaction from any thread waits until they have.
+     *
+     * @param listener
+     *        notified on the session's completion thread once the rollback completes.
+     *
+     * @throws JMSException
+     *         if the rollback cannot be started.
+     */
+    void rollback(JmsTransactionCompletionListener listener) throws JMSException;
+
+    /**
+     * Starts a commit of the work done in this transaction along with the begin of the
+     * next transaction and returns without waiting for them to complete.  Work done in
+     * the transaction from any thread waits until they have.
+     *
+     * @param listener
+     *        notified on the session's completion thread once the commit completes.
+     *
+     * @throws JMSException
+     *         if the commit cannot be started.
+     */
+    void commit(JmsTransactionCompletionListener listener) throws JMSException;
+
     /**
      * Rolls back any work done in this transaction and releases any locks
      * currently held.  This method will not start a new transaction and no new
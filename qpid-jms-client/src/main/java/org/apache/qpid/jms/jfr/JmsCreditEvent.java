@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Marks a consumer granting the remote more link credit.
+ */
+@Name("org.apache.qpid.jms.CreditGrant")
+@Label("Credit Grant")
+@Category({ "Qpid JMS", "Consumer" })
+@Description("A consumer granting the remote link credit to send more messages")
+@Enabled(false)
+@StackTrace(false)
+public final class JmsCreditEvent extends jdk.jfr.Event {
+
+    private static final JmsCreditEvent PROBE = new JmsCreditEvent();
+
+    @Label("Consumer")
+    String consumerId;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Granted")
+    int granted;
+
+    @Label("Remaining Credit")
+    @Description("Credit the link still had before the grant")
+    int remaining;
+
+    @Label("Window")
+    int window;
+
+    /**
+     * Commits an event for a credit grant if the event type is enabled.
+     *
+     * @param consumerId
+     *      the id of the consumer granting credit.
+     * @param destination
+     *      the name of the destination consumed from.
+     * @param granted
+     *      the credit added.
+     * @param remaining
+     *      the credit the link had before the grant.
+     * @param window
+     *      the prefetch window the grant fills the credit up to.
+     */
+    public static void emit(Object consumerId, String destination, int granted, int remaining, int window) {
+        if (!PROBE.isEnabled()) {
+            return;
+        }
+
+        JmsCreditEvent event = new JmsCreditEvent();
+        if (event.shouldCommit()) {
+            event.consumerId = String.valueOf(consumerId);
+            event.destination = destination;
+            event.granted = granted;
+            event.remaining = remaining;
+            event.window = window;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Marks a transfer arriving for a consumer, timed over decoding it and handing it on
+ * for dispatch.
+ */
+@Name("org.apache.qpid.jms.Delivery")
+@Label("Message Delivery")
+@Category({ "Qpid JMS", "Consumer" })
+@Description("A message arriving for a consumer, timed over decoding it for dispatch")
+@Enabled(false)
+@StackTrace(false)
+public final class JmsDeliveryEvent extends jdk.jfr.Event {
+
+    private static final JmsDeliveryEvent PROBE = new JmsDeliveryEvent();
+
+    @Label("Consumer")
+    String consumerId;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Size")
+    @DataAmount(DataAmount.BYTES)
+    long size;
+
+    @Label("Decoded")
+    boolean decoded;
+
+    /**
+     * @return a started event, or null if the event type is not enabled.
+     */
+    public static JmsDeliveryEvent start() {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+
+        JmsDeliveryEvent event = new JmsDeliveryEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it passes the threshold of the recording.
+     *
+     * @param consumerId
+     *      the id of the consumer the transfer arrived for.
+     * @param destination
+     *      the name of the destination consumed from.
+     * @param size
+     *      the encoded size of the message.
+     * @param decoded
+     *      false if the message could not be decoded and was rejected.
+     */
+    public void finish(Object consumerId, String destination, long size, boolean decoded) {
+        end();
+        if (shouldCommit()) {
+            this.consumerId = String.valueOf(consumerId);
+            this.destination = destination;
+            this.size = size;
+            this.decoded = decoded;
+            commit();
+        }
+    }
+}
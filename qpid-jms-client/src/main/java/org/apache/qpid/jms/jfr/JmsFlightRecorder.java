@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guards the Java Flight Recorder events of the client.
+ * <p>
+ * The event types in this package extend jdk.jfr.Event, which not every Java 8 runtime
+ * provides, so callers must check {@link #isAvailable()} before using any of them.  The
+ * events can also be turned off entirely by setting the system property
+ * {@value #DISABLED_PROPERTY} to true.
+ * <p>
+ * Every event type is disabled by default and must be enabled in the settings of a
+ * recording, for example:
+ * <pre>
+ *   jcmd &lt;pid&gt; JFR.start settings=qpid-jms.jfc
+ * </pre>
+ * with a settings file that sets "enabled" to true for the wanted event names, all of
+ * which start with "org.apache.qpid.jms.".  While an event type is disabled the cost
+ * of each place it is emitted from is a check of a flag.
+ */
+public final class JmsFlightRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmsFlightRecorder.class);
+
+    public static final String DISABLED_PROPERTY = "org.apache.qpid.jms.jfr.disabled";
+
+    private static final boolean AVAILABLE = checkAvailable();
+
+    private JmsFlightRecorder() {}
+
+    /**
+     * @return true if the events of the client can be used on this runtime.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean checkAvailable() {
+        try {
+            if (Boolean.getBoolean(DISABLED_PROPERTY)) {
+                return false;
+            }
+
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable error) {
+            LOG.trace("Flight Recorder events are not available: {}", error.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans an attempt by the failover provider to connect to one of its remotes.
+ */
+@Name("org.apache.qpid.jms.FailoverConnect")
+@Label("Failover Connect Attempt")
+@Category({ "Qpid JMS", "Connection" })
+@Description("An attempt by the failover provider to connect, or reconnect, to a remote")
+@Enabled(false)
+@StackTrace(false)
+public final class JmsReconnectEvent extends jdk.jfr.Event {
+
+    private static final JmsReconnectEvent PROBE = new JmsReconnectEvent();
+
+    @Label("Remote URI")
+    String remoteURI;
+
+    @Label("Attempt")
+    long attempt;
+
+    @Label("Reconnect")
+    @Description("True if the attempt follows the loss of an established connection")
+    boolean reconnect;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * @return a started event, or null if the event type is not enabled.
+     */
+    public static JmsReconnectEvent start() {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+
+        JmsReconnectEvent event = new JmsReconnectEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it passes the threshold of the recording.
+     *
+     * @param remoteURI
+     *      the remote the attempt was made to.
+     * @param attempt
+     *      the number of the attempt.
+     * @param reconnect
+     *      true if a connection had been established before.
+     * @param succeeded
+     *      true if the attempt connected.
+     */
+    public void finish(Object remoteURI, long attempt, boolean reconnect, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            this.remoteURI = String.valueOf(remoteURI);
+            this.attempt = attempt;
+            this.reconnect = reconnect;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+}
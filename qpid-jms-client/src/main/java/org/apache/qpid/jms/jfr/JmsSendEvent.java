@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import org.apache.qpid.jms.message.JmsOutboundMessageDispatch;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans a send from a Session, from taking the send lock until the send returns to the
+ * application, which for a synchronous send includes waiting for the remote to settle.
+ */
+@Name("org.apache.qpid.jms.Send")
+@Label("Message Send")
+@Category({ "Qpid JMS", "Producer" })
+@Description("Time taken by a MessageProducer send to return to the application")
+@Enabled(false)
+@StackTrace(false)
+public final class JmsSendEvent extends jdk.jfr.Event {
+
+    private static final JmsSendEvent PROBE = new JmsSendEvent();
+
+    @Label("Producer")
+    String producerId;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Asynchronous")
+    boolean async;
+
+    @Label("Presettled")
+    boolean presettle;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * @return a started event, or null if the event type is not enabled.
+     */
+    public static JmsSendEvent start() {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+
+        JmsSendEvent event = new JmsSendEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it passes the threshold of the recording.
+     *
+     * @param envelope
+     *      the envelope that was sent, or null if the send failed before it was created.
+     * @param succeeded
+     *      true if the send returned without an error.
+     */
+    public void finish(JmsOutboundMessageDispatch envelope, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            if (envelope != null) {
+                producerId = String.valueOf(envelope.getProducerId());
+                destination = envelope.getDestination() != null ? envelope.getDestination().getName() : null;
+                async = envelope.isSendAsync();
+                presettle = envelope.isPresettle();
+            }
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Spans a task run on the provider serializer thread, recording how long it waited in
+ * the queue before it started.
+ */
+@Name("org.apache.qpid.jms.SerializerTask")
+@Label("Provider Task")
+@Category({ "Qpid JMS", "Provider" })
+@Description("A task run on the provider thread and the time it waited to start")
+@Enabled(false)
+@StackTrace(false)
+public final class JmsSerializerTaskEvent extends jdk.jfr.Event {
+
+    private static final JmsSerializerTaskEvent PROBE = new JmsSerializerTaskEvent();
+
+    @Label("Task")
+    String task;
+
+    @Label("Queue Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueTime;
+
+    /**
+     * Wraps a task being submitted to the serializer so that an event is recorded when
+     * it runs, or returns the task as given when the event type is not enabled.
+     *
+     * @param task
+     *      the task being submitted.
+     *
+     * @return the task to submit in its place.
+     */
+    public static Runnable wrap(final Runnable task) {
+        if (!PROBE.isEnabled()) {
+            return task;
+        }
+
+        final long submitted = System.nanoTime();
+
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                JmsSerializerTaskEvent event = new JmsSerializerTaskEvent();
+                event.queueTime = System.nanoTime() - submitted;
+                event.begin();
+                try {
+                    task.run();
+                } finally {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.task = task.getClass().getName();
+                        event.commit();
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans a transfer sent by a producer from being written to the link until the remote
+ * updates it with an outcome.
+ */
+@Name("org.apache.qpid.jms.Settle")
+@Label("Send Settlement")
+@Category({ "Qpid JMS", "Producer" })
+@Description("Time from a transfer being sent until the remote settled it, with the outcome")
+@Enabled(false)
+@StackTrace(false)
+public final class JmsSettleEvent extends jdk.jfr.Event {
+
+    private static final JmsSettleEvent PROBE = new JmsSettleEvent();
+
+    @Label("Producer")
+    String producerId;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Size")
+    @DataAmount(DataAmount.BYTES)
+    long size;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * Starts an event for a transfer being sent.
+     *
+     * @param producerId
+     *      the id of the producer sending the transfer.
+     * @param destination
+     *      the name of the destination the transfer is sent to.
+     * @param size
+     *      the encoded size of the message.
+     *
+     * @return a started event, or null if the event type is not enabled.
+     */
+    public static JmsSettleEvent start(Object producerId, String destination, long size) {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+
+        JmsSettleEvent event = new JmsSettleEvent();
+        event.producerId = String.valueOf(producerId);
+        event.destination = destination;
+        event.size = size;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it passes the threshold of the recording.
+     *
+     * @param outcome
+     *      the outcome given by the remote, or null if it was not recognized.
+     */
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
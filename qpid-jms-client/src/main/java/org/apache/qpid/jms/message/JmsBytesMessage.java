@@ -20,6 +20,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.jms.BytesMessage;
 import javax.jms.JMSException;
@@ -384,6 +385,45 @@ public class JmsBytesMessage extends JmsMessage implements BytesMessage {
         }
     }
 
+    /**
+     * Sets a stream that the body of this message is read from while the message is sent,
+     * so that a large body is never held in memory in full.  The sending thread reads the
+     * stream a chunk at a time as the chunks before it are written to the remote peer, and
+     * the stream must supply exactly the given number of bytes.  Any body already written
+     * to the message is discarded, and the message can only be sent once with the stream.
+     *
+     * @param stream
+     *      the stream to read the body from.
+     * @param length
+     *      the number of bytes the stream supplies.
+     *
+     * @throws JMSException if the body of the message is read-only.
+     */
+    public void setBodyInputStream(InputStream stream, long length) throws JMSException {
+        checkReadOnlyBody();
+        try {
+            facade.setBodyStream(new JmsOutboundBodyStream(stream, length));
+        } catch (IllegalArgumentException iae) {
+            throw JmsExceptionSupport.createMessageFormatException(iae);
+        }
+        this.dataOut = null;
+        this.dataIn = null;
+    }
+
+    /**
+     * Returns a stream that reads the body of this message.  When a large message is
+     * received as a stream the body is read from the remote peer as the stream is read,
+     * it can then be read only once and {@link #reset()} does not return to its start.
+     *
+     * @return a stream that reads the body.
+     *
+     * @throws JMSException if the body of the message is write-only.
+     */
+    public InputStream getBodyInputStream() throws JMSException {
+        initializeReading();
+        return dataIn;
+    }
+
     @Override
     public void reset() throws JMSException {
         this.facade.reset();
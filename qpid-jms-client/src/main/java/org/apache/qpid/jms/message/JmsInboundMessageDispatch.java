@@ -29,6 +29,7 @@ public class JmsInboundMessageDispatch extends JmsAbstractResourceId {
     private final long sequence;
     private JmsMessage message;
     private boolean enqueueFirst;
+    private long arrivalTime;
 
     private transient String stringView;
 
@@ -64,6 +65,18 @@ public class JmsInboundMessageDispatch extends JmsAbstractResourceId {
         return enqueueFirst;
     }
 
+    /**
+     * @return the System.nanoTime() at which the message arrived from the remote, or zero
+     *         if the arrival is not being tracked.
+     */
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    public void setArrivalTime(long arrivalTime) {
+        this.arrivalTime = arrivalTime;
+    }
+
     public int getRedeliveryCount() {
         int redeliveryCount = 0;
 
@@ -19,6 +19,8 @@ package org.apache.qpid.jms.message;
 import java.util.Locale;
 
 import org.apache.qpid.jms.provider.amqp.message.AmqpMessageIdHelper;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.UnsignedLong;
 
 /**
  * Interface for creating a custom Message ID builder to populate the
@@ -98,8 +100,52 @@ public interface JmsMessageIDBuilder {
                     }
                 };
             }
+        },
+        ULONG {
+            @Override
+            public JmsMessageIDBuilder createBuilder() {
+                return new SequenceMessageIDBuilder() {
+
+                    @Override
+                    public Object createMessageID(String producerId, long messageSequence) {
+                        return UnsignedLong.valueOf(getProducerBase(producerId) + messageSequence);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return ULONG.name();
+                    }
+                };
+            }
+        },
+        BINARY {
+            @Override
+            public JmsMessageIDBuilder createBuilder() {
+                return new SequenceMessageIDBuilder() {
+
+                    @Override
+                    public Object createMessageID(String producerId, long messageSequence) {
+                        final long base = getProducerBase(producerId);
+                        final byte[] id = new byte[BINARY_ID_SIZE];
+
+                        for (int i = 0; i < 8; ++i) {
+                            id[i] = (byte) (base >>> (56 - (i * 8)));
+                            id[i + 8] = (byte) (messageSequence >>> (56 - (i * 8)));
+                        }
+
+                        return new Binary(id);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return BINARY.name();
+                    }
+                };
+            }
         };
 
+        private static final int BINARY_ID_SIZE = 16;
+
         public abstract JmsMessageIDBuilder createBuilder();
 
         /**
@@ -115,6 +161,52 @@ public interface JmsMessageIDBuilder {
         public static JmsMessageIDBuilder create(String value) {
             return valueOf(value.toUpperCase(Locale.ENGLISH)).createBuilder();
         }
+
+        /*
+         * Base for the builders that derive each ID from a 64 bit value unique to the
+         * producer and the message sequence, so that no String is created per message.
+         * The base is a hash of the producer ID, which is kept for the last producer
+         * seen so that a single producer sending many messages hashes its ID once.
+         */
+        private abstract static class SequenceMessageIDBuilder implements JmsMessageIDBuilder {
+
+            private volatile ProducerBase last;
+
+            protected long getProducerBase(String producerId) {
+                ProducerBase base = last;
+                if (base == null || base.producerId != producerId) {
+                    base = new ProducerBase(producerId);
+                    last = base;
+                }
+
+                return base.value;
+            }
+        }
+
+        private static final class ProducerBase {
+
+            private final String producerId;
+            private final long value;
+
+            public ProducerBase(String producerId) {
+                this.producerId = producerId;
+
+                // FNV-1a followed by the MurmurHash3 finalizer to spread the bits.
+                long hash = 0xcbf29ce484222325L;
+                for (int i = 0; i < producerId.length(); ++i) {
+                    hash ^= producerId.charAt(i);
+                    hash *= 0x100000001b3L;
+                }
+
+                hash ^= hash >>> 33;
+                hash *= 0xff51afd7ed558ccdL;
+                hash ^= hash >>> 33;
+                hash *= 0xc4ceb9fe1a85ec53L;
+                hash ^= hash >>> 33;
+
+                this.value = hash;
+            }
+        }
     }
 
     /**
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.message;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Carries the body of a message being sent from an application supplied stream to the
+ * provider in chunks, so that no more than a few chunks of the body are held in memory
+ * at any one time.
+ * <p>
+ * The sending thread reads the source through {@link #transfer()}, which blocks while the
+ * provider has yet to write out the chunks already queued.  The provider takes the chunks
+ * with {@link #poll()} as it writes them and is told of new ones by the listener it sets.
+ * A stream can only be sent once, as the source cannot be read again if the send has to
+ * be repeated.
+ */
+public class JmsOutboundBodyStream {
+
+    /**
+     * The largest value that can be given as the length of a streamed body.
+     */
+    public static final long MAX_LENGTH = 0xFFFFFFFFL;
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_QUEUED_CHUNKS = 4;
+
+    private final InputStream source;
+    private final long length;
+    private final int chunkSize;
+    private final int maxQueuedChunks;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = lock.newCondition();
+    private final Deque<byte[]> chunks = new ArrayDeque<byte[]>();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private long queued;
+    private boolean discarding;
+    private Throwable failure;
+    private volatile Runnable listener;
+
+    public JmsOutboundBodyStream(InputStream source, long length) {
+        this(source, length, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_QUEUED_CHUNKS);
+    }
+
+    public JmsOutboundBodyStream(InputStream source, long length, int chunkSize, int maxQueuedChunks) {
+        if (source == null) {
+            throw new IllegalArgumentException("The body stream must not be null");
+        }
+
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("The body stream length must be between 0 and " + MAX_LENGTH);
+        }
+
+        this.source = source;
+        this.length = length;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxQueuedChunks = Math.max(1, maxQueuedChunks);
+    }
+
+    /**
+     * @return the number of bytes the stream supplies.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Claims the stream for a send, which only succeeds once.
+     *
+     * @return true if the stream had not been claimed before.
+     */
+    public boolean start() {
+        return started.compareAndSet(false, true);
+    }
+
+    /**
+     * Sets the task run by the sending thread whenever a chunk has been queued, or the
+     * source fails, so that the provider can come back for it.
+     *
+     * @param listener
+     *      the task to run, which must not block.
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reads the whole source into the stream a chunk at a time, waiting whenever the
+     * provider has not yet taken the chunks already queued.
+     *
+     * @throws IOException if the source could not be read or the send has failed.
+     */
+    public void transfer() throws IOException {
+        long remaining = length;
+
+        while (remaining > 0) {
+            byte[] chunk = new byte[(int) Math.min(chunkSize, remaining)];
+
+            try {
+                readFully(chunk);
+            } catch (IOException ioe) {
+                abort(ioe);
+                throw ioe;
+            }
+
+            lock.lock();
+            try {
+                while (failure == null && chunks.size() >= maxQueuedChunks) {
+                    space.awaitUninterruptibly();
+                }
+
+                if (failure != null) {
+                    throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+                }
+
+                if (!discarding) {
+                    chunks.addLast(chunk);
+                }
+                queued += chunk.length;
+            } finally {
+                lock.unlock();
+            }
+
+            remaining -= chunk.length;
+            notifyListener();
+        }
+    }
+
+    /**
+     * Takes the next chunk of the body from the stream.
+     *
+     * @return the next chunk, or null if none is queued yet.
+     *
+     * @throws IOException if the source failed before the whole body was read.
+     */
+    public byte[] poll() throws IOException {
+        lock.lock();
+        try {
+            byte[] chunk = chunks.pollFirst();
+            if (chunk != null) {
+                space.signalAll();
+            } else if (failure != null) {
+                throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+            }
+
+            return chunk;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true once every byte of the body has been queued and taken.
+     */
+    public boolean isComplete() {
+        lock.lock();
+        try {
+            return failure == null && queued == length && chunks.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the chunks already queued and any read after, for a send that completes
+     * without writing its body.  The source is still read to its end.
+     */
+    public void discard() {
+        lock.lock();
+        try {
+            discarding = true;
+            chunks.clear();
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fails the stream, waking the sending thread if it is waiting for space.  Only the
+     * first cause given is kept.
+     *
+     * @param cause
+     *      the reason the stream cannot be completed.
+     */
+    public void abort(Throwable cause) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = cause;
+            }
+            chunks.clear();
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        notifyListener();
+    }
+
+    private void readFully(byte[] chunk) throws IOException {
+        int offset = 0;
+        while (offset < chunk.length) {
+            int count = source.read(chunk, offset, chunk.length - offset);
+            if (count < 0) {
+                throw new EOFException("Body stream ended before the " + length + " bytes given as its length");
+            }
+            offset += count;
+        }
+    }
+
+    private void notifyListener() {
+        Runnable listener = this.listener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JmsOutboundBodyStream { length = " + length + ", queued = " + queued + " }";
+    }
+}
@@ -17,8 +17,12 @@
 package org.apache.qpid.jms.message;
 
 import org.apache.qpid.jms.JmsDestination;
+import org.apache.qpid.jms.JmsSendWindow;
 import org.apache.qpid.jms.meta.JmsProducerId;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+
 /**
  * Envelope that wraps the objects involved in a Message send operation.
  */
@@ -32,6 +36,11 @@ public class JmsOutboundMessageDispatch {
     private boolean completionRequired;
     private long dispatchId;
     private Object payload;
+    private boolean payloadReleased;
+    private volatile JmsSendWindow.Permit sendPermit;
+    private volatile boolean inFlight;
+    private volatile boolean sendCompleted;
+    private JmsOutboundBodyStream bodyStream;
 
     private transient String stringView;
 
@@ -63,6 +72,82 @@ public class JmsOutboundMessageDispatch {
         this.payload = payload;
     }
 
+    /**
+     * Releases the reference this envelope holds on a reference counted payload once
+     * the send no longer needs it, calls after the first have no effect.
+     */
+    public synchronized void releasePayload() {
+        if (!payloadReleased) {
+            payloadReleased = true;
+            ReferenceCountUtil.release(payload);
+        }
+    }
+
+    /**
+     * @return the encoded size of the payload, or zero if it is not a buffer.
+     */
+    public int getPayloadSize() {
+        return payload instanceof ByteBuf ? ((ByteBuf) payload).readableBytes() : 0;
+    }
+
+    public void setSendPermit(JmsSendWindow.Permit sendPermit) {
+        this.sendPermit = sendPermit;
+    }
+
+    /**
+     * Gives back the space this send holds in the outbound windows of its producer and
+     * connection, for when the remote has settled it or it has failed.  Calls after the
+     * first have no effect.
+     */
+    public void releaseSendPermit() {
+        JmsSendWindow.Permit permit = sendPermit;
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /**
+     * Marks this send as taken over by the provider, which from then on gives back its
+     * send permit once the remote settles it or it fails.
+     */
+    public void markInFlight() {
+        this.inFlight = true;
+    }
+
+    /**
+     * @return true if the provider has taken over this send and will release its permit.
+     */
+    public boolean isInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Marks the request for this send as complete, written for an asynchronous send and
+     * settled otherwise, so that it is not sent again when the batch it is in is replayed.
+     */
+    public void markSendCompleted() {
+        this.sendCompleted = true;
+    }
+
+    /**
+     * @return true if the request for this send has completed.
+     */
+    public boolean isSendCompleted() {
+        return sendCompleted;
+    }
+
+    /**
+     * @return the stream the body of the message is read from while it is sent, or null
+     *         if the payload carries the whole message.
+     */
+    public JmsOutboundBodyStream getBodyStream() {
+        return bodyStream;
+    }
+
+    public void setBodyStream(JmsOutboundBodyStream bodyStream) {
+        this.bodyStream = bodyStream;
+    }
+
     public JmsProducerId getProducerId() {
         return producerId;
     }
@@ -22,6 +22,8 @@ import java.io.OutputStream;
 import javax.jms.IllegalStateException;
 import javax.jms.JMSException;
 
+import org.apache.qpid.jms.message.JmsOutboundBodyStream;
+
 /**
  * Interface for a Message Facade that wraps a BytesMessage based message
  * instance.
@@ -92,4 +94,26 @@ public interface JmsBytesMessageFacade extends JmsMessageFacade {
      */
     byte[] copyBody();
 
+    /**
+     * Sets a stream that the body of the message is read from as it is sent, in place of
+     * any body held in the message.
+     *
+     * @param bodyStream
+     *      the stream that supplies the body, or null to clear it.
+     */
+    void setBodyStream(JmsOutboundBodyStream bodyStream);
+
+    /**
+     * @return the stream that the body is read from as the message is sent, or null if
+     *         the body is held in the message.
+     */
+    JmsOutboundBodyStream getBodyStream();
+
+    /**
+     * Drops the rest of a body that is still being received as a stream, so that the
+     * messages behind it are not held up by a body the application has finished with.
+     * A body held in the message, or one that has arrived in full, is left as it is.
+     */
+    void releaseStreamedBody();
+
 }
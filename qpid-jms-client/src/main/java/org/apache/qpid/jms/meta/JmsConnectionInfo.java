@@ -21,6 +21,7 @@ import java.nio.charset.Charset;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
 import org.apache.qpid.jms.policy.JmsDefaultDeserializationPolicy;
 import org.apache.qpid.jms.policy.JmsDefaultMessageIDPolicy;
 import org.apache.qpid.jms.policy.JmsDefaultPrefetchPolicy;
@@ -67,6 +68,16 @@ public final class JmsConnectionInfo extends JmsAbstractResource implements Comp
     private long requestTimeout = DEFAULT_REQUEST_TIMEOUT;
     private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
     private long closeTimeout = DEFAULT_CLOSE_TIMEOUT;
+    private long maxConnectionPrefetchBytes;
+    private long maxSessionPrefetchBytes;
+    private long maxConnectionOutstandingBytes;
+    private int maxConnectionOutstandingSends;
+    private long maxProducerOutstandingBytes;
+    private int maxProducerOutstandingSends;
+    private boolean failFastOnOutstandingLimit;
+    private boolean metricsEnabled;
+    private boolean metricsJmxEnabled;
+    private boolean metricsLatencyEnabled;
     private String queuePrefix = null;
     private String topicPrefix = null;
 
@@ -78,6 +89,7 @@ public final class JmsConnectionInfo extends JmsAbstractResource implements Comp
 
     private volatile byte[] encodedUserId;
     private SSLContext sslContextOverride;
+    private JmsConnectionMetrics metrics;
 
     public JmsConnectionInfo(JmsConnectionId connectionId) {
         if (connectionId == null) {
@@ -104,6 +116,17 @@ public final class JmsConnectionInfo extends JmsAbstractResource implements Comp
         copy.sendTimeout = sendTimeout;
         copy.requestTimeout = requestTimeout;
         copy.closeTimeout = closeTimeout;
+        copy.maxConnectionPrefetchBytes = maxConnectionPrefetchBytes;
+        copy.maxSessionPrefetchBytes = maxSessionPrefetchBytes;
+        copy.maxConnectionOutstandingBytes = maxConnectionOutstandingBytes;
+        copy.maxConnectionOutstandingSends = maxConnectionOutstandingSends;
+        copy.maxProducerOutstandingBytes = maxProducerOutstandingBytes;
+        copy.maxProducerOutstandingSends = maxProducerOutstandingSends;
+        copy.failFastOnOutstandingLimit = failFastOnOutstandingLimit;
+        copy.metricsEnabled = metricsEnabled;
+        copy.metricsJmxEnabled = metricsJmxEnabled;
+        copy.metricsLatencyEnabled = metricsLatencyEnabled;
+        copy.metrics = metrics;
         copy.queuePrefix = queuePrefix;
         copy.topicPrefix = topicPrefix;
         copy.connectTimeout = connectTimeout;
@@ -238,6 +261,97 @@ public final class JmsConnectionInfo extends JmsAbstractResource implements Comp
         this.requestTimeout = requestTimeout;
     }
 
+    public long getMaxConnectionPrefetchBytes() {
+        return maxConnectionPrefetchBytes;
+    }
+
+    public void setMaxConnectionPrefetchBytes(long maxConnectionPrefetchBytes) {
+        this.maxConnectionPrefetchBytes = maxConnectionPrefetchBytes;
+    }
+
+    public long getMaxSessionPrefetchBytes() {
+        return maxSessionPrefetchBytes;
+    }
+
+    public void setMaxSessionPrefetchBytes(long maxSessionPrefetchBytes) {
+        this.maxSessionPrefetchBytes = maxSessionPrefetchBytes;
+    }
+
+    public long getMaxConnectionOutstandingBytes() {
+        return maxConnectionOutstandingBytes;
+    }
+
+    public void setMaxConnectionOutstandingBytes(long maxConnectionOutstandingBytes) {
+        this.maxConnectionOutstandingBytes = maxConnectionOutstandingBytes;
+    }
+
+    public int getMaxConnectionOutstandingSends() {
+        return maxConnectionOutstandingSends;
+    }
+
+    public void setMaxConnectionOutstandingSends(int maxConnectionOutstandingSends) {
+        this.maxConnectionOutstandingSends = maxConnectionOutstandingSends;
+    }
+
+    public long getMaxProducerOutstandingBytes() {
+        return maxProducerOutstandingBytes;
+    }
+
+    public void setMaxProducerOutstandingBytes(long maxProducerOutstandingBytes) {
+        this.maxProducerOutstandingBytes = maxProducerOutstandingBytes;
+    }
+
+    public int getMaxProducerOutstandingSends() {
+        return maxProducerOutstandingSends;
+    }
+
+    public void setMaxProducerOutstandingSends(int maxProducerOutstandingSends) {
+        this.maxProducerOutstandingSends = maxProducerOutstandingSends;
+    }
+
+    public boolean isFailFastOnOutstandingLimit() {
+        return failFastOnOutstandingLimit;
+    }
+
+    public void setFailFastOnOutstandingLimit(boolean failFastOnOutstandingLimit) {
+        this.failFastOnOutstandingLimit = failFastOnOutstandingLimit;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return metricsJmxEnabled;
+    }
+
+    public void setMetricsJmxEnabled(boolean metricsJmxEnabled) {
+        this.metricsJmxEnabled = metricsJmxEnabled;
+    }
+
+    public boolean isMetricsLatencyEnabled() {
+        return metricsLatencyEnabled;
+    }
+
+    public void setMetricsLatencyEnabled(boolean metricsLatencyEnabled) {
+        this.metricsLatencyEnabled = metricsLatencyEnabled;
+    }
+
+    /**
+     * @return the metrics recorded for the connection, or null if they are not enabled.
+     */
+    public JmsConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(JmsConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public boolean isLocalMessagePriority() {
         return localMessagePriority;
     }
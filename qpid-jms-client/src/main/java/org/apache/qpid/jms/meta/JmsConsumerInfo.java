@@ -27,6 +27,10 @@ public final class JmsConsumerInfo extends JmsAbstractResource implements Compar
     private final JmsConsumerId consumerId;
     private JmsDestination destination;
     private int prefetchSize;
+    private boolean adaptivePrefetch;
+    private int minPrefetchSize;
+    private long prefetchBufferTime;
+    private long maxPrefetchBytes;
     private boolean browser;
     private String selector;
     private boolean explicitClientID;
@@ -69,6 +73,10 @@ public final class JmsConsumerInfo extends JmsAbstractResource implements Compar
     private void copy(JmsConsumerInfo info) {
         info.destination = destination;
         info.prefetchSize = prefetchSize;
+        info.adaptivePrefetch = adaptivePrefetch;
+        info.minPrefetchSize = minPrefetchSize;
+        info.prefetchBufferTime = prefetchBufferTime;
+        info.maxPrefetchBytes = maxPrefetchBytes;
         info.browser = browser;
         info.selector = selector;
         info.explicitClientID = explicitClientID;
@@ -120,6 +128,41 @@ public final class JmsConsumerInfo extends JmsAbstractResource implements Compar
         this.prefetchSize = prefetchSize;
     }
 
+    /**
+     * @return true if the prefetch size is the largest window the consumer adapts its credit within.
+     */
+    public boolean isAdaptivePrefetch() {
+        return adaptivePrefetch;
+    }
+
+    public void setAdaptivePrefetch(boolean adaptivePrefetch) {
+        this.adaptivePrefetch = adaptivePrefetch;
+    }
+
+    public int getMinPrefetchSize() {
+        return minPrefetchSize;
+    }
+
+    public void setMinPrefetchSize(int minPrefetchSize) {
+        this.minPrefetchSize = minPrefetchSize;
+    }
+
+    public long getPrefetchBufferTime() {
+        return prefetchBufferTime;
+    }
+
+    public void setPrefetchBufferTime(long prefetchBufferTime) {
+        this.prefetchBufferTime = prefetchBufferTime;
+    }
+
+    public long getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
     public String getSelector() {
         return selector;
     }
@@ -35,6 +35,7 @@ public final class JmsSessionInfo extends JmsAbstractResource implements Compara
 
     private int acknowledgementMode;
     private boolean sendAcksAsync;
+    private long maxPrefetchBytes;
     private JmsMessageIDPolicy messageIDPolicy;
     private JmsPrefetchPolicy prefetchPolicy;
     private JmsPresettlePolicy presettlePolicy;
@@ -65,6 +66,7 @@ public final class JmsSessionInfo extends JmsAbstractResource implements Compara
     private void copy(JmsSessionInfo copy) {
         copy.acknowledgementMode = acknowledgementMode;
         copy.sendAcksAsync = sendAcksAsync;
+        copy.maxPrefetchBytes = maxPrefetchBytes;
         copy.redeliveryPolicy = getRedeliveryPolicy().copy();
         copy.presettlePolicy = getPresettlePolicy().copy();
         copy.prefetchPolicy = getPrefetchPolicy().copy();
@@ -102,6 +104,14 @@ public final class JmsSessionInfo extends JmsAbstractResource implements Compara
         this.sendAcksAsync = sendAcksAsync;
     }
 
+    public long getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
     @Override
     public String toString() {
         return "JmsSessionInfo { " + getId() + " }";
@@ -0,0 +1,486 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.qpid.jms.util.MessageQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics kept for a connection and the sessions, producers and consumers created from
+ * it, available from the connection when enabled with the jms.metricsEnabled option and
+ * optionally registered as JMX MBeans with the jms.metricsJmxEnabled option.
+ * <p>
+ * Counts are kept in striped counters and durations in fixed bucket histograms, so that
+ * recording is cheap enough to leave on in production.  Durations are recorded in
+ * nanoseconds, other than delivery latency which is compared with the JMSTimestamp of
+ * a message and so is recorded in milliseconds.
+ */
+public final class JmsConnectionMetrics implements JmsConnectionMetricsMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmsConnectionMetrics.class);
+
+    public static final String JMX_DOMAIN = "org.apache.qpid.jms";
+
+    private final String connectionId;
+
+    private final JmsDestinationMetrics totals;
+    private final ConcurrentMap<String, JmsDestinationMetrics> destinations =
+        new ConcurrentHashMap<String, JmsDestinationMetrics>();
+
+    private final JmsHistogram sendSettleLatency = new JmsHistogram();
+
+    private final LongAdder creditStalls = new LongAdder();
+    private final JmsHistogram creditStallTime = new JmsHistogram();
+
+    private final Map<Object, MessageQueue> prefetchQueues = new ConcurrentHashMap<Object, MessageQueue>();
+
+    private final LongAdder serializerTasksSubmitted = new LongAdder();
+    private final LongAdder serializerTasksStarted = new LongAdder();
+    private final JmsHistogram serializerWaitTime = new JmsHistogram();
+
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder reconnectAttempts = new LongAdder();
+
+    private final List<ObjectName> registered = new ArrayList<ObjectName>();
+    private MBeanServer mbeanServer;
+
+    public JmsConnectionMetrics(String connectionId) {
+        this(connectionId, false);
+    }
+
+    /**
+     * @param connectionId
+     *      the id of the connection the metrics are kept for.
+     * @param trackLatency
+     *      true to keep histograms of the delivery latency and prefetch dwell time of the
+     *      messages received from each destination.
+     */
+    public JmsConnectionMetrics(String connectionId, boolean trackLatency) {
+        this.connectionId = connectionId;
+        this.totals = new JmsDestinationMetrics("total", null, trackLatency);
+    }
+
+    //----- Recording --------------------------------------------------------//
+
+    /**
+     * Returns the counts of the named destination for a producer or consumer that uses
+     * it, creating them on first use.  Each call must be matched by a call to
+     * {@link #releaseDestinationMetrics(JmsDestinationMetrics)} once the producer or
+     * consumer is closed, so that the counts of destinations no longer in use are removed.
+     *
+     * @param name
+     *      the address of the destination, or null for the connection totals.
+     *
+     * @return the counts of the destination, which also add to the connection totals.
+     */
+    public JmsDestinationMetrics acquireDestinationMetrics(String name) {
+        if (name == null) {
+            return totals;
+        }
+
+        JmsDestinationMetrics metrics;
+        synchronized (destinations) {
+            metrics = destinations.get(name);
+            if (metrics == null) {
+                metrics = new JmsDestinationMetrics(name, totals);
+                destinations.put(name, metrics);
+                registerDestination(metrics);
+            }
+
+            metrics.holders++;
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Gives up counts obtained from {@link #acquireDestinationMetrics(String)}, removing
+     * them and their MBean when the last producer or consumer of the destination is done.
+     * What they counted remains in the connection totals.
+     *
+     * @param metrics
+     *      the counts being given up, may be null.
+     */
+    public void releaseDestinationMetrics(JmsDestinationMetrics metrics) {
+        if (metrics == null || metrics == totals) {
+            return;
+        }
+
+        synchronized (destinations) {
+            if (--metrics.holders == 0 && destinations.remove(metrics.getName(), metrics)) {
+                unregisterDestination(metrics);
+            }
+        }
+    }
+
+    /**
+     * Returns the counts of the named destination if a producer or consumer is using it,
+     * or otherwise the connection totals, so that a message sent to a destination by an
+     * anonymous producer adds to the destination only while it is in use.
+     *
+     * @param name
+     *      the address of the destination.
+     *
+     * @return the counts of the destination, which also add to the connection totals.
+     */
+    public JmsDestinationMetrics getDestinationMetrics(String name) {
+        if (name == null) {
+            return totals;
+        }
+
+        JmsDestinationMetrics metrics = destinations.get(name);
+        return metrics != null ? metrics : totals;
+    }
+
+    /**
+     * Records the time from a message being sent until the remote settled it.
+     *
+     * @param nanos
+     *      the time taken in nanoseconds.
+     */
+    public void recordSendSettled(long nanos) {
+        sendSettleLatency.record(nanos);
+    }
+
+    /**
+     * Records a send that was held because the producer had no link credit.
+     */
+    public void recordCreditStall() {
+        creditStalls.increment();
+    }
+
+    /**
+     * Records the time a send held for credit waited before it was sent.
+     *
+     * @param nanos
+     *      the time held in nanoseconds.
+     */
+    public void recordCreditStallTime(long nanos) {
+        creditStallTime.record(nanos);
+    }
+
+    /**
+     * Tracks the prefetch queue of a consumer so that its depth is reported.
+     *
+     * @param consumerId
+     *      the id of the consumer.
+     * @param queue
+     *      the queue holding the messages prefetched for the consumer.
+     */
+    public void addConsumer(Object consumerId, MessageQueue queue) {
+        prefetchQueues.put(consumerId, queue);
+    }
+
+    public void removeConsumer(Object consumerId) {
+        prefetchQueues.remove(consumerId);
+    }
+
+    /**
+     * Wraps a task submitted to the provider serializer so that the tasks waiting in its
+     * queue and the time each waited before it started are recorded.
+     *
+     * @param task
+     *      the task being submitted.
+     *
+     * @return the task to submit in its place.
+     */
+    public Runnable meterSerializerTask(final Runnable task) {
+        final long submitted = System.nanoTime();
+        serializerTasksSubmitted.increment();
+
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                serializerTasksStarted.increment();
+                serializerWaitTime.record(System.nanoTime() - submitted);
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Records an attempt by the failover provider to connect to a remote.
+     */
+    public void recordReconnectAttempt() {
+        reconnectAttempts.increment();
+    }
+
+    /**
+     * Records a successful reconnect following the loss of a connection.
+     */
+    public void recordReconnect() {
+        reconnects.increment();
+    }
+
+    //----- Access -----------------------------------------------------------//
+
+    @Override
+    public String getConnectionId() {
+        return connectionId;
+    }
+
+    /**
+     * @return true if the delivery latency and prefetch dwell time of received messages
+     *         are recorded for each destination.
+     */
+    public boolean isLatencyTracked() {
+        return totals.isLatencyTracked();
+    }
+
+    /**
+     * @return the counts across all destinations.
+     */
+    public JmsDestinationMetrics getTotals() {
+        return totals;
+    }
+
+    /**
+     * @return the counts of each destination in use by a producer or consumer, keyed by
+     *         address.
+     */
+    public Map<String, JmsDestinationMetrics> getDestinations() {
+        return Collections.unmodifiableMap(destinations);
+    }
+
+    public JmsHistogram getSendSettleLatency() {
+        return sendSettleLatency;
+    }
+
+    public JmsHistogram getCreditStallTime() {
+        return creditStallTime;
+    }
+
+    public JmsHistogram getSerializerWaitTime() {
+        return serializerWaitTime;
+    }
+
+    /**
+     * @return the number of messages held in the prefetch queue of each open consumer,
+     *         keyed by the consumer id.
+     */
+    public Map<String, Integer> getPrefetchDepths() {
+        Map<String, Integer> depths = new HashMap<String, Integer>();
+        for (Map.Entry<Object, MessageQueue> entry : prefetchQueues.entrySet()) {
+            depths.put(entry.getKey().toString(), entry.getValue().size());
+        }
+
+        return depths;
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return totals.getMessagesSent();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return totals.getBytesSent();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return totals.getMessagesReceived();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return totals.getBytesReceived();
+    }
+
+    @Override
+    public long getSendSettleLatencyMean() {
+        return toMicros((long) sendSettleLatency.getMean());
+    }
+
+    @Override
+    public long getSendSettleLatency99thPercentile() {
+        return toMicros(sendSettleLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getSendSettleLatencyMax() {
+        return toMicros(sendSettleLatency.getMax());
+    }
+
+    @Override
+    public long getCreditStalls() {
+        return creditStalls.sum();
+    }
+
+    @Override
+    public long getCreditStallTimeMean() {
+        return toMicros((long) creditStallTime.getMean());
+    }
+
+    @Override
+    public long getCreditStallTimeMax() {
+        return toMicros(creditStallTime.getMax());
+    }
+
+    @Override
+    public int getPrefetchDepth() {
+        int depth = 0;
+        for (MessageQueue queue : prefetchQueues.values()) {
+            depth += queue.size();
+        }
+
+        return depth;
+    }
+
+    @Override
+    public long getSerializerQueueLength() {
+        // Read started first so a task starting between the reads is not counted twice.
+        long started = serializerTasksStarted.sum();
+        return Math.max(0, serializerTasksSubmitted.sum() - started);
+    }
+
+    @Override
+    public long getSerializerWaitTimeMean() {
+        return toMicros((long) serializerWaitTime.getMean());
+    }
+
+    @Override
+    public long getSerializerWaitTime99thPercentile() {
+        return toMicros(serializerWaitTime.getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getSerializerWaitTimeMax() {
+        return toMicros(serializerWaitTime.getMax());
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public long getReconnectAttempts() {
+        return reconnectAttempts.sum();
+    }
+
+    //----- JMX --------------------------------------------------------------//
+
+    /**
+     * Registers the connection metrics, and those of each destination as it is used,
+     * with the platform MBean server.  Failures are logged and otherwise ignored.
+     */
+    public void registerMBeans() {
+        synchronized (registered) {
+            if (mbeanServer != null) {
+                return;
+            }
+
+            mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            register(this, "type=Connection,id=" + ObjectName.quote(connectionId));
+            for (JmsDestinationMetrics metrics : destinations.values()) {
+                registerDestination(metrics);
+            }
+        }
+    }
+
+    /**
+     * Removes any MBeans added by {@link #registerMBeans()}.
+     */
+    public void unregisterMBeans() {
+        synchronized (registered) {
+            if (mbeanServer == null) {
+                return;
+            }
+
+            for (ObjectName name : registered) {
+                try {
+                    mbeanServer.unregisterMBean(name);
+                } catch (Exception ex) {
+                    LOG.debug("Failed to unregister MBean {}: {}", name, ex.getMessage());
+                }
+            }
+
+            registered.clear();
+            mbeanServer = null;
+        }
+    }
+
+    private void registerDestination(JmsDestinationMetrics metrics) {
+        synchronized (registered) {
+            if (mbeanServer != null) {
+                register(metrics, destinationProperties(metrics));
+            }
+        }
+    }
+
+    private void unregisterDestination(JmsDestinationMetrics metrics) {
+        synchronized (registered) {
+            if (mbeanServer == null) {
+                return;
+            }
+
+            try {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":" + destinationProperties(metrics));
+                if (registered.remove(name)) {
+                    mbeanServer.unregisterMBean(name);
+                }
+            } catch (Exception ex) {
+                LOG.debug("Failed to unregister MBean of destination {}: {}", metrics.getName(), ex.getMessage());
+            }
+        }
+    }
+
+    private String destinationProperties(JmsDestinationMetrics metrics) {
+        return "type=Connection,id=" + ObjectName.quote(connectionId) + ",destination=" + ObjectName.quote(metrics.getName());
+    }
+
+    private void register(Object mbean, String properties) {
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":" + properties);
+            if (registered.contains(name)) {
+                return;
+            }
+
+            mbeanServer.registerMBean(mbean, name);
+            registered.add(name);
+        } catch (Exception ex) {
+            LOG.warn("Failed to register metrics MBean {}: {}", properties, ex.getMessage());
+            LOG.trace("Error: ", ex);
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return "JmsConnectionMetrics { " + connectionId + " }";
+    }
+}
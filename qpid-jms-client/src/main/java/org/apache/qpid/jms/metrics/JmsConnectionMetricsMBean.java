@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+/**
+ * Management interface of the metrics kept for a connection.
+ * <p>
+ * Durations are reported in microseconds, percentiles are estimates taken from the
+ * fixed buckets of the underlying histograms.
+ */
+public interface JmsConnectionMetricsMBean {
+
+    String getConnectionId();
+
+    long getMessagesSent();
+
+    long getBytesSent();
+
+    long getMessagesReceived();
+
+    long getBytesReceived();
+
+    long getSendSettleLatencyMean();
+
+    long getSendSettleLatency99thPercentile();
+
+    long getSendSettleLatencyMax();
+
+    long getCreditStalls();
+
+    long getCreditStallTimeMean();
+
+    long getCreditStallTimeMax();
+
+    int getPrefetchDepth();
+
+    long getSerializerQueueLength();
+
+    long getSerializerWaitTimeMean();
+
+    long getSerializerWaitTime99thPercentile();
+
+    long getSerializerWaitTimeMax();
+
+    long getReconnects();
+
+    long getReconnectAttempts();
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the messages and bytes sent to and received from a destination, and when
+ * latency is tracked, histograms of the time messages received from it took to arrive
+ * and then waited in the prefetch queue of a consumer.
+ * <p>
+ * The counts are striped so that recording from many threads does not contend.  When
+ * created with a parent, the values recorded are also added to the parent, which holds
+ * the totals across all destinations of a connection.
+ */
+public final class JmsDestinationMetrics implements JmsDestinationMetricsMBean {
+
+    private final String name;
+    private final JmsDestinationMetrics parent;
+
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private final JmsHistogram deliveryLatency;
+    private final JmsHistogram prefetchDwellTime;
+
+    // The producers and consumers using the destination, guarded by the owning metrics.
+    int holders;
+
+    public JmsDestinationMetrics(String name) {
+        this(name, null, false);
+    }
+
+    public JmsDestinationMetrics(String name, JmsDestinationMetrics parent) {
+        this(name, parent, parent != null && parent.isLatencyTracked());
+    }
+
+    public JmsDestinationMetrics(String name, JmsDestinationMetrics parent, boolean trackLatency) {
+        this.name = name;
+        this.parent = parent;
+
+        if (trackLatency) {
+            deliveryLatency = new JmsHistogram();
+            prefetchDwellTime = new JmsHistogram();
+        } else {
+            deliveryLatency = null;
+            prefetchDwellTime = null;
+        }
+    }
+
+    /**
+     * Records a message sent to the destination.
+     *
+     * @param bytes
+     *      the encoded size of the message.
+     */
+    public void recordSent(long bytes) {
+        messagesSent.increment();
+        bytesSent.add(bytes);
+
+        if (parent != null) {
+            parent.recordSent(bytes);
+        }
+    }
+
+    /**
+     * Records a message received from the destination.
+     *
+     * @param bytes
+     *      the encoded size of the message.
+     */
+    public void recordReceived(long bytes) {
+        messagesReceived.increment();
+        bytesReceived.add(bytes);
+
+        if (parent != null) {
+            parent.recordReceived(bytes);
+        }
+    }
+
+    /**
+     * Records the time a received message took to arrive from the producer, measured from
+     * its JMSTimestamp by the local clock, so it is only as accurate as the clocks of the
+     * two hosts are in step.  Ignored unless latency is tracked.
+     *
+     * @param millis
+     *      the time in milliseconds from the message being sent to it arriving.
+     */
+    public void recordDeliveryLatency(long millis) {
+        if (deliveryLatency != null) {
+            deliveryLatency.record(millis);
+
+            if (parent != null) {
+                parent.recordDeliveryLatency(millis);
+            }
+        }
+    }
+
+    /**
+     * Records the time a received message waited in the prefetch queue of a consumer
+     * before it was given to the application.  Ignored unless latency is tracked.
+     *
+     * @param nanos
+     *      the time in nanoseconds from the message arriving to it being consumed.
+     */
+    public void recordPrefetchDwell(long nanos) {
+        if (prefetchDwellTime != null) {
+            prefetchDwellTime.record(nanos);
+
+            if (parent != null) {
+                parent.recordPrefetchDwell(nanos);
+            }
+        }
+    }
+
+    /**
+     * @return true if delivery latency and prefetch dwell time are recorded.
+     */
+    public boolean isLatencyTracked() {
+        return deliveryLatency != null;
+    }
+
+    /**
+     * @return the histogram of delivery latency in milliseconds, or null if not tracked.
+     */
+    public JmsHistogram getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    /**
+     * @return the histogram of prefetch dwell time in nanoseconds, or null if not tracked.
+     */
+    public JmsHistogram getPrefetchDwellTime() {
+        return prefetchDwellTime;
+    }
+
+    @Override
+    public long getDeliveryLatencyMean() {
+        return deliveryLatency != null ? (long) deliveryLatency.getMean() : 0;
+    }
+
+    @Override
+    public long getDeliveryLatency99thPercentile() {
+        return deliveryLatency != null ? deliveryLatency.getValueAtPercentile(99) : 0;
+    }
+
+    @Override
+    public long getDeliveryLatencyMax() {
+        return deliveryLatency != null ? deliveryLatency.getMax() : 0;
+    }
+
+    @Override
+    public long getPrefetchDwellTimeMean() {
+        return prefetchDwellTime != null ? TimeUnit.NANOSECONDS.toMicros((long) prefetchDwellTime.getMean()) : 0;
+    }
+
+    @Override
+    public long getPrefetchDwellTime99thPercentile() {
+        return prefetchDwellTime != null ? TimeUnit.NANOSECONDS.toMicros(prefetchDwellTime.getValueAtPercentile(99)) : 0;
+    }
+
+    @Override
+    public long getPrefetchDwellTimeMax() {
+        return prefetchDwellTime != null ? TimeUnit.NANOSECONDS.toMicros(prefetchDwellTime.getMax()) : 0;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "JmsDestinationMetrics { name = " + name + ", sent = " + getMessagesSent() +
+               ", received = " + getMessagesReceived() + " }";
+    }
+}
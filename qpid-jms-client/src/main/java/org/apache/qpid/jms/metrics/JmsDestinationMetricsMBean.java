@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+/**
+ * Management interface of the counts kept for a single destination.
+ */
+public interface JmsDestinationMetricsMBean {
+
+    /**
+     * @return the name of the destination, or "total" for the connection totals.
+     */
+    String getName();
+
+    long getMessagesSent();
+
+    long getBytesSent();
+
+    long getMessagesReceived();
+
+    long getBytesReceived();
+
+    /**
+     * @return the mean time in milliseconds from messages being sent to them arriving, or
+     *         zero if latency is not tracked.
+     */
+    long getDeliveryLatencyMean();
+
+    long getDeliveryLatency99thPercentile();
+
+    long getDeliveryLatencyMax();
+
+    /**
+     * @return the mean time in microseconds that messages waited in a prefetch queue before
+     *         being consumed, or zero if latency is not tracked.
+     */
+    long getPrefetchDwellTimeMean();
+
+    long getPrefetchDwellTime99thPercentile();
+
+    long getPrefetchDwellTimeMax();
+
+}
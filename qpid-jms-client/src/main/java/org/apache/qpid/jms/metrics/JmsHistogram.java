@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Histogram of non-negative values, such as durations in nanoseconds, held in fixed
+ * buckets whose bounds are powers of two.
+ * <p>
+ * Recording a value is a few striped counter updates with no allocation or locking,
+ * so it is cheap enough to leave on.  Percentiles are reported as the upper bound of
+ * the bucket the percentile falls in, so they may be up to twice the true value.
+ */
+public final class JmsHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(MAX, 0);
+
+    public JmsHistogram() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value, negative values are recorded as zero.
+     *
+     * @param value
+     *      the value to record.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        buckets[bucketOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded values, or zero if none have been recorded.
+     */
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * Returns an estimate of the value at the given percentile of those recorded, which
+     * is the upper bound of the bucket holding it and never more than the largest value.
+     *
+     * @param percentile
+     *      the percentile to return, from 0 to 100.
+     *
+     * @return the estimated value at the percentile, or zero if none have been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = getBucketCounts();
+
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Returns the number of values recorded in each bucket, where bucket zero holds the
+     * value zero and bucket i holds the values from 2^(i-1) up to 2^i - 1.
+     *
+     * @return a copy of the bucket counts.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets[i].sum();
+        }
+
+        return counts;
+    }
+
+    private static int bucketOf(long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "JmsHistogram { count = " + getCount() + ", mean = " + getMean() + ", max = " + getMax() + " }";
+    }
+}
@@ -31,6 +31,9 @@ public class JmsDefaultPrefetchPolicy implements JmsPrefetchPolicy {
     public static final int DEFAULT_QUEUE_BROWSER_PREFETCH = DEFAULT_QUEUE_PREFETCH;
     public static final int DEFAULT_DURABLE_TOPIC_PREFETCH = DEFAULT_QUEUE_PREFETCH;
     public static final int DEFAULT_TOPIC_PREFETCH = DEFAULT_QUEUE_PREFETCH;
+    public static final int DEFAULT_MIN_PREFETCH = 1;
+    public static final long DEFAULT_BUFFER_TIME = 500;
+    public static final long DEFAULT_MAX_PREFETCH_BYTES = 16 * 1024 * 1024;
 
     private static final Logger LOG = LoggerFactory.getLogger(JmsDefaultPrefetchPolicy.class);
 
@@ -39,6 +42,10 @@ public class JmsDefaultPrefetchPolicy implements JmsPrefetchPolicy {
     private int topicPrefetch;
     private int durableTopicPrefetch;
     private int maxPrefetchSize = MAX_PREFETCH_SIZE;
+    private boolean adaptive;
+    private int minPrefetch = DEFAULT_MIN_PREFETCH;
+    private long bufferTime = DEFAULT_BUFFER_TIME;
+    private long maxPrefetchBytes = DEFAULT_MAX_PREFETCH_BYTES;
 
     /**
      * Initialize default prefetch policies
@@ -62,6 +69,10 @@ public class JmsDefaultPrefetchPolicy implements JmsPrefetchPolicy {
         this.topicPrefetch = source.getTopicPrefetch();
         this.durableTopicPrefetch = source.getDurableTopicPrefetch();
         this.maxPrefetchSize = source.getMaxPrefetchSize();
+        this.adaptive = source.isAdaptive();
+        this.minPrefetch = source.getMinPrefetch();
+        this.bufferTime = source.getBufferTime();
+        this.maxPrefetchBytes = source.getMaxPrefetchBytes();
     }
 
     @Override
@@ -185,6 +196,83 @@ public class JmsDefaultPrefetchPolicy implements JmsPrefetchPolicy {
         this.topicPrefetch = getMaxPrefetchLimit(prefetch);
     }
 
+    /**
+     * @return true if consumers adapt their prefetch to their observed consumption rate.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Controls whether consumers adapt the number of messages they prefetch to the rate
+     * at which they are observed to consume them.  When enabled the configured prefetch
+     * values become the largest window a consumer may grow to, fast consumers are given
+     * more credit and slow or stalled consumers shrink back towards the minimum prefetch
+     * so they hold on to fewer messages that competing consumers could be processing.
+     *
+     * @param adaptive
+     *        true if consumers should adapt their prefetch to their consumption rate.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return the smallest prefetch an adaptive consumer will shrink to.
+     */
+    public int getMinPrefetch() {
+        return minPrefetch;
+    }
+
+    /**
+     * Sets the smallest prefetch an adaptive consumer will shrink to, and the prefetch
+     * it starts with before its consumption rate has been measured.
+     *
+     * @param minPrefetch
+     *        the minimum prefetch for adaptive consumers.
+     */
+    public void setMinPrefetch(int minPrefetch) {
+        this.minPrefetch = getMaxPrefetchLimit(minPrefetch);
+    }
+
+    /**
+     * @return the time in milliseconds worth of messages an adaptive consumer aims to hold.
+     */
+    public long getBufferTime() {
+        return bufferTime;
+    }
+
+    /**
+     * Sets the time in milliseconds worth of messages, at its measured consumption rate,
+     * that an adaptive consumer aims to hold in addition to those needed to cover the
+     * round trip to the remote peer.
+     *
+     * @param bufferTime
+     *        the time worth of messages to buffer in milliseconds.
+     */
+    public void setBufferTime(long bufferTime) {
+        this.bufferTime = bufferTime;
+    }
+
+    /**
+     * @return the number of bytes of messages an adaptive consumer will prefetch at most.
+     */
+    public long getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    /**
+     * Sets the number of bytes of messages, based on the average size of those it has
+     * received, that an adaptive consumer will prefetch at most.  A value of zero or less
+     * means the prefetch is only limited by message count.
+     *
+     * @param maxPrefetchBytes
+     *        the limit on the bytes of messages an adaptive consumer prefetches.
+     */
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -194,6 +282,10 @@ public class JmsDefaultPrefetchPolicy implements JmsPrefetchPolicy {
         result = prime * result + queueBrowserPrefetch;
         result = prime * result + queuePrefetch;
         result = prime * result + topicPrefetch;
+        result = prime * result + (adaptive ? 1231 : 1237);
+        result = prime * result + minPrefetch;
+        result = prime * result + (int) (bufferTime ^ (bufferTime >>> 32));
+        result = prime * result + (int) (maxPrefetchBytes ^ (maxPrefetchBytes >>> 32));
         return result;
     }
 
@@ -214,7 +306,11 @@ public class JmsDefaultPrefetchPolicy implements JmsPrefetchPolicy {
         return this.queuePrefetch == other.queuePrefetch &&
                this.queueBrowserPrefetch == other.queueBrowserPrefetch &&
                this.topicPrefetch == other.topicPrefetch &&
-               this.durableTopicPrefetch == other.durableTopicPrefetch;
+               this.durableTopicPrefetch == other.durableTopicPrefetch &&
+               this.adaptive == other.adaptive &&
+               this.minPrefetch == other.minPrefetch &&
+               this.bufferTime == other.bufferTime &&
+               this.maxPrefetchBytes == other.maxPrefetchBytes;
     }
 
     private int getMaxPrefetchLimit(int value) {
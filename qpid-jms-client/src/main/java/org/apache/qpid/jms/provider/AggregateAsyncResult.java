@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncResult that stands in for a number of operations performed as a single
+ * unit of work, completing the wrapped request successfully once every one of
+ * them has succeeded or failing it as soon as any one of them fails.
+ */
+public class AggregateAsyncResult extends WrappedAsyncResult {
+
+    private final AtomicInteger remaining;
+
+    /**
+     * Create a new AggregateAsyncResult for the target AsyncResult
+     *
+     * @param wrapped
+     *      The AsyncResult to be completed once all operations have.
+     * @param count
+     *      The number of operations that must succeed.
+     */
+    public AggregateAsyncResult(AsyncResult wrapped, int count) {
+        super(wrapped);
+
+        this.remaining = new AtomicInteger(count);
+    }
+
+    @Override
+    public void onFailure(Throwable result) {
+        if (!isComplete()) {
+            super.onFailure(result);
+        }
+    }
+
+    @Override
+    public void onSuccess() {
+        if (remaining.decrementAndGet() == 0 && !isComplete()) {
+            super.onSuccess();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.qpid.jms.provider;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import javax.jms.JMSException;
 
@@ -188,6 +189,24 @@ public interface Provider {
      */
     void send(JmsOutboundMessageDispatch envelope, AsyncResult request) throws IOException, JMSException;
 
+    /**
+     * Sends a batch of JmsMessages to the remote Provider as a single unit of work.
+     *
+     * Each message in the batch is handled as it would be by a call to send for that
+     * message alone, but the Provider may write them all to the remote in one go.  The
+     * request is signaled once every message has been sent as its envelope requires,
+     * or as soon as the send of any one of them fails.
+     *
+     * @param envelopes
+     *        the message envelopes containing the JmsMessages to send.
+     * @param request
+     *        The request object that should be signaled when this operation completes.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error that maps to JMS occurs such as not authorized.
+     */
+    void send(List<JmsOutboundMessageDispatch> envelopes, AsyncResult request) throws IOException, JMSException;
+
     /**
      * Called to acknowledge all messages that have been delivered in a given session.
      *
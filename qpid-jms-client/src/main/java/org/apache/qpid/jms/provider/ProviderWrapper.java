@@ -18,6 +18,7 @@ package org.apache.qpid.jms.provider;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import javax.jms.JMSException;
 
@@ -99,6 +100,11 @@ public class ProviderWrapper<E extends Provider> implements Provider, ProviderLi
         next.send(envelope, request);
     }
 
+    @Override
+    public void send(List<JmsOutboundMessageDispatch> envelopes, AsyncResult request) throws IOException, JMSException {
+        next.send(envelopes, request);
+    }
+
     @Override
     public void acknowledge(JmsSessionId sessionId, ACK_TYPE ackType, AsyncResult request) throws IOException, JMSException {
         next.acknowledge(sessionId, ackType, request);
@@ -34,6 +34,8 @@ import org.apache.qpid.proton.engine.EndpointState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.util.ReferenceCountUtil;
+
 /**
  * Handles the case of anonymous JMS MessageProducers.
  *
@@ -93,6 +95,11 @@ public class AmqpAnonymousFallbackProducer extends AmqpProducer {
             // it will trigger the open event which will in turn trigger the send event.
             // If caching is disabled the created producer will be closed immediately after
             // the entire send chain has finished and the delivery has been acknowledged.
+            // The send goes out only once the producer has attached, by which time the
+            // original request may have been completed by a timeout and the encoded message
+            // released with it, so the chain holds its own reference until it is sent.
+            ReferenceCountUtil.retain(envelope.getPayload());
+
             AmqpProducerBuilder builder = new AmqpProducerBuilder(session, info);
             builder.buildResource(new AnonymousSendRequest(request, builder, envelope));
 
@@ -172,6 +179,7 @@ public class AmqpAnonymousFallbackProducer extends AmqpProducer {
     private final class AnonymousSendRequest extends AnonymousRequest {
 
         private final AmqpProducerBuilder producerBuilder;
+        private boolean payloadReleased;
 
         public AnonymousSendRequest(AsyncResult sendResult, AmqpProducerBuilder producerBuilder, JmsOutboundMessageDispatch envelope) {
             super(sendResult, envelope);
@@ -187,13 +195,28 @@ public class AmqpAnonymousFallbackProducer extends AmqpProducer {
                 getProducer().send(envelope, send);
             } catch (Exception e) {
                 super.onFailure(e);
+            } finally {
+                releasePayload();
             }
         }
 
+        @Override
+        public void onFailure(Throwable result) {
+            releasePayload();
+            super.onFailure(result);
+        }
+
         @Override
         public AmqpProducer getProducer() {
             return producerBuilder.getResource();
         }
+
+        private void releasePayload() {
+            if (!payloadReleased) {
+                payloadReleased = true;
+                ReferenceCountUtil.release(envelope.getPayload());
+            }
+        }
     }
 
     private final class AnonymousSendCompleteRequest extends AnonymousRequest {
@@ -52,6 +52,7 @@ public class AmqpConnection extends AmqpAbstractResource<JmsConnectionInfo, Conn
     private final Map<JmsDestination, AmqpTemporaryDestination> tempDests = new HashMap<JmsDestination, AmqpTemporaryDestination>();
     private final AmqpProvider provider;
     private final AmqpConnectionProperties properties;
+    private final AmqpPrefetchBudget prefetchBudget;
     private AmqpConnectionSession connectionSession;
 
     private boolean objectMessageUsesAmqpTypes = false;
@@ -67,6 +68,12 @@ public class AmqpConnection extends AmqpAbstractResource<JmsConnectionInfo, Conn
 
         // Create connection properties initialized with defaults from the JmsConnectionInfo
         this.properties = new AmqpConnectionProperties(info);
+
+        if (info.getMaxConnectionPrefetchBytes() > 0) {
+            this.prefetchBudget = new AmqpPrefetchBudget(info.getMaxConnectionPrefetchBytes());
+        } else {
+            this.prefetchBudget = null;
+        }
     }
 
     public void createSession(JmsSessionInfo sessionInfo, AsyncResult request) {
@@ -246,6 +253,13 @@ public class AmqpConnection extends AmqpAbstractResource<JmsConnectionInfo, Conn
         return subTracker;
     }
 
+    /**
+     * @return the budget for prefetched message bytes across all consumers, or null if unlimited.
+     */
+    AmqpPrefetchBudget getPrefetchBudget() {
+        return prefetchBudget;
+    }
+
     /**
      * Allows a connection resource to schedule a task for future execution.
      *
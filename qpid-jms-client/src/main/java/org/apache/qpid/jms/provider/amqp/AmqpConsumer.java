@@ -20,9 +20,15 @@ import static org.apache.qpid.jms.provider.amqp.AmqpSupport.MODIFIED_FAILED;
 import static org.apache.qpid.jms.provider.amqp.AmqpSupport.MODIFIED_FAILED_UNDELIVERABLE;
 import static org.apache.qpid.jms.provider.amqp.AmqpSupport.REJECTED;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.ListIterator;
 import java.util.Map;
@@ -33,14 +39,22 @@ import javax.jms.JMSException;
 
 import org.apache.qpid.jms.JmsDestination;
 import org.apache.qpid.jms.JmsOperationTimedOutException;
+import org.apache.qpid.jms.jfr.JmsCreditEvent;
+import org.apache.qpid.jms.jfr.JmsDeliveryEvent;
+import org.apache.qpid.jms.jfr.JmsFlightRecorder;
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
 import org.apache.qpid.jms.message.JmsMessage;
 import org.apache.qpid.jms.meta.JmsConsumerId;
 import org.apache.qpid.jms.meta.JmsConsumerInfo;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
+import org.apache.qpid.jms.metrics.JmsDestinationMetrics;
 import org.apache.qpid.jms.provider.AsyncResult;
+import org.apache.qpid.jms.provider.amqp.AmqpTimeoutWheel.Timeout;
 import org.apache.qpid.jms.provider.ProviderConstants.ACK_TYPE;
 import org.apache.qpid.jms.provider.ProviderListener;
 import org.apache.qpid.jms.provider.amqp.message.AmqpCodec;
+import org.apache.qpid.jms.provider.amqp.message.AmqpJmsBytesMessageFacade;
+import org.apache.qpid.jms.provider.amqp.message.AmqpStreamedBody;
 import org.apache.qpid.jms.util.IOExceptionSupport;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
@@ -60,21 +74,75 @@ import io.netty.buffer.Unpooled;
 public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver> {
 
     private static final Logger LOG = LoggerFactory.getLogger(AmqpConsumer.class);
-
-    private static final int INITIAL_BUFFER_CAPACITY = 1024 * 128;
+    private static final byte VBIN32_TYPE = (byte) 0xb0;
+    private static final String SPILL_FILE_PREFIX = "qpid-jms-";
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+    private static final int SPILL_CHUNK_SIZE = 64 * 1024;
 
     protected final AmqpSession session;
     protected final Map<JmsInboundMessageDispatch, Delivery> delivered = new LinkedHashMap<JmsInboundMessageDispatch, Delivery>();
     protected boolean presettle;
     protected AsyncResult stopRequest;
     protected AsyncResult pullRequest;
-    protected final ByteBuf incomingBuffer = Unpooled.buffer(INITIAL_BUFFER_CAPACITY);
     protected final AtomicLong incomingSequence = new AtomicLong(0);
+    protected final AmqpPrefetchWindow prefetchWindow;
+    protected final AmqpPrefetchBudget sessionBudget;
+    protected final AmqpPrefetchBudget connectionBudget;
+    protected final Map<Delivery, Integer> prefetched = new HashMap<Delivery, Integer>();
+    protected long prefetchedBytes;
+    protected double averageMessageSize = -1;
+    protected final JmsDestinationMetrics destinationMetrics;
+
+    // A delivery still arriving whose body may be streamed, and the bytes read from it
+    // so far, or the delivery whose body is being streamed to the application.
+    protected final int largeMessageThreshold;
+    private Delivery partialDelivery;
+    private ByteBuf partialBytes;
+    private boolean partialBuffered;
+    private Delivery streamingDelivery;
+    private JmsInboundMessageDispatch streamingEnvelope;
+    private AmqpStreamedBody streamedBody;
+    private ACK_TYPE deferredAck;
+    private ACK_TYPE deferredSessionAck;
+    private final Runnable streamTask = new Runnable() {
+
+        @Override
+        public void run() {
+            pumpStreamedBody();
+        }
+    };
+
+    // Received messages of at least this size are written to a file in the spill
+    // directory and mapped from there rather than held on the heap.
+    protected final int spillThreshold;
+    private final File spillDirectory;
 
     public AmqpConsumer(AmqpSession session, JmsConsumerInfo info, Receiver receiver) {
         super(info, receiver, session);
 
         this.session = session;
+        this.sessionBudget = session.getPrefetchBudget();
+        this.connectionBudget = session.getConnection().getPrefetchBudget();
+
+        if (info.isAdaptivePrefetch() && info.getPrefetchSize() > 0) {
+            prefetchWindow = new AmqpPrefetchWindow(
+                info.getMinPrefetchSize(), info.getPrefetchSize(), info.getPrefetchBufferTime(), info.getMaxPrefetchBytes());
+        } else {
+            prefetchWindow = null;
+        }
+
+        largeMessageThreshold = session.getConnection().getProvider().getLargeMessageThreshold();
+        spillThreshold = session.getConnection().getProvider().getSpillThreshold();
+        String spillPath = session.getConnection().getProvider().getSpillDirectory();
+        spillDirectory = spillPath != null ? new File(spillPath) : null;
+
+        JmsConnectionMetrics metrics = session.getConnection().getProvider().getMetrics();
+        if (metrics != null) {
+            destinationMetrics = metrics.getDestinationMetrics(
+                info.getDestination() != null ? info.getDestination().getName() : null);
+        } else {
+            destinationMetrics = null;
+        }
     }
 
     /**
@@ -100,6 +168,10 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
      *      The request that awaits completion of the consumer stop.
      */
     public void stop(AsyncResult request) {
+        // A stopped consumer should not be handed credit as other consumers free up the
+        // prefetch budget, it asks again once restarted.
+        setPrefetchBudgetThrottled(false);
+
         Receiver receiver = getEndpoint();
         if (receiver.getRemoteCredit() <= 0) {
             if (receiver.getQueued() == 0) {
@@ -123,7 +195,7 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
                 // blocked receive or stop calls that are waiting, unless the consumer is
                 // a participant in a transaction in which case we will just fail the request
                 // and leave the consumer open since the TX needs it to remain active.
-                final ScheduledFuture<?> future = getSession().schedule(new Runnable() {
+                final Timeout timeout = session.getProvider().scheduleTimeout(new Runnable() {
                     @Override
                     public void run() {
                         LOG.trace("Consumer {} drain request timed out", getConsumerId());
@@ -138,7 +210,7 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
                     }
                 }, getDrainTimeout());
 
-                stopRequest = new ScheduledRequest(future, stopRequest);
+                stopRequest = new ScheduledRequest(timeout, stopRequest);
             }
         }
     }
@@ -199,32 +271,56 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
     public void acknowledge(ACK_TYPE ackType) {
         LOG.trace("Session Acknowledge for consumer {} with ack type {}", getResourceInfo().getId(), ackType);
         for (Delivery delivery : delivered.values()) {
-            switch (ackType) {
-                case ACCEPTED:
-                    delivery.disposition(Accepted.getInstance());
-                    break;
-                case RELEASED:
-                    delivery.disposition(Released.getInstance());
-                    break;
-                case REJECTED:
-                    delivery.disposition(REJECTED);
-                    break;
-                case MODIFIED_FAILED:
-                    delivery.disposition(MODIFIED_FAILED);
-                    break;
-                case MODIFIED_FAILED_UNDELIVERABLE:
-                    delivery.disposition(MODIFIED_FAILED_UNDELIVERABLE);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Invalid acknowledgement type specified: " + ackType);
+            if (delivery == streamingDelivery) {
+                // Settled once the rest of its body has arrived.
+                checkAckType(ackType);
+                deferredSessionAck = ackType;
+                continue;
             }
 
-            delivery.settle();
+            settle(delivery, ackType);
         }
 
         delivered.clear();
     }
 
+    private static void checkAckType(ACK_TYPE ackType) {
+        switch (ackType) {
+            case ACCEPTED:
+            case RELEASED:
+            case REJECTED:
+            case MODIFIED_FAILED:
+            case MODIFIED_FAILED_UNDELIVERABLE:
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid acknowledgement type specified: " + ackType);
+        }
+    }
+
+    private void settle(Delivery delivery, ACK_TYPE ackType) {
+        switch (ackType) {
+            case ACCEPTED:
+                delivery.disposition(Accepted.getInstance());
+                break;
+            case RELEASED:
+                delivery.disposition(Released.getInstance());
+                break;
+            case REJECTED:
+                delivery.disposition(REJECTED);
+                break;
+            case MODIFIED_FAILED:
+                delivery.disposition(MODIFIED_FAILED);
+                break;
+            case MODIFIED_FAILED_UNDELIVERABLE:
+                delivery.disposition(MODIFIED_FAILED_UNDELIVERABLE);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid acknowledgement type specified: " + ackType);
+        }
+
+        delivery.settle();
+    }
+
     /**
      * Called to acknowledge a given delivery.  Depending on the Ack Mode that
      * the consumer was created with this method can acknowledge more than just
@@ -250,17 +346,30 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
             }
         }
 
+        // A delivery can't be settled while its body is still arriving, which an auto ack
+        // can come before as the application reads the body after receiving the message.
+        if (delivery == streamingDelivery && !ackType.equals(ACK_TYPE.DELIVERED)) {
+            LOG.debug("Deferring {} Ack of message until its body has arrived: {}", ackType, envelope);
+            deferredAck = ackType;
+            return;
+        }
+
+        // Any acknowledgement means the message is no longer waiting in the consumer.
+        releasePrefetched(delivery);
+
         if (ackType.equals(ACK_TYPE.DELIVERED)) {
             LOG.debug("Delivered Ack of message: {}", envelope);
             if (!delivery.isSettled()) {
                 delivered.put(envelope, delivery);
                 delivery.setDefaultDeliveryState(MODIFIED_FAILED);
             }
+            onMessageConsumed();
             sendFlowIfNeeded();
         } else if (ackType.equals(ACK_TYPE.ACCEPTED)) {
             // A Consumer may not always send a DELIVERED ack so we need to
             // check to ensure we don't add too much credit to the link.
             if (delivery.isSettled() || delivered.remove(envelope) == null) {
+                onMessageConsumed();
                 sendFlowIfNeeded();
             }
             LOG.debug("Accepted Ack of message: {}", envelope);
@@ -300,8 +409,9 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
 
     /**
      * We only send more credits as the credit window dwindles to a certain point and
-     * then we open the window back up to full prefetch size.  If this is a pull consumer
-     * or we are stopping then we never send credit here.
+     * then we open the window back up to full prefetch size, or to the current window
+     * size for an adaptive prefetch consumer.  If this is a pull consumer or we are
+     * stopping then we never send credit here.
      */
     private void sendFlowIfNeeded() {
         if (getResourceInfo().getPrefetchSize() == 0 || isStopping()) {
@@ -312,14 +422,125 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
             return;
         }
 
+        int window = prefetchWindow != null ? prefetchWindow.getWindow() : getResourceInfo().getPrefetchSize();
+        window = limitToPrefetchBudget(window);
+
         int currentCredit = getEndpoint().getCredit();
-        if (currentCredit <= getResourceInfo().getPrefetchSize() * 0.3) {
-            int newCredit = getResourceInfo().getPrefetchSize() - currentCredit;
+        if (window > 0 && currentCredit <= window * 0.3) {
+            int newCredit = window - currentCredit;
             LOG.trace("Consumer {} granting additional credit: {}", getConsumerId(), newCredit);
+            if (prefetchWindow != null) {
+                prefetchWindow.onCreditGranted(System.nanoTime(), currentCredit <= 0);
+            }
             getEndpoint().flow(newCredit);
+
+            if (JmsFlightRecorder.isAvailable()) {
+                JmsCreditEvent.emit(getConsumerId(), getDestinationName(), newCredit, currentCredit, window);
+            }
         }
     }
 
+    private String getDestinationName() {
+        JmsDestination destination = getResourceInfo().getDestination();
+        return destination != null ? destination.getName() : null;
+    }
+
+    private void onMessageConsumed() {
+        if (prefetchWindow != null) {
+            prefetchWindow.onMessageConsumed(System.nanoTime());
+        }
+    }
+
+    /*
+     * Reduces the credit window so that the messages it allows the remote to send, at the
+     * average size seen so far, fit in what remains of the session and connection budgets.
+     */
+    private int limitToPrefetchBudget(int window) {
+        if (sessionBudget == null && connectionBudget == null) {
+            return window;
+        }
+
+        long limited;
+        if (averageMessageSize < 0) {
+            // Nothing is known about the size of the messages yet so ask for just one
+            // and open the window once it has arrived.
+            limited = 1;
+        } else {
+            long available = Long.MAX_VALUE;
+            if (sessionBudget != null) {
+                available = Math.min(available, sessionBudget.getAvailable());
+            }
+            if (connectionBudget != null) {
+                available = Math.min(available, connectionBudget.getAvailable());
+            }
+
+            limited = (long) (available / Math.max(1, averageMessageSize));
+        }
+
+        // A consumer holding no messages can always have one so it can't be starved
+        // by others that have used up the budget.
+        if (limited < 1 && prefetched.isEmpty()) {
+            limited = 1;
+        }
+
+        setPrefetchBudgetThrottled(limited < window);
+
+        return (int) Math.min(limited, window);
+    }
+
+    private void setPrefetchBudgetThrottled(boolean throttled) {
+        if (sessionBudget != null) {
+            sessionBudget.setThrottled(this, throttled);
+        }
+        if (connectionBudget != null) {
+            connectionBudget.setThrottled(this, throttled);
+        }
+    }
+
+    private void reservePrefetched(Delivery incoming, int size) {
+        if (sessionBudget == null && connectionBudget == null) {
+            return;
+        }
+
+        averageMessageSize = averageMessageSize < 0 ? size : averageMessageSize + 0.25 * (size - averageMessageSize);
+
+        prefetched.put(incoming, size);
+        prefetchedBytes += size;
+
+        if (sessionBudget != null) {
+            sessionBudget.reserve(size);
+        }
+        if (connectionBudget != null) {
+            connectionBudget.reserve(size);
+        }
+    }
+
+    private void releasePrefetched(Delivery delivery) {
+        Integer size = prefetched.remove(delivery);
+        if (size != null) {
+            releasePrefetchedBytes(size);
+        }
+    }
+
+    private void releasePrefetchedBytes(long size) {
+        prefetchedBytes -= size;
+
+        if (sessionBudget != null) {
+            sessionBudget.release(size);
+        }
+        if (connectionBudget != null) {
+            connectionBudget.release(size);
+        }
+    }
+
+    /**
+     * Called by a prefetch budget this consumer was throttled by when bytes have been
+     * released, so that it can grant the credit it held back before.
+     */
+    void onPrefetchBudgetReleased() {
+        sendFlowIfNeeded();
+    }
+
     private void sendFlowForNoPrefetchListener() {
         int currentCredit = getEndpoint().getCredit();
         if (currentCredit < 1) {
@@ -406,7 +627,20 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
 
     @Override
     public void processDeliveryUpdates(AmqpProvider provider, Delivery delivery) throws IOException {
-        if (delivery.isReadable() && !delivery.isPartial()) {
+        if (delivery == streamingDelivery) {
+            pumpStreamedBody();
+        } else if (delivery.isReadable() && delivery.isPartial()) {
+            if (largeMessageThreshold > 0) {
+                try {
+                    if (processPartialDelivery(delivery) && pullRequest != null) {
+                        pullRequest.onSuccess();
+                        pullRequest = null;
+                    }
+                } catch (Exception e) {
+                    throw IOExceptionSupport.create(e);
+                }
+            }
+        } else if (delivery.isReadable() && !delivery.isPartial()) {
             LOG.trace("{} has incoming Message(s).", this);
             try {
                 if (processDelivery(delivery)) {
@@ -437,11 +671,51 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
     }
 
     private boolean processDelivery(Delivery incoming) throws Exception {
+        JmsDeliveryEvent deliveryEvent = JmsFlightRecorder.isAvailable() ? JmsDeliveryEvent.start() : null;
         incoming.setDefaultDeliveryState(Released.getInstance());
+        int size = incoming.pending();
+        if (incoming == partialDelivery) {
+            size += partialBytes.readableBytes();
+        }
+        if (prefetchWindow != null) {
+            prefetchWindow.onMessageArrived(System.nanoTime(), size);
+        }
+        int heldSize = size;
         JmsMessage message = null;
         try {
-            message = AmqpCodec.decodeMessage(this, unwrapIncomingMessage(incoming)).asJmsMessage();
+            ByteBuf spilled = null;
+            if (spillThreshold > 0 && size >= spillThreshold) {
+                try {
+                    spilled = spillIncomingMessage(incoming);
+                } catch (IOException e) {
+                    if (deliveryEvent != null) {
+                        deliveryEvent.finish(getConsumerId(), getDestinationName(), size, false);
+                    }
+
+                    // Part of the message was taken from the delivery and lost with the
+                    // spill file, the message is fine so the remote may send it again.
+                    LOG.warn("Could not spill a received message or read it back, it is released: {}", e.getMessage());
+                    deliveryFailedReleased(incoming);
+                    return false;
+                }
+            }
+
+            if (spilled != null) {
+                // Only the sections ahead of a data body are held in memory.
+                int bodyOffset = AmqpCodec.findBodySection(spilled);
+                if (bodyOffset >= 0) {
+                    heldSize = bodyOffset;
+                }
+
+                message = AmqpCodec.decodeSpilledMessage(this, spilled).asJmsMessage();
+            } else {
+                message = AmqpCodec.decodeMessage(this, unwrapIncomingMessage(incoming)).asJmsMessage();
+            }
         } catch (Exception e) {
+            if (deliveryEvent != null) {
+                deliveryEvent.finish(getConsumerId(), getDestinationName(), size, false);
+            }
+
             LOG.warn("Error on transform: {}", e.getMessage());
             // TODO - We could signal provider error but not sure we want to fail
             //        the connection just because we can't convert the message.
@@ -454,6 +728,159 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
 
         getEndpoint().advance();
 
+        dispatch(incoming, message, heldSize, size, deliveryEvent);
+
+        return true;
+    }
+
+    /*
+     * Reads what has arrived of a delivery that is still partial, and once the sections
+     * ahead of its body are in hands the message to the application with its body to be
+     * streamed, if the body is a Data section of at least the large message threshold and
+     * the message maps to a BytesMessage.  Otherwise the bytes are kept until the whole
+     * delivery has arrived and it is processed as normal.
+     */
+    private boolean processPartialDelivery(Delivery incoming) throws Exception {
+        if (incoming != partialDelivery) {
+            partialDelivery = incoming;
+            partialBytes = Unpooled.buffer(Math.max(incoming.pending(), 256));
+            partialBuffered = false;
+        }
+
+        readPending(partialBytes);
+
+        if (partialBuffered) {
+            return false;
+        }
+
+        int offset = AmqpCodec.findBodySection(partialBytes);
+        if (offset == AmqpCodec.BODY_SECTION_INCOMPLETE) {
+            return false;
+        } else if (offset == AmqpCodec.BODY_SECTION_NOT_DATA) {
+            partialBuffered = true;
+            return false;
+        }
+
+        // The value of a vbin32 Data section starts with a five byte header, anything
+        // smaller is buffered.
+        int valueOffset = AmqpCodec.findBodyValue(partialBytes, offset);
+        if (partialBytes.readableBytes() - valueOffset < 5) {
+            if (partialBytes.readableBytes() > valueOffset &&
+                partialBytes.getByte(partialBytes.readerIndex() + valueOffset) != VBIN32_TYPE) {
+                partialBuffered = true;
+            }
+            return false;
+        }
+
+        long length = partialBytes.getUnsignedInt(partialBytes.readerIndex() + valueOffset + 1);
+        if (partialBytes.getByte(partialBytes.readerIndex() + valueOffset) != VBIN32_TYPE || length < largeMessageThreshold) {
+            partialBuffered = true;
+            return false;
+        }
+
+        JmsDeliveryEvent deliveryEvent = JmsFlightRecorder.isAvailable() ? JmsDeliveryEvent.start() : null;
+        AmqpJmsBytesMessageFacade facade = null;
+        try {
+            facade = AmqpCodec.decodeStreamedMessage(this, partialBytes.slice(partialBytes.readerIndex(), offset));
+        } catch (Exception e) {
+            LOG.debug("Could not decode the sections ahead of a large message body: {}", e.getMessage());
+        }
+
+        if (facade == null) {
+            partialBuffered = true;
+            return false;
+        }
+
+        final AmqpProvider provider = session.getProvider();
+        AmqpStreamedBody body = new AmqpStreamedBody(length, largeMessageThreshold, new Runnable() {
+
+            @Override
+            public void run() {
+                provider.executeAndPump(streamTask);
+            }
+        });
+
+        facade.setStreamedBody(body);
+        body.offer(partialBytes.array(), partialBytes.arrayOffset() + partialBytes.readerIndex() + offset, partialBytes.readableBytes() - offset);
+
+        partialDelivery = null;
+        partialBytes = null;
+
+        streamingDelivery = incoming;
+        streamedBody = body;
+        provider.registerStreamedBody(body);
+
+        incoming.setDefaultDeliveryState(Released.getInstance());
+
+        // Only the sections ahead of the body and what the stream buffers are held in
+        // memory, the whole encoded size is what the remote sent.
+        int heldSize = offset + largeMessageThreshold;
+        int size = (int) Math.min(Integer.MAX_VALUE, valueOffset + 5 + length);
+        if (prefetchWindow != null) {
+            prefetchWindow.onMessageArrived(System.nanoTime(), heldSize);
+        }
+
+        streamingEnvelope = dispatch(incoming, facade.asJmsMessage(), heldSize, size, deliveryEvent);
+
+        pumpStreamedBody();
+
+        return true;
+    }
+
+    /*
+     * Moves as much of the streamed body out of the session window as the stream has room
+     * for, and once all of it has arrived moves past the delivery and applies any ack the
+     * application made while the body was still arriving.
+     */
+    private void pumpStreamedBody() {
+        AmqpStreamedBody body = streamedBody;
+        if (body == null) {
+            return;
+        }
+
+        Delivery incoming = streamingDelivery;
+
+        int space;
+        while ((space = body.space()) > 0 && incoming.pending() > 0) {
+            byte[] chunk = new byte[Math.min(space, incoming.pending())];
+            int count = getEndpoint().recv(chunk, 0, chunk.length);
+            if (count <= 0) {
+                break;
+            }
+
+            body.offer(chunk, 0, count);
+        }
+
+        if (incoming.isPartial() || incoming.pending() > 0) {
+            return;
+        }
+
+        body.complete();
+        session.getProvider().unregisterStreamedBody(body);
+        getEndpoint().advance();
+
+        JmsInboundMessageDispatch envelope = streamingEnvelope;
+        ACK_TYPE ack = deferredAck;
+        ACK_TYPE sessionAck = deferredSessionAck;
+
+        streamingDelivery = null;
+        streamingEnvelope = null;
+        streamedBody = null;
+        deferredAck = null;
+        deferredSessionAck = null;
+
+        if (sessionAck != null) {
+            settle(incoming, sessionAck);
+        } else if (ack != null) {
+            try {
+                acknowledge(envelope, ack);
+            } catch (JMSException e) {
+                LOG.warn("Failed to apply the deferred ack of message: {}", envelope, e);
+            }
+        }
+    }
+
+    private JmsInboundMessageDispatch dispatch(Delivery incoming, JmsMessage message, int heldSize, int size, JmsDeliveryEvent deliveryEvent) throws Exception {
         // Let the message do any final processing before sending it onto a consumer.
         // We could defer this to a later stage such as the JmsConnection or even in
         // the JmsMessageConsumer dispatch method if we needed to.
@@ -469,9 +896,28 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
         // Store reference to envelope in delivery context for recovery
         incoming.setContext(envelope);
 
+        reservePrefetched(incoming, heldSize);
+
+        if (destinationMetrics != null) {
+            destinationMetrics.recordReceived(size);
+
+            if (destinationMetrics.isLatencyTracked()) {
+                envelope.setArrivalTime(System.nanoTime());
+
+                long timestamp = message.getFacade().getTimestamp();
+                if (timestamp > 0) {
+                    destinationMetrics.recordDeliveryLatency(System.currentTimeMillis() - timestamp);
+                }
+            }
+        }
+
+        if (deliveryEvent != null) {
+            deliveryEvent.finish(getConsumerId(), getDestinationName(), size, true);
+        }
+
         deliver(envelope);
 
-        return true;
+        return envelope;
     }
 
     protected long getNextIncomingSequenceNumber() {
@@ -519,6 +965,10 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
         return session.getProvider().getDrainTimeout();
     }
 
+    public boolean isLazyDecoding() {
+        return session.getProvider().isLazyDecoding();
+    }
+
     @Override
     public String toString() {
         return "AmqpConsumer { " + getResourceInfo().getId() + " }";
@@ -532,6 +982,12 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
         sendFlowIfNeeded();
     }
 
+    protected void deliveryFailedReleased(Delivery incoming) {
+        incoming.disposition(Released.getInstance());
+        incoming.settle();
+        sendFlowIfNeeded();
+    }
+
     protected void deliver(JmsInboundMessageDispatch envelope) throws Exception {
         ProviderListener listener = session.getProvider().getProviderListener();
         if (listener != null) {
@@ -543,19 +999,152 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
     }
 
     protected ByteBuf unwrapIncomingMessage(Delivery incoming) {
+        if (incoming == partialDelivery) {
+            ByteBuf received = partialBytes;
+            partialDelivery = null;
+            partialBytes = null;
+            readPending(received);
+            return received;
+        }
+
+        // Each delivery is received into an array of its own so that the decoded
+        // message can refer to its body bytes directly instead of copying them.
+        byte[] payload = new byte[incoming.pending()];
+
+        int received = 0;
         int count;
 
-        while ((count = getEndpoint().recv(incomingBuffer.array(), incomingBuffer.writerIndex(), incomingBuffer.writableBytes())) > 0) {
-            incomingBuffer.writerIndex(incomingBuffer.writerIndex() + count);
-            if (!incomingBuffer.isWritable()) {
-                incomingBuffer.capacity((int) (incomingBuffer.capacity() * 1.5));
-            }
+        while (received < payload.length && (count = getEndpoint().recv(payload, received, payload.length - received)) > 0) {
+            received += count;
+        }
+
+        return Unpooled.wrappedBuffer(payload, 0, received);
+    }
+
+    /*
+     * Writes the incoming message out to a new file in the spill directory and maps the
+     * file into memory, so that the message bytes are paged in from the file as they are
+     * read instead of being held on the heap.  The file is removed as soon as it has been
+     * mapped, the mapping remains valid until the message is no longer referenced.
+     * Returns null, leaving the message to be read into memory as usual, if no file could
+     * be created or the file could not be written.
+     */
+    private ByteBuf spillIncomingMessage(Delivery incoming) throws IOException {
+        File spillFile;
+        RandomAccessFile file;
+        try {
+            spillFile = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, spillDirectory);
+        } catch (IOException e) {
+            LOG.warn("Could not create a file to spill a received message to, it is held in memory: {}", e.getMessage());
+            return null;
         }
 
         try {
-            return incomingBuffer.duplicate();
+            file = new RandomAccessFile(spillFile, "rw");
+        } catch (IOException e) {
+            LOG.warn("Could not open a file to spill a received message to, it is held in memory: {}", e.getMessage());
+            spillFile.delete();
+            return null;
+        }
+
+        try {
+            ByteBuf received = null;
+            if (incoming == partialDelivery) {
+                received = partialBytes;
+                partialDelivery = null;
+                partialBytes = null;
+            }
+
+            ByteBuf spilled = spill(file.getChannel(), received, getEndpoint());
+            if (spilled.hasArray()) {
+                // The file could not be written, what was taken from the delivery has been
+                // read back into memory for the rest of the message to be added to.
+                partialDelivery = incoming;
+                partialBytes = spilled;
+                return null;
+            }
+
+            return spilled;
         } finally {
-            incomingBuffer.clear();
+            file.close();
+            if (!spillFile.delete()) {
+                // Some platforms will not remove a file while it is mapped.
+                spillFile.deleteOnExit();
+            }
+        }
+    }
+
+    /*
+     * Writes the bytes already received of a message and the rest of them as they are
+     * received from the link to the given channel, and returns the channel mapped into
+     * memory.  The bytes taken from the link cannot be given back to it, so if the channel
+     * cannot be written or mapped the message is instead returned in a heap buffer made
+     * from what reached the channel and what did not.  Only a failure to read the channel
+     * back is thrown.
+     */
+    static ByteBuf spill(FileChannel channel, ByteBuf received, Receiver receiver) throws IOException {
+        ByteBuffer unwritten = null;
+        byte[] chunk = new byte[SPILL_CHUNK_SIZE];
+        int count;
+
+        try {
+            if (received != null) {
+                unwritten = received.nioBuffer();
+                writeFully(channel, unwritten);
+            }
+
+            while ((count = receiver.recv(chunk, 0, chunk.length)) > 0) {
+                unwritten = ByteBuffer.wrap(chunk, 0, count);
+                writeFully(channel, unwritten);
+            }
+
+            unwritten = null;
+
+            return Unpooled.wrappedBuffer(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            LOG.warn("Could not spill a received message to a file, it is held in memory: {}", e.getMessage());
+        }
+
+        // A failed write leaves the channel positioned after the bytes that were written.
+        int written = (int) channel.position();
+        ByteBuf message = Unpooled.buffer(written + (unwritten != null ? unwritten.remaining() : 0));
+
+        ByteBuffer readBack = ByteBuffer.wrap(message.array(), message.arrayOffset(), written);
+        while (readBack.hasRemaining()) {
+            if (channel.read(readBack, readBack.position()) < 0) {
+                throw new IOException("The spill file ended before the bytes written to it");
+            }
+        }
+        message.writerIndex(written);
+
+        if (unwritten != null) {
+            message.writeBytes(unwritten);
+        }
+
+        while ((count = receiver.recv(chunk, 0, chunk.length)) > 0) {
+            message.writeBytes(chunk, 0, count);
+        }
+
+        return message;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void readPending(ByteBuf buffer) {
+        int pending = getEndpoint().current() != null ? getEndpoint().current().pending() : 0;
+        if (pending <= 0) {
+            return;
+        }
+
+        buffer.ensureWritable(pending);
+
+        int count = getEndpoint().recv(buffer.array(), buffer.arrayOffset() + buffer.writerIndex(), pending);
+        if (count > 0) {
+            buffer.writerIndex(buffer.writerIndex() + count);
         }
     }
 
@@ -579,6 +1168,27 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
 
         subTracker.consumerRemoved(consumerInfo);
 
+        // Messages that were never taken go with the consumer, return their bytes.
+        setPrefetchBudgetThrottled(false);
+        if (prefetchedBytes > 0) {
+            prefetched.clear();
+            releasePrefetchedBytes(prefetchedBytes);
+        }
+
+        // A body still arriving can no longer be completed.
+        if (streamedBody != null) {
+            streamedBody.fail(cause != null ? cause : new IOException("The MessageConsumer was closed before the message body arrived"));
+            session.getProvider().unregisterStreamedBody(streamedBody);
+            streamedBody = null;
+            streamingDelivery = null;
+            streamingEnvelope = null;
+            deferredAck = null;
+            deferredSessionAck = null;
+        }
+
+        partialDelivery = null;
+        partialBytes = null;
+
         // When closed we need to release any pending tasks to avoid blocking
 
         if (stopRequest != null) {
@@ -605,22 +1215,30 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
     protected static final class ScheduledRequest implements AsyncResult {
 
         private final ScheduledFuture<?> sheduledTask;
+        private final Timeout timeout;
         private final AsyncResult origRequest;
 
         public ScheduledRequest(ScheduledFuture<?> completionTask, AsyncResult origRequest) {
             this.sheduledTask = completionTask;
+            this.timeout = null;
+            this.origRequest = origRequest;
+        }
+
+        public ScheduledRequest(Timeout completionTimeout, AsyncResult origRequest) {
+            this.sheduledTask = null;
+            this.timeout = completionTimeout;
             this.origRequest = origRequest;
         }
 
         @Override
         public void onFailure(Throwable cause) {
-            sheduledTask.cancel(false);
+            cancelTask();
             origRequest.onFailure(cause);
         }
 
         @Override
         public void onSuccess() {
-            boolean cancelled = sheduledTask.cancel(false);
+            boolean cancelled = cancelTask();
             if (cancelled) {
                 // Signal completion. Otherwise wait for the scheduled task to do it.
                 origRequest.onSuccess();
@@ -631,5 +1249,13 @@ public class AmqpConsumer extends AmqpAbstractResource<JmsConsumerInfo, Receiver
         public boolean isComplete() {
             return origRequest.isComplete();
         }
+
+        private boolean cancelTask() {
+            if (timeout != null) {
+                return timeout.cancel();
+            } else {
+                return sheduledTask.cancel(false);
+            }
+        }
     }
 }
@@ -17,21 +17,26 @@
 package org.apache.qpid.jms.provider.amqp;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Deque;
 
 import javax.jms.IllegalStateException;
 import javax.jms.JMSException;
 
+import org.apache.qpid.jms.JmsDestination;
 import org.apache.qpid.jms.JmsSendTimedOutException;
+import org.apache.qpid.jms.jfr.JmsFlightRecorder;
+import org.apache.qpid.jms.jfr.JmsSettleEvent;
+import org.apache.qpid.jms.message.JmsOutboundBodyStream;
 import org.apache.qpid.jms.message.JmsOutboundMessageDispatch;
 import org.apache.qpid.jms.meta.JmsConnectionInfo;
 import org.apache.qpid.jms.meta.JmsProducerInfo;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
+import org.apache.qpid.jms.metrics.JmsDestinationMetrics;
 import org.apache.qpid.jms.provider.AsyncResult;
+import org.apache.qpid.jms.provider.amqp.AmqpTimeoutWheel.Timeout;
 import org.apache.qpid.jms.util.IOExceptionSupport;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
@@ -45,10 +50,12 @@ import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.impl.DeliveryImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 /**
  * AMQP Producer object that is used to manage JMS MessageProducer semantics.
@@ -59,26 +66,50 @@ public class AmqpFixedProducer extends AmqpProducer {
 
     private static final Logger LOG = LoggerFactory.getLogger(AmqpFixedProducer.class);
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[] {};
+    private static final int STREAM_RETRY_DELAY = 10;
 
-    private final AmqpTransferTagGenerator tagGenerator = new AmqpTransferTagGenerator(true);
-    private final Map<Object, InFlightSend> sent = new LinkedHashMap<Object, InFlightSend>();
-    private final Map<Object, InFlightSend> blocked = new LinkedHashMap<Object, InFlightSend>();
+    private final AmqpInFlightWindow<InFlightSend> sent = new AmqpInFlightWindow<InFlightSend>();
+    private final Deque<InFlightSend> blocked = new ArrayDeque<InFlightSend>();
 
     private AsyncResult sendCompletionWatcher;
 
+    // The send whose body is being streamed, other sends are held until it completes.
+    private InFlightSend streamingSend;
+    private AsyncResult streamingRequest;
+    private boolean streamingPresettle;
+    private Timeout streamRetry;
+    private final Runnable streamTask = new Runnable() {
+
+        @Override
+        public void run() {
+            streamRetry = null;
+            writeStreamedBody();
+        }
+    };
+
     private final AmqpConnection connection;
 
+    private final JmsConnectionMetrics metrics;
+    private final JmsDestinationMetrics destinationMetrics;
+
     public AmqpFixedProducer(AmqpSession session, JmsProducerInfo info, Sender sender) {
         super(session, info, sender);
 
         connection = session.getConnection();
         delayedDeliverySupported = connection.getProperties().isDelayedDeliverySupported();
+
+        metrics = connection.getProvider().getMetrics();
+        if (metrics != null && info.getDestination() != null) {
+            destinationMetrics = metrics.getDestinationMetrics(info.getDestination().getName());
+        } else {
+            destinationMetrics = null;
+        }
     }
 
     @Override
     public void close(AsyncResult request) {
         // If any sends are held we need to wait for them to complete.
-        if (!blocked.isEmpty() || !sent.isEmpty()) {
+        if (!blocked.isEmpty() || !sent.isEmpty() || streamingSend != null) {
             this.closeRequest = request;
             return;
         }
@@ -95,26 +126,48 @@ public class AmqpFixedProducer extends AmqpProducer {
         if (!delayedDeliverySupported && envelope.getMessage().getJMSDeliveryTime() != 0) {
             // Don't allow sends with delay if the remote has not said it can handle them
             request.onFailure(new JMSException("Remote does not support delayed message delivery"));
-        } else if (getEndpoint().getCredit() <= 0) {
+        } else if (getEndpoint().getCredit() <= 0 || streamingSend != null) {
             LOG.trace("Holding Message send until credit is available.");
 
             InFlightSend send = new InFlightSend(envelope, request);
 
+            // The encoded message is pooled and released once the original send request
+            // completes, which a timeout in an outer provider can do while the send is
+            // still held here, so the held send keeps its own copy of the bytes.
+            send.heldPayload = Unpooled.copiedBuffer((ByteBuf) envelope.getPayload());
+
             if (getSendTimeout() > JmsConnectionInfo.INFINITE) {
                 send.requestTimeout = getParent().getProvider().scheduleRequestTimeout(send, getSendTimeout(), send);
             }
 
-            blocked.put(envelope.getMessageId(), send);
+            if (metrics != null && getEndpoint().getCredit() <= 0) {
+                metrics.recordCreditStall();
+                send.heldTime = System.nanoTime();
+            }
+
+            blocked.add(send);
             getParent().getProvider().pumpToProtonTransport(request);
         } else {
-            doSend(envelope, request);
+            doSend(envelope, (ByteBuf) envelope.getPayload(), request);
         }
     }
 
-    private void doSend(JmsOutboundMessageDispatch envelope, AsyncResult request) throws IOException, JMSException {
+    private void doSend(JmsOutboundMessageDispatch envelope, ByteBuf encoded, AsyncResult request) throws IOException, JMSException {
+        // A streamed body is read from the application as it is written, so it cannot be
+        // written a second time when a send is replayed.
+        JmsOutboundBodyStream bodyStream = envelope.getBodyStream();
+        if (bodyStream != null && !bodyStream.start()) {
+            request.onFailure(new IllegalStateException("A message with a streamed body cannot be sent again"));
+            return;
+        }
+
         // If the transaction has failed due to remote termination etc then we just indicate
         // the send has succeeded until the a new transaction is started.
         if (session.isTransacted() && session.isTransactionFailed()) {
+            if (bodyStream != null) {
+                bodyStream.discard();
+            }
+            envelope.releaseSendPermit();
             request.onSuccess();
             return;
         }
@@ -124,10 +177,22 @@ public class AmqpFixedProducer extends AmqpProducer {
         boolean presettle = envelope.isPresettle() || isPresettle();
         Delivery delivery = null;
 
+        InFlightSend send = null;
+        if (request instanceof InFlightSend) {
+            send = (InFlightSend) request;
+        } else {
+            send = new InFlightSend(envelope, request);
+
+            if (!presettle && getSendTimeout() != JmsConnectionInfo.INFINITE) {
+                send.requestTimeout = getParent().getProvider().scheduleRequestTimeout(send, getSendTimeout(), send);
+            }
+        }
+
         if (presettle) {
             delivery = getEndpoint().delivery(EMPTY_BYTE_ARRAY, 0, 0);
         } else {
-            byte[] tag = tagGenerator.getNextTag();
+            send.slot = sent.add(send);
+            byte[] tag = sent.getTag(send.slot);
             delivery = getEndpoint().delivery(tag, 0, tag.length);
         }
 
@@ -140,33 +205,62 @@ public class AmqpFixedProducer extends AmqpProducer {
             context.registerTxProducer(this);
         }
 
-        // Write the already encoded AMQP message into the Sender
-        ByteBuf encoded = (ByteBuf) envelope.getPayload();
-        getEndpoint().send(encoded.array(), encoded.arrayOffset() + encoded.readerIndex(), encoded.readableBytes());
+        if (bodyStream == null) {
+            // Write the already encoded AMQP message into the Sender
+            getEndpoint().send(encoded.array(), encoded.arrayOffset() + encoded.readerIndex(), encoded.readableBytes());
+        } else {
+            // The sections ahead of a streamed body are written along with its first chunk.
+            send.streamHeader = new byte[encoded.readableBytes()];
+            encoded.getBytes(encoded.readerIndex(), send.streamHeader);
+        }
 
-        AmqpProvider provider = getParent().getProvider();
+        int size = encoded.readableBytes();
+        if (bodyStream != null) {
+            size = (int) Math.min(Integer.MAX_VALUE, size + bodyStream.getLength());
+        }
 
-        InFlightSend send = null;
-        if (request instanceof InFlightSend) {
-            send = (InFlightSend) request;
-        } else {
-            send = new InFlightSend(envelope, request);
+        if (metrics != null) {
+            recordSend(send, envelope, size, presettle);
+        }
 
-            if (!presettle && getSendTimeout() != JmsConnectionInfo.INFINITE) {
-                send.requestTimeout = getParent().getProvider().scheduleRequestTimeout(send, getSendTimeout(), send);
-            }
+        if (!presettle && JmsFlightRecorder.isAvailable()) {
+            JmsDestination destination = envelope.getDestination();
+            send.settleEvent = JmsSettleEvent.start(
+                envelope.getProducerId(), destination != null ? destination.getName() : null, size);
         }
 
+        send.setDelivery(delivery);
+        delivery.setContext(send);
+
+        if (bodyStream != null) {
+            final AmqpProvider provider = getParent().getProvider();
+
+            streamingSend = send;
+            streamingRequest = request;
+            streamingPresettle = presettle;
+            bodyStream.setListener(new Runnable() {
+
+                @Override
+                public void run() {
+                    provider.executeAndPump(streamTask);
+                }
+            });
+
+            writeStreamedBody();
+        } else {
+            completeTransfer(send, request, presettle);
+        }
+    }
+
+    private void completeTransfer(InFlightSend send, AsyncResult request, boolean presettle) {
+        AmqpProvider provider = getParent().getProvider();
+
         if (presettle) {
-            delivery.settle();
+            send.getDelivery().settle();
         } else {
-            sent.put(envelope.getMessageId(), send);
             getEndpoint().advance();
         }
 
-        send.setDelivery(delivery);
-        delivery.setContext(send);
-
         // Put it on the wire and let it fail if the connection is broken, if it does
         // get written then continue on to determine when we should complete it.
         if (provider.pumpToProtonTransport(request)) {
@@ -177,29 +271,157 @@ public class AmqpFixedProducer extends AmqpProducer {
             // having been successful.
             if (presettle) {
                 send.onSuccess();
-            } else if (envelope.isSendAsync()) {
+            } else if (send.getEnvelope().isSendAsync()) {
                 send.getOriginalRequest().onSuccess();
             }
         }
     }
 
-    @Override
-    public void processFlowUpdates(AmqpProvider provider) throws IOException {
-        if (!blocked.isEmpty() && getEndpoint().getCredit() > 0) {
-            Iterator<InFlightSend> blockedSends = blocked.values().iterator();
-            while (getEndpoint().getCredit() > 0 && blockedSends.hasNext()) {
-                LOG.trace("Dispatching previously held send");
-                InFlightSend held = blockedSends.next();
-                try {
-                    doSend(held.getEnvelope(), held);
-                } catch (JMSException e) {
-                    throw IOExceptionSupport.create(e);
-                } finally {
-                    blockedSends.remove();
+    /*
+     * Writes as much of the streamed body as has been read from the application and as
+     * the transport has room for, coming back when the stream queues more of the body or
+     * after a short delay when the transport or the remote is holding up the writes.
+     * Proton cannot abort a transfer once begun, so if the body cannot be completed the
+     * link is closed.
+     *
+     * Proton only appends to the bytes of a delivery correctly while none are waiting to
+     * be framed, so each chunk is written once the one before it has gone out.
+     */
+    private void writeStreamedBody() {
+        InFlightSend send = streamingSend;
+        if (send == null) {
+            return;
+        }
+
+        AmqpProvider provider = getParent().getProvider();
+        JmsOutboundBodyStream bodyStream = send.getEnvelope().getBodyStream();
+        Delivery delivery = send.getDelivery();
+        boolean stalled = false;
+        boolean wrote = false;
+
+        try {
+            while (true) {
+                if (delivery.pending() > 0) {
+                    provider.pumpToProtonTransport();
+                    if (delivery.pending() > 0) {
+                        stalled = true;
+                        break;
+                    }
+                }
+
+                if (!provider.isTransportWritable()) {
+                    stalled = true;
+                    break;
+                }
+
+                byte[] chunk = bodyStream.poll();
+                if (chunk == null) {
+                    break;
+                }
+
+                writeStreamedChunk(send, chunk);
+                wrote = true;
+
+                // Leave the last chunk to go out with the delivery advanced so that
+                // the final frame is not followed by an empty one to end it.
+                if (bodyStream.isComplete()) {
+                    break;
                 }
             }
+        } catch (IOException ioe) {
+            LOG.debug("Streamed body of message failed part way through send: {}", send.getEnvelope(), ioe);
+            closeResource(provider, ioe, false);
+            return;
         }
 
+        if (bodyStream.isComplete()) {
+            AsyncResult request = streamingRequest;
+
+            if (send.streamHeader != null) {
+                writeStreamedChunk(send, EMPTY_BYTE_ARRAY);
+            }
+
+            streamingSend = null;
+            streamingRequest = null;
+            if (streamRetry != null) {
+                streamRetry.cancel();
+                streamRetry = null;
+            }
+
+            completeTransfer(send, request, streamingPresettle);
+
+            try {
+                sendHeld();
+            } catch (IOException ioe) {
+                closeResource(provider, ioe, false);
+            }
+        } else {
+            if (wrote) {
+                provider.pumpToProtonTransport();
+            }
+
+            if (stalled && streamRetry == null) {
+                streamRetry = provider.scheduleTimeout(streamTask, STREAM_RETRY_DELAY);
+            }
+        }
+    }
+
+    private void writeStreamedChunk(InFlightSend send, byte[] chunk) {
+        byte[] bytes = chunk;
+        if (send.streamHeader != null) {
+            bytes = new byte[send.streamHeader.length + chunk.length];
+            System.arraycopy(send.streamHeader, 0, bytes, 0, send.streamHeader.length);
+            System.arraycopy(chunk, 0, bytes, send.streamHeader.length, chunk.length);
+            send.streamHeader = null;
+        }
+
+        // Proton keeps the offset the last of the previous bytes were framed from.
+        if (send.getDelivery() instanceof DeliveryImpl) {
+            ((DeliveryImpl) send.getDelivery()).setDataOffset(0);
+        }
+
+        getEndpoint().send(bytes, 0, bytes.length);
+    }
+
+    private void sendHeld() throws IOException {
+        while (!blocked.isEmpty() && getEndpoint().getCredit() > 0 && streamingSend == null) {
+            LOG.trace("Dispatching previously held send");
+            InFlightSend held = blocked.poll();
+            try {
+                doSend(held.getEnvelope(), held.heldPayload, held);
+            } catch (JMSException e) {
+                throw IOExceptionSupport.create(e);
+            } finally {
+                held.heldPayload = null;
+            }
+        }
+    }
+
+    private void recordSend(InFlightSend send, JmsOutboundMessageDispatch envelope, int size, boolean presettle) {
+        long now = System.nanoTime();
+
+        if (send.heldTime != 0) {
+            metrics.recordCreditStallTime(now - send.heldTime);
+            send.heldTime = 0;
+        }
+
+        if (!presettle) {
+            send.sendTime = now;
+        }
+
+        if (destinationMetrics != null) {
+            destinationMetrics.recordSent(size);
+        } else {
+            JmsDestination destination = envelope.getDestination();
+            metrics.getDestinationMetrics(destination != null ? destination.getName() : null).recordSent(size);
+        }
+    }
+
+    @Override
+    public void processFlowUpdates(AmqpProvider provider) throws IOException {
+        writeStreamedBody();
+        sendHeld();
+
         // If a drain was requested, we just sent what we had so respond with drained
         if (getEndpoint().getDrain()) {
             getEndpoint().drained();
@@ -227,6 +449,11 @@ public class AmqpFixedProducer extends AmqpProducer {
                 outcome = null;
             }
 
+            if (send.settleEvent != null) {
+                send.settleEvent.finish(outcome != null ? outcome.getClass().getSimpleName() : null);
+                send.settleEvent = null;
+            }
+
             if (outcome instanceof Accepted) {
                 LOG.trace("Outcome of delivery was accepted: {}", delivery);
                 send.onSuccess();
@@ -284,7 +511,26 @@ public class AmqpFixedProducer extends AmqpProducer {
             error = new JMSException("Producer closed remotely before message transfer result was notified");
         }
 
-        Collection<InFlightSend> inflightSends = new ArrayList<InFlightSend>(sent.values());
+        // The streamed send is failed along with the others, a presettled one is not in flight.
+        InFlightSend streaming = streamingSend;
+        if (streaming != null) {
+            streamingSend = null;
+            streamingRequest = null;
+            if (streamRetry != null) {
+                streamRetry.cancel();
+                streamRetry = null;
+            }
+
+            if (streaming.slot < 0) {
+                try {
+                    streaming.onFailure(error);
+                } catch (Exception e) {
+                    LOG.debug("Caught exception when failing streamed send during producer closure: {}", streaming, e);
+                }
+            }
+        }
+
+        Collection<InFlightSend> inflightSends = sent.values();
         for (InFlightSend send : inflightSends) {
             try {
                 send.onFailure(error);
@@ -293,7 +539,7 @@ public class AmqpFixedProducer extends AmqpProducer {
             }
         }
 
-        Collection<InFlightSend> blockedSends = new ArrayList<InFlightSend>(blocked.values());
+        Collection<InFlightSend> blockedSends = new ArrayList<InFlightSend>(blocked);
         for (InFlightSend send : blockedSends) {
             try {
                 send.onFailure(error);
@@ -307,7 +553,7 @@ public class AmqpFixedProducer extends AmqpProducer {
     public void addSendCompletionWatcher(AsyncResult watcher) {
         // If none pending signal done already.
         // TODO - If we don't include blocked sends then update this.
-        if (blocked.isEmpty() && sent.isEmpty()) {
+        if (blocked.isEmpty() && sent.isEmpty() && streamingSend == null) {
             watcher.onSuccess();
         } else {
             this.sendCompletionWatcher = watcher;
@@ -322,15 +568,30 @@ public class AmqpFixedProducer extends AmqpProducer {
         private final AsyncResult request;
 
         private Delivery delivery;
-        private ScheduledFuture<?> requestTimeout;
+        private Timeout requestTimeout;
+        private ByteBuf heldPayload;
+        private byte[] streamHeader;
+        private int slot = -1;
+        private long heldTime;
+        private long sendTime;
+        private JmsSettleEvent settleEvent;
 
         public InFlightSend(JmsOutboundMessageDispatch envelope, AsyncResult request) {
             this.envelope = envelope;
             this.request = request;
+
+            envelope.markInFlight();
         }
 
         @Override
         public void onFailure(Throwable cause) {
+            if (this == streamingSend) {
+                // The transfer of the body cannot be finished so the link has to go, which
+                // then fails this send and any others along with it.
+                closeResource(getParent().getProvider(), cause, false);
+                return;
+            }
+
             handleSendCompletion(false);
 
             if (request.isComplete()) {
@@ -359,9 +620,9 @@ public class AmqpFixedProducer extends AmqpProducer {
             }
         }
 
-        public void setRequestTimeout(ScheduledFuture<?> requestTimeout) {
+        public void setRequestTimeout(Timeout requestTimeout) {
             if (this.requestTimeout != null) {
-                this.requestTimeout.cancel(false);
+                this.requestTimeout.cancel();
             }
 
             this.requestTimeout = requestTimeout;
@@ -391,16 +652,25 @@ public class AmqpFixedProducer extends AmqpProducer {
         private void handleSendCompletion(boolean successful) {
             setRequestTimeout(null);
 
+            if (successful && sendTime != 0) {
+                metrics.recordSendSettled(System.nanoTime() - sendTime);
+                sendTime = 0;
+            }
+
             if (getDelivery() != null) {
-                sent.remove(envelope.getMessageId());
+                if (slot >= 0) {
+                    sent.remove(slot);
+                    slot = -1;
+                }
                 delivery.settle();
-                tagGenerator.returnTag(delivery.getTag());
             } else {
-                blocked.remove(envelope.getMessageId());
+                blocked.remove(this);
             }
 
-            // Put the message back to usable state following send complete
+            // Put the message back to usable state following send complete and free
+            // the space it held in the outbound send windows.
             envelope.getMessage().onSendComplete();
+            envelope.releaseSendPermit();
 
             // Signal the watcher that all pending sends have completed if one is registered
             // and both the in-flight sends and blocked sends have completed.
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tracks the transfers sent on a link that the remote has yet to settle and assigns
+ * the delivery tags used to send them.
+ * <p>
+ * Each entry is held in a numbered slot and the number is also its delivery tag, so
+ * an entry is found or removed by index however many are in flight.  Slots freed by
+ * settled transfers are kept in a ring and reused oldest first, a new slot is only
+ * added when none are free, so the numbers stay below the peak number in flight and
+ * the fixed width tag of each slot is created once and then reused.  The entries are
+ * also linked in the order they were added so that they can be failed in that order.
+ * <p>
+ * Instances are not thread safe and are only used from the provider thread.
+ *
+ * @param <E> the type of entry tracked.
+ */
+final class AmqpInFlightWindow<E> {
+
+    static final int TAG_SIZE = 4;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private Object[] entries = new Object[INITIAL_CAPACITY];
+    private byte[][] tags = new byte[INITIAL_CAPACITY][];
+    private int[] previous = new int[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+
+    private int first = NONE;
+    private int last = NONE;
+    private int size;
+
+    // Slots that have been used, those below the mark not in use are in the free ring.
+    private int used;
+    private int[] free = new int[INITIAL_CAPACITY];
+    private int freeHead;
+    private int freeCount;
+
+    /**
+     * Adds an entry to the window in a free slot.
+     *
+     * @param entry
+     *      the entry to track.
+     *
+     * @return the slot now holding the entry, also the number of its delivery tag.
+     */
+    int add(E entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("Entry cannot be null");
+        }
+
+        final int slot;
+        if (freeCount > 0) {
+            slot = free[freeHead];
+            freeHead = (freeHead + 1) & (free.length - 1);
+            freeCount--;
+        } else {
+            if (used == entries.length) {
+                grow();
+            }
+            slot = used++;
+        }
+
+        entries[slot] = entry;
+        previous[slot] = last;
+        next[slot] = NONE;
+        if (last == NONE) {
+            first = slot;
+        } else {
+            next[last] = slot;
+        }
+        last = slot;
+        size++;
+
+        return slot;
+    }
+
+    /**
+     * @param slot
+     *      the slot of the entry.
+     *
+     * @return the entry held in the given slot or null if none is.
+     */
+    @SuppressWarnings("unchecked")
+    E get(int slot) {
+        if (slot < 0 || slot >= used) {
+            return null;
+        }
+
+        return (E) entries[slot];
+    }
+
+    /**
+     * Returns the delivery tag for the given slot, which is the slot number as a fixed
+     * width big endian value.  The same array is returned each time the slot is used so
+     * it must not be changed.
+     *
+     * @param slot
+     *      the slot to return the tag of.
+     *
+     * @return the delivery tag of the slot.
+     */
+    byte[] getTag(int slot) {
+        byte[] tag = tags[slot];
+        if (tag == null) {
+            tag = new byte[] { (byte) (slot >>> 24), (byte) (slot >>> 16), (byte) (slot >>> 8), (byte) slot };
+            tags[slot] = tag;
+        }
+
+        return tag;
+    }
+
+    /**
+     * Removes the entry held in the given slot and frees the slot for reuse.
+     *
+     * @param slot
+     *      the slot of the entry to remove.
+     *
+     * @return the entry removed or null if the slot held none.
+     */
+    E remove(int slot) {
+        E entry = get(slot);
+        if (entry == null) {
+            return null;
+        }
+
+        entries[slot] = null;
+
+        int before = previous[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            first = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            last = before;
+        } else {
+            previous[after] = before;
+        }
+        size--;
+
+        free[(freeHead + freeCount) & (free.length - 1)] = slot;
+        freeCount++;
+
+        return entry;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a copy of the entries in the order they were added.
+     */
+    @SuppressWarnings("unchecked")
+    List<E> values() {
+        List<E> values = new ArrayList<E>(size);
+        for (int slot = first; slot != NONE; slot = next[slot]) {
+            values.add((E) entries[slot]);
+        }
+
+        return values;
+    }
+
+    private void grow() {
+        // Only called with no free slots so the ring can be reset as it is resized.
+        int capacity = entries.length * 2;
+
+        entries = Arrays.copyOf(entries, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        next = Arrays.copyOf(next, capacity);
+        free = new int[capacity];
+        freeHead = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpInFlightWindow { size = " + size + ", slots = " + used + " }";
+    }
+}
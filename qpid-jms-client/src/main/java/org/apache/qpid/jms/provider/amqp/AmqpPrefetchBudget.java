@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Limits the bytes of prefetched messages held by the consumers of a connection or
+ * session that have not yet been taken by the application.
+ * <p>
+ * Consumers reserve the size of each message as it arrives and release it once the
+ * message has been dispatched or otherwise removed from the consumer.  The budget is
+ * consulted when a consumer grants link credit, so messages already in flight can take
+ * the total a little past the limit, and consumers whose credit was held back are told
+ * when bytes are released so that they can grant it again.
+ * <p>
+ * Instances are not thread safe and are only used from the provider thread.
+ */
+class AmqpPrefetchBudget {
+
+    private final long limit;
+    private long used;
+
+    private final Set<AmqpConsumer> throttled = new LinkedHashSet<AmqpConsumer>();
+
+    /**
+     * @param limit
+     *      the number of bytes of prefetched messages allowed.
+     */
+    AmqpPrefetchBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return the number of bytes that may still be prefetched, never negative.
+     */
+    long getAvailable() {
+        return Math.max(0, limit - used);
+    }
+
+    /**
+     * @return the number of bytes of prefetched messages currently held.
+     */
+    long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return the number of bytes of prefetched messages allowed.
+     */
+    long getLimit() {
+        return limit;
+    }
+
+    void reserve(long bytes) {
+        used += bytes;
+    }
+
+    void release(long bytes) {
+        used = Math.max(0, used - bytes);
+
+        if (!throttled.isEmpty()) {
+            for (AmqpConsumer consumer : new ArrayList<AmqpConsumer>(throttled)) {
+                consumer.onPrefetchBudgetReleased();
+            }
+        }
+    }
+
+    /**
+     * Records whether the given consumer granted less credit than it wanted because of
+     * this budget, and so should be told when bytes are next released.
+     *
+     * @param consumer
+     *      the consumer whose credit was or was not limited.
+     * @param limited
+     *      true if the consumer's credit was held back by the budget.
+     */
+    void setThrottled(AmqpConsumer consumer, boolean limited) {
+        if (limited) {
+            throttled.add(consumer);
+        } else {
+            throttled.remove(consumer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpPrefetchBudget { used = " + used + ", limit = " + limit + " }";
+    }
+}
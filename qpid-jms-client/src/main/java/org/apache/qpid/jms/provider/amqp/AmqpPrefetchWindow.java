@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the rate at which a consumer takes messages, the size of those messages and
+ * the time the remote takes to respond to new credit, and from them sizes the credit
+ * window of an adaptive prefetch consumer.
+ * <p>
+ * The window aims to cover the messages the consumer will take over one round trip
+ * plus the configured buffer time.  It may at most double or halve per rate sample so
+ * it ramps up quickly for fast consumers without swinging on a single slow period, is
+ * bounded by the configured minimum and maximum prefetch and, when the messages are
+ * large, by the configured number of bytes.
+ * <p>
+ * Instances are not thread safe and are only used from the provider thread.
+ */
+class AmqpPrefetchWindow {
+
+    private static final long MIN_SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_ROUND_TRIP = TimeUnit.SECONDS.toNanos(1);
+    private static final double RATE_TIME_CONSTANT = TimeUnit.SECONDS.toNanos(1);
+    private static final double SMOOTHING = 0.25;
+
+    private final int minPrefetch;
+    private final int maxPrefetch;
+    private final long bufferTime;
+    private final long maxPrefetchBytes;
+
+    private int window;
+
+    // Messages per nanosecond, bytes and nanoseconds, negative until first sampled.
+    private double consumptionRate = -1;
+    private double averageSize = -1;
+    private double roundTrip = -1;
+
+    private long sampleStart = -1;
+    private int sampleCount;
+    private long creditGrantedAt = -1;
+
+    /**
+     * @param minPrefetch
+     *      the smallest window, also used until the consumption rate is known.
+     * @param maxPrefetch
+     *      the largest window.
+     * @param bufferTime
+     *      the time in milliseconds worth of messages to hold beyond the round trip.
+     * @param maxPrefetchBytes
+     *      the limit on the bytes of messages covered by the window, or zero for none.
+     */
+    AmqpPrefetchWindow(int minPrefetch, int maxPrefetch, long bufferTime, long maxPrefetchBytes) {
+        this.maxPrefetch = Math.max(1, maxPrefetch);
+        this.minPrefetch = Math.max(1, Math.min(minPrefetch, this.maxPrefetch));
+        this.bufferTime = TimeUnit.MILLISECONDS.toNanos(Math.max(0, bufferTime));
+        this.maxPrefetchBytes = maxPrefetchBytes;
+        this.window = this.minPrefetch;
+    }
+
+    /**
+     * @return the number of messages of credit the consumer should currently keep outstanding.
+     */
+    int getWindow() {
+        int current = window;
+        if (maxPrefetchBytes > 0 && averageSize > 0) {
+            current = (int) Math.min(current, Math.max(minPrefetch, (long) (maxPrefetchBytes / averageSize)));
+        }
+
+        return current;
+    }
+
+    /**
+     * Called when credit is granted to the link.
+     *
+     * @param now
+     *      the current time in nanoseconds.
+     * @param starved
+     *      true if the link had no credit left, so the next message arrival times the round trip.
+     */
+    void onCreditGranted(long now, boolean starved) {
+        if (starved && creditGrantedAt < 0) {
+            creditGrantedAt = now;
+        }
+    }
+
+    /**
+     * Called when a message arrives on the link.
+     *
+     * @param now
+     *      the current time in nanoseconds.
+     * @param size
+     *      the encoded size of the message in bytes.
+     */
+    void onMessageArrived(long now, int size) {
+        averageSize = averageSize < 0 ? size : averageSize + SMOOTHING * (size - averageSize);
+
+        if (creditGrantedAt >= 0) {
+            long sample = Math.min(now - creditGrantedAt, MAX_ROUND_TRIP);
+            roundTrip = roundTrip < 0 ? sample : roundTrip + SMOOTHING * (sample - roundTrip);
+            creditGrantedAt = -1;
+        }
+    }
+
+    /**
+     * Called when the consumer takes a message, which updates the consumption rate and
+     * resizes the window once enough time has passed or a full window has been taken.
+     *
+     * @param now
+     *      the current time in nanoseconds.
+     */
+    void onMessageConsumed(long now) {
+        if (sampleStart < 0) {
+            sampleStart = now;
+            return;
+        }
+
+        sampleCount++;
+
+        long elapsed = now - sampleStart;
+        if (elapsed >= MAX_SAMPLE_INTERVAL || (sampleCount >= window && elapsed >= MIN_SAMPLE_INTERVAL)) {
+            // Weight each sample by the time it covers so that a long stall counts for
+            // far more than the many short samples taken while consuming quickly.
+            double rate = (double) sampleCount / elapsed;
+            double weight = 1 - Math.exp(-elapsed / RATE_TIME_CONSTANT);
+            consumptionRate = consumptionRate < 0 ? rate : consumptionRate + weight * (rate - consumptionRate);
+
+            sampleStart = now;
+            sampleCount = 0;
+
+            resize();
+        }
+    }
+
+    private void resize() {
+        double coveredTime = Math.max(roundTrip, 0) + bufferTime;
+        long desired = (long) Math.ceil(consumptionRate * coveredTime);
+
+        desired = Math.min(desired, window * 2L);
+        desired = Math.max(desired, window / 2);
+
+        window = (int) Math.max(minPrefetch, Math.min(desired, maxPrefetch));
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpPrefetchWindow { window = " + getWindow() + " }";
+    }
+}
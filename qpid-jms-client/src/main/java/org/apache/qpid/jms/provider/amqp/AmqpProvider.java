@@ -19,7 +19,15 @@ package org.apache.qpid.jms.provider.amqp;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -32,6 +40,8 @@ import javax.jms.JMSException;
 import javax.net.ssl.SSLContext;
 
 import org.apache.qpid.jms.JmsTemporaryDestination;
+import org.apache.qpid.jms.jfr.JmsFlightRecorder;
+import org.apache.qpid.jms.jfr.JmsSerializerTaskEvent;
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
 import org.apache.qpid.jms.message.JmsMessageFactory;
 import org.apache.qpid.jms.message.JmsOutboundMessageDispatch;
@@ -46,6 +56,8 @@ import org.apache.qpid.jms.meta.JmsResourceVistor;
 import org.apache.qpid.jms.meta.JmsSessionId;
 import org.apache.qpid.jms.meta.JmsSessionInfo;
 import org.apache.qpid.jms.meta.JmsTransactionInfo;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
+import org.apache.qpid.jms.provider.AggregateAsyncResult;
 import org.apache.qpid.jms.provider.AsyncResult;
 import org.apache.qpid.jms.provider.NoOpAsyncResult;
 import org.apache.qpid.jms.provider.Provider;
@@ -53,8 +65,11 @@ import org.apache.qpid.jms.provider.ProviderClosedException;
 import org.apache.qpid.jms.provider.ProviderConstants.ACK_TYPE;
 import org.apache.qpid.jms.provider.ProviderFuture;
 import org.apache.qpid.jms.provider.ProviderListener;
+import org.apache.qpid.jms.provider.WrappedAsyncResult;
+import org.apache.qpid.jms.provider.amqp.AmqpTimeoutWheel.Timeout;
 import org.apache.qpid.jms.provider.amqp.builders.AmqpClosedConnectionBuilder;
 import org.apache.qpid.jms.provider.amqp.builders.AmqpConnectionBuilder;
+import org.apache.qpid.jms.provider.amqp.message.AmqpStreamedBody;
 import org.apache.qpid.jms.transports.TransportFactory;
 import org.apache.qpid.jms.transports.TransportListener;
 import org.apache.qpid.jms.util.IOExceptionSupport;
@@ -100,6 +115,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     // NOTE: Limit default channel max to signed short range to deal with
     //       brokers that don't currently handle the unsigned range well.
     private static final int DEFAULT_CHANNEL_MAX = 32767;
+    private static final int DEFAULT_COALESCE_WRITES_LIMIT = 64 * 1024;
     private static final AtomicInteger PROVIDER_SEQUENCE = new AtomicInteger();
     private static final NoOpAsyncResult NOOP_REQUEST = new NoOpAsyncResult();
 
@@ -119,16 +135,38 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     private int drainTimeout = 60000;
     private long sessionOutoingWindow = -1; //Use proton default
     private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private boolean coalesceWrites;
+    private int sharedSerializerThreads = -1;
+    private int coalesceWritesLimit = DEFAULT_COALESCE_WRITES_LIMIT;
+    private boolean lazyDecoding;
+    private int largeMessageThreshold;
+    private int spillThreshold;
+    private String spillDirectory;
 
     private final URI remoteURI;
     private final AtomicBoolean closed = new AtomicBoolean();
-    private ScheduledThreadPoolExecutor serializer;
+    private volatile ScheduledExecutorService serializer;
+    private AmqpSharedSerializerPool sharedSerializerPool;
     private final Transport protonTransport = Transport.Factory.create();
     private final Collector protonCollector = new CollectorImpl();
     private final Connection protonConnection = Connection.Factory.create();
 
+    private final Set<AmqpStreamedBody> streamedBodies =
+        Collections.newSetFromMap(new ConcurrentHashMap<AmqpStreamedBody, Boolean>());
+
+    private final Queue<PendingAcknowledge> pendingAcks = new ConcurrentLinkedQueue<PendingAcknowledge>();
+    private final AtomicBoolean ackDrainScheduled = new AtomicBoolean();
+    private final Runnable ackDrainTask = new AcknowledgementDrainTask();
+
+    private final Runnable flushTask = new FlushTask();
+    private boolean flushScheduled;
+    private long unflushedBytes;
+    private boolean batchingSends;
+
     private AsyncResult connectionRequest;
     private ScheduledFuture<?> nextIdleTimeoutCheck;
+    private AmqpTimeoutWheel timeoutWheel;
+    private volatile JmsConnectionMetrics metrics;
 
     /**
      * Create a new instance of an AmqpProvider bonded to the given remote URI.
@@ -139,7 +177,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     public AmqpProvider(URI remoteURI) {
         this.remoteURI = remoteURI;
 
-        serializer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        ScheduledThreadPoolExecutor serializer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
 
             @Override
             public Thread newThread(Runnable runner) {
@@ -154,15 +192,28 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
 
         serializer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
         serializer.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+
+        this.serializer = serializer;
     }
 
     @Override
     public void connect(final JmsConnectionInfo connectionInfo) throws IOException {
         checkClosed();
 
+        if (getSharedSerializerThreads() > 0 && sharedSerializerPool == null) {
+            // The dedicated serializer has not run anything yet so it has not started
+            // a thread, swap it for one that multiplexes onto the shared pool.
+            sharedSerializerPool = AmqpSharedSerializerPool.retain(getSharedSerializerThreads());
+            ScheduledExecutorService dedicated = serializer;
+            serializer = sharedSerializerPool.createSerializer();
+            dedicated.shutdown();
+        }
+
+        metrics = connectionInfo.getMetrics();
+
         final ProviderFuture connectRequest = new ProviderFuture();
 
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -242,7 +293,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
                 }
             };
 
-            serializer.execute(new Runnable() {
+            execute(new Runnable() {
 
                 @Override
                 public void run() {
@@ -308,6 +359,12 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
                     }
                 } finally {
                     ThreadPoolUtils.shutdownGraceful(serializer);
+                    failStreamedBodies(new ProviderClosedException("The Provider has been closed"));
+
+                    if (sharedSerializerPool != null) {
+                        sharedSerializerPool.release();
+                        sharedSerializerPool = null;
+                    }
                 }
             }
         }
@@ -316,7 +373,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void create(final JmsResource resource, final AsyncResult request) throws IOException, JMSException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -393,7 +450,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void start(final JmsResource resource, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -420,7 +477,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void stop(final JmsResource resource, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -447,7 +504,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void destroy(final JmsResource resource, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -549,35 +606,97 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void send(final JmsOutboundMessageDispatch envelope, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
 
-            @Override
-            public void run() {
-                try {
-                    checkClosed();
+        // Hold a reference to the encoded message until the producer is done with it as
+        // the send request can be completed by a timeout before this task has run.
+        ReferenceCountUtil.retain(envelope.getPayload());
+        try {
+            execute(new Runnable() {
 
-                    JmsProducerId producerId = envelope.getProducerId();
-                    AmqpProducer producer = null;
+                @Override
+                public void run() {
+                    try {
+                        checkClosed();
+                        lookupProducer(envelope.getProducerId()).send(envelope, request);
+                    } catch (Throwable t) {
+                        request.onFailure(t);
+                    } finally {
+                        ReferenceCountUtil.release(envelope.getPayload());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            ReferenceCountUtil.release(envelope.getPayload());
+            throw rejected;
+        }
+    }
 
-                    if (producerId.getProviderHint() instanceof AmqpFixedProducer) {
-                        producer = (AmqpFixedProducer) producerId.getProviderHint();
-                    } else {
-                        AmqpSession session = connection.getSession(producerId.getParentId());
-                        producer = session.getProducer(producerId);
+    @Override
+    public void send(final List<JmsOutboundMessageDispatch> envelopes, final AsyncResult request) throws IOException {
+        checkClosed();
+
+        for (JmsOutboundMessageDispatch envelope : envelopes) {
+            ReferenceCountUtil.retain(envelope.getPayload());
+        }
+
+        try {
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    final AggregateAsyncResult batch = new AggregateAsyncResult(request, envelopes.size());
+
+                    // Each send only adds its transfer to the proton transport, the whole
+                    // batch is then written out to the remote in a single pump.
+                    batchingSends = true;
+                    try {
+                        checkClosed();
+                        for (final JmsOutboundMessageDispatch envelope : envelopes) {
+                            lookupProducer(envelope.getProducerId()).send(envelope, new WrappedAsyncResult(batch) {
+
+                                @Override
+                                public void onSuccess() {
+                                    envelope.markSendCompleted();
+                                    super.onSuccess();
+                                }
+                            });
+                            if (batch.isComplete()) {
+                                break;
+                            }
+                        }
+                    } catch (Throwable t) {
+                        batch.onFailure(t);
+                    } finally {
+                        batchingSends = false;
+                        for (JmsOutboundMessageDispatch envelope : envelopes) {
+                            ReferenceCountUtil.release(envelope.getPayload());
+                        }
                     }
 
-                    producer.send(envelope, request);
-                } catch (Throwable t) {
-                    request.onFailure(t);
+                    pumpToProtonTransport(batch);
                 }
+            });
+        } catch (RejectedExecutionException rejected) {
+            for (JmsOutboundMessageDispatch envelope : envelopes) {
+                ReferenceCountUtil.release(envelope.getPayload());
             }
-        });
+            throw rejected;
+        }
+    }
+
+    private AmqpProducer lookupProducer(JmsProducerId producerId) {
+        if (producerId.getProviderHint() instanceof AmqpFixedProducer) {
+            return (AmqpFixedProducer) producerId.getProviderHint();
+        } else {
+            AmqpSession session = connection.getSession(producerId.getParentId());
+            return session.getProducer(producerId);
+        }
     }
 
     @Override
     public void acknowledge(final JmsSessionId sessionId, final ACK_TYPE ackType, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -597,43 +716,21 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void acknowledge(final JmsInboundMessageDispatch envelope, final ACK_TYPE ackType, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    checkClosed();
-
-                    JmsConsumerId consumerId = envelope.getConsumerId();
-                    AmqpConsumer consumer = null;
 
-                    if (consumerId.getProviderHint() instanceof AmqpConsumer) {
-                        consumer = (AmqpConsumer) consumerId.getProviderHint();
-                    } else {
-                        AmqpSession session = connection.getSession(consumerId.getParentId());
-                        consumer = session.getConsumer(consumerId);
-                    }
-
-                    consumer.acknowledge(envelope, ackType);
-
-                    if (consumer.getSession().isAsyncAck()) {
-                        request.onSuccess();
-                        pumpToProtonTransport(request);
-                    } else {
-                        pumpToProtonTransport(request);
-                        request.onSuccess();
-                    }
-                } catch (Throwable t) {
-                    request.onFailure(t);
-                }
-            }
-        });
+        // Individual message acks are queued and applied in batches by the serializer
+        // so that a burst of acknowledgements costs one task and one pump rather than
+        // one of each per message.  Ordering against any other request made by the
+        // calling thread is preserved since a drain task is always queued ahead of it.
+        pendingAcks.offer(new PendingAcknowledge(envelope, ackType, request));
+        if (ackDrainScheduled.compareAndSet(false, true)) {
+            execute(ackDrainTask);
+        }
     }
 
     @Override
     public void commit(final JmsTransactionInfo transactionInfo, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -652,7 +749,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void rollback(final JmsTransactionInfo transactionInfo, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -671,7 +768,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void recover(final JmsSessionId sessionId, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -691,7 +788,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void unsubscribe(final String subscription, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -709,7 +806,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void pull(final JmsConsumerId consumerId, final long timeout, final AsyncResult request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -757,7 +854,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
         // We need to retain until the serializer gets around to processing it.
         ReferenceCountUtil.retain(input);
 
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -797,7 +894,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void onTransportError(final Throwable error) {
         if (!serializer.isShutdown()) {
-            serializer.execute(new Runnable() {
+            execute(new Runnable() {
                 @Override
                 public void run() {
                     LOG.info("Transport failed: {}", error.getMessage());
@@ -820,7 +917,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     @Override
     public void onTransportClosed() {
         if (!serializer.isShutdown()) {
-            serializer.execute(new Runnable() {
+            execute(new Runnable() {
                 @Override
                 public void run() {
                     LOG.debug("Transport connection remotely closed");
@@ -946,6 +1043,11 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
     }
 
     protected boolean pumpToProtonTransport(AsyncResult request) {
+        if (batchingSends) {
+            // The batch being sent pumps once all of its transfers have been added.
+            return true;
+        }
+
         try {
             boolean done = false;
             while (!done) {
@@ -958,12 +1060,24 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
                         TRACE_BYTES.info("Sending: {}", ByteBufUtil.hexDump(outbound));
                     }
 
-                    transport.send(outbound);
+                    unflushedBytes += outbound.readableBytes();
+                    transport.write(outbound);
                     protonTransport.outputConsumed();
                 } else {
                     done = true;
                 }
             }
+
+            if (unflushedBytes > 0) {
+                if (!isCoalesceWrites() || unflushedBytes >= getCoalesceWritesLimit() || serializer.isShutdown()) {
+                    flushTransport();
+                } else if (!flushScheduled) {
+                    // Defer the flush until the work already queued on the serializer
+                    // has had a chance to add its own output to this write batch.
+                    flushScheduled = true;
+                    execute(flushTask);
+                }
+            }
         } catch (IOException e) {
             fireProviderException(e);
             request.onFailure(e);
@@ -973,6 +1087,11 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
         return true;
     }
 
+    private void flushTransport() throws IOException {
+        unflushedBytes = 0;
+        transport.flush();
+    }
+
     void fireConnectionEstablished() {
         // The request onSuccess calls this method
         connectionRequest = null;
@@ -1005,6 +1124,8 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
             connectionRequest = null;
         }
 
+        failStreamedBodies(IOExceptionSupport.create(ex));
+
         if (nextIdleTimeoutCheck != null) {
             nextIdleTimeoutCheck.cancel(true);
             nextIdleTimeoutCheck = null;
@@ -1166,6 +1287,132 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
         this.sessionOutoingWindow = sessionOutoingWindow;
     }
 
+    public boolean isCoalesceWrites() {
+        return coalesceWrites;
+    }
+
+    /**
+     * Sets whether the provider should coalesce the output of all the work queued
+     * on its serializer into a single flush of the transport rather than flushing
+     * after each operation.  Combining the writes reduces the number of system calls
+     * made when many small operations are in flight on the connection.
+     *
+     * @param coalesceWrites
+     *        true if transport flushes should be deferred and batched.
+     */
+    public void setCoalesceWrites(boolean coalesceWrites) {
+        this.coalesceWrites = coalesceWrites;
+    }
+
+    public int getCoalesceWritesLimit() {
+        return coalesceWritesLimit;
+    }
+
+    /**
+     * Sets the number of unflushed bytes (default 64k) at which the provider will flush
+     * the transport immediately even when write coalescing is enabled.
+     *
+     * @param coalesceWritesLimit
+     *        the maximum number of bytes to hold before forcing a flush.
+     */
+    public void setCoalesceWritesLimit(int coalesceWritesLimit) {
+        this.coalesceWritesLimit = coalesceWritesLimit;
+    }
+
+    public int getSharedSerializerThreads() {
+        return sharedSerializerThreads;
+    }
+
+    /**
+     * Sets the number of threads in a pool shared by all providers configured with the
+     * same value.  When set each provider runs its serialized work on the shared pool
+     * instead of creating a thread of its own, work for any one provider is still run
+     * in order and one task at a time.  A value less than one (the default) disables
+     * the sharing.
+     *
+     * @param sharedSerializerThreads
+     *        the number of threads in the shared serializer pool.
+     */
+    public void setSharedSerializerThreads(int sharedSerializerThreads) {
+        this.sharedSerializerThreads = sharedSerializerThreads;
+    }
+
+    public boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
+    /**
+     * Controls whether incoming messages are decoded lazily.  When enabled the application
+     * properties of a received message, and its body and footer when the message type can
+     * be determined from the message annotations, are only decoded when first accessed and
+     * are sent unchanged if the message is forwarded without being read.  Any error in the
+     * encoding of these sections is then reported when they are accessed rather than on
+     * receipt of the message.
+     *
+     * @param lazyDecoding
+     *        should incoming messages be decoded lazily.
+     */
+    public void setLazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+    }
+
+    public int getLargeMessageThreshold() {
+        return largeMessageThreshold;
+    }
+
+    /**
+     * Sets the encoded size in bytes from which a received message whose body is a single
+     * data section is handed to the application as soon as the sections before its body
+     * have arrived, with the body then read from the remote as the application reads it.
+     * The session incoming window is limited to a little over this size so that the remote
+     * only sends as much of the body as the application has room for.  A value of zero
+     * (the default) disables streaming of received messages.
+     * <p>
+     * While such a body is still arriving no other message arrives for any consumer on the
+     * same session, so a consumer that holds on to a streamed message without reading its
+     * body stalls every consumer of its session.  The rest of an unread body is dropped once
+     * the consumer receives again, its listener returns or the consumer is closed.
+     *
+     * @param largeMessageThreshold
+     *        the size from which received messages are streamed, or zero to disable.
+     */
+    public void setLargeMessageThreshold(int largeMessageThreshold) {
+        this.largeMessageThreshold = largeMessageThreshold;
+    }
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Sets the encoded size in bytes from which a received message is written out to a
+     * temporary file while it waits in the prefetch buffer.  The file is mapped into memory
+     * rather than read back, and a data section body is left in place until accessed, so
+     * that large prefetched messages do not occupy the heap.  A value of zero (the default)
+     * keeps all received messages in memory.
+     *
+     * @param spillThreshold
+     *        the size from which received messages are spilled to disk, or zero to disable.
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory that the temporary files of spilled messages are created in,
+     * which when not set is the default temporary directory of the JVM.
+     *
+     * @param spillDirectory
+     *        the path of the directory spilled messages are written to.
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
     public long getCloseTimeout() {
         return connectionInfo != null ? connectionInfo.getCloseTimeout() : JmsConnectionInfo.DEFAULT_CLOSE_TIMEOUT;
     }
@@ -1230,14 +1477,105 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
         return this.serializer;
     }
 
+    /**
+     * @return the metrics of the connection, or null if they are not enabled.
+     */
+    JmsConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public AmqpProvider getProvider() {
         return this;
     }
 
+    /**
+     * Allows a resource to schedule a task on the provider's timeout wheel, which is
+     * cheaper than the scheduler for the many timeouts that are nearly always cancelled
+     * but runs the task up to one wheel tick after the delay.  The task runs on, and the
+     * returned {@link Timeout} must only be cancelled from, the provider thread.
+     *
+     * @param task
+     *      The Runnable task to be executed after the given delay.
+     * @param delay
+     *      The delay in milliseconds to schedule the given task for execution.
+     *
+     * @return a {@link Timeout} that can be used to cancel the task.
+     */
+    public Timeout scheduleTimeout(Runnable task, long delay) {
+        if (timeoutWheel == null) {
+            timeoutWheel = new AmqpTimeoutWheel(serializer);
+        }
+
+        return timeoutWheel.schedule(task, delay);
+    }
+
+    /**
+     * Runs the task on the provider thread and then writes out whatever work it left in
+     * the proton transport, for callers outside the provider thread such as the streams
+     * of large message bodies.  Does nothing if the provider has been closed.
+     *
+     * @param task
+     *      The Runnable task to run on the provider thread.
+     */
+    void executeAndPump(final Runnable task) {
+        if (closed.get() || serializer == null) {
+            return;
+        }
+
+        try {
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    task.run();
+                    pumpToProtonTransport();
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            LOG.trace("Provider is shut down, dropping task: {}", task);
+        }
+    }
+
+    /**
+     * @return true if the transport can take more output without queuing it.
+     */
+    boolean isTransportWritable() {
+        org.apache.qpid.jms.transports.Transport transport = this.transport;
+        return transport != null && transport.isWritable();
+    }
+
+    /**
+     * Tracks a received body that is still being streamed from the remote so that it is
+     * failed, rather than left waiting, if the connection is lost.
+     */
+    void registerStreamedBody(AmqpStreamedBody body) {
+        streamedBodies.add(body);
+    }
+
+    void unregisterStreamedBody(AmqpStreamedBody body) {
+        streamedBodies.remove(body);
+    }
+
+    private void failStreamedBodies(Throwable cause) {
+        for (AmqpStreamedBody body : streamedBodies) {
+            body.fail(cause);
+        }
+        streamedBodies.clear();
+    }
+
+    private void execute(Runnable task) {
+        if (JmsFlightRecorder.isAvailable()) {
+            task = JmsSerializerTaskEvent.wrap(task);
+        }
+
+        JmsConnectionMetrics metrics = this.metrics;
+        serializer.execute(metrics != null ? metrics.meterSerializerTask(task) : task);
+    }
+
     /**
      * Allows a resource to request that its parent resource schedule a future
-     * cancellation of a request and return it a {@link Future} instance that
+     * cancellation of a request and return it a {@link Timeout} instance that
      * can be used to cancel the scheduled automatic failure of the request.
      *
      * @param request
@@ -1247,11 +1585,11 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
      * @param error
      *      The error to use when failing the pending request.
      *
-     * @return a {@link ScheduledFuture} that can be stored by the caller.
+     * @return a {@link Timeout} that can be stored by the caller.
      */
-    public ScheduledFuture<?> scheduleRequestTimeout(final AsyncResult request, long timeout, final Exception error) {
+    public Timeout scheduleRequestTimeout(final AsyncResult request, long timeout, final Exception error) {
         if (timeout != JmsConnectionInfo.INFINITE) {
-            return serializer.schedule(new Runnable() {
+            return scheduleTimeout(new Runnable() {
 
                 @Override
                 public void run() {
@@ -1259,7 +1597,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
                     pumpToProtonTransport();
                 }
 
-            }, timeout, TimeUnit.MILLISECONDS);
+            }, timeout);
         }
 
         return null;
@@ -1267,7 +1605,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
 
     /**
      * Allows a resource to request that its parent resource schedule a future
-     * cancellation of a request and return it a {@link Future} instance that
+     * cancellation of a request and return it a {@link Timeout} instance that
      * can be used to cancel the scheduled automatic failure of the request.
      *
      * @param request
@@ -1277,11 +1615,11 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
      * @param builder
      *      An AmqpExceptionBuilder to use when creating a timed out exception.
      *
-     * @return a {@link ScheduledFuture} that can be stored by the caller.
+     * @return a {@link Timeout} that can be stored by the caller.
      */
-    public ScheduledFuture<?> scheduleRequestTimeout(final AsyncResult request, long timeout, final AmqpExceptionBuilder builder) {
+    public Timeout scheduleRequestTimeout(final AsyncResult request, long timeout, final AmqpExceptionBuilder builder) {
         if (timeout != JmsConnectionInfo.INFINITE) {
-            return serializer.schedule(new Runnable() {
+            return scheduleTimeout(new Runnable() {
 
                 @Override
                 public void run() {
@@ -1289,7 +1627,7 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
                     pumpToProtonTransport();
                 }
 
-            }, timeout, TimeUnit.MILLISECONDS);
+            }, timeout);
         }
 
         return null;
@@ -1303,6 +1641,89 @@ public class AmqpProvider implements Provider, TransportListener , AmqpResourceP
         }
     }
 
+    private static final class PendingAcknowledge {
+
+        private final JmsInboundMessageDispatch envelope;
+        private final ACK_TYPE ackType;
+        private final AsyncResult request;
+
+        public PendingAcknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType, AsyncResult request) {
+            this.envelope = envelope;
+            this.ackType = ackType;
+            this.request = request;
+        }
+    }
+
+    private final class AcknowledgementDrainTask implements Runnable {
+
+        @Override
+        public void run() {
+            // Clear the flag before draining so that any ack queued from here on
+            // is either picked up below or triggers a new drain task.
+            ackDrainScheduled.set(false);
+
+            List<PendingAcknowledge> applied = new ArrayList<PendingAcknowledge>();
+            PendingAcknowledge pending = null;
+            boolean pumpNeeded = false;
+
+            while ((pending = pendingAcks.poll()) != null) {
+                try {
+                    checkClosed();
+
+                    JmsConsumerId consumerId = pending.envelope.getConsumerId();
+                    AmqpConsumer consumer = null;
+
+                    if (consumerId.getProviderHint() instanceof AmqpConsumer) {
+                        consumer = (AmqpConsumer) consumerId.getProviderHint();
+                    } else {
+                        AmqpSession session = connection.getSession(consumerId.getParentId());
+                        consumer = session.getConsumer(consumerId);
+                    }
+
+                    consumer.acknowledge(pending.envelope, pending.ackType);
+                    pumpNeeded = true;
+
+                    if (consumer.getSession().isAsyncAck()) {
+                        pending.request.onSuccess();
+                    } else {
+                        applied.add(pending);
+                    }
+                } catch (Throwable t) {
+                    pending.request.onFailure(t);
+                }
+            }
+
+            // All dispositions from this batch go out in a single pump, those
+            // waiting on the write complete once it is done.
+            if (!pumpNeeded || pumpToProtonTransport()) {
+                for (PendingAcknowledge ack : applied) {
+                    ack.request.onSuccess();
+                }
+            } else {
+                Exception error = new IOException("Failed to write acknowledgements to the transport");
+                for (PendingAcknowledge ack : applied) {
+                    ack.request.onFailure(error);
+                }
+            }
+        }
+    }
+
+    private final class FlushTask implements Runnable {
+
+        @Override
+        public void run() {
+            flushScheduled = false;
+
+            if (unflushedBytes > 0 && transport != null && transport.isConnected()) {
+                try {
+                    flushTransport();
+                } catch (IOException e) {
+                    fireProviderException(e);
+                }
+            }
+        }
+    }
+
     private final class IdleTimeoutCheck implements Runnable {
         @Override
         public void run() {
@@ -47,6 +47,7 @@ public class AmqpSession extends AmqpAbstractResource<JmsSessionInfo, Session> i
 
     private final AmqpConnection connection;
     private final AmqpTransactionContext txContext;
+    private final AmqpPrefetchBudget prefetchBudget;
 
     private final Map<JmsConsumerId, AmqpConsumer> consumers = new HashMap<JmsConsumerId, AmqpConsumer>();
     private final Map<JmsProducerId, AmqpProducer> producers = new HashMap<JmsProducerId, AmqpProducer>();
@@ -61,6 +62,12 @@ public class AmqpSession extends AmqpAbstractResource<JmsSessionInfo, Session> i
         } else {
             txContext = null;
         }
+
+        if (info.getMaxPrefetchBytes() > 0) {
+            prefetchBudget = new AmqpPrefetchBudget(info.getMaxPrefetchBytes());
+        } else {
+            prefetchBudget = null;
+        }
     }
 
     /**
@@ -125,6 +132,13 @@ public class AmqpSession extends AmqpAbstractResource<JmsSessionInfo, Session> i
         return txContext;
     }
 
+    /**
+     * @return the budget for prefetched message bytes across this session's consumers, or null if unlimited.
+     */
+    AmqpPrefetchBudget getPrefetchBudget() {
+        return prefetchBudget;
+    }
+
     /**
      * Begins a new Transaction using the given Transaction Id as the identifier.  The AMQP
      * binary Transaction Id will be stored in the provider hint value of the given transaction.
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.jms.util.SerialScheduledExecutor;
+import org.apache.qpid.jms.util.ThreadPoolUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference counted thread pool shared by all AmqpProvider instances that are
+ * configured with the same number of shared serializer threads.  Each provider
+ * is given a {@link SerialScheduledExecutor} on top of the pool so its work is
+ * still executed in order and one task at a time.
+ */
+final class AmqpSharedSerializerPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpSharedSerializerPool.class);
+
+    private static final Map<Integer, AmqpSharedSerializerPool> SHARED_POOLS = new HashMap<Integer, AmqpSharedSerializerPool>();
+
+    private final int threads;
+    private final ScheduledThreadPoolExecutor pool;
+    private int references;
+
+    private AmqpSharedSerializerPool(final int threads) {
+        this.threads = threads;
+        this.pool = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runner) {
+                Thread serial = new Thread(runner);
+                serial.setDaemon(true);
+                serial.setName("AmqpProvider Shared Serializer:(" + threads + "):[" + sequence.incrementAndGet() + "]");
+                return serial;
+            }
+        });
+
+        pool.setRemoveOnCancelPolicy(true);
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        pool.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Retains a reference to the shared pool with the given number of threads,
+     * creating it if no provider currently holds a reference to it.
+     *
+     * @param threads
+     *        the number of threads in the shared pool.
+     *
+     * @return the shared pool instance.
+     */
+    static AmqpSharedSerializerPool retain(int threads) {
+        synchronized (SHARED_POOLS) {
+            AmqpSharedSerializerPool shared = SHARED_POOLS.get(threads);
+            if (shared == null) {
+                LOG.trace("Creating new shared serializer pool with {} threads", threads);
+                shared = new AmqpSharedSerializerPool(threads);
+                SHARED_POOLS.put(threads, shared);
+            }
+
+            shared.references++;
+            return shared;
+        }
+    }
+
+    /**
+     * @return a new serial executor whose tasks run on the threads of this pool.
+     */
+    SerialScheduledExecutor createSerializer() {
+        return new SerialScheduledExecutor(pool);
+    }
+
+    /**
+     * Releases a reference to this shared pool, shutting it down if there are no
+     * remaining references held.
+     */
+    void release() {
+        boolean shutdown = false;
+
+        synchronized (SHARED_POOLS) {
+            if (--references == 0) {
+                SHARED_POOLS.remove(threads);
+                shutdown = true;
+            }
+        }
+
+        if (shutdown) {
+            LOG.trace("Shutting down shared serializer pool with {} threads", threads);
+            ThreadPoolUtils.shutdown(pool);
+        }
+    }
+}
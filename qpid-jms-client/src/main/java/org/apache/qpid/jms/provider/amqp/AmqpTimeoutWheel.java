@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed wheel of the timeouts used by the resources of a provider, such as those
+ * of sends, requests and drains, where many are scheduled and nearly all of them are
+ * cancelled before they expire.
+ * <p>
+ * Each timeout is linked into the bucket for the tick it expires on, so scheduling and
+ * cancelling one takes constant time however many are pending, where the executor would
+ * sift its heap each time.  The wheel only asks the executor to run it at the next tick
+ * holding a timeout, and not at all while none are pending.  Timeouts expire on the first
+ * tick at or after their delay, so they may fire up to one tick late but never early.
+ * <p>
+ * Instances are not thread safe, timeouts must be scheduled and cancelled from the
+ * thread of the executor given, on which they also run when expired.
+ */
+public final class AmqpTimeoutWheel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpTimeoutWheel.class);
+
+    public static final long DEFAULT_TICK_DURATION = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final ScheduledExecutorService executor;
+    private final long tickDuration;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+
+    private final Runnable expireTask = new Runnable() {
+
+        @Override
+        public void run() {
+            expireTimeouts();
+        }
+    };
+
+    // The first tick whose bucket has not yet been expired.
+    private long currentTick;
+    private int pending;
+
+    private ScheduledFuture<?> wakeup;
+    private long wakeupTick = Long.MAX_VALUE;
+
+    /**
+     * Creates a wheel with the default tick duration and number of buckets.
+     *
+     * @param executor
+     *      the single threaded executor that runs the wheel and its timeouts.
+     */
+    public AmqpTimeoutWheel(ScheduledExecutorService executor) {
+        this(executor, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param executor
+     *      the single threaded executor that runs the wheel and its timeouts.
+     * @param tickDuration
+     *      the time in milliseconds covered by each bucket.
+     * @param wheelSize
+     *      the number of buckets, rounded up to a power of two.
+     */
+    public AmqpTimeoutWheel(ScheduledExecutorService executor, long tickDuration, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("Wheel size must be positive");
+        }
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.executor = executor;
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules the given task to run once the delay has passed unless the returned
+     * timeout is cancelled first.
+     *
+     * @param task
+     *      the task to run when the timeout expires.
+     * @param delay
+     *      the time in milliseconds to wait before running the task.
+     *
+     * @return the timeout, which can be used to cancel it.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+
+        long elapsed = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+        long deadlineTick = Math.max(currentTick, (elapsed + tickDuration - 1) / tickDuration);
+
+        Timeout timeout = new Timeout(task, deadlineTick);
+        int bucket = (int) (deadlineTick & mask);
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        buckets[bucket] = timeout;
+        pending++;
+
+        if (deadlineTick < wakeupTick) {
+            scheduleWakeup(deadlineTick);
+        }
+
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts that have neither expired nor been cancelled.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    private boolean remove(Timeout timeout) {
+        if (timeout.state != Timeout.PENDING) {
+            return false;
+        }
+
+        if (timeout.previous == null) {
+            buckets[(int) (timeout.deadlineTick & mask)] = timeout.next;
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        pending--;
+
+        return true;
+    }
+
+    private void expireTimeouts() {
+        wakeup = null;
+        wakeupTick = Long.MAX_VALUE;
+
+        long nowTick = (System.nanoTime() - startTime) / tickDuration;
+
+        // Unlink everything that has expired before running any of it, so that timeouts
+        // scheduled by the tasks land on ticks that are still to be visited.  A late
+        // wakeup only needs to visit each bucket once.  Buckets hold the newest timeout
+        // first, so each is reversed onto the end of the expired list to run them in the
+        // order they were scheduled.
+        Timeout expired = null;
+        Timeout expiredTail = null;
+        long lastTick = Math.min(nowTick, currentTick + mask);
+        for (long tick = currentTick; tick <= lastTick && pending > 0; ++tick) {
+            Timeout bucketExpired = null;
+            Timeout bucketTail = null;
+
+            Timeout timeout = buckets[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= nowTick) {
+                    remove(timeout);
+                    timeout.state = Timeout.EXPIRED;
+                    timeout.next = bucketExpired;
+                    bucketExpired = timeout;
+                    if (bucketTail == null) {
+                        bucketTail = timeout;
+                    }
+                }
+                timeout = next;
+            }
+
+            if (bucketExpired != null) {
+                if (expiredTail == null) {
+                    expired = bucketExpired;
+                } else {
+                    expiredTail.next = bucketExpired;
+                }
+                expiredTail = bucketTail;
+            }
+        }
+
+        currentTick = Math.max(currentTick, nowTick + 1);
+
+        while (expired != null) {
+            Timeout timeout = expired;
+            expired = timeout.next;
+            timeout.next = null;
+
+            try {
+                timeout.task.run();
+            } catch (Throwable error) {
+                LOG.warn("Timeout task threw an error: {}", error.getMessage(), error);
+            }
+        }
+
+        if (pending > 0) {
+            long nextTick = nextOccupiedTick();
+            if (nextTick < wakeupTick) {
+                scheduleWakeup(nextTick);
+            }
+        }
+    }
+
+    private long nextOccupiedTick() {
+        for (long tick = currentTick; tick <= currentTick + mask; ++tick) {
+            if (buckets[(int) (tick & mask)] != null) {
+                return tick;
+            }
+        }
+
+        return currentTick + mask;
+    }
+
+    private void scheduleWakeup(long tick) {
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+
+        long delay = Math.max(0, tick * tickDuration - (System.nanoTime() - startTime));
+        try {
+            wakeup = executor.schedule(expireTask, delay, TimeUnit.NANOSECONDS);
+            wakeupTick = tick;
+        } catch (RejectedExecutionException closed) {
+            LOG.trace("Executor closed, pending timeouts will not expire");
+            wakeup = null;
+            wakeupTick = Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpTimeoutWheel { pending = " + pending + " }";
+    }
+
+    /**
+     * A task scheduled on the wheel that can be cancelled until it expires.
+     */
+    public final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineTick;
+
+        private Timeout previous;
+        private Timeout next;
+        private int state = PENDING;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancels the timeout so that its task will not run.
+         *
+         * @return true if the timeout was pending and is now cancelled, false if it had
+         *         already expired or been cancelled.
+         */
+        public boolean cancel() {
+            if (remove(this)) {
+                state = CANCELLED;
+                return true;
+            }
+
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+}
@@ -37,6 +37,10 @@ import org.slf4j.LoggerFactory;
  *
  * The Transaction will carry a JmsTransactionId while the Transaction is open, once a
  * transaction has been committed or rolled back the Transaction Id is cleared.
+ *
+ * The next transaction may be begun while the current one is being discharged, its
+ * declare is then sent right behind the discharge so that the outcome of both arrives
+ * after a single round trip.
  */
 public class AmqpTransactionContext implements AmqpResourceParent {
 
@@ -47,6 +51,9 @@ public class AmqpTransactionContext implements AmqpResourceParent {
     private final Set<AmqpProducer> txProducers = new LinkedHashSet<AmqpProducer>();
 
     private JmsTransactionId current;
+    private JmsTransactionId discharging;
+    private boolean dischargeSent;
+    private Runnable pendingDeclare;
     private AmqpTransactionCoordinator coordinator;
 
     /**
@@ -62,12 +69,15 @@ public class AmqpTransactionContext implements AmqpResourceParent {
     }
 
     public void begin(final JmsTransactionId txId, final AsyncResult request) throws Exception {
-        if (current != null) {
+        if (current != null && current != discharging) {
             throw new IOException("Begin called while a TX is still Active.");
         }
 
+        final boolean pipelined = discharging != null;
         final AsyncResult declareCompletion = new AsyncResult() {
 
+            private boolean retried;
+
             @Override
             public void onSuccess() {
                 current = txId;
@@ -76,42 +86,35 @@ public class AmqpTransactionContext implements AmqpResourceParent {
 
             @Override
             public void onFailure(Throwable result) {
-                current = null;
+                // The remote may close the coordinator to fail the discharge sent ahead of
+                // this declare, a new coordinator can still begin the next transaction unless
+                // the declare has already been answered or timed out.
+                if (pipelined && !retried && !request.isComplete() && coordinator.isClosed()) {
+                    retried = true;
+                    declare(txId, this, request);
+                    return;
+                }
+
                 request.onFailure(result);
             }
 
             @Override
             public boolean isComplete() {
-                return current != null;
+                return request.isComplete();
             }
         };
 
-        if (coordinator == null || coordinator.isClosed()) {
-            AmqpTransactionCoordinatorBuilder builder =
-                new AmqpTransactionCoordinatorBuilder(this, session.getResourceInfo());
-            builder.buildResource(new AsyncResult() {
-
-                @Override
-                public void onSuccess() {
-                    try {
-                        coordinator.declare(txId, declareCompletion);
-                    } catch (Exception e) {
-                        request.onFailure(e);
-                    }
-                }
-
-                @Override
-                public void onFailure(Throwable result) {
-                    request.onFailure(result);
-                }
+        if (discharging != null && !dischargeSent) {
+            // The discharge is waiting on producer sends to complete, keep the declare behind it.
+            pendingDeclare = new Runnable() {
 
                 @Override
-                public boolean isComplete() {
-                    return request.isComplete();
+                public void run() {
+                    declare(txId, declareCompletion, request);
                 }
-            });
+            };
         } else {
-            coordinator.declare(txId, declareCompletion);
+            declare(txId, declareCompletion, request);
         }
     }
 
@@ -132,7 +135,7 @@ public class AmqpTransactionContext implements AmqpResourceParent {
 
         if (txProducers.isEmpty()) {
             LOG.trace("TX Context[{}] committing current TX[[]]", this, current);
-            coordinator.discharge(current, dischargeResult, true);
+            discharge(dischargeResult, true);
         } else {
             SendCompletion producersSendCompletion = new SendCompletion(transactionInfo, dischargeResult, txProducers.size(), true);
             for (AmqpProducer producer : txProducers) {
@@ -159,7 +162,7 @@ public class AmqpTransactionContext implements AmqpResourceParent {
 
         if (txProducers.isEmpty()) {
             LOG.trace("TX Context[{}] rolling back current TX[[]]", this, current);
-            coordinator.discharge(current, dischargeResult, false);
+            discharge(dischargeResult, false);
         } else {
             SendCompletion producersSendCompletion = new SendCompletion(transactionInfo, dischargeResult, txProducers.size(), false);
             for (AmqpProducer producer : txProducers) {
@@ -168,6 +171,54 @@ public class AmqpTransactionContext implements AmqpResourceParent {
         }
     }
 
+    private void declare(JmsTransactionId txId, final AsyncResult declareCompletion, final AsyncResult request) {
+        try {
+            if (coordinator == null || coordinator.isClosed()) {
+                AmqpTransactionCoordinatorBuilder builder =
+                    new AmqpTransactionCoordinatorBuilder(this, session.getResourceInfo());
+                builder.buildResource(new AsyncResult() {
+
+                    @Override
+                    public void onSuccess() {
+                        try {
+                            coordinator.declare(txId, declareCompletion);
+                        } catch (Exception e) {
+                            request.onFailure(e);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable result) {
+                        request.onFailure(result);
+                    }
+
+                    @Override
+                    public boolean isComplete() {
+                        return request.isComplete();
+                    }
+                });
+            } else {
+                coordinator.declare(txId, declareCompletion);
+            }
+        } catch (Exception e) {
+            request.onFailure(e);
+        }
+    }
+
+    private void discharge(DischargeCompletion request, boolean commit) throws Exception {
+        try {
+            coordinator.discharge(discharging, request, commit);
+        } finally {
+            dischargeSent = true;
+
+            if (pendingDeclare != null) {
+                Runnable declare = pendingDeclare;
+                pendingDeclare = null;
+                declare.run();
+            }
+        }
+    }
+
     //----- Context utility methods ------------------------------------------//
 
     public void registerTxConsumer(AmqpConsumer consumer) {
@@ -274,6 +325,9 @@ public class AmqpTransactionContext implements AmqpResourceParent {
         public DischargeCompletion(AsyncResult request, boolean commit) {
             this.request = request;
             this.commit = commit;
+
+            discharging = current;
+            dischargeSent = false;
         }
 
         @Override
@@ -294,7 +348,12 @@ public class AmqpTransactionContext implements AmqpResourceParent {
         }
 
         private void cleanup() {
-            current = null;
+            // The declare of the next transaction may have completed first.
+            if (current == discharging) {
+                current = null;
+            }
+            discharging = null;
+
             if (commit) {
                 postCommit();
             } else {
@@ -327,7 +386,7 @@ public class AmqpTransactionContext implements AmqpResourceParent {
             if (--pendingCompletions == 0) {
                 try {
                     LOG.trace("TX Context[{}] rolling back current TX[[]]", this, current);
-                    coordinator.discharge(current, request, false);
+                    discharge(request, false);
                 } catch (Throwable error) {
                     request.onFailure(error);
                 }
@@ -341,7 +400,7 @@ public class AmqpTransactionContext implements AmqpResourceParent {
             if (--pendingCompletions == 0) {
                 try {
                     LOG.trace("TX Context[{}] {} current TX[[]]", this, commit ? "committing" : "rolling back" ,current);
-                    coordinator.discharge(current, request, commit);
+                    discharge(request, commit);
                 } catch (Throwable error) {
                     request.onFailure(error);
                 }
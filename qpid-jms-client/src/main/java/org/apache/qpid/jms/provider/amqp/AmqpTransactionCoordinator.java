@@ -18,7 +18,10 @@ package org.apache.qpid.jms.provider.amqp;
 
 import java.io.IOException;
 import java.nio.BufferOverflowException;
-import java.util.concurrent.ScheduledFuture;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.jms.IllegalStateException;
 import javax.jms.JMSException;
@@ -29,6 +32,7 @@ import org.apache.qpid.jms.meta.JmsConnectionInfo;
 import org.apache.qpid.jms.meta.JmsSessionInfo;
 import org.apache.qpid.jms.meta.JmsTransactionId;
 import org.apache.qpid.jms.provider.AsyncResult;
+import org.apache.qpid.jms.provider.amqp.AmqpTimeoutWheel.Timeout;
 import org.apache.qpid.jms.util.IOExceptionSupport;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
@@ -46,6 +50,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Represents the AMQP Transaction coordinator link used by the transaction context
  * of a session to control the lifetime of a given transaction.
+ * <p>
+ * More than one declare or discharge may be outstanding at a time, which allows the
+ * declare of the next transaction to be sent right behind the discharge of the last.
  */
 public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionInfo, Sender> {
 
@@ -58,9 +65,8 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
 
     private final AmqpTransferTagGenerator tagGenerator = new AmqpTransferTagGenerator();
 
-    private Delivery pendingDelivery;
-    private AsyncResult pendingRequest;
-    private ScheduledFuture<?> pendingTimeout;
+    private final Map<Delivery, AsyncResult> pendingRequests = new LinkedHashMap<Delivery, AsyncResult>();
+    private final Map<Delivery, Timeout> pendingTimeouts = new HashMap<Delivery, Timeout>();
 
     public AmqpTransactionCoordinator(JmsSessionInfo resourceInfo, Sender endpoint, AmqpResourceParent parent) {
         super(resourceInfo, endpoint, parent);
@@ -69,9 +75,18 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
     @Override
     public void processDeliveryUpdates(AmqpProvider provider, Delivery delivery) throws IOException {
         try {
-            if (pendingDelivery != null && pendingDelivery.remotelySettled()) {
-                DeliveryState state = pendingDelivery.getRemoteState();
-                JmsTransactionId txId = (JmsTransactionId) pendingDelivery.getContext();
+            AsyncResult pendingRequest = null;
+            if (delivery != null && delivery.remotelySettled()) {
+                pendingRequest = pendingRequests.remove(delivery);
+                cancelTimeout(delivery);
+            }
+
+            if (pendingRequest != null && pendingRequest.isComplete()) {
+                // The request has already timed out, so the late outcome is dropped.
+                delivery.settle();
+            } else if (pendingRequest != null) {
+                DeliveryState state = delivery.getRemoteState();
+                JmsTransactionId txId = (JmsTransactionId) delivery.getContext();
                 if (state instanceof Declared) {
                     LOG.debug("New TX started: {}", txId);
                     Declared declared = (Declared) state;
@@ -94,15 +109,7 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
                     pendingRequest.onSuccess();
                 }
 
-                // Reset state for next TX action.
-                pendingDelivery.settle();
-                pendingRequest = null;
-                pendingDelivery = null;
-
-                if (pendingTimeout != null) {
-                    pendingTimeout.cancel(false);
-                    pendingTimeout = null;
-                }
+                delivery.settle();
             }
 
             super.processDeliveryUpdates(provider, delivery);
@@ -125,11 +132,11 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
         Declare declare = new Declare();
         message.setBody(new AmqpValue(declare));
 
-        pendingDelivery = getEndpoint().delivery(tagGenerator.getNextTag());
+        Delivery pendingDelivery = getEndpoint().delivery(tagGenerator.getNextTag());
         pendingDelivery.setContext(txId);
-        pendingRequest = request;
+        pendingRequests.put(pendingDelivery, request);
 
-        scheduleTimeoutIfNeeded("Timed out waiting for declare of new TX.");
+        scheduleTimeoutIfNeeded(pendingDelivery, request, "Timed out waiting for declare of new TX.");
 
         sendTxCommand(message);
     }
@@ -161,11 +168,11 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
         discharge.setTxnId((Binary) txId.getProviderHint());
         message.setBody(new AmqpValue(discharge));
 
-        pendingDelivery = getEndpoint().delivery(tagGenerator.getNextTag());
+        Delivery pendingDelivery = getEndpoint().delivery(tagGenerator.getNextTag());
         pendingDelivery.setContext(txId);
-        pendingRequest = request;
+        pendingRequests.put(pendingDelivery, request);
 
-        scheduleTimeoutIfNeeded("Timed out waiting for discharge of TX.");
+        scheduleTimeoutIfNeeded(pendingDelivery, request, "Timed out waiting for discharge of TX.");
 
         sendTxCommand(message);
     }
@@ -175,13 +182,6 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
     @Override
     public void closeResource(AmqpProvider provider, Throwable cause, boolean localClose) {
 
-        // Alert any pending operation that the link failed to complete the pending
-        // begin / commit / rollback operation.
-        if (pendingRequest != null) {
-            pendingRequest.onFailure(cause);
-            pendingRequest = null;
-        }
-
         // Override the base class version because we do not want to propagate
         // an error up to the client if remote close happens as that is an
         // acceptable way for the remote to indicate the discharge could not
@@ -193,6 +193,25 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
 
         if (getEndpoint() != null) {
             getEndpoint().close();
+        }
+
+        // Alert any pending operations that the link failed to complete the pending
+        // begin / commit / rollback operation, now that the link reports itself closed
+        // so that a new link can be created to retry a begin.
+        for (Timeout timeout : pendingTimeouts.values()) {
+            timeout.cancel();
+        }
+        pendingTimeouts.clear();
+
+        if (!pendingRequests.isEmpty()) {
+            ArrayList<AsyncResult> failed = new ArrayList<AsyncResult>(pendingRequests.values());
+            pendingRequests.clear();
+            for (AsyncResult pendingRequest : failed) {
+                pendingRequest.onFailure(cause);
+            }
+        }
+
+        if (getEndpoint() != null) {
             getEndpoint().free();
         }
 
@@ -201,10 +220,21 @@ public class AmqpTransactionCoordinator extends AmqpAbstractResource<JmsSessionI
 
     //----- Internal implementation ------------------------------------------//
 
-    private void scheduleTimeoutIfNeeded(String cause) {
+    private void scheduleTimeoutIfNeeded(Delivery pendingDelivery, AsyncResult pendingRequest, String cause) {
         AmqpProvider provider = getParent().getProvider();
         if (provider.getRequestTimeout() != JmsConnectionInfo.INFINITE) {
-            provider.scheduleRequestTimeout(pendingRequest, provider.getRequestTimeout(), new JmsOperationTimedOutException(cause));
+            Timeout timeout = provider.scheduleRequestTimeout(pendingRequest, provider.getRequestTimeout(), new JmsOperationTimedOutException(cause));
+            if (timeout != null) {
+                pendingTimeouts.put(pendingDelivery, timeout);
+            }
+        }
+    }
+
+    // The timeout of a request is no longer wanted once the outcome has arrived.
+    private void cancelTimeout(Delivery pendingDelivery) {
+        Timeout timeout = pendingTimeouts.remove(pendingDelivery);
+        if (timeout != null) {
+            timeout.cancel();
         }
     }
 
@@ -33,9 +33,17 @@ public class AmqpSessionBuilder extends AmqpResourceBuilder<AmqpSession, AmqpCon
     @Override
     protected Session createEndpoint(JmsSessionInfo resourceInfo) {
         long outgoingWindow = getParent().getProvider().getSessionOutgoingWindow();
+        int largeMessageThreshold = getParent().getProvider().getLargeMessageThreshold();
 
         Session session = getParent().getEndpoint().session();
-        session.setIncomingCapacity(Integer.MAX_VALUE);
+        if (largeMessageThreshold > 0) {
+            // Leaves room for a couple of frames past the part of a streamed body that the
+            // application has yet to read, so the remote waits while it falls behind.
+            long capacity = (long) largeMessageThreshold + 2L * Math.max(getParent().getProvider().getMaxFrameSize(), 512);
+            session.setIncomingCapacity((int) Math.min(Integer.MAX_VALUE, capacity));
+        } else {
+            session.setIncomingCapacity(Integer.MAX_VALUE);
+        }
         if (outgoingWindow >= 0) {
             session.setOutgoingWindow(outgoingWindow);
         }
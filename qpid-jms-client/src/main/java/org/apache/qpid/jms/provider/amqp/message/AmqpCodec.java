@@ -32,6 +32,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
+import org.apache.qpid.jms.message.JmsOutboundBodyStream;
 import org.apache.qpid.jms.provider.amqp.AmqpConsumer;
 import org.apache.qpid.jms.util.ContentTypeSupport;
 import org.apache.qpid.jms.util.InvalidContentTypeException;
@@ -53,18 +54,64 @@ import org.apache.qpid.proton.codec.EncoderImpl;
 import org.apache.qpid.proton.codec.WritableBuffer;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 
 /**
  * AMQP Codec class used to hide the details of encode / decode
  */
 public final class AmqpCodec {
 
+    // Encoding constants used to locate sections in the incoming bytes so that they
+    // can be referenced in place rather than copied out by the proton decoder.
+    private static final byte DESCRIBED_TYPE_INDICATOR = 0x00;
+    private static final byte SMALL_ULONG_TYPE = 0x53;
+    private static final byte APPLICATION_PROPERTIES_CODE = 0x74;
+    private static final byte DATA_SECTION_CODE = 0x75;
+    private static final byte AMQP_SEQUENCE_CODE = 0x76;
+    private static final byte AMQP_VALUE_CODE = 0x77;
+    private static final byte NULL_TYPE = 0x40;
+    private static final byte VBIN8_TYPE = (byte) 0xa0;
+    private static final byte VBIN32_TYPE = (byte) 0xb0;
+    private static final byte MAP8_TYPE = (byte) 0xc1;
+    private static final byte MAP32_TYPE = (byte) 0xd1;
+    private static final byte LIST0_TYPE = 0x45;
+    private static final byte LIST8_TYPE = (byte) 0xc0;
+    private static final byte LIST32_TYPE = (byte) 0xd0;
+    private static final byte HEADER_CODE = 0x70;
+    private static final byte ULONG_TYPE = (byte) 0x80;
+    private static final byte SYM8_TYPE = (byte) 0xa3;
+    private static final byte SYM32_TYPE = (byte) 0xb3;
+
+    // Symbolic descriptors of the message sections, in the order of their numeric codes.
+    private static final String[] SECTION_SYMBOLS = new String[] {
+        "amqp:header:list", "amqp:delivery-annotations:map", "amqp:message-annotations:map",
+        "amqp:properties:list", "amqp:application-properties:map", "amqp:data:binary",
+        "amqp:amqp-sequence:list", "amqp:amqp-value:*" };
+    private static final int MAX_SECTION_SYMBOL_LENGTH = 64;
+
+    /**
+     * Returned by {@link #findBodySection} when more bytes are needed to find the body.
+     */
+    public static final int BODY_SECTION_INCOMPLETE = -1;
+
+    /**
+     * Returned by {@link #findBodySection} when the message has no Data section body.
+     */
+    public static final int BODY_SECTION_NOT_DATA = -2;
+
+    // Allowance for the header, annotations, properties and section framing of a message
+    // when sizing the buffer it is encoded into.
+    private static final int ESTIMATED_SECTIONS_OVERHEAD = 256;
+
     private static class EncoderDecoderPair {
         DecoderImpl decoder = new DecoderImpl();
         EncoderImpl encoder = new EncoderImpl(decoder);
         {
             AMQPDefinedTypes.registerAllTypes(decoder, encoder);
         }
+
+        // Size of the last message encoded on this thread, used to size the next buffer
+        int lastEncodedSize = AmqpWritableBuffer.INITIAL_CAPACITY;
     }
 
     private static final ThreadLocal<EncoderDecoderPair> TLS_CODEC = new ThreadLocal<EncoderDecoderPair>() {
@@ -140,21 +187,29 @@ public final class AmqpCodec {
      * @param message
      *      the Message that is to be encoded into the wire level representation.
      *
+     * The returned buffer is taken from a pool, the caller must release it once the
+     * encoded bytes are no longer needed.
+     *
      * @return a buffer containing the wire level representation of the input Message.
      */
     public static ByteBuf encodeMessage(AmqpJmsMessageFacade message) {
-        AmqpWritableBuffer buffer = new AmqpWritableBuffer();
+        EncoderDecoderPair context = TLS_CODEC.get();
 
-        EncoderImpl encoder = getEncoder();
+        // Sections that were never decoded from an incoming message are written back
+        // as the original bytes rather than being decoded and then encoded again.
+        ByteBuf encodedApplicationProperties = message.getEncodedApplicationProperties();
+        ByteBuf encodedBody = message.getEncodedBody();
+
+        AmqpWritableBuffer buffer = new AmqpWritableBuffer(PooledByteBufAllocator.DEFAULT.heapBuffer(
+            estimateEncodedSize(context, message, encodedApplicationProperties, encodedBody)));
+
+        EncoderImpl encoder = context.encoder;
         encoder.setByteBuffer(buffer);
 
         Header header = message.getHeader();
         DeliveryAnnotations deliveryAnnotations = message.getDeliveryAnnotations();
         MessageAnnotations messageAnnotations = message.getMessageAnnotations();
         Properties properties = message.getProperties();
-        ApplicationProperties applicationProperties = message.getApplicationProperties();
-        Section body = message.getBody();
-        Footer footer = message.getFooter();
 
         if (header != null) {
             encoder.writeObject(header);
@@ -168,21 +223,77 @@ public final class AmqpCodec {
         if (properties != null) {
             encoder.writeObject(properties);
         }
-        if (applicationProperties != null) {
-            encoder.writeObject(applicationProperties);
+
+        if (encodedApplicationProperties != null) {
+            buffer.put(encodedApplicationProperties.duplicate());
+        } else {
+            ApplicationProperties applicationProperties = message.getApplicationProperties();
+            if (applicationProperties != null) {
+                encoder.writeObject(applicationProperties);
+            }
         }
-        if (body != null) {
-            encoder.writeObject(body);
+
+        JmsOutboundBodyStream bodyStream = null;
+        if (message instanceof AmqpJmsBytesMessageFacade) {
+            bodyStream = ((AmqpJmsBytesMessageFacade) message).getBodyStream();
         }
-        if (footer != null) {
-            encoder.writeObject(footer);
+
+        if (bodyStream != null) {
+            // Only the framing of a single Data section is written, its bytes follow as
+            // they are read from the stream while the message is sent.
+            buffer.put(DESCRIBED_TYPE_INDICATOR);
+            buffer.put(SMALL_ULONG_TYPE);
+            buffer.put(DATA_SECTION_CODE);
+            buffer.put(VBIN32_TYPE);
+            buffer.putInt((int) bodyStream.getLength());
+        } else if (encodedBody != null) {
+            buffer.put(encodedBody.duplicate());
+        } else {
+            Section body = message.getBody();
+            Footer footer = message.getFooter();
+
+            if (body != null) {
+                encoder.writeObject(body);
+            }
+            if (footer != null) {
+                encoder.writeObject(footer);
+            }
         }
 
         encoder.setByteBuffer((WritableBuffer) null);
 
+        context.lastEncodedSize = buffer.position();
+
         return buffer.getBuffer();
     }
 
+    /*
+     * Producers tend to send runs of similarly sized messages so the last size encoded
+     * on this thread is used as the starting point, raised to cover the body and any
+     * sections whose size is already known so the buffer need not be grown while encoding.
+     */
+    private static int estimateEncodedSize(EncoderDecoderPair context, AmqpJmsMessageFacade message, ByteBuf encodedApplicationProperties, ByteBuf encodedBody) {
+        int known = ESTIMATED_SECTIONS_OVERHEAD;
+
+        if (encodedApplicationProperties != null) {
+            known += encodedApplicationProperties.readableBytes();
+        }
+
+        if (encodedBody != null) {
+            known += encodedBody.readableBytes();
+        } else {
+            Section body = message.getBody();
+            if (body instanceof Data) {
+                Binary payload = ((Data) body).getValue();
+                if (payload != null) {
+                    known += payload.getLength();
+                }
+            }
+        }
+
+        return Math.max(known, context.lastEncodedSize);
+    }
+
     /**
      * Create a new JmsMessage and underlying JmsMessageFacade that represents the proper
      * message type for the incoming AMQP message.
@@ -190,13 +301,260 @@ public final class AmqpCodec {
      * @param consumer
      *        The AmqpConsumer instance that will be linked to the decoded message.
      * @param messageBytes
-     *        The the raw bytes that compose the incoming message. (Read-Only)
+     *        The the raw bytes that compose the incoming message. (Read-Only)  When the
+     *        bytes are array backed the decoded message body can refer directly to that
+     *        array, so the buffer must not be reused once decoded.
      *
      * @return a AmqpJmsMessageFacade instance decoded from the message bytes.
      *
      * @throws IOException if an error occurs while creating the message objects.
      */
     public static AmqpJmsMessageFacade decodeMessage(AmqpConsumer consumer, ByteBuf messageBytes) throws IOException {
+        AmqpJmsMessageFacade result = decodeMessage(consumer, messageBytes, null, false);
+        if (result == null) {
+            throw new IOException("Could not create a JMS message from incoming message");
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes an incoming message whose bytes were written out to a spill file, leaving a
+     * Data section body encoded in place so that it is only read from the file when the
+     * application accesses it.
+     *
+     * @param consumer
+     *        The AmqpConsumer instance that will be linked to the decoded message.
+     * @param messageBytes
+     *        The bytes of the message as mapped from the spill file.
+     *
+     * @return a AmqpJmsMessageFacade instance decoded from the message bytes.
+     *
+     * @throws IOException if an error occurs while creating the message objects.
+     */
+    public static AmqpJmsMessageFacade decodeSpilledMessage(AmqpConsumer consumer, ByteBuf messageBytes) throws IOException {
+        AmqpJmsMessageFacade result = decodeMessage(consumer, messageBytes, null, true);
+        if (result == null) {
+            throw new IOException("Could not create a JMS message from incoming message");
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds where the body of an incoming message starts when the body is made of Data
+     * sections, for a message whose body is to be streamed as it arrives.
+     *
+     * @param messageBytes
+     *        the bytes of the message received so far.
+     *
+     * @return the offset from the reader index of the first Data section, or one of
+     *         {@link #BODY_SECTION_INCOMPLETE} or {@link #BODY_SECTION_NOT_DATA}.
+     */
+    public static int findBodySection(ByteBuf messageBytes) {
+        final int start = messageBytes.readerIndex();
+        final int limit = messageBytes.writerIndex();
+
+        int position = start;
+
+        while (true) {
+            final int descriptorSize = getDescriptorSize(messageBytes, position, limit);
+            if (descriptorSize < 0) {
+                return descriptorSize;
+            }
+
+            final int code = getSectionCode(messageBytes, position);
+            if (code == DATA_SECTION_CODE) {
+                return position - start;
+            } else if (code < HEADER_CODE || code > APPLICATION_PROPERTIES_CODE) {
+                return BODY_SECTION_NOT_DATA;
+            }
+
+            // The sections before the body are all lists or maps, or null.
+            final int constructorPosition = position + descriptorSize;
+            if (limit - constructorPosition < 1) {
+                return BODY_SECTION_INCOMPLETE;
+            }
+
+            final byte constructor = messageBytes.getByte(constructorPosition);
+            long length;
+
+            if (constructor == NULL_TYPE || constructor == LIST0_TYPE) {
+                length = 1;
+            } else if (constructor == LIST8_TYPE || constructor == MAP8_TYPE) {
+                if (limit - constructorPosition < 2) {
+                    return BODY_SECTION_INCOMPLETE;
+                }
+                length = 2 + (messageBytes.getByte(constructorPosition + 1) & 0xFF);
+            } else if (constructor == LIST32_TYPE || constructor == MAP32_TYPE) {
+                if (limit - constructorPosition < 5) {
+                    return BODY_SECTION_INCOMPLETE;
+                }
+                length = 5 + messageBytes.getUnsignedInt(constructorPosition + 1);
+            } else {
+                return BODY_SECTION_NOT_DATA;
+            }
+
+            if (constructorPosition + length > Integer.MAX_VALUE) {
+                return BODY_SECTION_NOT_DATA;
+            }
+
+            position = constructorPosition + (int) length;
+        }
+    }
+
+    /**
+     * Finds where the value of the Data section found by {@link #findBodySection} starts,
+     * which is after the descriptor of the section.
+     *
+     * @param messageBytes
+     *        the bytes of the message received so far.
+     * @param sectionOffset
+     *        the offset from the reader index of the Data section.
+     *
+     * @return the offset from the reader index of the constructor of the section value.
+     */
+    public static int findBodyValue(ByteBuf messageBytes, int sectionOffset) {
+        final int position = messageBytes.readerIndex() + sectionOffset;
+        return sectionOffset + getDescriptorSize(messageBytes, position, messageBytes.writerIndex());
+    }
+
+    /**
+     * Returns the value of the Data section at the start of an encoded body so that it can
+     * be read in place, without decoding it into a new array.
+     *
+     * @param encodedBody
+     *        the encoded body and any footer that follows it.
+     *
+     * @return a slice holding the value of the Data section, or null if the body does not
+     *         start with a complete Data section.
+     */
+    static ByteBuf getDataSectionValue(ByteBuf encodedBody) {
+        final int start = encodedBody.readerIndex();
+        final int limit = encodedBody.writerIndex();
+
+        final int descriptorSize = getDescriptorSize(encodedBody, start, limit);
+        if (descriptorSize < 0 || getSectionCode(encodedBody, start) != DATA_SECTION_CODE) {
+            return null;
+        }
+
+        final int position = start + descriptorSize;
+        if (limit - position < 2) {
+            return null;
+        }
+
+        final byte constructor = encodedBody.getByte(position);
+        final int valueStart;
+        final long length;
+
+        if (constructor == VBIN8_TYPE) {
+            length = encodedBody.getByte(position + 1) & 0xFF;
+            valueStart = position + 2;
+        } else if (constructor == VBIN32_TYPE && limit - position >= 5) {
+            length = encodedBody.getUnsignedInt(position + 1);
+            valueStart = position + 5;
+        } else {
+            return null;
+        }
+
+        if (length > limit - valueStart) {
+            return null;
+        }
+
+        return encodedBody.slice(valueStart, (int) length);
+    }
+
+    /*
+     * Returns the size of the section descriptor at the given position, which is one of
+     * the small ulong, ulong or symbol encodings, or one of the BODY_SECTION values.
+     */
+    private static int getDescriptorSize(ByteBuf messageBytes, int position, int limit) {
+        if (limit - position < 3) {
+            return BODY_SECTION_INCOMPLETE;
+        }
+
+        if (messageBytes.getByte(position) != DESCRIBED_TYPE_INDICATOR) {
+            return BODY_SECTION_NOT_DATA;
+        }
+
+        final int size;
+        switch (messageBytes.getByte(position + 1)) {
+            case SMALL_ULONG_TYPE:
+                size = 3;
+                break;
+            case ULONG_TYPE:
+                size = 10;
+                break;
+            case SYM8_TYPE:
+                size = 3 + (messageBytes.getByte(position + 2) & 0xFF);
+                break;
+            case SYM32_TYPE:
+                if (limit - position < 6) {
+                    return BODY_SECTION_INCOMPLETE;
+                }
+                long symbolLength = messageBytes.getUnsignedInt(position + 2);
+                if (symbolLength > MAX_SECTION_SYMBOL_LENGTH) {
+                    return BODY_SECTION_NOT_DATA;
+                }
+                size = 6 + (int) symbolLength;
+                break;
+            default:
+                return BODY_SECTION_NOT_DATA;
+        }
+
+        return limit - position < size ? BODY_SECTION_INCOMPLETE : size;
+    }
+
+    /*
+     * Returns the code of the section whose complete descriptor is at the given position,
+     * mapping a symbolic descriptor to its numeric code, or -1 if it is not a section.
+     */
+    private static int getSectionCode(ByteBuf messageBytes, int position) {
+        final byte type = messageBytes.getByte(position + 1);
+        if (type == SMALL_ULONG_TYPE) {
+            return messageBytes.getByte(position + 2);
+        } else if (type == ULONG_TYPE) {
+            long code = messageBytes.getLong(position + 2);
+            return code >= HEADER_CODE && code <= AMQP_VALUE_CODE ? (int) code : -1;
+        }
+
+        final int symbolStart = type == SYM8_TYPE ? position + 3 : position + 6;
+        final int symbolLength = type == SYM8_TYPE ?
+            messageBytes.getByte(position + 2) & 0xFF : (int) messageBytes.getUnsignedInt(position + 2);
+        final String symbol = messageBytes.toString(symbolStart, symbolLength, StandardCharsets.US_ASCII);
+
+        for (int i = 0; i < SECTION_SYMBOLS.length; ++i) {
+            if (SECTION_SYMBOLS[i].equals(symbol)) {
+                return HEADER_CODE + i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Creates the facade for an incoming message whose body is to be streamed as it
+     * arrives, from the sections that come before the body.
+     *
+     * @param consumer
+     *        The AmqpConsumer instance that will be linked to the decoded message.
+     * @param prefixBytes
+     *        The bytes of the sections that come before the body.
+     *
+     * @return the facade for the message, or null if it would not be a BytesMessage.
+     *
+     * @throws IOException if an error occurs while creating the message objects.
+     */
+    public static AmqpJmsBytesMessageFacade decodeStreamedMessage(AmqpConsumer consumer, ByteBuf prefixBytes) throws IOException {
+        AmqpJmsMessageFacade result = decodeMessage(consumer, prefixBytes, new Data(null), false);
+        if (result instanceof AmqpJmsBytesMessageFacade) {
+            return (AmqpJmsBytesMessageFacade) result;
+        }
+
+        return null;
+    }
+
+    private static AmqpJmsMessageFacade decodeMessage(AmqpConsumer consumer, ByteBuf messageBytes, Section bodyType, boolean spilled) throws IOException {
 
         DecoderImpl decoder = getDecoder();
         ByteBuffer buffer = messageBytes.nioBuffer();
@@ -211,14 +569,22 @@ public final class AmqpCodec {
         Footer footer = null;
         Section section = null;
 
+        ByteBuf encodedApplicationProperties = null;
+        ByteBuf encodedBody = null;
+
+        // In lazy mode the application properties are always left encoded, the body and
+        // footer only once the message annotations show the facade type without them.
+        final boolean lazy = consumer.isLazyDecoding();
+        boolean lazyBody = false;
+
         if (buffer.hasRemaining()) {
-            section = (Section) decoder.readObject();
+            section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
         }
 
         if (section instanceof Header) {
             header = (Header) section;
             if (buffer.hasRemaining()) {
-                section = (Section) decoder.readObject();
+                section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
             } else {
                 section = null;
             }
@@ -228,7 +594,7 @@ public final class AmqpCodec {
             deliveryAnnotations = (DeliveryAnnotations) section;
 
             if (buffer.hasRemaining()) {
-                section = (Section) decoder.readObject();
+                section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
             } else {
                 section = null;
             }
@@ -236,9 +602,10 @@ public final class AmqpCodec {
         }
         if (section instanceof MessageAnnotations) {
             messageAnnotations = (MessageAnnotations) section;
+            lazyBody = lazy && AmqpMessageSupport.getMessageAnnotation(JMS_MSG_TYPE, messageAnnotations) != null;
 
             if (buffer.hasRemaining()) {
-                section = (Section) decoder.readObject();
+                section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
             } else {
                 section = null;
             }
@@ -248,7 +615,17 @@ public final class AmqpCodec {
             properties = (Properties) section;
 
             if (buffer.hasRemaining()) {
-                section = (Section) decoder.readObject();
+                section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
+            } else {
+                section = null;
+            }
+
+        }
+        if (section instanceof EncodedSection && ((EncodedSection) section).isApplicationProperties()) {
+            encodedApplicationProperties = ((EncodedSection) section).getEncoded();
+
+            if (buffer.hasRemaining()) {
+                section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
             } else {
                 section = null;
             }
@@ -258,17 +635,25 @@ public final class AmqpCodec {
             applicationProperties = (ApplicationProperties) section;
 
             if (buffer.hasRemaining()) {
-                section = (Section) decoder.readObject();
+                section = readSection(decoder, buffer, messageBytes, lazy, lazyBody, spilled);
             } else {
                 section = null;
             }
 
         }
+        if (section instanceof EncodedSection) {
+            // Holds the body and any footer that follows it.
+            encodedBody = ((EncodedSection) section).getEncoded();
+            if (bodyType == null && ((EncodedSection) section).isData()) {
+                bodyType = new Data(null);
+            }
+            section = null;
+        }
         if (section != null && !(section instanceof Footer)) {
             body = section;
 
             if (buffer.hasRemaining()) {
-                section = (Section) decoder.readObject();
+                section = readSection(decoder, buffer, messageBytes, false, false, false);
             } else {
                 section = null;
             }
@@ -285,7 +670,7 @@ public final class AmqpCodec {
         AmqpJmsMessageFacade result = createFromMsgAnnotation(messageAnnotations);
         if (result == null) {
             // Next, match specific section structures and content types
-            result = createWithoutAnnotation(body, properties);
+            result = createWithoutAnnotation(bodyType != null ? bodyType : body, properties);
         }
 
         if (result != null) {
@@ -293,15 +678,132 @@ public final class AmqpCodec {
             result.setDeliveryAnnotations(deliveryAnnotations);
             result.setMessageAnnotations(messageAnnotations);
             result.setProperties(properties);
-            result.setApplicationProperties(applicationProperties);
-            result.setBody(body);
-            result.setFooter(footer);
+            if (encodedApplicationProperties != null) {
+                result.setEncodedApplicationProperties(encodedApplicationProperties);
+            } else {
+                result.setApplicationProperties(applicationProperties);
+            }
+            if (encodedBody != null) {
+                result.setEncodedBody(encodedBody);
+            } else {
+                result.setBody(body);
+                result.setFooter(footer);
+            }
             result.initialize(consumer);
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes the body section and any footer that follows it from the given bytes and
+     * applies them to the given message facade.
+     *
+     * @param facade
+     *        the message facade that the decoded sections are applied to.
+     * @param encoded
+     *        the encoded body and footer sections.
+     */
+    static void decodeBody(AmqpJmsMessageFacade facade, ByteBuf encoded) {
+        DecoderImpl decoder = getDecoder();
+        ByteBuffer buffer = encoded.nioBuffer();
+        decoder.setByteBuffer(buffer);
+
+        try {
+            Section section = readSection(decoder, buffer);
+
+            if (section != null && !(section instanceof Footer)) {
+                facade.setBody(section);
+
+                if (buffer.hasRemaining()) {
+                    section = readSection(decoder, buffer);
+                } else {
+                    section = null;
+                }
+            }
 
-            return result;
+            if (section instanceof Footer) {
+                facade.setFooter((Footer) section);
+            }
+        } finally {
+            decoder.setByteBuffer(null);
         }
+    }
+
+    private static Section readSection(DecoderImpl decoder, ByteBuffer buffer, ByteBuf messageBytes, boolean lazy, boolean lazyBody, boolean lazyData) {
+        if ((lazy || lazyData) && buffer.remaining() > 3 &&
+            buffer.get(buffer.position()) == DESCRIBED_TYPE_INDICATOR &&
+            buffer.get(buffer.position() + 1) == SMALL_ULONG_TYPE) {
+
+            final int position = buffer.position();
+            final byte code = buffer.get(position + 2);
+
+            int length = -1;
 
-        throw new IOException("Could not create a JMS message from incoming message");
+            if (lazy && code == APPLICATION_PROPERTIES_CODE) {
+                length = getEncodedMapSectionLength(buffer);
+            } else if ((lazyBody && (code == DATA_SECTION_CODE || code == AMQP_SEQUENCE_CODE || code == AMQP_VALUE_CODE)) ||
+                       (lazyData && code == DATA_SECTION_CODE)) {
+                // The body and anything that follows it are kept together.
+                length = buffer.remaining();
+            }
+
+            if (length > 0) {
+                buffer.position(position + length);
+                return new EncodedSection(code, messageBytes.slice(messageBytes.readerIndex() + position, length));
+            }
+        }
+
+        return readSection(decoder, buffer);
+    }
+
+    private static int getEncodedMapSectionLength(ByteBuffer buffer) {
+        final int position = buffer.position();
+        final byte constructor = buffer.get(position + 3);
+
+        int length = -1;
+
+        if (constructor == NULL_TYPE) {
+            length = 4;
+        } else if (constructor == MAP8_TYPE && buffer.remaining() > 4) {
+            length = 5 + (buffer.get(position + 4) & 0xFF);
+        } else if (constructor == MAP32_TYPE && buffer.remaining() > 7) {
+            length = 8 + buffer.getInt(position + 4);
+        }
+
+        return length <= buffer.remaining() ? length : -1;
+    }
+
+    private static Section readSection(DecoderImpl decoder, ByteBuffer buffer) {
+        // A Data section's binary payload is sliced from the incoming bytes, any other
+        // section or a non-array backed buffer is left to the proton decoder.
+        if (buffer.hasArray() && buffer.remaining() > 4) {
+            final int position = buffer.position();
+
+            if (buffer.get(position) == DESCRIBED_TYPE_INDICATOR &&
+                buffer.get(position + 1) == SMALL_ULONG_TYPE &&
+                buffer.get(position + 2) == DATA_SECTION_CODE) {
+
+                int length = -1;
+                int offset = 0;
+
+                byte constructor = buffer.get(position + 3);
+                if (constructor == VBIN8_TYPE) {
+                    length = buffer.get(position + 4) & 0xFF;
+                    offset = position + 5;
+                } else if (constructor == VBIN32_TYPE && buffer.remaining() >= 8) {
+                    length = buffer.getInt(position + 4);
+                    offset = position + 8;
+                }
+
+                if (length >= 0 && offset + length <= buffer.limit()) {
+                    buffer.position(offset + length);
+                    return new Data(new Binary(buffer.array(), buffer.arrayOffset() + offset, length));
+                }
+            }
+        }
+
+        return (Section) decoder.readObject();
     }
 
     private static AmqpJmsMessageFacade createFromMsgAnnotation(MessageAnnotations messageAnnotations) throws IOException {
@@ -384,4 +886,29 @@ public final class AmqpCodec {
 
         return null;
     }
+
+    //----- Lazily decoded section placeholder -------------------------------//
+
+    private static final class EncodedSection implements Section {
+
+        private final byte code;
+        private final ByteBuf encoded;
+
+        public EncodedSection(byte code, ByteBuf encoded) {
+            this.code = code;
+            this.encoded = encoded;
+        }
+
+        public boolean isApplicationProperties() {
+            return code == APPLICATION_PROPERTIES_CODE;
+        }
+
+        public boolean isData() {
+            return code == DATA_SECTION_CODE;
+        }
+
+        public ByteBuf getEncoded() {
+            return encoded;
+        }
+    }
 }
@@ -27,6 +27,7 @@ import javax.jms.IllegalStateException;
 import javax.jms.JMSException;
 
 import org.apache.qpid.jms.message.JmsBytesMessage;
+import org.apache.qpid.jms.message.JmsOutboundBodyStream;
 import org.apache.qpid.jms.message.facade.JmsBytesMessageFacade;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
@@ -49,6 +50,8 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
 
     private transient ByteBufInputStream bytesIn;
     private transient ByteBufOutputStream bytesOut;
+    private transient JmsOutboundBodyStream bodyStream;
+    private transient AmqpStreamedBody streamedBody;
 
     @Override
     protected void initializeEmptyBody() {
@@ -62,12 +65,21 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
         AmqpJmsBytesMessageFacade copy = new AmqpJmsBytesMessageFacade();
         copyInto(copy);
 
-        Binary payload = getBinaryFromBody();
+        // A streamed body can only be read once, the copy shares it rather than reading
+        // it all into memory.
+        copy.bodyStream = bodyStream;
+        copy.streamedBody = streamedBody;
+
         copy.setContentType(OCTET_STREAM_CONTENT_TYPE);
-        if (payload.getLength() > 0) {
-            copy.setBody(new Data(payload));
-        } else {
-            copy.setBody(EMPTY_BODY);
+
+        // A data body still encoded, such as one left in a spill file, is already shared.
+        if (getEncodedData() == null) {
+            Binary payload = getBinaryFromBody();
+            if (payload.getLength() > 0) {
+                copy.setBody(new Data(payload));
+            } else {
+                copy.setBody(EMPTY_BODY);
+            }
         }
 
         return copy;
@@ -96,6 +108,12 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
             bytesOut = null;
         }
 
+        if (streamedBody != null) {
+            streamedBody.close();
+            streamedBody = null;
+        }
+
+        bodyStream = null;
         setBody(EMPTY_BODY);
     }
 
@@ -105,11 +123,24 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
             throw new IllegalStateException("Body is being written to, cannot perform a read.");
         }
 
+        if (bodyStream != null) {
+            throw new IllegalStateException("Body is supplied by a stream for sending, cannot perform a read.");
+        }
+
+        if (streamedBody != null) {
+            return streamedBody;
+        }
+
         if (bytesIn == null) {
-            Binary body = getBinaryFromBody();
-            // Duplicate the content buffer to allow for getBodyLength() validity.
-            bytesIn = new ByteBufInputStream(
-                Unpooled.wrappedBuffer(body.getArray(), body.getArrayOffset(), body.getLength()));
+            ByteBuf encodedData = getEncodedData();
+            if (encodedData != null) {
+                bytesIn = new ByteBufInputStream(encodedData);
+            } else {
+                Binary body = getBinaryFromBody();
+                // Duplicate the content buffer to allow for getBodyLength() validity.
+                bytesIn = new ByteBufInputStream(
+                    Unpooled.wrappedBuffer(body.getArray(), body.getArrayOffset(), body.getLength()));
+            }
         }
 
         return bytesIn;
@@ -123,6 +154,7 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
 
         if (bytesOut == null) {
             bytesOut = new ByteBufOutputStream(Unpooled.buffer());
+            bodyStream = null;
             setBody(EMPTY_BODY);
         }
 
@@ -151,9 +183,68 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
 
     @Override
     public int getBodyLength() {
+        if (bodyStream != null) {
+            return (int) Math.min(Integer.MAX_VALUE, bodyStream.getLength());
+        } else if (streamedBody != null) {
+            return (int) Math.min(Integer.MAX_VALUE, streamedBody.getLength());
+        }
+
+        ByteBuf encodedData = getEncodedData();
+        if (encodedData != null) {
+            return encodedData.readableBytes();
+        }
+
         return getBinaryFromBody().getLength();
     }
 
+    @Override
+    public void setBodyStream(JmsOutboundBodyStream bodyStream) {
+        clearBody();
+        this.bodyStream = bodyStream;
+    }
+
+    @Override
+    public JmsOutboundBodyStream getBodyStream() {
+        return bodyStream;
+    }
+
+    /**
+     * Makes the body of this incoming message the given stream, which is read as the rest
+     * of the message arrives.
+     *
+     * @param streamedBody
+     *      the stream the body is read from.
+     */
+    public void setStreamedBody(AmqpStreamedBody streamedBody) {
+        this.streamedBody = streamedBody;
+        setBody(EMPTY_BODY);
+    }
+
+    /**
+     * @return the stream the body of this incoming message is read from, or null if the
+     *         whole message was received before it was dispatched.
+     */
+    public AmqpStreamedBody getStreamedBody() {
+        return streamedBody;
+    }
+
+    @Override
+    public void releaseStreamedBody() {
+        AmqpStreamedBody body = streamedBody;
+        if (body != null && !body.isComplete()) {
+            body.close();
+        }
+    }
+
+    /*
+     * Returns the value of a Data body that is still encoded, such as one left in a spill
+     * file, so that it is read in place rather than decoded into memory.
+     */
+    private ByteBuf getEncodedData() {
+        ByteBuf encodedBody = getEncodedBody();
+        return encodedBody != null ? AmqpCodec.getDataSectionValue(encodedBody) : null;
+    }
+
     /**
      * Get the underlying Binary object from the body, or
      * {@link EMPTY_BINARY} if there is none. Never returns null.
@@ -194,11 +285,20 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
 
     @Override
     public boolean hasBody() {
-        if (bytesOut != null) {
+        if (bodyStream != null) {
+            return bodyStream.getLength() > 0;
+        } else if (streamedBody != null) {
+            return streamedBody.getLength() > 0;
+        } else if (bytesOut != null) {
             return bytesOut.writtenBytes() > 0;
-        } else {
-            return getBinaryFromBody().getLength() != 0;
         }
+
+        ByteBuf encodedData = getEncodedData();
+        if (encodedData != null) {
+            return encodedData.isReadable();
+        }
+
+        return getBinaryFromBody().getLength() != 0;
     }
 
     @Override
@@ -208,6 +308,21 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
 
     @Override
     public byte[] copyBody() {
+        if (bodyStream != null) {
+            throw new java.lang.IllegalStateException("Body is supplied by a stream for sending and cannot be copied");
+        }
+
+        if (streamedBody != null) {
+            return readStreamedBody();
+        }
+
+        ByteBuf encodedData = getEncodedData();
+        if (encodedData != null) {
+            byte[] result = new byte[encodedData.readableBytes()];
+            encodedData.getBytes(encodedData.readerIndex(), result);
+            return result;
+        }
+
         Binary content = getBinaryFromBody();
         byte[] result = new byte[content.getLength()];
 
@@ -216,10 +331,39 @@ public class AmqpJmsBytesMessageFacade extends AmqpJmsMessageFacade implements J
         return result;
     }
 
+    /*
+     * Reads what is left of a streamed body into memory, for when the application asks
+     * for the whole body at once.
+     */
+    private byte[] readStreamedBody() {
+        ByteBufOutputStream remaining = new ByteBufOutputStream(Unpooled.buffer());
+        byte[] chunk = new byte[8192];
+
+        try {
+            int count;
+            while ((count = streamedBody.read(chunk)) >= 0) {
+                remaining.write(chunk, 0, count);
+            }
+        } catch (IOException e) {
+            throw new java.lang.IllegalStateException("Failed to read the streamed message body", e);
+        }
+
+        ByteBuf buffer = remaining.buffer();
+        byte[] result = new byte[buffer.readableBytes()];
+        buffer.readBytes(result);
+
+        return result;
+    }
+
     @Override
     public void onSend(long producerTtl) throws JMSException {
         super.onSend(producerTtl);
 
         reset();
+
+        // A received message that is sent on passes along the rest of its streamed body.
+        if (streamedBody != null && bodyStream == null) {
+            bodyStream = new JmsOutboundBodyStream(streamedBody, streamedBody.getLength());
+        }
     }
 }
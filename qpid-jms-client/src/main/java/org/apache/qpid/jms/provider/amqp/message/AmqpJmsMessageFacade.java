@@ -65,6 +65,17 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     private Map<Symbol, Object> deliveryAnnotationsMap;
     private Map<Symbol, Object> footerMap;
 
+    // True when the sections below may be referenced by a copy of this message.
+    private boolean sectionsShared;
+
+    // Sections of an incoming message left in their encoded form until first used.
+    private ByteBuf encodedApplicationProperties;
+    private ByteBuf encodedBody;
+
+    // The JMSMessageID form of the message-id, created when first asked for.
+    private Object messageIdObject;
+    private String messageIdString;
+
     private JmsDestination replyTo;
     private JmsDestination destination;
     private JmsDestination consumerDestination;
@@ -145,6 +156,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             lazyCreateProperties();
         }
 
+        unshareSections();
         properties.setContentType(Symbol.valueOf(value));
     }
 
@@ -154,6 +166,8 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     }
 
     public boolean applicationPropertyExists(String key) throws JMSException {
+        decodeApplicationProperties();
+
         if (applicationPropertiesMap != null) {
             return applicationPropertiesMap.containsKey(key);
         }
@@ -174,6 +188,8 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     }
 
     public Set<String> getApplicationPropertyNames(Set<String> propertyNames) {
+        decodeApplicationProperties();
+
         if (applicationPropertiesMap != null) {
             propertyNames.addAll(applicationPropertiesMap.keySet());
         }
@@ -187,6 +203,8 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     }
 
     public Object getApplicationProperty(String key) throws JMSException {
+        decodeApplicationProperties();
+
         if (applicationPropertiesMap != null) {
             return applicationPropertiesMap.get(key);
         }
@@ -204,6 +222,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     }
 
     public void setApplicationProperty(String key, Object value) throws JMSException {
+        decodeApplicationProperties();
         lazyCreateApplicationProperties();
         applicationPropertiesMap.put(key, value);
     }
@@ -271,47 +290,29 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
 
         target.setAmqpHeader(header);
 
-        if (properties != null) {
-            Properties targetProperties = new Properties();
-
-            targetProperties.setMessageId(properties.getMessageId());
-            targetProperties.setUserId(properties.getUserId());
-            targetProperties.setTo(properties.getTo());
-            targetProperties.setSubject(properties.getSubject());
-            targetProperties.setReplyTo(properties.getReplyTo());
-            targetProperties.setCorrelationId(properties.getCorrelationId());
-            targetProperties.setContentType(properties.getContentType());
-            targetProperties.setContentEncoding(properties.getContentEncoding());
-            targetProperties.setAbsoluteExpiryTime(properties.getAbsoluteExpiryTime());
-            targetProperties.setCreationTime(properties.getCreationTime());
-            targetProperties.setGroupId(properties.getGroupId());
-            targetProperties.setGroupSequence(properties.getGroupSequence());
-            targetProperties.setReplyToGroupId(properties.getReplyToGroupId());
-
-            target.setProperties(targetProperties);
-        }
-
-        target.setBody(body);
-
-        if (deliveryAnnotationsMap != null) {
-            target.lazyCreateDeliveryAnnotations();
-            target.deliveryAnnotationsMap.putAll(deliveryAnnotationsMap);
+        // A body that was never decoded is shared as it is, each message decodes its own
+        // sections from it if they are accessed.
+        if (encodedBody != null) {
+            target.setEncodedBody(encodedBody);
+        } else {
+            target.setBody(getBody());
         }
 
-        if (applicationPropertiesMap != null) {
-            target.lazyCreateApplicationProperties();
-            target.applicationPropertiesMap.putAll(applicationPropertiesMap);
-        }
+        // The properties and the annotation, application property and footer maps are
+        // shared with the copy, whichever of the two is modified first takes its own copy.
+        target.properties = properties;
+        target.deliveryAnnotationsMap = deliveryAnnotationsMap;
+        target.messageAnnotationsMap = messageAnnotationsMap;
+        target.footerMap = footerMap;
 
-        if (messageAnnotationsMap != null) {
-            target.lazyCreateMessageAnnotations();
-            target.messageAnnotationsMap.putAll(messageAnnotationsMap);
+        if (encodedApplicationProperties != null) {
+            target.encodedApplicationProperties = encodedApplicationProperties;
+        } else {
+            target.applicationPropertiesMap = applicationPropertiesMap;
         }
 
-        if (footerMap != null) {
-            target.lazyCreateFooter();
-            target.footerMap.putAll(footerMap);
-        }
+        sectionsShared = true;
+        target.sectionsShared = true;
     }
 
     @Override
@@ -322,7 +323,12 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             underlying = properties.getMessageId();
         }
 
-        return AmqpMessageIdHelper.INSTANCE.toMessageIdString(underlying);
+        if (underlying != messageIdObject || messageIdString == null) {
+            messageIdString = AmqpMessageIdHelper.INSTANCE.toMessageIdString(underlying);
+            messageIdObject = underlying;
+        }
+
+        return messageIdString;
     }
 
     @Override
@@ -340,6 +346,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             lazyCreateProperties();
         }
 
+        unshareSections();
         properties.setMessageId(messageId);
     }
 
@@ -355,6 +362,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             lazyCreateProperties();
         }
 
+        unshareSections();
         properties.setMessageId(value);
     }
 
@@ -380,6 +388,8 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             lazyCreateProperties();
         }
 
+        unshareSections();
+
         if (timestamp == 0) {
             properties.setCreationTime(null);
         } else {
@@ -417,6 +427,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             lazyCreateProperties();
         }
 
+        unshareSections();
         properties.setCorrelationId(idObject);
     }
 
@@ -459,6 +470,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             lazyCreateProperties();
         }
 
+        unshareSections();
         properties.setCorrelationId(binaryIdValue);
     }
 
@@ -526,6 +538,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             properties.setSubject(type);
         } else {
             if (properties != null) {
+                unshareSections();
                 properties.setSubject(null);
             }
         }
@@ -653,6 +666,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             properties.setReplyToGroupId(replyToGroupId);
         } else {
             if (properties != null) {
+                unshareSections();
                 properties.setReplyToGroupId(null);
             }
         }
@@ -689,6 +703,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
 
         if (bytes == null) {
             if (properties != null) {
+                unshareSections();
                 properties.setUserId(null);
             }
         } else {
@@ -713,6 +728,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     public void setUserIdBytes(byte[] userId) {
         if (userId == null || userId.length == 0) {
             if (properties != null) {
+                unshareSections();
                 properties.setUserId(null);
             }
         } else {
@@ -739,6 +755,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             properties.setGroupId(groupId);
         } else {
             if (properties != null) {
+                unshareSections();
                 properties.setGroupId(null);
             }
         }
@@ -765,6 +782,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             properties.setGroupSequence(UnsignedInteger.valueOf(groupSequence));
         } else {
             if (properties != null) {
+                unshareSections();
                 properties.setGroupSequence(null);
             }
         }
@@ -772,7 +790,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
 
     @Override
     public boolean hasBody() {
-        return body != null;
+        return getBody() != null;
     }
 
     /**
@@ -832,6 +850,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             return;
         }
 
+        unshareSections();
         messageAnnotationsMap.remove(AmqpMessageSupport.getSymbol(key));
     }
 
@@ -861,6 +880,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
      */
     void clearAllApplicationProperties() {
         applicationPropertiesMap = null;
+        encodedApplicationProperties = null;
     }
 
     String getToAddress() {
@@ -877,6 +897,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             properties.setTo(address);
         } else {
             if (properties != null) {
+                unshareSections();
                 properties.setTo(null);
             }
         }
@@ -896,6 +917,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
             properties.setReplyTo(address);
         } else {
             if (properties != null) {
+                unshareSections();
                 properties.setReplyTo(null);
             }
         }
@@ -941,13 +963,26 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     }
 
     Section getBody() {
+        decodeBody();
         return body;
     }
 
     void setBody(Section body) {
+        // Any footer that was encoded along with the body must be retained.
+        decodeBody();
         this.body = body;
     }
 
+    ByteBuf getEncodedBody() {
+        return encodedBody;
+    }
+
+    void setEncodedBody(ByteBuf encodedBody) {
+        this.body = null;
+        this.footerMap = null;
+        this.encodedBody = encodedBody;
+    }
+
     MessageAnnotations getMessageAnnotations() {
         MessageAnnotations result = null;
         if (messageAnnotationsMap != null && !messageAnnotationsMap.isEmpty()) {
@@ -979,6 +1014,8 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     }
 
     ApplicationProperties getApplicationProperties() {
+        decodeApplicationProperties();
+
         ApplicationProperties result = null;
         if (applicationPropertiesMap != null && !applicationPropertiesMap.isEmpty()) {
             result = new ApplicationProperties(applicationPropertiesMap);
@@ -988,12 +1025,25 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
 
     @SuppressWarnings("unchecked")
     void setApplicationProperties(ApplicationProperties applicationProperties) {
+        this.encodedApplicationProperties = null;
+
         if (applicationProperties != null) {
             this.applicationPropertiesMap = applicationProperties.getValue();
         }
     }
 
+    ByteBuf getEncodedApplicationProperties() {
+        return encodedApplicationProperties;
+    }
+
+    void setEncodedApplicationProperties(ByteBuf encodedApplicationProperties) {
+        this.applicationPropertiesMap = null;
+        this.encodedApplicationProperties = encodedApplicationProperties;
+    }
+
     Footer getFooter() {
+        decodeBody();
+
         Footer result = null;
         if (footerMap != null && !footerMap.isEmpty()) {
             result = new Footer(footerMap);
@@ -1003,6 +1053,8 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
 
     @SuppressWarnings("unchecked")
     void setFooter(Footer footer) {
+        decodeBody();
+
         if (footer != null) {
             this.footerMap = footer.getValue();
         }
@@ -1034,6 +1086,7 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
     private void setAbsoluteExpiryTime(Long expiration) {
         if (expiration == null || expiration == 0l) {
             if (properties != null) {
+                unshareSections();
                 properties.setAbsoluteExpiryTime(null);
             }
         } else {
@@ -1042,31 +1095,94 @@ public class AmqpJmsMessageFacade implements JmsMessageFacade {
         }
     }
 
+    private void decodeApplicationProperties() {
+        if (encodedApplicationProperties != null) {
+            ByteBuf encoded = encodedApplicationProperties;
+            encodedApplicationProperties = null;
+            setApplicationProperties((ApplicationProperties) AmqpCodec.decode(encoded));
+        }
+    }
+
+    private void decodeBody() {
+        if (encodedBody != null) {
+            ByteBuf encoded = encodedBody;
+            encodedBody = null;
+            AmqpCodec.decodeBody(this, encoded);
+        }
+    }
+
+    private void unshareSections() {
+        if (sectionsShared) {
+            sectionsShared = false;
+
+            if (properties != null) {
+                Properties copy = new Properties();
+
+                copy.setMessageId(properties.getMessageId());
+                copy.setUserId(properties.getUserId());
+                copy.setTo(properties.getTo());
+                copy.setSubject(properties.getSubject());
+                copy.setReplyTo(properties.getReplyTo());
+                copy.setCorrelationId(properties.getCorrelationId());
+                copy.setContentType(properties.getContentType());
+                copy.setContentEncoding(properties.getContentEncoding());
+                copy.setAbsoluteExpiryTime(properties.getAbsoluteExpiryTime());
+                copy.setCreationTime(properties.getCreationTime());
+                copy.setGroupId(properties.getGroupId());
+                copy.setGroupSequence(properties.getGroupSequence());
+                copy.setReplyToGroupId(properties.getReplyToGroupId());
+
+                properties = copy;
+            }
+
+            if (deliveryAnnotationsMap != null) {
+                deliveryAnnotationsMap = new HashMap<Symbol, Object>(deliveryAnnotationsMap);
+            }
+
+            if (messageAnnotationsMap != null) {
+                messageAnnotationsMap = new HashMap<Symbol, Object>(messageAnnotationsMap);
+            }
+
+            if (applicationPropertiesMap != null) {
+                applicationPropertiesMap = new HashMap<String, Object>(applicationPropertiesMap);
+            }
+
+            if (footerMap != null) {
+                footerMap = new HashMap<Symbol, Object>(footerMap);
+            }
+        }
+    }
+
     private void lazyCreateProperties() {
+        unshareSections();
         if (properties == null) {
             properties = new Properties();
         }
     }
 
     private void lazyCreateMessageAnnotations() {
+        unshareSections();
         if (messageAnnotationsMap == null) {
             messageAnnotationsMap = new HashMap<Symbol, Object>();
         }
     }
 
     private void lazyCreateDeliveryAnnotations() {
+        unshareSections();
         if (deliveryAnnotationsMap == null) {
             deliveryAnnotationsMap = new HashMap<Symbol, Object>();
         }
     }
 
     private void lazyCreateApplicationProperties() {
+        unshareSections();
         if (applicationPropertiesMap == null) {
             applicationPropertiesMap = new HashMap<String, Object>();
         }
     }
 
     private void lazyCreateFooter() {
+        unshareSections();
         if (footerMap == null) {
             footerMap = new HashMap<Symbol, Object>();
         }
@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The body of a large incoming message that is read by the application while the rest of
+ * the message is still arriving.
+ * <p>
+ * The consumer hands over the encoded bytes of the body sections as it receives them, and
+ * the Data section framing is stripped so that the stream reads only the body bytes.  No
+ * more bytes than the stream's capacity are held at once.  The consumer leaves the rest
+ * in the incoming session window until the application has read enough to make room, and
+ * is told when that happens through the task it gives.  Any section after the Data
+ * sections, such as a footer, is skipped.
+ */
+public class AmqpStreamedBody extends InputStream {
+
+    private static final byte DESCRIBED_TYPE_INDICATOR = 0x00;
+    private static final byte SMALL_ULONG_TYPE = 0x53;
+    private static final byte ULONG_TYPE = (byte) 0x80;
+    private static final byte SYM8_TYPE = (byte) 0xa3;
+    private static final byte DATA_SECTION_CODE = 0x75;
+    private static final byte VBIN8_TYPE = (byte) 0xa0;
+    private static final byte VBIN32_TYPE = (byte) 0xb0;
+    private static final byte[] DATA_SECTION_SYMBOL = "amqp:data:binary".getBytes(StandardCharsets.US_ASCII);
+
+    private final long length;
+    private final int capacity;
+    private final Runnable onSpace;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readable = lock.newCondition();
+    private final Deque<Segment> segments = new ArrayDeque<Segment>();
+
+    private int buffered;
+    private boolean waiting;
+    private boolean complete;
+    private boolean closed;
+    private Throwable failure;
+
+    // Section framing state, only touched by the consumer.
+    private final byte[] header = new byte[3 + DATA_SECTION_SYMBOL.length + 5];
+    private int headerSize;
+    private long sectionRemaining;
+    private boolean skipping;
+
+    /**
+     * @param length
+     *      the length declared by the first Data section of the body.
+     * @param capacity
+     *      the most body bytes to hold before the application reads them.
+     * @param onSpace
+     *      run by the reading thread when room has been made after the stream was full.
+     */
+    public AmqpStreamedBody(long length, int capacity, Runnable onSpace) {
+        this.length = length;
+        this.capacity = Math.max(1, capacity);
+        this.onSpace = onSpace;
+    }
+
+    /**
+     * @return the length declared by the first Data section of the body, which is the
+     *         length of the whole body unless the sender split it over several sections.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    //----- Consumer side ----------------------------------------------------//
+
+    /**
+     * Returns how many more encoded bytes the consumer may hand over now, which is
+     * unlimited once the application has closed the stream as they are then dropped.
+     * When there is no room the stream notes that the consumer is waiting for some.
+     *
+     * @return the number of bytes that can be offered.
+     */
+    public int space() {
+        lock.lock();
+        try {
+            if (closed) {
+                return Integer.MAX_VALUE;
+            }
+
+            int space = capacity - buffered;
+            if (space <= 0) {
+                waiting = true;
+                space = 0;
+            }
+
+            return space;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands over encoded body bytes received for the message.  The array is kept, not
+     * copied, so the caller must not reuse it.
+     *
+     * @param encoded
+     *      the array holding the bytes.
+     * @param offset
+     *      the offset of the first byte.
+     * @param count
+     *      the number of bytes.
+     */
+    public void offer(byte[] encoded, int offset, int count) {
+        while (count > 0 && !skipping) {
+            if (sectionRemaining > 0) {
+                int size = (int) Math.min(count, sectionRemaining);
+                append(encoded, offset, size);
+                offset += size;
+                count -= size;
+                sectionRemaining -= size;
+            } else {
+                header[headerSize++] = encoded[offset++];
+                count--;
+                readSectionHeader();
+            }
+        }
+    }
+
+    /**
+     * Marks the body as fully received.
+     */
+    public void complete() {
+        lock.lock();
+        try {
+            complete = true;
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the body as never to be completed, the application can read what has already
+     * arrived and then receives an error.
+     *
+     * @param cause
+     *      the reason the rest of the body will not arrive.
+     */
+    public void fail(Throwable cause) {
+        lock.lock();
+        try {
+            if (failure == null && !complete) {
+                failure = cause;
+            }
+            readable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the whole of the body has been received.
+     */
+    public boolean isComplete() {
+        lock.lock();
+        try {
+            return complete;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the application has closed the stream.
+     */
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readSectionHeader() {
+        if (headerSize < 3) {
+            return;
+        }
+
+        // The section descriptor may be encoded as a small ulong, a ulong or a symbol.
+        final int descriptorSize;
+        if (header[0] != DESCRIBED_TYPE_INDICATOR) {
+            skipping = true;
+            return;
+        } else if (header[1] == SMALL_ULONG_TYPE) {
+            descriptorSize = 3;
+            if (header[2] != DATA_SECTION_CODE) {
+                skipping = true;
+                return;
+            }
+        } else if (header[1] == ULONG_TYPE) {
+            descriptorSize = 10;
+            if (headerSize == descriptorSize && !isDataCode(header, 2)) {
+                skipping = true;
+                return;
+            }
+        } else if (header[1] == SYM8_TYPE && (header[2] & 0xFF) == DATA_SECTION_SYMBOL.length) {
+            descriptorSize = 3 + DATA_SECTION_SYMBOL.length;
+            if (headerSize == descriptorSize && !isDataSymbol(header, 3)) {
+                skipping = true;
+                return;
+            }
+        } else {
+            skipping = true;
+            return;
+        }
+
+        if (headerSize <= descriptorSize) {
+            return;
+        }
+
+        final byte constructor = header[descriptorSize];
+        if (constructor == VBIN8_TYPE) {
+            if (headerSize == descriptorSize + 2) {
+                sectionRemaining = header[descriptorSize + 1] & 0xFF;
+                headerSize = 0;
+            }
+        } else if (constructor == VBIN32_TYPE) {
+            if (headerSize == descriptorSize + 5) {
+                sectionRemaining = ((header[descriptorSize + 1] & 0xFFL) << 24) | ((header[descriptorSize + 2] & 0xFFL) << 16) |
+                                   ((header[descriptorSize + 3] & 0xFFL) << 8) | (header[descriptorSize + 4] & 0xFFL);
+                headerSize = 0;
+            }
+        } else {
+            skipping = true;
+        }
+    }
+
+    private static boolean isDataCode(byte[] bytes, int offset) {
+        for (int i = 0; i < 7; ++i) {
+            if (bytes[offset + i] != 0) {
+                return false;
+            }
+        }
+
+        return bytes[offset + 7] == DATA_SECTION_CODE;
+    }
+
+    private static boolean isDataSymbol(byte[] bytes, int offset) {
+        for (int i = 0; i < DATA_SECTION_SYMBOL.length; ++i) {
+            if (bytes[offset + i] != DATA_SECTION_SYMBOL[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void append(byte[] bytes, int offset, int count) {
+        lock.lock();
+        try {
+            if (!closed) {
+                segments.addLast(new Segment(bytes, offset, count));
+                buffered += count;
+                readable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //----- Application side -------------------------------------------------//
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        return count < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+
+        int read = 0;
+        boolean resume = false;
+
+        lock.lock();
+        try {
+            while (segments.isEmpty() && !complete && failure == null && !closed) {
+                readable.await();
+            }
+
+            if (closed) {
+                throw new IOException("The message body stream has been closed");
+            }
+
+            if (segments.isEmpty()) {
+                if (failure != null) {
+                    throw new IOException("The message body could not be received in full", failure);
+                }
+
+                return -1;
+            }
+
+            while (read < count && !segments.isEmpty()) {
+                Segment segment = segments.peekFirst();
+                int size = Math.min(count - read, segment.count);
+                System.arraycopy(segment.bytes, segment.offset, target, offset + read, size);
+                read += size;
+                segment.offset += size;
+                segment.count -= size;
+                if (segment.count == 0) {
+                    segments.pollFirst();
+                }
+            }
+
+            buffered -= read;
+            if (waiting && buffered <= capacity / 2) {
+                waiting = false;
+                resume = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the message body");
+        } finally {
+            lock.unlock();
+        }
+
+        if (resume) {
+            onSpace.run();
+        }
+
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        lock.lock();
+        try {
+            return buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the stream, dropping what has been received and any of the body that is
+     * still to arrive.
+     */
+    @Override
+    public void close() {
+        boolean resume = false;
+
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                segments.clear();
+                buffered = 0;
+                resume = waiting;
+                waiting = false;
+                readable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (resume) {
+            onSpace.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpStreamedBody { length = " + length + ", buffered = " + buffered + " }";
+    }
+
+    private static final class Segment {
+
+        private final byte[] bytes;
+        private int offset;
+        private int count;
+
+        Segment(byte[] bytes, int offset, int count) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.count = count;
+        }
+    }
+}
@@ -36,6 +36,8 @@ import javax.jms.JMSSecurityException;
 
 import org.apache.qpid.jms.JmsOperationTimedOutException;
 import org.apache.qpid.jms.JmsSendTimedOutException;
+import org.apache.qpid.jms.jfr.JmsFlightRecorder;
+import org.apache.qpid.jms.jfr.JmsReconnectEvent;
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
 import org.apache.qpid.jms.message.JmsMessageFactory;
 import org.apache.qpid.jms.message.JmsOutboundMessageDispatch;
@@ -367,6 +369,42 @@ public class FailoverProvider extends DefaultProviderListener implements Provide
         serializer.execute(pending);
     }
 
+    @Override
+    public void send(final List<JmsOutboundMessageDispatch> envelopes, AsyncResult request) throws IOException, JMSException {
+        checkClosed();
+        final FailoverRequest pending = new FailoverRequest(request, sendTimeout) {
+            @Override
+            public void doTask() throws Exception {
+                // When replayed after a reconnect only the sends that had not yet completed
+                // on the previous connection are sent again.
+                List<JmsOutboundMessageDispatch> remaining = new ArrayList<JmsOutboundMessageDispatch>(envelopes.size());
+                for (JmsOutboundMessageDispatch envelope : envelopes) {
+                    if (!envelope.isSendCompleted()) {
+                        remaining.add(envelope);
+                    }
+                }
+
+                if (remaining.isEmpty()) {
+                    onSuccess();
+                } else {
+                    provider.send(remaining, this);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "send -> batch of " + envelopes.size();
+            }
+
+            @Override
+            public JMSException createTimedOutException() {
+                return new JmsSendTimedOutException("Timed out waiting on " + this);
+            }
+        };
+
+        serializer.execute(pending);
+    }
+
     @Override
     public void acknowledge(final JmsSessionId sessionId, final ACK_TYPE ackType, AsyncResult request) throws IOException, JMSException {
         checkClosed();
@@ -607,6 +645,10 @@ public class FailoverProvider extends DefaultProviderListener implements Provide
                     if (!firstConnection) {
                         LOG.debug("Signalling connection recovery: {}", provider);
 
+                        if (connectionInfo.getMetrics() != null) {
+                            connectionInfo.getMetrics().recordReconnect();
+                        }
+
                         // Stage 1: Allow listener to recover its resources
                         listener.onConnectionRecovery(provider);
 
@@ -690,18 +732,29 @@ public class FailoverProvider extends DefaultProviderListener implements Provide
                 }
 
                 reconnectAttempts++;
+                if (!firstConnection && connectionInfo.getMetrics() != null) {
+                    connectionInfo.getMetrics().recordReconnectAttempt();
+                }
+
                 Throwable failure = null;
                 URI target = uris.getNext();
                 if (target != null) {
                     Provider provider = null;
+                    JmsReconnectEvent connectEvent = JmsFlightRecorder.isAvailable() ? JmsReconnectEvent.start() : null;
                     try {
                         LOG.debug("Connection attempt:[{}] to: {} in-progress", reconnectAttempts, target);
                         provider = ProviderFactory.create(target);
                         provider.connect(connectionInfo);
                         initializeNewConnection(provider);
+                        if (connectEvent != null) {
+                            connectEvent.finish(target, reconnectAttempts, !firstConnection, true);
+                        }
                         return;
                     } catch (Throwable e) {
                         LOG.info("Connection attempt:[{}] to: {} failed", reconnectAttempts, target);
+                        if (connectEvent != null) {
+                            connectEvent.finish(target, reconnectAttempts, !firstConnection, false);
+                        }
                         failure = e;
                         try {
                             if (provider != null) {
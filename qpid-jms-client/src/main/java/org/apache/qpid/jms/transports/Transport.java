@@ -51,6 +51,12 @@ public interface Transport {
      */
     boolean isSecure();
 
+    /**
+     * @return true if the transport can take more writes without queuing them beyond
+     *         its high water mark, false if it is backed up or not connected.
+     */
+    boolean isWritable();
+
     /**
      * Close the Transport, no additional send operations are accepted.
      *
@@ -81,6 +87,25 @@ public interface Transport {
      */
     void send(ByteBuf output) throws IOException;
 
+    /**
+     * Writes a chunk of data to the Transport connection without flushing it.  The
+     * data is not guaranteed to be sent until a later call to {@link #flush()} or
+     * {@link #send(ByteBuf)} is made.
+     *
+     * @param output
+     *        The buffer of data that is to be transmitted.
+     *
+     * @throws IOException if an error occurs during the write operation.
+     */
+    void write(ByteBuf output) throws IOException;
+
+    /**
+     * Flushes any data previously written to the Transport connection.
+     *
+     * @throws IOException if an error occurs during the flush operation.
+     */
+    void flush() throws IOException;
+
     /**
      * Gets the currently set TransportListener instance
      *
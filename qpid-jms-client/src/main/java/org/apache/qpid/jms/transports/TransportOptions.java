@@ -30,6 +30,10 @@ public class TransportOptions implements Cloneable {
     public static final int DEFAULT_SO_TIMEOUT = -1;
     public static final int DEFAULT_CONNECT_TIMEOUT = 60000;
     public static final int DEFAULT_TCP_PORT = 5672;
+    public static final int DEFAULT_SHARED_EVENT_LOOP_THREADS = -1;
+    public static final boolean DEFAULT_USE_EPOLL = false;
+    public static final boolean DEFAULT_TCP_QUICK_ACK = false;
+    public static final boolean DEFAULT_TCP_CORK = false;
 
     public static final TransportOptions INSTANCE = new TransportOptions();
 
@@ -42,6 +46,10 @@ public class TransportOptions implements Cloneable {
     private boolean tcpKeepAlive = DEFAULT_TCP_KEEP_ALIVE;
     private boolean tcpNoDelay = DEFAULT_TCP_NO_DELAY;
     private int defaultTcpPort = DEFAULT_TCP_PORT;
+    private int sharedEventLoopThreads = DEFAULT_SHARED_EVENT_LOOP_THREADS;
+    private boolean useEpoll = DEFAULT_USE_EPOLL;
+    private boolean tcpQuickAck = DEFAULT_TCP_QUICK_ACK;
+    private boolean tcpCork = DEFAULT_TCP_CORK;
 
     /**
      * @return the currently set send buffer size in bytes.
@@ -163,6 +171,86 @@ public class TransportOptions implements Cloneable {
         this.defaultTcpPort = defaultTcpPort;
     }
 
+    /**
+     * @return the number of threads in the shared event loop group, or a value
+     *         less than one if each transport uses its own event loop.
+     */
+    public int getSharedEventLoopThreads() {
+        return sharedEventLoopThreads;
+    }
+
+    /**
+     * Sets the number of threads in an event loop group that is shared amongst all
+     * transports configured with the same value.  Each transport is pinned to one of
+     * the event loops in the shared group, allowing many connections to be serviced by
+     * a fixed number of IO threads.  A value less than one (the default) disables the
+     * sharing and each transport creates an event loop of its own.
+     *
+     * @param sharedEventLoopThreads
+     *        the number of threads to use in the shared event loop group.
+     */
+    public void setSharedEventLoopThreads(int sharedEventLoopThreads) {
+        this.sharedEventLoopThreads = sharedEventLoopThreads;
+    }
+
+    /**
+     * @return true if the native epoll based IO layer should be used when it is available.
+     */
+    public boolean isUseEpoll() {
+        return useEpoll;
+    }
+
+    /**
+     * Controls whether the transport uses the native Linux epoll based IO layer instead
+     * of the default NIO based one.  The native layer is only used when the optional
+     * netty-transport-native-epoll library is on the class path and can be loaded on the
+     * current platform, otherwise the transport falls back to NIO.
+     *
+     * @param useEpoll
+     *        should the native epoll IO layer be used when available.
+     */
+    public void setUseEpoll(boolean useEpoll) {
+        this.useEpoll = useEpoll;
+    }
+
+    /**
+     * @return true if the TCP_QUICKACK socket option should be enabled on native transports.
+     */
+    public boolean isTcpQuickAck() {
+        return tcpQuickAck;
+    }
+
+    /**
+     * Enables the TCP_QUICKACK socket option so that received data is acknowledged
+     * immediately rather than delayed.  This option is only applied when the native
+     * epoll IO layer is in use and is ignored otherwise.
+     *
+     * @param tcpQuickAck
+     *        should the TCP_QUICKACK socket option be enabled.
+     */
+    public void setTcpQuickAck(boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+    }
+
+    /**
+     * @return true if the TCP_CORK socket option should be enabled on native transports.
+     */
+    public boolean isTcpCork() {
+        return tcpCork;
+    }
+
+    /**
+     * Enables the TCP_CORK socket option which holds back partial segments so that
+     * output is sent in full sized packets.  This trades latency for fewer packets
+     * and is only applied when the native epoll IO layer is in use.
+     *
+     * @param tcpCork
+     *        should the TCP_CORK socket option be enabled.
+     */
+    public void setTcpCork(boolean tcpCork) {
+        this.tcpCork = tcpCork;
+    }
+
     @Override
     public TransportOptions clone() {
         return copyOptions(new TransportOptions());
@@ -182,6 +270,10 @@ public class TransportOptions implements Cloneable {
         copy.setTcpNoDelay(isTcpNoDelay());
         copy.setTrafficClass(getTrafficClass());
         copy.setDefaultTcpPort(getDefaultTcpPort());
+        copy.setSharedEventLoopThreads(getSharedEventLoopThreads());
+        copy.setUseEpoll(isUseEpoll());
+        copy.setTcpQuickAck(isTcpQuickAck());
+        copy.setTcpCork(isTcpCork());
 
         return copy;
     }
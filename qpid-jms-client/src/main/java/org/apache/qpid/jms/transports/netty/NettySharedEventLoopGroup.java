@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.transports.netty;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Reference counted event loop group that is shared by all the Netty based
+ * transports that are configured to use the same number of shared threads and
+ * the same type of IO layer.
+ *
+ * The group is created when the first transport retains it and shut down once
+ * the last transport using it has released it.
+ */
+final class NettySharedEventLoopGroup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NettySharedEventLoopGroup.class);
+
+    private static final int SHUTDOWN_TIMEOUT = 50;
+
+    private static final Map<String, NettySharedEventLoopGroup> SHARED_GROUPS = new HashMap<String, NettySharedEventLoopGroup>();
+
+    private final String key;
+    private final EventLoopGroup group;
+    private int references;
+
+    private NettySharedEventLoopGroup(final String key, final int threads, boolean useEpoll) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runner) {
+                Thread thread = new Thread(runner);
+                thread.setDaemon(true);
+                thread.setName("QpidJMS Shared Transport EventLoop:(" + key + "):[" + sequence.incrementAndGet() + "]");
+                return thread;
+            }
+        };
+
+        this.key = key;
+
+        if (useEpoll) {
+            this.group = new EpollEventLoopGroup(threads, threadFactory);
+        } else {
+            this.group = new NioEventLoopGroup(threads, threadFactory);
+        }
+    }
+
+    /**
+     * Retains a reference to the shared group with the given number of threads and
+     * IO layer type, creating it if no transport currently holds a reference to it.
+     *
+     * @param threads
+     *        the number of threads in the shared event loop group.
+     * @param useEpoll
+     *        true if the group should use the native epoll IO layer.
+     *
+     * @return the shared event loop group instance.
+     */
+    static NettySharedEventLoopGroup retain(int threads, boolean useEpoll) {
+        final String key = (useEpoll ? "epoll-" : "nio-") + threads;
+
+        synchronized (SHARED_GROUPS) {
+            NettySharedEventLoopGroup shared = SHARED_GROUPS.get(key);
+            if (shared == null) {
+                LOG.trace("Creating new shared event loop group: {}", key);
+                shared = new NettySharedEventLoopGroup(key, threads, useEpoll);
+                SHARED_GROUPS.put(key, shared);
+            }
+
+            shared.references++;
+            return shared;
+        }
+    }
+
+    /**
+     * @return the next event loop from the shared group that a new channel should be pinned to.
+     */
+    EventLoop next() {
+        return group.next();
+    }
+
+    /**
+     * Releases a reference to this shared group, shutting it down if there are no
+     * remaining references held.
+     */
+    void release() {
+        boolean shutdown = false;
+
+        synchronized (SHARED_GROUPS) {
+            if (--references == 0) {
+                SHARED_GROUPS.remove(key);
+                shutdown = true;
+            }
+        }
+
+        if (shutdown) {
+            LOG.trace("Shutting down shared event loop group: {}", key);
+            group.shutdownGracefully(0, SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    int getReferenceCount() {
+        synchronized (SHARED_GROUPS) {
+            return references;
+        }
+    }
+}
@@ -47,6 +47,10 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.SslHandler;
@@ -64,6 +68,7 @@ public class NettyTcpTransport implements Transport {
 
     protected Bootstrap bootstrap;
     protected EventLoopGroup group;
+    private NettySharedEventLoopGroup sharedGroup;
     protected Channel channel;
     protected TransportListener listener;
 
@@ -132,11 +137,24 @@ public class NettyTcpTransport implements Transport {
             sslHandler = null;
         }
 
-        group = new NioEventLoopGroup(1);
+        final boolean useEpoll = isEpollAvailable();
+
+        if (getTransportOptions().getSharedEventLoopThreads() > 0) {
+            sharedGroup = NettySharedEventLoopGroup.retain(getTransportOptions().getSharedEventLoopThreads(), useEpoll);
+            group = sharedGroup.next();
+        } else if (useEpoll) {
+            group = new EpollEventLoopGroup(1);
+        } else {
+            group = new NioEventLoopGroup(1);
+        }
 
         bootstrap = new Bootstrap();
         bootstrap.group(group);
-        bootstrap.channel(NioSocketChannel.class);
+        if (useEpoll) {
+            bootstrap.channel(EpollSocketChannel.class);
+        } else {
+            bootstrap.channel(NioSocketChannel.class);
+        }
         bootstrap.handler(new ChannelInitializer<Channel>() {
             @Override
             public void initChannel(Channel connectedChannel) throws Exception {
@@ -144,7 +162,7 @@ public class NettyTcpTransport implements Transport {
             }
         });
 
-        configureNetty(bootstrap, getTransportOptions());
+        configureNetty(bootstrap, getTransportOptions(), useEpoll);
 
         ChannelFuture future = bootstrap.connect(getRemoteHost(), getRemotePort());
         future.addListener(new ChannelFutureListener() {
@@ -171,13 +189,7 @@ public class NettyTcpTransport implements Transport {
                 channel.close().syncUninterruptibly();
                 channel = null;
             }
-            if (group != null) {
-                Future<?> fut = group.shutdownGracefully(0, SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
-                if (!fut.awaitUninterruptibly(2 * SHUTDOWN_TIMEOUT)) {
-                    LOG.trace("Channel group shutdown failed to complete in allotted time");
-                }
-                group = null;
-            }
+            shutdownEventLoopGroup();
 
             throw failureCause;
         } else {
@@ -199,6 +211,11 @@ public class NettyTcpTransport implements Transport {
         return connected.get();
     }
 
+    @Override
+    public boolean isWritable() {
+        return channel != null && channel.isWritable();
+    }
+
     @Override
     public boolean isSecure() {
         return options.isSSL();
@@ -213,12 +230,7 @@ public class NettyTcpTransport implements Transport {
                     channel.close().syncUninterruptibly();
                 }
             } finally {
-                if (group != null) {
-                    Future<?> fut = group.shutdownGracefully(0, SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
-                    if (!fut.awaitUninterruptibly(2 * SHUTDOWN_TIMEOUT)) {
-                        LOG.trace("Channel group shutdown failed to complete in allotted time");
-                    }
-                }
+                shutdownEventLoopGroup();
             }
         }
     }
@@ -226,7 +238,7 @@ public class NettyTcpTransport implements Transport {
     @Override
     public ByteBuf allocateSendBuffer(int size) throws IOException {
         checkConnected();
-        return channel.alloc().ioBuffer(size, size);
+        return channel.alloc().directBuffer(size, size);
     }
 
     @Override
@@ -242,6 +254,26 @@ public class NettyTcpTransport implements Transport {
         channel.writeAndFlush(output);
     }
 
+    @Override
+    public void write(ByteBuf output) throws IOException {
+        checkConnected();
+        int length = output.readableBytes();
+        if (length == 0) {
+            return;
+        }
+
+        LOG.trace("Attempted write of: {} bytes", length);
+
+        channel.write(output);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkConnected();
+        LOG.trace("Attempted flush of pending writes");
+        channel.flush();
+    }
+
     @Override
     public TransportListener getTransportListener() {
         return listener;
@@ -359,16 +391,52 @@ public class NettyTcpTransport implements Transport {
         connectLatch.countDown();
     }
 
+    private void shutdownEventLoopGroup() {
+        if (sharedGroup != null) {
+            // Only the last transport using the shared group will shut it down.
+            sharedGroup.release();
+            sharedGroup = null;
+        } else if (group != null) {
+            Future<?> fut = group.shutdownGracefully(0, SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (!fut.awaitUninterruptibly(2 * SHUTDOWN_TIMEOUT)) {
+                LOG.trace("Channel group shutdown failed to complete in allotted time");
+            }
+        }
+
+        group = null;
+    }
+
     private TransportSslOptions getSslOptions() {
         return (TransportSslOptions) getTransportOptions();
     }
 
-    private void configureNetty(Bootstrap bootstrap, TransportOptions options) {
+    private boolean isEpollAvailable() {
+        if (getTransportOptions().isUseEpoll()) {
+            try {
+                if (Epoll.isAvailable()) {
+                    return true;
+                }
+
+                LOG.trace("Native epoll transport not available, falling back to NIO: {}", Epoll.unavailabilityCause().getMessage());
+            } catch (NoClassDefFoundError ncdfe) {
+                LOG.trace("Native epoll transport not on the class path, falling back to NIO");
+            }
+        }
+
+        return false;
+    }
+
+    private void configureNetty(Bootstrap bootstrap, TransportOptions options, boolean useEpoll) {
         bootstrap.option(ChannelOption.TCP_NODELAY, options.isTcpNoDelay());
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, options.getConnectTimeout());
         bootstrap.option(ChannelOption.SO_KEEPALIVE, options.isTcpKeepAlive());
         bootstrap.option(ChannelOption.SO_LINGER, options.getSoLinger());
-        bootstrap.option(ChannelOption.ALLOCATOR, PartialPooledByteBufAllocator.INSTANCE);
+
+        // The native transport reads directly into IO buffers and so requires them to be
+        // direct buffers, which the partially pooled allocator does not provide.
+        if (!useEpoll) {
+            bootstrap.option(ChannelOption.ALLOCATOR, PartialPooledByteBufAllocator.INSTANCE);
+        }
 
         if (options.getSendBufferSize() != -1) {
             bootstrap.option(ChannelOption.SO_SNDBUF, options.getSendBufferSize());
@@ -382,6 +450,11 @@ public class NettyTcpTransport implements Transport {
         if (options.getTrafficClass() != -1) {
             bootstrap.option(ChannelOption.IP_TOS, options.getTrafficClass());
         }
+
+        if (useEpoll) {
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, options.isTcpQuickAck());
+            bootstrap.option(EpollChannelOption.TCP_CORK, options.isTcpCork());
+        }
     }
 
     private void configureChannel(final Channel channel, final SslHandler sslHandler) throws Exception {
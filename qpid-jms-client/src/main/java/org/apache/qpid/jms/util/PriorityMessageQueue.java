@@ -17,7 +17,7 @@
 package org.apache.qpid.jms.util;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.jms.JMSException;
@@ -28,27 +28,34 @@ import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
  * Simple Message Priority ordered Queue.  Message envelopes are stored in the
  * Queue based on their priority value, except where {@link #enqueueFirst} is
  * used.
+ * <p>
+ * Each priority has its own array backed ring of envelopes and a bitmap records
+ * which of them hold any, so the highest priority envelope is found without
+ * scanning and enqueue and dequeue do not allocate once the rings have grown to
+ * the size of the backlog.
  */
 public final class PriorityMessageQueue extends AbstractMessageQueue {
 
     // There are 10 priorities, values 0-9
-    private static final Integer MAX_PRIORITY = 9;
+    private static final int MAX_PRIORITY = 9;
 
-    private final LinkedList<JmsInboundMessageDispatch>[] lists;
+    private final EnvelopeRing[] rings;
+    private int nonEmpty;
     private int size = 0;
 
-    @SuppressWarnings("unchecked")
     public PriorityMessageQueue() {
-        this.lists = new LinkedList[MAX_PRIORITY + 1];
+        this.rings = new EnvelopeRing[MAX_PRIORITY + 1];
         for (int i = 0; i <= MAX_PRIORITY; i++) {
-            lists[i] = new LinkedList<JmsInboundMessageDispatch>();
+            rings[i] = new EnvelopeRing();
         }
     }
 
     @Override
     public void enqueue(JmsInboundMessageDispatch envelope) {
         synchronized (getLock()) {
-            getList(envelope).addLast(envelope);
+            int priority = getPriority(envelope);
+            rings[priority].addLast(envelope);
+            nonEmpty |= 1 << priority;
             this.size++;
             getLock().notify();
         }
@@ -57,7 +64,8 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
     @Override
     public void enqueueFirst(JmsInboundMessageDispatch envelope) {
         synchronized (getLock()) {
-            getList(MAX_PRIORITY).addFirst(envelope);
+            rings[MAX_PRIORITY].addFirst(envelope);
+            nonEmpty |= 1 << MAX_PRIORITY;
             this.size++;
             getLock().notify();
         }
@@ -80,8 +88,10 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
     @Override
     public void clear() {
         synchronized (getLock()) {
-            for (int i = 0; i <= MAX_PRIORITY; i++) {
-                lists[i].clear();
+            while (nonEmpty != 0) {
+                int priority = highestPriority();
+                rings[priority].clear();
+                nonEmpty &= ~(1 << priority);
             }
             this.size = 0;
         }
@@ -90,44 +100,44 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
     @Override
     public List<JmsInboundMessageDispatch> removeAll() {
         synchronized (getLock()) {
-            ArrayList<JmsInboundMessageDispatch> result = new ArrayList<JmsInboundMessageDispatch>(size());
-            for (int i = MAX_PRIORITY; i >= 0; i--) {
-                List<JmsInboundMessageDispatch> list = lists[i];
-                result.addAll(list);
-                size -= list.size();
-                list.clear();
+            ArrayList<JmsInboundMessageDispatch> result = new ArrayList<JmsInboundMessageDispatch>(size);
+            while (nonEmpty != 0) {
+                int priority = highestPriority();
+                rings[priority].drainTo(result);
+                nonEmpty &= ~(1 << priority);
             }
+            this.size = 0;
             return result;
         }
     }
 
     @Override
     protected JmsInboundMessageDispatch removeFirst() {
-        if (this.size > 0) {
-            for (int i = MAX_PRIORITY; i >= 0; i--) {
-                LinkedList<JmsInboundMessageDispatch> list = lists[i];
-                if (!list.isEmpty()) {
-                    this.size--;
-                    return list.removeFirst();
-                }
+        if (nonEmpty != 0) {
+            int priority = highestPriority();
+            EnvelopeRing ring = rings[priority];
+            JmsInboundMessageDispatch envelope = ring.pollFirst();
+            if (ring.isEmpty()) {
+                nonEmpty &= ~(1 << priority);
             }
+            this.size--;
+            return envelope;
         }
         return null;
     }
 
     @Override
     protected JmsInboundMessageDispatch peekFirst() {
-        if (this.size > 0) {
-            for (int i = MAX_PRIORITY; i >= 0; i--) {
-                LinkedList<JmsInboundMessageDispatch> list = lists[i];
-                if (!list.isEmpty()) {
-                    return list.peekFirst();
-                }
-            }
+        if (nonEmpty != 0) {
+            return rings[highestPriority()].peekFirst();
         }
         return null;
     }
 
+    private int highestPriority() {
+        return 31 - Integer.numberOfLeadingZeros(nonEmpty);
+    }
+
     private int getPriority(JmsInboundMessageDispatch envelope) {
         int priority = javax.jms.Message.DEFAULT_PRIORITY;
         if (envelope.getMessage() != null) {
@@ -140,11 +150,71 @@ public final class PriorityMessageQueue extends AbstractMessageQueue {
         return priority;
     }
 
-    private LinkedList<JmsInboundMessageDispatch> getList(JmsInboundMessageDispatch envelope) {
-        return getList(getPriority(envelope));
-    }
+    /*
+     * Double ended queue of envelopes in a power of two sized array that doubles
+     * in size whenever it fills.
+     */
+    private static final class EnvelopeRing {
+
+        private static final int INITIAL_CAPACITY = 16;
 
-    private LinkedList<JmsInboundMessageDispatch> getList(int priority) {
-        return lists[priority];
+        private JmsInboundMessageDispatch[] elements = new JmsInboundMessageDispatch[INITIAL_CAPACITY];
+        private int head;
+        private int count;
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        public void addLast(JmsInboundMessageDispatch envelope) {
+            ensureCapacity();
+            elements[(head + count) & (elements.length - 1)] = envelope;
+            count++;
+        }
+
+        public void addFirst(JmsInboundMessageDispatch envelope) {
+            ensureCapacity();
+            head = (head - 1) & (elements.length - 1);
+            elements[head] = envelope;
+            count++;
+        }
+
+        public JmsInboundMessageDispatch peekFirst() {
+            return elements[head];
+        }
+
+        public JmsInboundMessageDispatch pollFirst() {
+            JmsInboundMessageDispatch envelope = elements[head];
+            elements[head] = null;
+            head = (head + 1) & (elements.length - 1);
+            count--;
+            return envelope;
+        }
+
+        public void drainTo(List<JmsInboundMessageDispatch> target) {
+            int tailLength = Math.min(count, elements.length - head);
+            target.addAll(Arrays.asList(elements).subList(head, head + tailLength));
+            target.addAll(Arrays.asList(elements).subList(0, count - tailLength));
+            clear();
+        }
+
+        public void clear() {
+            int tailLength = Math.min(count, elements.length - head);
+            Arrays.fill(elements, head, head + tailLength, null);
+            Arrays.fill(elements, 0, count - tailLength, null);
+            head = 0;
+            count = 0;
+        }
+
+        private void ensureCapacity() {
+            if (count == elements.length) {
+                JmsInboundMessageDispatch[] grown = new JmsInboundMessageDispatch[elements.length << 1];
+                int tailLength = elements.length - head;
+                System.arraycopy(elements, head, grown, 0, tailLength);
+                System.arraycopy(elements, 0, grown, tailLength, head);
+                elements = grown;
+                head = 0;
+            }
+        }
     }
 }
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
+
+/**
+ * First in / first out Message Queue backed by a bounded ring buffer.
+ * <p>
+ * Calls to {@link #enqueue} add to the ring without taking the queue lock and only
+ * signal the lock when a consumer is actually blocked waiting for a message, so the
+ * thread delivering messages does not contend with the one receiving them.  Callers
+ * must not invoke {@link #enqueue} from more than one thread at a time.  All other
+ * operations are performed under the queue lock.
+ * <p>
+ * Envelopes enqueued while the ring is full, as can happen when more messages arrive
+ * than the capacity the queue was sized for, are held in an overflow list and the ring
+ * is bypassed until the overflow has been drained so that ordering is preserved.
+ */
+public final class RingBufferMessageQueue implements MessageQueue {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 14;
+
+    private final Object lock = new Object();
+
+    private final JmsInboundMessageDispatch[] ring;
+    private final int mask;
+
+    // Next slot to read, only updated under lock.
+    private volatile long head;
+    // Next slot to write, only updated by the enqueuing thread.
+    private volatile long tail;
+
+    private final LinkedList<JmsInboundMessageDispatch> first = new LinkedList<JmsInboundMessageDispatch>();
+    private final LinkedList<JmsInboundMessageDispatch> overflow = new LinkedList<JmsInboundMessageDispatch>();
+    private volatile boolean overflowing;
+
+    private volatile boolean waiting;
+    private volatile boolean closed;
+    private volatile boolean running;
+
+    /**
+     * Creates a new queue whose ring can hold at least the given number of envelopes,
+     * rounded up to a power of two and bounded to a sensible range.
+     *
+     * @param capacity
+     *        the number of envelopes the queue is expected to hold, e.g. the consumer prefetch.
+     */
+    public RingBufferMessageQueue(int capacity) {
+        int size = MIN_CAPACITY;
+        while (size < capacity && size < MAX_CAPACITY) {
+            size <<= 1;
+        }
+
+        this.ring = new JmsInboundMessageDispatch[size];
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void enqueue(JmsInboundMessageDispatch envelope) {
+        if (!overflowing) {
+            long currentTail = tail;
+            if (currentTail - head < ring.length) {
+                ring[(int) currentTail & mask] = envelope;
+                tail = currentTail + 1;
+
+                // The volatile write of tail above orders with the consumer's write of the
+                // waiting flag, so either it sees the new envelope or we see it is waiting.
+                if (waiting) {
+                    synchronized (lock) {
+                        lock.notify();
+                    }
+                }
+
+                return;
+            }
+        }
+
+        synchronized (lock) {
+            overflowing = true;
+            overflow.addLast(envelope);
+            lock.notify();
+        }
+    }
+
+    @Override
+    public void enqueueFirst(JmsInboundMessageDispatch envelope) {
+        synchronized (lock) {
+            first.addFirst(envelope);
+            lock.notify();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return isEmptyLocked();
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch peek() {
+        synchronized (lock) {
+            if (!first.isEmpty()) {
+                return first.peekFirst();
+            }
+
+            long currentHead = head;
+            if (currentHead != tail) {
+                return ring[(int) currentHead & mask];
+            }
+
+            return overflow.peekFirst();
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch dequeue(long timeout) throws InterruptedException {
+        synchronized (lock) {
+            // Wait until the consumer is ready to deliver messages.
+            while (timeout != 0 && !closed && running && isEmptyLocked()) {
+                waiting = true;
+                try {
+                    // Check again now that the waiting flag is visible to the enqueuing thread.
+                    if (!isEmptyLocked()) {
+                        break;
+                    }
+
+                    if (timeout == -1) {
+                        lock.wait();
+                    } else {
+                        long start = System.currentTimeMillis();
+                        lock.wait(timeout);
+                        timeout = Math.max(timeout + start - System.currentTimeMillis(), 0);
+                    }
+                } finally {
+                    waiting = false;
+                }
+            }
+
+            if (closed || !running || isEmptyLocked()) {
+                return null;
+            }
+
+            return removeFirst();
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch dequeueNoWait() {
+        synchronized (lock) {
+            if (closed || !running || isEmptyLocked()) {
+                return null;
+            }
+
+            return removeFirst();
+        }
+    }
+
+    @Override
+    public void start() {
+        synchronized (lock) {
+            if (!closed) {
+                running = true;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            running = false;
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int size() {
+        synchronized (lock) {
+            return first.size() + (int) (tail - head) + overflow.size();
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            first.clear();
+
+            long currentHead = head;
+            long currentTail = tail;
+            while (currentHead != currentTail) {
+                ring[(int) currentHead++ & mask] = null;
+            }
+            head = currentHead;
+
+            overflow.clear();
+            overflowing = false;
+        }
+    }
+
+    @Override
+    public List<JmsInboundMessageDispatch> removeAll() {
+        synchronized (lock) {
+            ArrayList<JmsInboundMessageDispatch> rc = new ArrayList<JmsInboundMessageDispatch>(size());
+            JmsInboundMessageDispatch envelope;
+            while ((envelope = removeFirst()) != null) {
+                rc.add(envelope);
+            }
+            return rc;
+        }
+    }
+
+    @Override
+    public Object getLock() {
+        return lock;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            List<JmsInboundMessageDispatch> entries = new ArrayList<JmsInboundMessageDispatch>(first);
+            for (long index = head; index != tail; ++index) {
+                entries.add(ring[(int) index & mask]);
+            }
+            entries.addAll(overflow);
+
+            return entries.toString();
+        }
+    }
+
+    //----- Internal implementation, always called under lock ----------------//
+
+    private boolean isEmptyLocked() {
+        return first.isEmpty() && head == tail && overflow.isEmpty();
+    }
+
+    private JmsInboundMessageDispatch removeFirst() {
+        if (!first.isEmpty()) {
+            return first.removeFirst();
+        }
+
+        long currentHead = head;
+        if (currentHead != tail) {
+            int index = (int) currentHead & mask;
+            JmsInboundMessageDispatch envelope = ring[index];
+            // Clear the slot before the enqueuing thread can see it as free.
+            ring[index] = null;
+            head = currentHead + 1;
+            return envelope;
+        }
+
+        // The ring is bypassed for as long as the overflow holds envelopes, so those
+        // are all newer than anything that was in the ring and can be taken now.
+        JmsInboundMessageDispatch envelope = overflow.pollFirst();
+        if (overflow.isEmpty()) {
+            overflowing = false;
+        }
+
+        return envelope;
+    }
+}
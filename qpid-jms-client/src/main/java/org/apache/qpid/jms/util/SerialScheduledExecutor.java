@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ScheduledExecutorService} that runs its tasks one at a time and in
+ * submission order using the threads of another, possibly shared, scheduler.
+ *
+ * This allows many single threaded serializers to be multiplexed onto a small
+ * fixed pool of threads while each still sees its tasks executed serially.  In
+ * keeping with the single threaded executors it replaces, delayed and periodic
+ * tasks that have not yet fired when the executor is shut down are cancelled.
+ * A periodic task is scheduled again only once its last run has finished, so a
+ * run that overruns the period delays the next rather than overlapping it.
+ */
+public class SerialScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerialScheduledExecutor.class);
+
+    // Limits how many tasks run in one pass before the thread is handed back to
+    // the shared scheduler so that a busy executor cannot starve the others.
+    private static final int MAX_TASKS_PER_PASS = 64;
+
+    private final ScheduledExecutorService scheduler;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Set<DelayedTask<?>> delayed = Collections.newSetFromMap(new ConcurrentHashMap<DelayedTask<?>, Boolean>());
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final Runnable runner = new Runner();
+
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new serial executor that runs its tasks on the given scheduler.
+     *
+     * @param scheduler
+     *        the scheduler whose threads will execute the tasks of this executor.
+     */
+    public SerialScheduledExecutor(ScheduledExecutorService scheduler) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("The scheduler cannot be null");
+        }
+
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("Cannot execute a null task");
+        }
+
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shutdown");
+        }
+
+        tasks.offer(command);
+        scheduleRunner();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        if (command == null) {
+            throw new NullPointerException("Cannot schedule a null task");
+        }
+
+        return schedule(new DelayedTask<Void>(command, null, triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        if (callable == null) {
+            throw new NullPointerException("Cannot schedule a null task");
+        }
+
+        return schedule(new DelayedTask<V>(callable, triggerTime(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (command == null) {
+            throw new NullPointerException("Cannot schedule a null task");
+        }
+
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be greater than zero");
+        }
+
+        return schedule(new DelayedTask<Void>(command, null, triggerTime(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (command == null) {
+            throw new NullPointerException("Cannot schedule a null task");
+        }
+
+        if (delay <= 0) {
+            throw new IllegalArgumentException("The delay must be greater than zero");
+        }
+
+        return schedule(new DelayedTask<Void>(command, null, triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+
+        for (DelayedTask<?> task : delayed) {
+            task.cancel(false);
+        }
+        delayed.clear();
+
+        tryTerminate();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+
+        List<Runnable> pending = new ArrayList<Runnable>();
+        Runnable task = null;
+        while ((task = tasks.poll()) != null) {
+            pending.add(task);
+        }
+
+        tryTerminate();
+
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "SerialScheduledExecutor { pending = " + tasks.size() + ", shutdown = " + shutdown + " }";
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(0, delay));
+    }
+
+    private <V> ScheduledFuture<V> schedule(DelayedTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shutdown");
+        }
+
+        delayed.add(task);
+        try {
+            task.arm();
+        } catch (RejectedExecutionException ex) {
+            delayed.remove(task);
+            throw ex;
+        }
+
+        return task;
+    }
+
+    private void scheduleRunner() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(runner);
+            } catch (RejectedExecutionException ex) {
+                running.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void tryTerminate() {
+        if (shutdown && !running.get() && tasks.isEmpty()) {
+            terminated.countDown();
+        }
+    }
+
+    private final class Runner implements Runnable {
+
+        @Override
+        public void run() {
+            Runnable task = null;
+            int remaining = MAX_TASKS_PER_PASS;
+
+            while (remaining-- > 0 && (task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable error) {
+                    LOG.debug("Task {} failed with error: {}", task, error.getMessage());
+                }
+            }
+
+            running.set(false);
+
+            // Anything offered after the last poll may have seen the runner as still
+            // active, check again so that the task is not stranded in the queue.
+            if (!tasks.isEmpty()) {
+                try {
+                    scheduleRunner();
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("Scheduler rejected pending tasks: {}", ex.getMessage());
+                }
+            } else {
+                tryTerminate();
+            }
+        }
+    }
+
+    /*
+     * A task waiting on the shared scheduler, once its time comes it is queued behind
+     * the other tasks of this executor rather than run on the scheduler thread.  The
+     * period is zero for a one shot task, positive for a fixed rate and negative for
+     * a fixed delay, as in the JDK scheduled executor.
+     */
+    private final class DelayedTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private final long period;
+        private volatile long time;
+        private volatile ScheduledFuture<?> trigger;
+
+        public DelayedTask(Runnable command, V result, long time, long period) {
+            super(command, result);
+            this.time = time;
+            this.period = period;
+        }
+
+        public DelayedTask(Callable<V> callable, long time) {
+            super(callable);
+            this.time = time;
+            this.period = 0;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+
+            long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                delayed.remove(this);
+
+                ScheduledFuture<?> current = trigger;
+                if (current != null) {
+                    current.cancel(false);
+                }
+            }
+
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                delayed.remove(this);
+                super.run();
+            } else if (shutdown) {
+                cancel(false);
+            } else if (runAndReset()) {
+                if (period > 0) {
+                    time += period;
+                } else {
+                    time = System.nanoTime() - period;
+                }
+
+                if (shutdown) {
+                    cancel(false);
+                } else {
+                    try {
+                        arm();
+                    } catch (RejectedExecutionException ex) {
+                        LOG.debug("Scheduler rejected periodic task: {}", ex.getMessage());
+                        cancel(false);
+                    }
+                }
+            } else {
+                delayed.remove(this);
+            }
+        }
+
+        void arm() {
+            trigger = scheduler.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (shutdown) {
+                        cancel(false);
+                    } else if (!isDone()) {
+                        tasks.offer(DelayedTask.this);
+                        scheduleRunner();
+                    }
+                }
+            }, time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.IllegalStateException;
+import javax.jms.ResourceAllocationException;
+
+import org.junit.Test;
+
+public class JmsSendWindowTest {
+
+    @Test
+    public void testAcquireWithinLimits() throws Exception {
+        JmsSendWindow window = new JmsSendWindow(100, 2, false);
+
+        assertEquals(0, window.acquire(40, 1, 0));
+        assertEquals(0, window.acquire(60, 1, 0));
+        assertEquals(100, window.getOutstandingBytes());
+        assertEquals(2, window.getOutstandingSends());
+
+        assertEquals(-1, window.acquire(1, 1, 10));
+
+        window.release(40, 1, 0);
+        assertEquals(60, window.getOutstandingBytes());
+        assertEquals(1, window.getOutstandingSends());
+        assertEquals(0, window.acquire(40, 1, 0));
+    }
+
+    @Test
+    public void testSendsLimitedByCount() throws Exception {
+        JmsSendWindow window = new JmsSendWindow(0, 1, false);
+
+        assertEquals(0, window.acquire(1000, 1, 0));
+        assertEquals(-1, window.acquire(1, 1, 0));
+    }
+
+    @Test
+    public void testOversizedSendAllowedWhenEmpty() throws Exception {
+        JmsSendWindow window = new JmsSendWindow(100, 0, false);
+
+        assertEquals(0, window.acquire(500, 1, 0));
+        assertEquals(-1, window.acquire(1, 1, 0));
+
+        window.release(500, 1, 0);
+        assertEquals(0, window.getOutstandingBytes());
+    }
+
+    @Test
+    public void testFailFastThrowsWhenFull() throws Exception {
+        JmsSendWindow window = new JmsSendWindow(100, 0, true);
+
+        window.acquire(100, 1, -1);
+        try {
+            window.acquire(1, 1, -1);
+            fail("Should have failed to acquire");
+        } catch (ResourceAllocationException expected) {
+        }
+    }
+
+    @Test
+    public void testResetIgnoresEarlierReleases() throws Exception {
+        JmsSendWindow window = new JmsSendWindow(100, 0, false);
+
+        long before = window.acquire(80, 1, 0);
+        window.reset();
+        assertEquals(0, window.getOutstandingBytes());
+
+        long after = window.acquire(50, 1, 0);
+        assertTrue(after != before);
+
+        window.release(80, 1, before);
+        assertEquals(50, window.getOutstandingBytes());
+
+        window.release(50, 1, after);
+        assertEquals(0, window.getOutstandingBytes());
+    }
+
+    @Test
+    public void testPermitReleasesBothWindowsOnce() throws Exception {
+        JmsSendWindow producer = new JmsSendWindow(100, 0, false);
+        JmsSendWindow connection = new JmsSendWindow(100, 0, false);
+
+        JmsSendWindow.Permit permit = new JmsSendWindow.Permit(
+            producer, producer.acquire(30, 1, 0), connection, connection.acquire(30, 1, 0), 30);
+        connection.acquire(20, 1, 0);
+
+        permit.release();
+        permit.release();
+
+        assertEquals(0, producer.getOutstandingBytes());
+        assertEquals(20, connection.getOutstandingBytes());
+        assertEquals(1, connection.getOutstandingSends());
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitingSendProceedsOnRelease() throws Exception {
+        final JmsSendWindow window = new JmsSendWindow(100, 0, false);
+        final CountDownLatch acquired = new CountDownLatch(1);
+
+        final long epoch = window.acquire(100, 1, 0);
+
+        Thread sender = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    window.acquire(10, 1, -1);
+                    acquired.countDown();
+                } catch (Exception e) {
+                }
+            }
+        });
+        sender.start();
+
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        window.release(100, 1, epoch);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(10, window.getOutstandingBytes());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseFailsWaitingSend() throws Exception {
+        final JmsSendWindow window = new JmsSendWindow(100, 0, false);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        window.acquire(100, 1, 0);
+
+        Thread sender = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    window.acquire(10, 1, -1);
+                } catch (Exception e) {
+                    failure.set(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        sender.start();
+
+        assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        window.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof IllegalStateException);
+    }
+}
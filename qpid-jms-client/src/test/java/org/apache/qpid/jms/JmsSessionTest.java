@@ -23,6 +23,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import javax.jms.IllegalStateException;
@@ -32,15 +34,21 @@ import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
+import javax.jms.ResourceAllocationException;
 import javax.jms.Session;
 import javax.jms.TemporaryQueue;
 import javax.jms.TextMessage;
 import javax.jms.Topic;
 
+import org.apache.qpid.jms.message.JmsMessage;
+import org.apache.qpid.jms.message.facade.test.JmsTestMessageFacade;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 /**
  * Test basic contracts of the JmsSession class using a mocked connection.
  */
@@ -314,6 +322,43 @@ public class JmsSessionTest extends JmsConnectionTestSupport {
         } catch (IllegalStateException ise) {}
     }
 
+    @Test(timeout = 10000)
+    public void testBatchSendReleasesPayloadsWhenSendWindowFull() throws Exception {
+        connection.close();
+        connectionInfo.setForceAsyncSend(true);
+        connectionInfo.setMaxProducerOutstandingSends(1);
+        connectionInfo.setFailFastOnOutstandingLimit(true);
+        connection = createConnectionToMockProvider();
+
+        JmsSession session = (JmsSession) connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        JmsMessageProducer producer = (JmsMessageProducer) session.createProducer(session.createQueue("test"));
+
+        // The mock provider never settles the asynchronous send so it keeps the window full.
+        producer.send(session.createMessage());
+
+        ByteBuf first = Unpooled.buffer(16);
+        ByteBuf second = Unpooled.buffer(16);
+        List<Message> messages = Arrays.<Message>asList(createMessageWithPayload(first), createMessageWithPayload(second));
+
+        try {
+            producer.send(messages);
+            fail("Should have failed with the send window full");
+        } catch (ResourceAllocationException expected) {}
+
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+    }
+
+    private static JmsMessage createMessageWithPayload(final ByteBuf payload) {
+        return new JmsMessage(new JmsTestMessageFacade() {
+
+            @Override
+            public Object encodeMessage() {
+                return payload;
+            }
+        });
+    }
+
     @Test(timeout = 10000)
     public void testSessionRunFailsWhenSessionIsClosed() throws Exception {
         JmsSession session = (JmsSession) connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
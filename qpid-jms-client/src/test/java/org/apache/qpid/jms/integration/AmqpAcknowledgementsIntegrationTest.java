@@ -277,4 +277,44 @@ public class AmqpAcknowledgementsIntegrationTest extends QpidJmsTestCase {
             testPeer.waitForAllHandlersToComplete(3000);
         }
     }
+
+    @Test(timeout = 20000)
+    public void testAutoAcknowledgeMessagesWithMessageListenerAndForceAsyncAcks() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer, "?jms.forceAsyncAcks=true");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            final int msgCount = 10;
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType(null), msgCount);
+            for (int i = 1; i <= msgCount; i++) {
+                testPeer.expectDisposition(true, new AcceptedMatcher(), i, i);
+            }
+
+            final CountDownLatch receiveCountDown = new CountDownLatch(msgCount);
+
+            MessageConsumer messageConsumer = session.createConsumer(queue);
+            messageConsumer.setMessageListener(new MessageListener() {
+
+                @Override
+                public void onMessage(Message message) {
+                    receiveCountDown.countDown();
+                }
+            });
+
+            assertTrue("Did not get all messages", receiveCountDown.await(10, TimeUnit.SECONDS));
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
 }
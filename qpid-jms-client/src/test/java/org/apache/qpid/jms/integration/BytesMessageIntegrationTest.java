@@ -19,15 +19,23 @@
 package org.apache.qpid.jms.integration;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Random;
 
 import javax.jms.BytesMessage;
 import javax.jms.CompletionListener;
@@ -42,6 +50,10 @@ import javax.jms.Queue;
 import javax.jms.Session;
 
 import org.apache.qpid.jms.JmsConnection;
+import org.apache.qpid.jms.message.JmsBytesMessage;
+import org.apache.qpid.jms.message.JmsOutboundBodyStream;
+import org.apache.qpid.jms.provider.amqp.message.AmqpCodec;
+import org.apache.qpid.jms.provider.amqp.message.AmqpJmsBytesMessageFacade;
 import org.apache.qpid.jms.provider.amqp.message.AmqpMessageSupport;
 import org.apache.qpid.jms.test.QpidJmsTestCase;
 import org.apache.qpid.jms.test.testpeer.TestAmqpPeer;
@@ -57,6 +69,13 @@ import org.apache.qpid.jms.test.testpeer.matchers.types.EncodedDataMatcher;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.DescribedType;
 import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.codec.WritableBuffer;
+import org.hamcrest.Description;
+import org.hamcrest.TypeSafeMatcher;
 import org.junit.Test;
 
 public class BytesMessageIntegrationTest extends QpidJmsTestCase {
@@ -120,6 +139,371 @@ public class BytesMessageIntegrationTest extends QpidJmsTestCase {
         doReceiveBasicBytesMessageUsingDataSectionTestImpl("type/unknown", false);
     }
 
+    @Test(timeout = 20000)
+    public void testSendBytesMessageWithStreamedBody() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            MessageProducer producer = session.createProducer(queue);
+
+            byte[] content = new byte[5000];
+            new Random().nextBytes(content);
+
+            MessageAnnotationsSectionMatcher msgAnnotationsMatcher = new MessageAnnotationsSectionMatcher(true);
+            msgAnnotationsMatcher.withEntry(Symbol.valueOf(AmqpMessageSupport.JMS_MSG_TYPE), equalTo(AmqpMessageSupport.JMS_BYTES_MESSAGE));
+            TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+            messageMatcher.setHeadersMatcher(new MessageHeaderSectionMatcher(true));
+            messageMatcher.setMessageAnnotationsMatcher(msgAnnotationsMatcher);
+            messageMatcher.setPropertiesMatcher(new MessagePropertiesSectionMatcher(true));
+            messageMatcher.setMessageContentMatcher(new EncodedDataMatcher(new Binary(content)));
+
+            testPeer.expectTransfer(messageMatcher);
+
+            JmsBytesMessage message = (JmsBytesMessage) session.createBytesMessage();
+            message.setBodyInputStream(new ByteArrayInputStream(content), content.length);
+
+            producer.send(message);
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            // The stream has been read so the message cannot be sent a second time.
+            try {
+                producer.send(message);
+                fail("Should not be able to send a streamed body twice");
+            } catch (JMSException jmsEx) {
+                // Expected
+            }
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testReceiveBytesMessageWithStreamedBody() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            // The session window then covers the whole message so the peer needn't be given more.
+            Connection connection = testFixture.establishConnecton(testPeer, "?amqp.largeMessageThreshold=8192&amqp.maxFrameSize=1024");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            Properties properties = new Properties();
+            properties.setContentType(Symbol.valueOf(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE));
+
+            final byte[] expectedContent = new byte[8192];
+            new Random().nextBytes(expectedContent);
+
+            // Encoded here as the peer's own codec can only write small binary values.
+            ByteBuffer encoded = ByteBuffer.allocate(expectedContent.length + 256);
+            EncoderImpl encoder = AmqpCodec.getEncoder();
+            encoder.setByteBuffer(encoded);
+            encoder.writeObject(properties);
+            encoder.writeObject(new Data(new Binary(expectedContent)));
+            encoder.setByteBuffer((WritableBuffer) null);
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlow();
+            testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(new Binary(encoded.array(), 0, encoded.position()), 0, 940);
+            testPeer.expectDispositionThatIsAcceptedAndSettled();
+
+            MessageConsumer messageConsumer = session.createConsumer(queue);
+            Message receivedMessage = messageConsumer.receive(3000);
+
+            assertNotNull(receivedMessage);
+            assertTrue(receivedMessage instanceof JmsBytesMessage);
+            JmsBytesMessage bytesMessage = (JmsBytesMessage) receivedMessage;
+            assertNotNull(((AmqpJmsBytesMessageFacade) bytesMessage.getFacade()).getStreamedBody());
+            assertEquals(expectedContent.length, bytesMessage.getBodyLength());
+
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            InputStream body = bytesMessage.getBodyInputStream();
+            byte[] chunk = new byte[700];
+            int count;
+            while ((count = body.read(chunk)) >= 0) {
+                received.write(chunk, 0, count);
+            }
+
+            assertTrue(Arrays.equals(expectedContent, received.toByteArray()));
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testSendBytesMessageWithStreamedBodyOverSeveralChunks() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            testPeer.expectBegin();
+
+            // Only the first two frames fit the session window the peer grants, so the
+            // producer has to hold the rest of the body until the window is widened.
+            testPeer.expectSenderAttachWithoutGrantingCredit();
+            testPeer.sendFlowToLastOpenedLinkOnLastOpenedSession(1, 2, 100);
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            MessageProducer producer = session.createProducer(queue);
+
+            final int chunkSize = JmsOutboundBodyStream.DEFAULT_CHUNK_SIZE;
+            byte[] content = new byte[4 * chunkSize + 1000];
+            new Random().nextBytes(content);
+
+            ByteArrayOutputStream sent = new ByteArrayOutputStream();
+            testPeer.expectPartialTransfer(new CapturedFrameMatcher(sent, -1));
+            testPeer.expectPartialTransfer(new CapturedFrameMatcher(sent, chunkSize));
+            testPeer.sendFlowToLastOpenedLinkOnLastOpenedSession(3, 2048, 100);
+            testPeer.expectPartialTransfer(new CapturedFrameMatcher(sent, chunkSize));
+            testPeer.expectPartialTransfer(new CapturedFrameMatcher(sent, chunkSize));
+            testPeer.expectTransfer(new CapturedFrameMatcher(sent, 1000));
+
+            JmsBytesMessage message = (JmsBytesMessage) session.createBytesMessage();
+            message.setBodyInputStream(new ByteArrayInputStream(content), content.length);
+
+            producer.send(message);
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            // The body follows the Data section header that ends the first chunk's sections.
+            byte[] payload = sent.toByteArray();
+            int bodyStart = payload.length - content.length;
+            assertTrue(Arrays.equals(content, Arrays.copyOfRange(payload, bodyStart, payload.length)));
+            ByteBuffer dataHeader = ByteBuffer.wrap(payload, bodyStart - 8, 8);
+            assertEquals(0x00, dataHeader.get());
+            assertEquals(0x53, dataHeader.get());
+            assertEquals(0x75, dataHeader.get());
+            assertEquals((byte) 0xb0, dataHeader.get());
+            assertEquals(content.length, dataHeader.getInt());
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testReceiveStreamedBodyThrottlesPeerUntilRead() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer, "?amqp.largeMessageThreshold=8192&amqp.maxFrameSize=1024");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            final byte[] expectedContent = new byte[24000];
+            new Random().nextBytes(expectedContent);
+            Binary payload = encodeBytesMessage(expectedContent);
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlow();
+            sendUntilIncomingWindowClosed(testPeer, payload);
+
+            MessageConsumer messageConsumer = session.createConsumer(queue);
+            Message receivedMessage = messageConsumer.receive(3000);
+            assertNotNull(receivedMessage);
+
+            // Nothing more is asked of the peer until the application reads.
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            JmsBytesMessage bytesMessage = (JmsBytesMessage) receivedMessage;
+            InputStream body = bytesMessage.getBodyInputStream();
+            assertTrue(body.available() <= 8192);
+
+            testPeer.expectIncomingWindowFlow(greaterThanOrEqualTo(UnsignedInteger.valueOf(8)));
+            testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(payload, 0, 940, 19, Integer.MAX_VALUE);
+            testPeer.expectDispositionThatIsAcceptedAndSettled();
+
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] chunk = new byte[700];
+            int count;
+            while ((count = body.read(chunk)) >= 0) {
+                received.write(chunk, 0, count);
+            }
+
+            assertTrue(Arrays.equals(expectedContent, received.toByteArray()));
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testUnreadStreamedBodyIsDroppedWhenConsumerReceivesAgain() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer,
+                "?amqp.largeMessageThreshold=8192&amqp.maxFrameSize=1024&jms.receiveNoWaitLocalOnly=true");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            final byte[] expectedContent = new byte[24000];
+            new Random().nextBytes(expectedContent);
+            Binary payload = encodeBytesMessage(expectedContent);
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlow();
+            sendUntilIncomingWindowClosed(testPeer, payload);
+
+            MessageConsumer messageConsumer = session.createConsumer(queue);
+            Message receivedMessage = messageConsumer.receive(3000);
+            assertNotNull(receivedMessage);
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            // Moving on without reading the body drops the rest of it as it arrives.
+            testPeer.expectIncomingWindowFlow(greaterThanOrEqualTo(UnsignedInteger.valueOf(8)));
+            testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(payload, 0, 940, 19, Integer.MAX_VALUE);
+            testPeer.expectDispositionThatIsAcceptedAndSettled();
+
+            assertNull(messageConsumer.receiveNoWait());
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            JmsBytesMessage bytesMessage = (JmsBytesMessage) receivedMessage;
+            assertTrue(((AmqpJmsBytesMessageFacade) bytesMessage.getFacade()).getStreamedBody().isClosed());
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    /*
+     * Sends the first frames of the payload in the steps the client's session window
+     * allows, ending with the client closing the window as its stream is full.
+     */
+    private void sendUntilIncomingWindowClosed(TestAmqpPeer testPeer, Binary payload) {
+        testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(payload, 0, 940, 0, 10);
+        testPeer.expectIncomingWindowFlow(equalTo(UnsignedInteger.valueOf(8)));
+        testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(payload, 0, 940, 10, 8);
+        testPeer.expectIncomingWindowFlow(equalTo(UnsignedInteger.valueOf(1)));
+        testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(payload, 0, 940, 18, 1);
+        testPeer.expectIncomingWindowFlow(equalTo(UnsignedInteger.ZERO));
+    }
+
+    // Encoded here as the peer's own codec can only write small binary values.
+    private Binary encodeBytesMessage(byte[] content) {
+        Properties properties = new Properties();
+        properties.setContentType(Symbol.valueOf(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE));
+
+        ByteBuffer encoded = ByteBuffer.allocate(content.length + 256);
+        EncoderImpl encoder = AmqpCodec.getEncoder();
+        encoder.setByteBuffer(encoded);
+        encoder.writeObject(properties);
+        encoder.writeObject(new Data(new Binary(content)));
+        encoder.setByteBuffer((WritableBuffer) null);
+
+        return new Binary(encoded.array(), 0, encoded.position());
+    }
+
+    /*
+     * Matches a transfer frame payload of the given length, or any length when negative,
+     * keeping its bytes so the whole of a multi frame delivery can be checked.
+     */
+    private static final class CapturedFrameMatcher extends TypeSafeMatcher<Binary> {
+
+        private final ByteArrayOutputStream captured;
+        private final int expectedLength;
+
+        CapturedFrameMatcher(ByteArrayOutputStream captured, int expectedLength) {
+            this.captured = captured;
+            this.expectedLength = expectedLength;
+        }
+
+        @Override
+        protected boolean matchesSafely(Binary payload) {
+            captured.write(payload.getArray(), payload.getArrayOffset(), payload.getLength());
+            return expectedLength < 0 || payload.getLength() == expectedLength;
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("a frame payload of length ").appendValue(expectedLength);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testReceiveBytesMessageSpilledToDisk() throws Exception {
+        File spillDirectory = Files.createTempDirectory("spill").toFile();
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer,
+                "?amqp.spillThreshold=1024&amqp.maxFrameSize=1024&amqp.spillDirectory=" + spillDirectory.getAbsolutePath());
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            Properties properties = new Properties();
+            properties.setContentType(Symbol.valueOf(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE));
+
+            final byte[] expectedContent = new byte[8192];
+            new Random().nextBytes(expectedContent);
+
+            ByteBuffer encoded = ByteBuffer.allocate(expectedContent.length + 256);
+            EncoderImpl encoder = AmqpCodec.getEncoder();
+            encoder.setByteBuffer(encoded);
+            encoder.writeObject(properties);
+            encoder.writeObject(new Data(new Binary(expectedContent)));
+            encoder.setByteBuffer((WritableBuffer) null);
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlow();
+            testPeer.sendSplitTransferToLastOpenedLinkOnLastOpenedSession(new Binary(encoded.array(), 0, encoded.position()), 0, 940);
+            testPeer.expectDispositionThatIsAcceptedAndSettled();
+
+            MessageConsumer messageConsumer = session.createConsumer(queue);
+            Message receivedMessage = messageConsumer.receive(3000);
+
+            assertNotNull(receivedMessage);
+            assertTrue(receivedMessage instanceof JmsBytesMessage);
+            JmsBytesMessage bytesMessage = (JmsBytesMessage) receivedMessage;
+            assertEquals(expectedContent.length, bytesMessage.getBodyLength());
+
+            byte[] received = new byte[expectedContent.length];
+            assertEquals(expectedContent.length, bytesMessage.readBytes(received));
+            assertTrue(Arrays.equals(expectedContent, received));
+
+            // The spill file is removed once mapped, the mapping keeps the body readable.
+            assertEquals(0, spillDirectory.list().length);
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        } finally {
+            spillDirectory.delete();
+        }
+    }
+
     private void doReceiveBasicBytesMessageUsingDataSectionTestImpl(String contentType, boolean typeAnnotation) throws JMSException, InterruptedException, Exception, IOException {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
             Connection connection = testFixture.establishConnecton(testPeer);
@@ -87,6 +87,33 @@ public class ConnectionIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout = 20000)
+    public void testCreateAndCloseConnectionsUsingSharedThreads() throws Exception {
+        try (TestAmqpPeer testPeer1 = new TestAmqpPeer();
+             TestAmqpPeer testPeer2 = new TestAmqpPeer();) {
+
+            String options = "?transport.sharedEventLoopThreads=1&amqp.sharedSerializerThreads=1";
+
+            Connection connection1 = testFixture.establishConnecton(testPeer1, options);
+            Connection connection2 = testFixture.establishConnecton(testPeer2, options);
+
+            testPeer1.expectBegin();
+            testPeer1.expectClose();
+            connection1.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            connection1.close();
+
+            testPeer1.waitForAllHandlersToComplete(1000);
+
+            // The second connection must be unaffected by the first releasing the shared threads.
+            testPeer2.expectBegin();
+            testPeer2.expectClose();
+            connection2.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            connection2.close();
+
+            testPeer2.waitForAllHandlersToComplete(1000);
+        }
+    }
+
     @Test(timeout = 20000)
     public void testCloseConnectionTimesOut() throws Exception {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
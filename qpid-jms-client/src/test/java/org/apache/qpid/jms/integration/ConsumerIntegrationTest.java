@@ -28,6 +28,7 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -50,6 +51,8 @@ import org.apache.qpid.jms.JmsConnection;
 import org.apache.qpid.jms.JmsDefaultConnectionListener;
 import org.apache.qpid.jms.JmsOperationTimedOutException;
 import org.apache.qpid.jms.message.JmsInboundMessageDispatch;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
+import org.apache.qpid.jms.metrics.JmsDestinationMetrics;
 import org.apache.qpid.jms.policy.JmsDefaultPrefetchPolicy;
 import org.apache.qpid.jms.test.QpidJmsTestCase;
 import org.apache.qpid.jms.test.Wait;
@@ -57,6 +60,7 @@ import org.apache.qpid.jms.test.testpeer.AmqpPeerRunnable;
 import org.apache.qpid.jms.test.testpeer.TestAmqpPeer;
 import org.apache.qpid.jms.test.testpeer.basictypes.AmqpError;
 import org.apache.qpid.jms.test.testpeer.describedtypes.sections.AmqpValueDescribedType;
+import org.apache.qpid.jms.test.testpeer.describedtypes.sections.PropertiesDescribedType;
 import org.apache.qpid.jms.test.testpeer.matchers.AcceptedMatcher;
 import org.apache.qpid.jms.test.testpeer.matchers.ModifiedMatcher;
 import org.apache.qpid.jms.test.testpeer.matchers.ReleasedMatcher;
@@ -219,6 +223,58 @@ public class ConsumerIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout = 20000)
+    public void testReceivedMessageLatencyTracked() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            JmsConnection connection = (JmsConnection) testFixture.establishConnecton(testPeer, "?jms.metricsLatencyEnabled=true");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            PropertiesDescribedType properties = new PropertiesDescribedType();
+            properties.setCreationTime(new Date(System.currentTimeMillis() - 50));
+            DescribedType amqpValueContent = new AmqpValueDescribedType("content");
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, properties, null, amqpValueContent);
+            testPeer.expectDispositionThatIsAcceptedAndSettled();
+
+            final JmsConnectionMetrics metrics = connection.getMetrics();
+            assertNotNull("Metrics should be enabled", metrics);
+            assertTrue(metrics.isLatencyTracked());
+
+            MessageConsumer messageConsumer = session.createConsumer(queue);
+
+            assertTrue("Message did not arrive", Wait.waitFor(new Wait.Condition() {
+
+                @Override
+                public boolean isSatisified() throws Exception {
+                    return metrics.getPrefetchDepth() == 1;
+                }
+            }, 5000, 5));
+
+            Thread.sleep(10);
+
+            Message receivedMessage = messageConsumer.receive(3000);
+            assertNotNull("A message should have been recieved", receivedMessage);
+
+            JmsDestinationMetrics destination = metrics.getDestinationMetrics("myQueue");
+            assertEquals(1, destination.getDeliveryLatency().getCount());
+            assertTrue(destination.getDeliveryLatency().getMax() >= 50);
+            assertEquals(1, destination.getPrefetchDwellTime().getCount());
+            assertTrue(destination.getPrefetchDwellTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(10));
+            assertEquals(1, metrics.getTotals().getPrefetchDwellTime().getCount());
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(2000);
+        }
+    }
+
     /**
      * Test that an Ack is not dropped when RTE is thrown from onMessage
      *
@@ -905,6 +961,110 @@ public class ConsumerIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout=20000)
+    public void testAdaptivePrefetchConsumerStartsWithMinimumCredit() throws Exception {
+        int minPrefetch = 5;
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer,
+                "?jms.prefetchPolicy.adaptive=true&jms.prefetchPolicy.minPrefetch=" + minPrefetch);
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            // The consumer should only grant its minimum prefetch until its consumption rate is known
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType("content"),
+                1, false, false, equalTo(UnsignedInteger.valueOf(minPrefetch)), 1, false, false);
+            testPeer.expectDisposition(true, new AcceptedMatcher());
+
+            MessageConsumer consumer = session.createConsumer(queue);
+            Message msg = consumer.receive(3000);
+            assertNotNull("Should have received a message", msg);
+
+            testPeer.expectDetach(true, true, true);
+            consumer.close();
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testConnectionPrefetchByteLimitThrottlesCredit() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            // A limit smaller than any message leaves the consumer a single message of credit
+            Connection connection = testFixture.establishConnecton(testPeer, "?jms.maxConnectionPrefetchBytes=1");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType("content"),
+                1, false, false, equalTo(UnsignedInteger.ONE), 1, false, false);
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType("content"),
+                1, false, false, equalTo(UnsignedInteger.ONE), 2, false, false);
+            testPeer.expectDisposition(true, new AcceptedMatcher());
+
+            MessageConsumer consumer = session.createConsumer(queue);
+            assertNotNull("Should have received a message", consumer.receive(3000));
+
+            testPeer.waitForAllHandlersToComplete(3000);
+
+            testPeer.expectLinkFlow(false, equalTo(UnsignedInteger.ONE));
+            testPeer.expectDisposition(true, new AcceptedMatcher());
+
+            assertNotNull("Should have received a message", consumer.receive(3000));
+
+            testPeer.expectDetach(true, true, true);
+            consumer.close();
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testSessionPrefetchByteLimitOpensWindowOnceMessageSizeKnown() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer, "?jms.maxSessionPrefetchBytes=1048576");
+            connection.start();
+
+            testPeer.expectBegin();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+
+            // Only one message is requested until the size of the messages is known, after
+            // which the full prefetch fits within the limit
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType("content"),
+                1, false, false, equalTo(UnsignedInteger.ONE), 1, false, false);
+            testPeer.expectLinkFlow(false, equalTo(UnsignedInteger.valueOf(JmsDefaultPrefetchPolicy.DEFAULT_QUEUE_PREFETCH)));
+            testPeer.expectDisposition(true, new AcceptedMatcher());
+
+            MessageConsumer consumer = session.createConsumer(queue);
+            assertNotNull("Should have received a message", consumer.receive(3000));
+
+            testPeer.expectDetach(true, true, true);
+            consumer.close();
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(3000);
+        }
+    }
+
     @Test(timeout=20000)
     public void testMessageListenerCallsConnectionCloseThrowsIllegalStateException() throws Exception {
         final CountDownLatch latch = new CountDownLatch(1);
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.qpid.jms.jfr.JmsFlightRecorder;
+import org.apache.qpid.jms.test.QpidJmsTestCase;
+import org.apache.qpid.jms.test.testpeer.TestAmqpPeer;
+import org.apache.qpid.jms.test.testpeer.describedtypes.sections.AmqpValueDescribedType;
+import org.apache.qpid.jms.test.testpeer.matchers.sections.TransferPayloadCompositeMatcher;
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderIntegrationTest extends QpidJmsTestCase {
+
+    private final IntegrationTestFixture testFixture = new IntegrationTestFixture();
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        assumeTrue(JmsFlightRecorder.isAvailable());
+    }
+
+    @Test(timeout = 20000)
+    public void testEventsRecordedWhenEnabled() throws Exception {
+        List<RecordedEvent> events;
+
+        try (Recording recording = new Recording()) {
+            recording.enable("org.apache.qpid.jms.Send").withoutThreshold();
+            recording.enable("org.apache.qpid.jms.Settle").withoutThreshold();
+            recording.enable("org.apache.qpid.jms.Delivery").withoutThreshold();
+            recording.enable("org.apache.qpid.jms.CreditGrant");
+            recording.enable("org.apache.qpid.jms.SerializerTask").withoutThreshold();
+            recording.start();
+
+            sendAndReceive();
+
+            recording.stop();
+            events = readEvents(recording);
+        }
+
+        RecordedEvent send = findEvent(events, "org.apache.qpid.jms.Send");
+        assertNotNull("Send event not recorded", send);
+        assertEquals("myQueue", send.getString("destination"));
+        assertTrue(send.getBoolean("succeeded"));
+
+        RecordedEvent settle = findEvent(events, "org.apache.qpid.jms.Settle");
+        assertNotNull("Settle event not recorded", settle);
+        assertEquals("Accepted", settle.getString("outcome"));
+        assertTrue(settle.getLong("size") > 0);
+
+        RecordedEvent delivery = findEvent(events, "org.apache.qpid.jms.Delivery");
+        assertNotNull("Delivery event not recorded", delivery);
+        assertEquals("myQueue", delivery.getString("destination"));
+        assertTrue(delivery.getBoolean("decoded"));
+
+        RecordedEvent credit = findEvent(events, "org.apache.qpid.jms.CreditGrant");
+        assertNotNull("Credit event not recorded", credit);
+        assertTrue(credit.getInt("granted") > 0);
+
+        assertNotNull("Serializer task event not recorded", findEvent(events, "org.apache.qpid.jms.SerializerTask"));
+    }
+
+    @Test(timeout = 20000)
+    public void testEventsDisabledByDefault() throws Exception {
+        List<RecordedEvent> events;
+
+        try (Recording recording = new Recording()) {
+            recording.start();
+
+            sendAndReceive();
+
+            recording.stop();
+            events = readEvents(recording);
+        }
+
+        for (RecordedEvent event : events) {
+            assertFalse("Unexpected event: " + event.getEventType().getName(),
+                        event.getEventType().getName().startsWith("org.apache.qpid.jms."));
+        }
+    }
+
+    private void sendAndReceive() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            connection.start();
+
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            MessageProducer producer = session.createProducer(queue);
+
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            producer.send(session.createTextMessage("text"));
+
+            testPeer.expectReceiverAttach();
+            testPeer.expectLinkFlowRespondWithTransfer(null, null, null, null, new AmqpValueDescribedType("text"));
+            testPeer.expectDispositionThatIsAcceptedAndSettled();
+
+            MessageConsumer consumer = session.createConsumer(queue);
+            Message received = consumer.receive(3000);
+            assertNotNull("A message should have been received", received);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(2000);
+        }
+    }
+
+    private List<RecordedEvent> readEvents(Recording recording) throws Exception {
+        File file = File.createTempFile("qpid-jms", ".jfr");
+        try {
+            recording.dump(file.toPath());
+            return new ArrayList<RecordedEvent>(RecordingFile.readAllEvents(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private RecordedEvent findEvent(List<RecordedEvent> events, String name) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                return event;
+            }
+        }
+
+        return null;
+    }
+}
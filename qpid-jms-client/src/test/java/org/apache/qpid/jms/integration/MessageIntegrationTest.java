@@ -204,8 +204,17 @@ public class MessageIntegrationTest extends QpidJmsTestCase
 
     @Test(timeout = 20000)
     public void testReceiveMessageWithApplicationProperties() throws Exception {
+        doReceiveMessageWithApplicationPropertiesTestImpl(null);
+    }
+
+    @Test(timeout = 20000)
+    public void testReceiveMessageWithApplicationPropertiesAndLazyDecoding() throws Exception {
+        doReceiveMessageWithApplicationPropertiesTestImpl("?amqp.lazyDecoding=true");
+    }
+
+    private void doReceiveMessageWithApplicationPropertiesTestImpl(String connectionOptions) throws Exception {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
-            Connection connection = testFixture.establishConnecton(testPeer);
+            Connection connection = testFixture.establishConnecton(testPeer, connectionOptions);
             connection.start();
 
             testPeer.expectBegin();
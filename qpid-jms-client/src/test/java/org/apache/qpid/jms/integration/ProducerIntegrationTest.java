@@ -28,17 +28,21 @@ import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
@@ -63,9 +67,11 @@ import javax.jms.Topic;
 import org.apache.qpid.jms.JmsConnection;
 import org.apache.qpid.jms.JmsConnectionFactory;
 import org.apache.qpid.jms.JmsDefaultConnectionListener;
+import org.apache.qpid.jms.JmsMessageProducer;
 import org.apache.qpid.jms.JmsOperationTimedOutException;
 import org.apache.qpid.jms.JmsSendTimedOutException;
 import org.apache.qpid.jms.message.foreign.ForeignJmsMessage;
+import org.apache.qpid.jms.metrics.JmsConnectionMetrics;
 import org.apache.qpid.jms.provider.amqp.message.AmqpMessageIdHelper;
 import org.apache.qpid.jms.provider.amqp.message.AmqpMessageSupport;
 import org.apache.qpid.jms.test.QpidJmsTestCase;
@@ -90,6 +96,7 @@ import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedByte;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.hamcrest.Matcher;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
@@ -344,6 +351,37 @@ public class ProducerIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout = 20000)
+    public void testSendingMessagesWithCoalescedWrites() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer, "?amqp.coalesceWrites=true");
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            MessageProducer producer = session.createProducer(queue);
+
+            final int messageCount = 5;
+            for (int i = 0; i < messageCount; ++i) {
+                String text = "myMessage-" + i;
+                TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+                messageMatcher.setHeadersMatcher(new MessageHeaderSectionMatcher(true));
+                messageMatcher.setMessageAnnotationsMatcher(new MessageAnnotationsSectionMatcher(true));
+                messageMatcher.setPropertiesMatcher(new MessagePropertiesSectionMatcher(true));
+                messageMatcher.setMessageContentMatcher(new EncodedAmqpValueMatcher(text));
+                testPeer.expectTransfer(messageMatcher);
+
+                producer.send(session.createTextMessage(text));
+            }
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
     @Test(timeout = 20000)
     public void testSendingMessageSetsJMSTimestamp() throws Exception {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
@@ -784,6 +822,172 @@ public class ProducerIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout=20000)
+    public void testSendingMessageWithULongMessageIdFormat() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            // DONT create a test fixture, we will drive everything directly.
+            String uri = "amqp://127.0.0.1:" + testPeer.getServerPort() + "?jms.messageIDPolicy.messageIDType=ULONG";
+            JmsConnectionFactory factory = new JmsConnectionFactory(uri);
+
+            testPeer.expectSaslAnonymous();
+            testPeer.expectOpen();
+            testPeer.expectBegin();
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Connection connection = factory.createConnection();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            String queueName = "myQueue";
+            Queue queue = session.createQueue(queueName);
+            MessageProducer producer = session.createProducer(queue);
+
+            String text = "myMessage";
+            MessageHeaderSectionMatcher headersMatcher = new MessageHeaderSectionMatcher(true).withDurable(equalTo(true));
+            MessageAnnotationsSectionMatcher msgAnnotationsMatcher = new MessageAnnotationsSectionMatcher(true);
+            MessagePropertiesSectionMatcher propsMatcher = new MessagePropertiesSectionMatcher(true).withMessageId(isA(UnsignedLong.class));
+            TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+            messageMatcher.setHeadersMatcher(headersMatcher);
+            messageMatcher.setMessageAnnotationsMatcher(msgAnnotationsMatcher);
+            messageMatcher.setPropertiesMatcher(propsMatcher);
+            messageMatcher.setMessageContentMatcher(new EncodedAmqpValueMatcher(text));
+            testPeer.expectTransfer(messageMatcher);
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            testPeer.expectClose();
+
+            Message message = session.createTextMessage(text);
+
+            assertNull("JMSMessageID should not yet be set", message.getJMSMessageID());
+
+            producer.send(message);
+
+            String jmsMessageID = message.getJMSMessageID();
+            assertNotNull("JMSMessageID should be set", jmsMessageID);
+            String encodingPrefix = AmqpMessageIdHelper.JMS_ID_PREFIX + AmqpMessageIdHelper.AMQP_ULONG_PREFIX;
+            assertTrue("The 'ULONG prefix' encoding hint was not found", jmsMessageID.startsWith(encodingPrefix));
+            assertSame("JMSMessageID should be created once", jmsMessageID, message.getJMSMessageID());
+
+            Message second = session.createTextMessage(text);
+            producer.send(second);
+            assertFalse("Each message should get its own JMSMessageID", jmsMessageID.equals(second.getJMSMessageID()));
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+
+            Object receivedMessageId = propsMatcher.getReceivedMessageId();
+
+            assertTrue("Expected ULONG message id to be sent", receivedMessageId instanceof UnsignedLong);
+            assertEquals("Expected JMSMessageId value to be present in AMQP message", jmsMessageID, AmqpMessageIdHelper.INSTANCE.toMessageIdString(receivedMessageId));
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testSendingMessageWithBinaryMessageIdFormat() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            // DONT create a test fixture, we will drive everything directly.
+            String uri = "amqp://127.0.0.1:" + testPeer.getServerPort() + "?jms.messageIDPolicy.messageIDType=BINARY";
+            JmsConnectionFactory factory = new JmsConnectionFactory(uri);
+
+            testPeer.expectSaslAnonymous();
+            testPeer.expectOpen();
+            testPeer.expectBegin();
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Connection connection = factory.createConnection();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            String queueName = "myQueue";
+            Queue queue = session.createQueue(queueName);
+            MessageProducer producer = session.createProducer(queue);
+
+            String text = "myMessage";
+            MessageHeaderSectionMatcher headersMatcher = new MessageHeaderSectionMatcher(true).withDurable(equalTo(true));
+            MessageAnnotationsSectionMatcher msgAnnotationsMatcher = new MessageAnnotationsSectionMatcher(true);
+            MessagePropertiesSectionMatcher propsMatcher = new MessagePropertiesSectionMatcher(true).withMessageId(isA(Binary.class));
+            TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+            messageMatcher.setHeadersMatcher(headersMatcher);
+            messageMatcher.setMessageAnnotationsMatcher(msgAnnotationsMatcher);
+            messageMatcher.setPropertiesMatcher(propsMatcher);
+            messageMatcher.setMessageContentMatcher(new EncodedAmqpValueMatcher(text));
+            testPeer.expectTransfer(messageMatcher);
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            testPeer.expectClose();
+
+            Message message = session.createTextMessage(text);
+
+            assertNull("JMSMessageID should not yet be set", message.getJMSMessageID());
+
+            producer.send(message);
+
+            String jmsMessageID = message.getJMSMessageID();
+            assertNotNull("JMSMessageID should be set", jmsMessageID);
+            String encodingPrefix = AmqpMessageIdHelper.JMS_ID_PREFIX + AmqpMessageIdHelper.AMQP_BINARY_PREFIX;
+            assertTrue("The 'BINARY prefix' encoding hint was not found", jmsMessageID.startsWith(encodingPrefix));
+            assertSame("JMSMessageID should be created once", jmsMessageID, message.getJMSMessageID());
+
+            Message second = session.createTextMessage(text);
+            producer.send(second);
+            assertFalse("Each message should get its own JMSMessageID", jmsMessageID.equals(second.getJMSMessageID()));
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+
+            Object receivedMessageId = propsMatcher.getReceivedMessageId();
+
+            assertTrue("Expected BINARY message id to be sent", receivedMessageId instanceof Binary);
+            assertEquals("Expected JMSMessageId value to be present in AMQP message", jmsMessageID, AmqpMessageIdHelper.INSTANCE.toMessageIdString(receivedMessageId));
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testSendRecordedInConnectionMetrics() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            // DONT create a test fixture, we will drive everything directly.
+            String uri = "amqp://127.0.0.1:" + testPeer.getServerPort() + "?jms.metricsEnabled=true";
+            JmsConnectionFactory factory = new JmsConnectionFactory(uri);
+
+            testPeer.expectSaslAnonymous();
+            testPeer.expectOpen();
+            testPeer.expectBegin();
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            JmsConnection connection = (JmsConnection) factory.createConnection();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            MessageProducer producer = session.createProducer(queue);
+
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+
+            producer.send(session.createTextMessage("first"));
+            producer.send(session.createTextMessage("second"));
+
+            JmsConnectionMetrics metrics = connection.getMetrics();
+            assertNotNull("Metrics should be enabled", metrics);
+            assertEquals(2, metrics.getMessagesSent());
+            assertTrue(metrics.getBytesSent() > 0);
+            assertEquals(2, metrics.getDestinationMetrics("myQueue").getMessagesSent());
+            assertEquals(metrics.getBytesSent(), metrics.getDestinationMetrics("myQueue").getBytesSent());
+            assertEquals(2, metrics.getSendSettleLatency().getCount());
+            assertEquals(metrics.getCreditStalls(), metrics.getCreditStallTime().getCount());
+            assertTrue(metrics.getSerializerWaitTime().getCount() > 0);
+
+            // The counts of a destination go once nothing uses it, the totals remain.
+            testPeer.expectDetach(true, true, true);
+            producer.close();
+
+            assertTrue(metrics.getDestinations().isEmpty());
+            assertEquals(2, metrics.getMessagesSent());
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
     @Test(timeout=20000)
     public void testSendingMessageWithPrefixedUUIDStringMessageIdFormat() throws Exception {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
@@ -1312,6 +1516,130 @@ public class ProducerIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout = 20000)
+    public void testSendBatchOfMessages() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            JmsMessageProducer producer = (JmsMessageProducer) session.createProducer(queue);
+
+            List<Message> messages = new ArrayList<Message>();
+            for (int i = 0; i < 3; ++i) {
+                String text = "myMessage" + i;
+                messages.add(session.createTextMessage(text));
+
+                TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+                messageMatcher.setHeadersMatcher(new MessageHeaderSectionMatcher(true));
+                messageMatcher.setMessageAnnotationsMatcher(new MessageAnnotationsSectionMatcher(true));
+                messageMatcher.setPropertiesMatcher(new MessagePropertiesSectionMatcher(true));
+                messageMatcher.setMessageContentMatcher(new EncodedAmqpValueMatcher(text));
+                testPeer.expectTransfer(messageMatcher);
+            }
+
+            producer.send(messages);
+
+            Set<String> messageIds = new HashSet<String>();
+            for (Message message : messages) {
+                assertEquals("Should have had JMSDestination set", queue, message.getJMSDestination());
+                assertEquals(DeliveryMode.PERSISTENT, message.getJMSDeliveryMode());
+                assertNotNull("Should have had JMSMessageID set", message.getJMSMessageID());
+                messageIds.add(message.getJMSMessageID());
+            }
+            assertEquals("Each message should have its own JMSMessageID", 3, messageIds.size());
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testSendBatchFailsWhenMessageRejected() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            JmsMessageProducer producer = (JmsMessageProducer) session.createProducer(queue);
+
+            List<Message> messages = new ArrayList<Message>();
+            messages.add(session.createTextMessage("first"));
+            messages.add(session.createTextMessage("second"));
+
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher(), nullValue(), false, new Rejected(), true);
+
+            try {
+                producer.send(messages);
+                fail("Expected an exception to be thrown");
+            } catch (JMSException e) {
+                // Expected
+            }
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(2000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testFailedSendBatchKeepsSendWindowForUnsettledMessages() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer,
+                "?jms.maxConnectionOutstandingSends=2&jms.failFastOnOutstandingLimit=true");
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            JmsMessageProducer producer = (JmsMessageProducer) session.createProducer(queue);
+
+            List<Message> messages = new ArrayList<Message>();
+            messages.add(session.createTextMessage("first"));
+            messages.add(session.createTextMessage("second"));
+
+            // The first message of the batch is written but never settled, so it still
+            // holds its place in the send window after the second one fails the batch.
+            testPeer.expectTransferButDoNotRespond(new TransferPayloadCompositeMatcher());
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher(), nullValue(), false, new Rejected(), true);
+
+            try {
+                producer.send(messages);
+                fail("Expected an exception to be thrown");
+            } catch (JMSException e) {
+                // Expected
+            }
+
+            testPeer.waitForAllHandlersToComplete(2000);
+
+            testPeer.expectTransferButDoNotRespond(new TransferPayloadCompositeMatcher());
+
+            producer.send(session.createTextMessage("third"), DeliveryMode.NON_PERSISTENT, Message.DEFAULT_PRIORITY, Message.DEFAULT_TIME_TO_LIVE);
+
+            try {
+                producer.send(session.createTextMessage("fourth"), DeliveryMode.NON_PERSISTENT, Message.DEFAULT_PRIORITY, Message.DEFAULT_TIME_TO_LIVE);
+                fail("Should have failed with the send window full");
+            } catch (ResourceAllocationException jmsEx) {
+                LOG.debug("Caught expected exception", jmsEx);
+            }
+
+            testPeer.waitForAllHandlersToComplete(2000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
     @Test(timeout = 20000)
     public void testSyncSendMessageRejected() throws Exception {
         doSyncSendMessageNotAcceptedTestImpl(new Rejected());
@@ -2169,6 +2497,98 @@ public class ProducerIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout = 20000)
+    public void testAsyncSendWaitsForSpaceInProducerSendWindow() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            JmsConnection connection = (JmsConnection) testFixture.establishConnecton(testPeer,
+                "?jms.forceAsyncSend=true&jms.maxProducerOutstandingSends=1");
+
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue("myQueue");
+            final MessageProducer producer = session.createProducer(queue);
+
+            // The second send must wait for the first to be accepted, the fourth finds the
+            // window held by the third, which is never settled, and waits until the close.
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            testPeer.expectTransfer(new TransferPayloadCompositeMatcher());
+            testPeer.expectTransferButDoNotRespond(new TransferPayloadCompositeMatcher());
+
+            producer.send(session.createTextMessage("first"));
+            producer.send(session.createTextMessage("second"));
+            producer.send(session.createTextMessage("third"));
+
+            final TextMessage fourth = session.createTextMessage("fourth");
+            final CountDownLatch done = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+            Thread sender = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        producer.send(fourth);
+                    } catch (Throwable error) {
+                        failure.set(error);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            sender.start();
+
+            assertFalse("Send should be waiting for the send window", done.await(200, TimeUnit.MILLISECONDS));
+
+            testPeer.waitForAllHandlersToComplete(2000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            assertTrue("Send was not released by the close", done.await(5, TimeUnit.SECONDS));
+            assertTrue(failure.get() instanceof JMSException);
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testAsyncSendFailsFastWhenConnectionSendWindowFull() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            JmsConnection connection = (JmsConnection) testFixture.establishConnecton(testPeer,
+                "?jms.forceAsyncSend=true&jms.maxConnectionOutstandingSends=2&jms.failFastOnOutstandingLimit=true");
+
+            testPeer.expectBegin();
+            testPeer.expectSenderAttach();
+            testPeer.expectSenderAttach();
+
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer1 = session.createProducer(session.createQueue("myQueue1"));
+            MessageProducer producer2 = session.createProducer(session.createQueue("myQueue2"));
+
+            testPeer.expectTransferButDoNotRespond(new TransferPayloadCompositeMatcher());
+            testPeer.expectTransferButDoNotRespond(new TransferPayloadCompositeMatcher());
+
+            producer1.send(session.createTextMessage("first"));
+            producer2.send(session.createTextMessage("second"));
+
+            try {
+                producer1.send(session.createTextMessage("third"));
+                fail("Should have failed with the send window full");
+            } catch (ResourceAllocationException jmsEx) {
+                LOG.debug("Caught expected exception", jmsEx);
+            }
+
+            testPeer.waitForAllHandlersToComplete(2000);
+
+            testPeer.expectClose();
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
     @Test(timeout = 20000)
     public void testAsyncCompletionResetsBytesMessage() throws Exception {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
@@ -28,7 +28,12 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
@@ -39,10 +44,15 @@ import javax.jms.TextMessage;
 import javax.jms.TransactionRolledBackException;
 
 import org.apache.qpid.jms.JmsConnection;
+import org.apache.qpid.jms.JmsConnectionFactory;
+import org.apache.qpid.jms.JmsDefaultConnectionListener;
 import org.apache.qpid.jms.JmsOperationTimedOutException;
+import org.apache.qpid.jms.JmsSession;
+import org.apache.qpid.jms.JmsTransactionCompletionListener;
 import org.apache.qpid.jms.policy.JmsDefaultPrefetchPolicy;
 import org.apache.qpid.jms.test.QpidJmsTestCase;
 import org.apache.qpid.jms.test.testpeer.TestAmqpPeer;
+import org.apache.qpid.jms.test.testpeer.basictypes.TransactionError;
 import org.apache.qpid.jms.test.testpeer.describedtypes.Accepted;
 import org.apache.qpid.jms.test.testpeer.describedtypes.Error;
 import org.apache.qpid.jms.test.testpeer.describedtypes.Modified;
@@ -391,7 +401,12 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
             // and reply with accepted and settled disposition to indicate the commit succeeded
             testPeer.expectDischarge(txnId, false);
 
-            // Expect the consumer to close now
+            // Then expect an unsettled 'declare' transfer to the txn coordinator, sent behind
+            // the discharge, and reply with a declared disposition state containing the txnId.
+            txnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+            testPeer.expectDeclare(txnId);
+
+            // Expect the consumer to close once the commit completes
             if (closeConsumer && closeBeforeCommit) {
                 testPeer.expectDetach(true, true, true);
 
@@ -404,11 +419,6 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
                 messageConsumer.close();
             }
 
-            // Then expect an unsettled 'declare' transfer to the txn coordinator, and
-            // reply with a declared disposition state containing the txnId.
-            txnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
-            testPeer.expectDeclare(txnId);
-
             session.commit();
 
             if (closeConsumer && !closeBeforeCommit) {
@@ -695,6 +705,11 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
             // and reply with accepted and settled disposition to indicate the rollback succeeded
             testPeer.expectDischarge(txnId, true);
 
+            // Then expect an unsettled 'declare' transfer to the txn coordinator, sent behind
+            // the discharge, and reply with a declared disposition state containing the txnId.
+            txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            testPeer.expectDeclare(txnId);
+
             if (closeConsumer) {
                 testPeer.expectDetach(true, true, true);
                 int unconsumed = transferCount - consumeCount;
@@ -705,11 +720,6 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
                 messageConsumer.close();
             }
 
-            // Then expect an unsettled 'declare' transfer to the txn coordinator, and
-            // reply with a declared disposition state containing the txnId.
-            txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
-            testPeer.expectDeclare(txnId);
-
             if (!closeConsumer) {
                 // Expect the messages that were not consumed to be released
                 int unconsumed = transferCount - consumeCount;
@@ -966,8 +976,12 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
 
             Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
             testPeer.expectDeclare(txnId);
-            testPeer.remotelyCloseLastCoordinatorLinkOnDischarge(txnId, false);
+            testPeer.remotelyCloseLastCoordinatorLinkOnDischarge(txnId, false, false, true, TransactionError.TRANSACTION_ROLLBACK, "Discharge of TX failed.");
+            // The declare sent behind the discharge fails with the link, so a new link is
+            // created to begin the next transaction as the old one is detached.
+            testPeer.expectDeclareButDoNotRespond();
             testPeer.expectCoordinatorAttach();
+            testPeer.expectDetach(true, false, false);
             testPeer.expectDeclare(txnId);
             testPeer.expectDischarge(txnId, true);
             testPeer.expectClose();
@@ -998,8 +1012,12 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
 
             Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
             testPeer.expectDeclare(txnId);
-            testPeer.remotelyCloseLastCoordinatorLinkOnDischarge(txnId, true);
+            testPeer.remotelyCloseLastCoordinatorLinkOnDischarge(txnId, true, false, true, TransactionError.TRANSACTION_ROLLBACK, "Discharge of TX failed.");
+            // The declare sent behind the discharge fails with the link, so a new link is
+            // created to begin the next transaction as the old one is detached.
+            testPeer.expectDeclareButDoNotRespond();
             testPeer.expectCoordinatorAttach();
+            testPeer.expectDetach(true, false, false);
             testPeer.expectDeclare(txnId);
             testPeer.expectDischarge(txnId, true);
             testPeer.expectClose();
@@ -1223,6 +1241,271 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
         }
     }
 
+    @Test(timeout=20000)
+    public void testDeclareOfNextTransactionSentBeforeCommitCompletes() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            JmsConnection connection = (JmsConnection) testFixture.establishConnecton(testPeer);
+            connection.setRequestTimeout(2000);
+            connection.start();
+
+            testPeer.expectBegin();
+            testPeer.expectCoordinatorAttach();
+
+            Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            testPeer.expectDeclare(txnId);
+
+            final Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+
+            // The discharge is left unanswered, the declare of the next TX should
+            // still be sent without waiting for the outcome of the commit.
+            testPeer.expectDischargeButDoNotRespond(txnId, false);
+            Binary nextTxnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+            testPeer.expectDeclare(nextTxnId);
+
+            final CountDownLatch commitFailed = new CountDownLatch(1);
+            Thread committer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        session.commit();
+                    } catch (JmsOperationTimedOutException jmsEx) {
+                        commitFailed.countDown();
+                    } catch (JMSException e) {
+                        LOG.error("Caught unexpected exception -> ", e);
+                    }
+                }
+            });
+            committer.start();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+            assertTrue("Commit should have timed out", commitFailed.await(5, TimeUnit.SECONDS));
+
+            // The next TX was begun and so is rolled back on close.
+            testPeer.expectDischarge(nextTxnId, true);
+            testPeer.expectClose();
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testAnsweredDeclareNotRetriedWhenCoordinatorClosesLater() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            JmsConnection connection = (JmsConnection) testFixture.establishConnecton(testPeer);
+            connection.setRequestTimeout(500);
+            connection.start();
+
+            testPeer.expectBegin();
+            testPeer.expectCoordinatorAttach();
+
+            Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            testPeer.expectDeclare(txnId);
+
+            Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+
+            // Both outcomes arrive, then the coordinator goes away while the next TX is open.
+            testPeer.expectDischarge(txnId, false);
+            Binary nextTxnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+            testPeer.expectDeclare(nextTxnId);
+            testPeer.remotelyCloseLastCoordinatorLink();
+
+            session.commit();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+
+            // The request timeouts of the answered declare and discharge must not fire and
+            // have the declare sent again on a new coordinator.
+            Thread.sleep(1000);
+
+            testPeer.waitForAllHandlersToComplete(1000);
+
+            // Only the commit of the open TX finds the coordinator gone.
+            Binary lastTxnId = new Binary(new byte[]{ (byte) 9, (byte) 10, (byte) 11, (byte) 12});
+            testPeer.expectCoordinatorAttach();
+            testPeer.expectDeclare(lastTxnId);
+            testPeer.expectDischarge(lastTxnId, true);
+            testPeer.expectClose();
+
+            try {
+                session.commit();
+                fail("Commit operation should have failed.");
+            } catch (TransactionRolledBackException jmsTxRb) {
+            }
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testAsyncCommitSendAfterCommitUsesNextTransaction() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            connection.start();
+
+            testPeer.expectBegin();
+            testPeer.expectCoordinatorAttach();
+
+            Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            testPeer.expectDeclare(txnId);
+
+            JmsSession session = (JmsSession) connection.createSession(true, Session.SESSION_TRANSACTED);
+            Queue queue = session.createQueue("myQueue");
+
+            testPeer.expectSenderAttach();
+            MessageProducer producer = session.createProducer(queue);
+
+            TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+            messageMatcher.setHeadersMatcher(new MessageHeaderSectionMatcher(true));
+            messageMatcher.setMessageAnnotationsMatcher(new MessageAnnotationsSectionMatcher(true));
+
+            TransactionalStateMatcher stateMatcher = new TransactionalStateMatcher();
+            stateMatcher.withTxnId(equalTo(txnId));
+            stateMatcher.withOutcome(nullValue());
+
+            TransactionalState txState = new TransactionalState();
+            txState.setTxnId(txnId);
+            txState.setOutcome(new Accepted());
+
+            testPeer.expectTransfer(messageMatcher, stateMatcher, false, txState, true);
+
+            producer.send(session.createMessage());
+
+            testPeer.expectDischarge(txnId, false);
+            Binary nextTxnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+            testPeer.expectDeclare(nextTxnId);
+
+            // The message sent after the commit call must carry the next TX id.
+            stateMatcher = new TransactionalStateMatcher();
+            stateMatcher.withTxnId(equalTo(nextTxnId));
+            stateMatcher.withOutcome(nullValue());
+
+            txState = new TransactionalState();
+            txState.setTxnId(nextTxnId);
+            txState.setOutcome(new Accepted());
+
+            testPeer.expectTransfer(messageMatcher, stateMatcher, false, txState, true);
+
+            final CountDownLatch committed = new CountDownLatch(1);
+            session.commit(new JmsTransactionCompletionListener() {
+
+                @Override
+                public void onCompletion() {
+                    committed.countDown();
+                }
+
+                @Override
+                public void onException(JMSException exception) {
+                    LOG.error("Caught unexpected exception -> ", exception);
+                }
+            });
+
+            producer.send(session.createMessage());
+
+            assertTrue("Commit should have completed", committed.await(5, TimeUnit.SECONDS));
+
+            testPeer.expectDischarge(nextTxnId, true);
+            testPeer.expectClose();
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testAsyncCommitFailureReportedToListener() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            connection.start();
+
+            testPeer.expectBegin();
+            testPeer.expectCoordinatorAttach();
+
+            Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            testPeer.expectDeclare(txnId);
+
+            JmsSession session = (JmsSession) connection.createSession(true, Session.SESSION_TRANSACTED);
+
+            Rejected commitFailure = new Rejected(new Error(Symbol.valueOf("failed"), "Unknown error"));
+            testPeer.expectDischarge(txnId, false, commitFailure);
+            Binary nextTxnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+            testPeer.expectDeclare(nextTxnId);
+
+            final CountDownLatch failed = new CountDownLatch(1);
+            session.commit(new JmsTransactionCompletionListener() {
+
+                @Override
+                public void onCompletion() {
+                    LOG.error("Commit should not have succeeded");
+                }
+
+                @Override
+                public void onException(JMSException exception) {
+                    if (exception instanceof TransactionRolledBackException) {
+                        failed.countDown();
+                    }
+                }
+            });
+
+            assertTrue("Commit should have failed", failed.await(5, TimeUnit.SECONDS));
+
+            testPeer.expectDischarge(nextTxnId, true);
+            testPeer.expectClose();
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testAsyncRollbackCompletesToListener() throws Exception {
+        try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
+            Connection connection = testFixture.establishConnecton(testPeer);
+            connection.start();
+
+            testPeer.expectBegin();
+            testPeer.expectCoordinatorAttach();
+
+            Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            testPeer.expectDeclare(txnId);
+
+            JmsSession session = (JmsSession) connection.createSession(true, Session.SESSION_TRANSACTED);
+
+            testPeer.expectDischarge(txnId, true);
+            Binary nextTxnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+            testPeer.expectDeclare(nextTxnId);
+
+            final CountDownLatch rolledBack = new CountDownLatch(1);
+            session.rollback(new JmsTransactionCompletionListener() {
+
+                @Override
+                public void onCompletion() {
+                    rolledBack.countDown();
+                }
+
+                @Override
+                public void onException(JMSException exception) {
+                    LOG.error("Caught unexpected exception -> ", exception);
+                }
+            });
+
+            assertTrue("Rollback should have completed", rolledBack.await(5, TimeUnit.SECONDS));
+
+            testPeer.expectDischarge(nextTxnId, true);
+            testPeer.expectClose();
+
+            connection.close();
+
+            testPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
+
     @Test(timeout=20000)
     public void testTransactionCommitTimesOut() throws Exception {
         try (TestAmqpPeer testPeer = new TestAmqpPeer();) {
@@ -1356,4 +1639,114 @@ public class TransactionsIntegrationTest extends QpidJmsTestCase {
             testPeer.waitForAllHandlersToComplete(1000);
         }
     }
+
+    @Test(timeout=20000)
+    public void testSendsDroppedWhileInDoubtReleaseProducerSendWindow() throws Exception {
+        try (TestAmqpPeer originalPeer = new TestAmqpPeer();
+             TestAmqpPeer finalPeer = new TestAmqpPeer();) {
+
+            final CountDownLatch finalConnected = new CountDownLatch(1);
+            final String finalURI = "amqp://localhost:" + finalPeer.getServerPort();
+
+            originalPeer.expectSaslAnonymous();
+            originalPeer.expectOpen();
+            originalPeer.expectBegin();
+
+            ConnectionFactory factory = new JmsConnectionFactory(
+                "failover:(amqp://localhost:" + originalPeer.getServerPort() + "," + finalURI + ")" +
+                "?failover.maxReconnectAttempts=10&jms.maxProducerOutstandingSends=1&jms.sendTimeout=1000");
+            JmsConnection connection = (JmsConnection) factory.createConnection();
+            connection.addConnectionListener(new JmsDefaultConnectionListener() {
+                @Override
+                public void onConnectionRestored(URI remoteURI) {
+                    if (finalURI.equals(remoteURI.toString())) {
+                        finalConnected.countDown();
+                    }
+                }
+            });
+            connection.start();
+
+            originalPeer.expectBegin();
+            originalPeer.expectCoordinatorAttach();
+
+            Binary txnId = new Binary(new byte[]{ (byte) 5, (byte) 6, (byte) 7, (byte) 8});
+            originalPeer.expectDeclare(txnId);
+
+            Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            Queue queue = session.createQueue("myQueue");
+
+            originalPeer.expectSenderAttach();
+            MessageProducer producer = session.createProducer(queue);
+
+            TransferPayloadCompositeMatcher messageMatcher = new TransferPayloadCompositeMatcher();
+            messageMatcher.setHeadersMatcher(new MessageHeaderSectionMatcher(true));
+            messageMatcher.setMessageAnnotationsMatcher(new MessageAnnotationsSectionMatcher(true));
+
+            TransactionalStateMatcher stateMatcher = new TransactionalStateMatcher();
+            stateMatcher.withTxnId(equalTo(txnId));
+            stateMatcher.withOutcome(nullValue());
+
+            TransactionalState txState = new TransactionalState();
+            txState.setTxnId(txnId);
+            txState.setOutcome(new Accepted());
+
+            originalPeer.expectTransfer(messageMatcher, stateMatcher, false, txState, true);
+
+            producer.send(session.createMessage());
+
+            originalPeer.waitForAllHandlersToComplete(2000);
+
+            // The transaction has work in it when the connection drops, so the one declared
+            // on recovery is in doubt and the sends made under it are dropped.
+            Binary recoveredTxnId = new Binary(new byte[]{ (byte) 1, (byte) 2, (byte) 3, (byte) 4});
+
+            finalPeer.expectSaslAnonymous();
+            finalPeer.expectOpen();
+            finalPeer.expectBegin();
+            finalPeer.expectBegin();
+            finalPeer.expectCoordinatorAttach();
+            finalPeer.expectDeclare(recoveredTxnId);
+            finalPeer.expectSenderAttach();
+
+            originalPeer.close();
+
+            assertTrue("Should connect to final peer", finalConnected.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 3; ++i) {
+                producer.send(session.createMessage());
+            }
+
+            finalPeer.waitForAllHandlersToComplete(2000);
+
+            finalPeer.expectDischarge(recoveredTxnId, true);
+            txnId = new Binary(new byte[]{ (byte) 9, (byte) 10, (byte) 11, (byte) 12});
+            finalPeer.expectDeclare(txnId);
+
+            session.rollback();
+
+            // Once rolled back the producer window must have space for new sends again.
+            stateMatcher = new TransactionalStateMatcher();
+            stateMatcher.withTxnId(equalTo(txnId));
+            stateMatcher.withOutcome(nullValue());
+
+            txState = new TransactionalState();
+            txState.setTxnId(txnId);
+            txState.setOutcome(new Accepted());
+
+            finalPeer.expectTransfer(messageMatcher, stateMatcher, false, txState, true);
+            finalPeer.expectTransfer(messageMatcher, stateMatcher, false, txState, true);
+
+            producer.send(session.createMessage());
+            producer.send(session.createMessage());
+
+            finalPeer.waitForAllHandlersToComplete(2000);
+
+            finalPeer.expectDischarge(txnId, true);
+            finalPeer.expectClose();
+
+            connection.close();
+
+            finalPeer.waitForAllHandlersToComplete(1000);
+        }
+    }
 }
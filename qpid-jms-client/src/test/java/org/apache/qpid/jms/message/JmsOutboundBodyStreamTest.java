@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class JmsOutboundBodyStreamTest {
+
+    @Test
+    public void testStartOnlyOnce() {
+        JmsOutboundBodyStream stream = new JmsOutboundBodyStream(new ByteArrayInputStream(new byte[0]), 0);
+        assertTrue(stream.start());
+        assertFalse(stream.start());
+    }
+
+    @Test
+    public void testLengthOutOfRange() {
+        try {
+            new JmsOutboundBodyStream(new ByteArrayInputStream(new byte[0]), -1);
+            fail("Should not accept a negative length");
+        } catch (IllegalArgumentException iae) {
+        }
+
+        try {
+            new JmsOutboundBodyStream(new ByteArrayInputStream(new byte[0]), JmsOutboundBodyStream.MAX_LENGTH + 1);
+            fail("Should not accept a length beyond a vbin32");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTransferIsBoundedByQueuedChunks() throws Exception {
+        final byte[] source = new byte[1000];
+        for (int i = 0; i < source.length; ++i) {
+            source[i] = (byte) i;
+        }
+
+        final JmsOutboundBodyStream stream = new JmsOutboundBodyStream(new ByteArrayInputStream(source), source.length, 100, 2);
+        final CountDownLatch queued = new CountDownLatch(2);
+        stream.setListener(new Runnable() {
+
+            @Override
+            public void run() {
+                queued.countDown();
+            }
+        });
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread sender = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    stream.transfer();
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        sender.start();
+
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        assertTrue("Sender should wait for the queued chunks to be taken", sender.isAlive());
+        assertFalse(stream.isComplete());
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        while (!stream.isComplete()) {
+            byte[] chunk = stream.poll();
+            if (chunk != null) {
+                assertTrue(chunk.length <= 100);
+                received.write(chunk);
+            }
+        }
+
+        sender.join(5000);
+        assertNull(failure.get());
+        assertArrayEquals(source, received.toByteArray());
+        assertNull(stream.poll());
+    }
+
+    @Test
+    public void testTransferFailsWhenSourceEndsEarly() throws Exception {
+        JmsOutboundBodyStream stream = new JmsOutboundBodyStream(new ByteArrayInputStream(new byte[10]), 20);
+
+        try {
+            stream.transfer();
+            fail("Should have failed on the short source");
+        } catch (EOFException eof) {
+        }
+
+        assertFalse(stream.isComplete());
+
+        try {
+            stream.poll();
+            fail("Should report the failure to the provider");
+        } catch (EOFException eof) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAbortWakesWaitingSender() throws Exception {
+        final JmsOutboundBodyStream stream = new JmsOutboundBodyStream(new ByteArrayInputStream(new byte[500]), 500, 100, 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread sender = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    stream.transfer();
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        sender.start();
+
+        IOException cause = new IOException("Send failed");
+        Thread.sleep(20);
+        stream.abort(cause);
+        stream.abort(new IOException("Ignored"));
+
+        sender.join(5000);
+        assertFalse(sender.isAlive());
+        assertSame(cause, failure.get());
+        assertFalse(stream.isComplete());
+    }
+
+    @Test
+    public void testDiscardReadsSourceWithoutQueuing() throws Exception {
+        JmsOutboundBodyStream stream = new JmsOutboundBodyStream(new ByteArrayInputStream(new byte[500]), 500, 100, 1);
+        stream.discard();
+        stream.transfer();
+
+        assertNull(stream.poll());
+        assertTrue(stream.isComplete());
+        assertEquals(500, stream.getLength());
+    }
+}
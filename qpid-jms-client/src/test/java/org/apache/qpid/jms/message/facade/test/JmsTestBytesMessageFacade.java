@@ -23,6 +23,7 @@ import java.io.OutputStream;
 import javax.jms.IllegalStateException;
 import javax.jms.JMSException;
 
+import org.apache.qpid.jms.message.JmsOutboundBodyStream;
 import org.apache.qpid.jms.message.facade.JmsBytesMessageFacade;
 
 import io.netty.buffer.ByteBuf;
@@ -38,6 +39,7 @@ public final class JmsTestBytesMessageFacade extends JmsTestMessageFacade implem
     private ByteBuf content = Unpooled.EMPTY_BUFFER;
     private ByteBufOutputStream bytesOut;
     private ByteBufInputStream bytesIn;
+    private JmsOutboundBodyStream bodyStream;
 
     public JmsTestBytesMessageFacade() {
     }
@@ -59,6 +61,7 @@ public final class JmsTestBytesMessageFacade extends JmsTestMessageFacade implem
         if (this.content != null) {
             copy.content = this.content.copy();
         }
+        copy.bodyStream = bodyStream;
 
         return copy;
     }
@@ -81,6 +84,7 @@ public final class JmsTestBytesMessageFacade extends JmsTestMessageFacade implem
         }
 
         content = Unpooled.EMPTY_BUFFER;
+        bodyStream = null;
     }
 
     @Override
@@ -149,6 +153,21 @@ public final class JmsTestBytesMessageFacade extends JmsTestMessageFacade implem
         return result;
     }
 
+    @Override
+    public void setBodyStream(JmsOutboundBodyStream bodyStream) {
+        clearBody();
+        this.bodyStream = bodyStream;
+    }
+
+    @Override
+    public JmsOutboundBodyStream getBodyStream() {
+        return bodyStream;
+    }
+
+    @Override
+    public void releaseStreamedBody() {
+    }
+
     @Override
     public void onSend(long producerTtl) throws JMSException {
         super.onSend(producerTtl);
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.qpid.jms.util.MessageQueue;
+import org.junit.Test;
+
+public class JmsConnectionMetricsTest {
+
+    @Test
+    public void testDestinationCountsAddToTotals() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+
+        JmsDestinationMetrics queue = metrics.acquireDestinationMetrics("queue");
+        JmsDestinationMetrics topic = metrics.acquireDestinationMetrics("topic");
+        assertSame(queue, metrics.acquireDestinationMetrics("queue"));
+
+        queue.recordSent(100);
+        queue.recordSent(50);
+        topic.recordReceived(10);
+
+        assertEquals(2, queue.getMessagesSent());
+        assertEquals(150, queue.getBytesSent());
+        assertEquals(0, queue.getMessagesReceived());
+        assertEquals(1, topic.getMessagesReceived());
+
+        assertEquals(2, metrics.getMessagesSent());
+        assertEquals(150, metrics.getBytesSent());
+        assertEquals(1, metrics.getMessagesReceived());
+        assertEquals(10, metrics.getBytesReceived());
+        assertEquals(2, metrics.getDestinations().size());
+    }
+
+    @Test
+    public void testDestinationRemovedWhenLastHolderReleases() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+
+        JmsDestinationMetrics producer = metrics.acquireDestinationMetrics("queue");
+        JmsDestinationMetrics consumer = metrics.acquireDestinationMetrics("queue");
+        producer.recordSent(100);
+
+        metrics.releaseDestinationMetrics(producer);
+        assertSame(consumer, metrics.getDestinationMetrics("queue"));
+
+        metrics.releaseDestinationMetrics(consumer);
+        assertTrue(metrics.getDestinations().isEmpty());
+        assertSame(metrics.getTotals(), metrics.getDestinationMetrics("queue"));
+        assertEquals(1, metrics.getMessagesSent());
+
+        JmsDestinationMetrics reopened = metrics.acquireDestinationMetrics("queue");
+        assertNotSame(producer, reopened);
+        assertEquals(0, reopened.getMessagesSent());
+    }
+
+    @Test
+    public void testLatencyNotTrackedByDefault() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+        JmsDestinationMetrics queue = metrics.acquireDestinationMetrics("queue");
+
+        queue.recordDeliveryLatency(10);
+        queue.recordPrefetchDwell(10);
+
+        assertFalse(metrics.isLatencyTracked());
+        assertFalse(queue.isLatencyTracked());
+        assertNull(queue.getDeliveryLatency());
+        assertNull(queue.getPrefetchDwellTime());
+        assertEquals(0, queue.getDeliveryLatencyMax());
+    }
+
+    @Test
+    public void testLatencyTrackedPerDestinationAndInTotal() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1", true);
+        JmsDestinationMetrics queue = metrics.acquireDestinationMetrics("queue");
+        JmsDestinationMetrics topic = metrics.acquireDestinationMetrics("topic");
+
+        queue.recordDeliveryLatency(20);
+        topic.recordDeliveryLatency(40);
+        queue.recordPrefetchDwell(TimeUnit.MILLISECONDS.toNanos(3));
+
+        assertTrue(queue.isLatencyTracked());
+        assertEquals(1, queue.getDeliveryLatency().getCount());
+        assertEquals(20, queue.getDeliveryLatencyMax());
+        assertEquals(3000, queue.getPrefetchDwellTimeMax());
+        assertEquals(0, topic.getPrefetchDwellTime().getCount());
+
+        assertEquals(2, metrics.getTotals().getDeliveryLatency().getCount());
+        assertEquals(30, metrics.getTotals().getDeliveryLatencyMean());
+        assertEquals(1, metrics.getTotals().getPrefetchDwellTime().getCount());
+    }
+
+    @Test
+    public void testPrefetchDepth() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+
+        MessageQueue first = mock(MessageQueue.class);
+        MessageQueue second = mock(MessageQueue.class);
+        when(first.size()).thenReturn(3);
+        when(second.size()).thenReturn(4);
+
+        metrics.addConsumer("first", first);
+        metrics.addConsumer("second", second);
+
+        assertEquals(7, metrics.getPrefetchDepth());
+        assertEquals(Integer.valueOf(3), metrics.getPrefetchDepths().get("first"));
+
+        metrics.removeConsumer("first");
+
+        assertEquals(4, metrics.getPrefetchDepth());
+        assertFalse(metrics.getPrefetchDepths().containsKey("first"));
+    }
+
+    @Test
+    public void testSerializerQueueLengthAndWaitTime() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+
+        final boolean[] ran = new boolean[1];
+        Runnable first = metrics.meterSerializerTask(new Runnable() {
+
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        Runnable second = metrics.meterSerializerTask(first);
+
+        assertEquals(2, metrics.getSerializerQueueLength());
+
+        first.run();
+
+        assertTrue(ran[0]);
+        assertEquals(1, metrics.getSerializerQueueLength());
+        assertEquals(1, metrics.getSerializerWaitTime().getCount());
+
+        second.run();
+
+        assertEquals(0, metrics.getSerializerQueueLength());
+    }
+
+    @Test
+    public void testDurationsReportedInMicroseconds() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+
+        metrics.recordSendSettled(TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.recordCreditStall();
+        metrics.recordCreditStallTime(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertEquals(2000, metrics.getSendSettleLatencyMax());
+        assertEquals(2000, metrics.getSendSettleLatencyMean());
+        assertEquals(1, metrics.getCreditStalls());
+        assertEquals(5000, metrics.getCreditStallTimeMax());
+    }
+
+    @Test
+    public void testReconnectCounts() {
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:1");
+
+        metrics.recordReconnectAttempt();
+        metrics.recordReconnectAttempt();
+        metrics.recordReconnect();
+
+        assertEquals(2, metrics.getReconnectAttempts());
+        assertEquals(1, metrics.getReconnects());
+    }
+
+    @Test
+    public void testRegisterAndUnregisterMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:mbeans");
+        metrics.acquireDestinationMetrics("before").recordSent(1);
+
+        ObjectName connection = new ObjectName("org.apache.qpid.jms:type=Connection,id=" + ObjectName.quote("ID:test:mbeans"));
+        ObjectName before = new ObjectName(connection + ",destination=" + ObjectName.quote("before"));
+        ObjectName after = new ObjectName(connection + ",destination=" + ObjectName.quote("after"));
+
+        metrics.registerMBeans();
+        try {
+            metrics.acquireDestinationMetrics("after");
+
+            assertTrue(server.isRegistered(connection));
+            assertTrue(server.isRegistered(before));
+            assertTrue(server.isRegistered(after));
+            assertEquals(1L, server.getAttribute(connection, "MessagesSent"));
+            assertEquals(1L, server.getAttribute(before, "MessagesSent"));
+        } finally {
+            metrics.unregisterMBeans();
+        }
+
+        assertFalse(server.isRegistered(connection));
+        assertFalse(server.isRegistered(before));
+        assertFalse(server.isRegistered(after));
+    }
+
+    @Test
+    public void testDestinationMBeanUnregisteredWhenLastHolderReleases() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        JmsConnectionMetrics metrics = new JmsConnectionMetrics("ID:test:release");
+
+        ObjectName connection = new ObjectName("org.apache.qpid.jms:type=Connection,id=" + ObjectName.quote("ID:test:release"));
+        ObjectName queue = new ObjectName(connection + ",destination=" + ObjectName.quote("queue"));
+
+        metrics.registerMBeans();
+        try {
+            JmsDestinationMetrics first = metrics.acquireDestinationMetrics("queue");
+            JmsDestinationMetrics second = metrics.acquireDestinationMetrics("queue");
+            assertTrue(server.isRegistered(queue));
+
+            metrics.releaseDestinationMetrics(first);
+            assertTrue(server.isRegistered(queue));
+
+            metrics.releaseDestinationMetrics(second);
+            assertFalse(server.isRegistered(queue));
+            assertTrue(server.isRegistered(connection));
+
+            metrics.acquireDestinationMetrics("queue");
+            assertTrue(server.isRegistered(queue));
+        } finally {
+            metrics.unregisterMBeans();
+        }
+
+        assertFalse(server.isRegistered(queue));
+    }
+}
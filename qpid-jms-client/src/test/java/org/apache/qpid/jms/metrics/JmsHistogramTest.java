@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JmsHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        JmsHistogram histogram = new JmsHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testCountSumMeanAndMax() {
+        JmsHistogram histogram = new JmsHistogram();
+
+        histogram.record(10);
+        histogram.record(20);
+        histogram.record(30);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(60, histogram.getSum());
+        assertEquals(20, histogram.getMean(), 0);
+        assertEquals(30, histogram.getMax());
+    }
+
+    @Test
+    public void testValuesBucketedByPowerOfTwo() {
+        JmsHistogram histogram = new JmsHistogram();
+
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(Long.MAX_VALUE);
+
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(64, counts.length);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(2, counts[2]);
+        assertEquals(1, counts[3]);
+        assertEquals(1, counts[63]);
+    }
+
+    @Test
+    public void testNegativeValuesRecordedAsZero() {
+        JmsHistogram histogram = new JmsHistogram();
+
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getBucketCounts()[0]);
+        assertEquals(0, histogram.getSum());
+    }
+
+    @Test
+    public void testPercentileIsUpperBoundOfBucket() {
+        JmsHistogram histogram = new JmsHistogram();
+
+        for (int i = 0; i < 99; ++i) {
+            histogram.record(100);
+        }
+        histogram.record(100000);
+
+        // 100 falls in the bucket from 64 to 127.
+        assertEquals(127, histogram.getValueAtPercentile(50));
+        assertEquals(127, histogram.getValueAtPercentile(99));
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+
+        long estimate = histogram.getValueAtPercentile(99.5);
+        assertTrue(estimate >= 100000 && estimate <= 100000 * 2);
+    }
+}
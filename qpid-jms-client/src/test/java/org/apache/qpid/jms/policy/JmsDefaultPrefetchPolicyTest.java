@@ -48,6 +48,10 @@ public class JmsDefaultPrefetchPolicyTest {
         assertEquals(JmsDefaultPrefetchPolicy.DEFAULT_QUEUE_PREFETCH, policy.getQueuePrefetch());
         assertEquals(JmsDefaultPrefetchPolicy.DEFAULT_QUEUE_BROWSER_PREFETCH, policy.getQueueBrowserPrefetch());
         assertEquals(JmsDefaultPrefetchPolicy.MAX_PREFETCH_SIZE, policy.getMaxPrefetchSize());
+        assertFalse(policy.isAdaptive());
+        assertEquals(JmsDefaultPrefetchPolicy.DEFAULT_MIN_PREFETCH, policy.getMinPrefetch());
+        assertEquals(JmsDefaultPrefetchPolicy.DEFAULT_BUFFER_TIME, policy.getBufferTime());
+        assertEquals(JmsDefaultPrefetchPolicy.DEFAULT_MAX_PREFETCH_BYTES, policy.getMaxPrefetchBytes());
     }
 
     @Test
@@ -58,6 +62,10 @@ public class JmsDefaultPrefetchPolicyTest {
         policy1.setQueueBrowserPrefetch(30);
         policy1.setQueuePrefetch(40);
         policy1.setMaxPrefetchSize(100);
+        policy1.setAdaptive(true);
+        policy1.setMinPrefetch(5);
+        policy1.setBufferTime(250);
+        policy1.setMaxPrefetchBytes(1024);
 
         JmsDefaultPrefetchPolicy policy2 = new JmsDefaultPrefetchPolicy(policy1);
 
@@ -66,6 +74,11 @@ public class JmsDefaultPrefetchPolicyTest {
         assertEquals(policy1.getQueuePrefetch(), policy2.getQueuePrefetch());
         assertEquals(policy1.getQueueBrowserPrefetch(), policy2.getQueueBrowserPrefetch());
         assertEquals(policy1.getMaxPrefetchSize(), policy2.getMaxPrefetchSize());
+        assertEquals(policy1.isAdaptive(), policy2.isAdaptive());
+        assertEquals(policy1.getMinPrefetch(), policy2.getMinPrefetch());
+        assertEquals(policy1.getBufferTime(), policy2.getBufferTime());
+        assertEquals(policy1.getMaxPrefetchBytes(), policy2.getMaxPrefetchBytes());
+        assertEquals(policy1, policy2);
     }
 
     @Test
@@ -133,6 +146,14 @@ public class JmsDefaultPrefetchPolicyTest {
         assertFalse(policy1.equals(policy5));
         assertFalse(policy1.equals(policy6));
 
+        JmsDefaultPrefetchPolicy policy7 = new JmsDefaultPrefetchPolicy();
+        policy7.setAdaptive(true);
+        JmsDefaultPrefetchPolicy policy8 = new JmsDefaultPrefetchPolicy();
+        policy8.setMinPrefetch(10);
+
+        assertFalse(policy1.equals(policy7));
+        assertFalse(policy1.equals(policy8));
+
         assertFalse(policy1.equals(null));
         assertFalse(policy1.equals(""));
     }
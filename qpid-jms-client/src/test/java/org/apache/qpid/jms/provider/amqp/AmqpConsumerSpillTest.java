@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.qpid.proton.engine.Receiver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Tests for writing received messages out to a spill file in {@link AmqpConsumer}.
+ */
+public class AmqpConsumerSpillTest {
+
+    private static final int MESSAGE_SIZE = 200 * 1024;
+    private static final int RECEIVED_SIZE = 1000;
+
+    private final byte[] message = new byte[MESSAGE_SIZE];
+
+    private File spillFile;
+    private RandomAccessFile file;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random().nextBytes(message);
+        spillFile = File.createTempFile("amqp-consumer-spill", ".spill");
+        file = new RandomAccessFile(spillFile, "rw");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.close();
+        spillFile.delete();
+    }
+
+    @Test
+    public void testSpillMapsWrittenMessage() throws Exception {
+        ByteBuf spilled = AmqpConsumer.spill(file.getChannel(), received(), remainder());
+
+        assertFalse(spilled.hasArray());
+        assertArrayEquals(message, toArray(spilled));
+    }
+
+    @Test
+    public void testWriteFailureKeepsMessageInMemory() throws Exception {
+        FileChannel channel = spy(file.getChannel());
+        doCallRealMethod().doCallRealMethod().doThrow(new IOException("No space left on device")).when(channel).write(any(ByteBuffer.class));
+
+        ByteBuf spilled = AmqpConsumer.spill(channel, received(), remainder());
+
+        assertTrue(spilled.hasArray());
+        assertArrayEquals(message, toArray(spilled));
+    }
+
+    @Test
+    public void testMapFailureKeepsMessageInMemory() throws Exception {
+        FileChannel channel = spy(file.getChannel());
+        doThrow(new IOException("Map failed")).when(channel).map(any(MapMode.class), anyLong(), anyLong());
+
+        ByteBuf spilled = AmqpConsumer.spill(channel, received(), remainder());
+
+        assertTrue(spilled.hasArray());
+        assertArrayEquals(message, toArray(spilled));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBackFailureIsThrown() throws Exception {
+        FileChannel channel = spy(file.getChannel());
+        doThrow(new IOException("Map failed")).when(channel).map(any(MapMode.class), anyLong(), anyLong());
+        doThrow(new IOException("Read failed")).when(channel).read(any(ByteBuffer.class), anyLong());
+
+        AmqpConsumer.spill(channel, received(), remainder());
+    }
+
+    private ByteBuf received() {
+        return Unpooled.wrappedBuffer(Arrays.copyOf(message, RECEIVED_SIZE));
+    }
+
+    private Receiver remainder() {
+        final ByteArrayInputStream remainder = new ByteArrayInputStream(message, RECEIVED_SIZE, MESSAGE_SIZE - RECEIVED_SIZE);
+
+        Receiver receiver = mock(Receiver.class);
+        when(receiver.recv(any(byte[].class), anyInt(), anyInt())).thenAnswer(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                Object[] args = invocation.getArguments();
+                return remainder.read((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+            }
+        });
+
+        return receiver;
+    }
+
+    private static byte[] toArray(ByteBuf buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class AmqpInFlightWindowTest {
+
+    @Test
+    public void testAddGetAndRemove() {
+        AmqpInFlightWindow<String> window = new AmqpInFlightWindow<String>();
+        assertTrue(window.isEmpty());
+
+        int first = window.add("first");
+        int second = window.add("second");
+
+        assertEquals(2, window.size());
+        assertEquals("first", window.get(first));
+        assertEquals("second", window.get(second));
+
+        assertEquals("first", window.remove(first));
+        assertNull(window.get(first));
+        assertNull(window.remove(first));
+        assertEquals(1, window.size());
+
+        assertEquals("second", window.remove(second));
+        assertTrue(window.isEmpty());
+    }
+
+    @Test
+    public void testTagsAreFixedWidthSlotNumbers() {
+        AmqpInFlightWindow<String> window = new AmqpInFlightWindow<String>();
+
+        for (int i = 0; i < 300; ++i) {
+            int slot = window.add("entry-" + i);
+            assertEquals(i, slot);
+
+            byte[] tag = window.getTag(slot);
+            assertEquals(AmqpInFlightWindow.TAG_SIZE, tag.length);
+            assertArrayEquals(new byte[] { 0, 0, (byte) (i >>> 8), (byte) i }, tag);
+            assertSame(tag, window.getTag(slot));
+        }
+    }
+
+    @Test
+    public void testSlotsReusedOldestFirst() {
+        AmqpInFlightWindow<String> window = new AmqpInFlightWindow<String>();
+
+        for (int i = 0; i < 4; ++i) {
+            window.add("entry-" + i);
+        }
+
+        window.remove(2);
+        window.remove(0);
+
+        assertEquals(2, window.add("reuse-2"));
+        assertEquals(0, window.add("reuse-0"));
+        assertEquals(4, window.add("new"));
+    }
+
+    @Test
+    public void testSlotsStayBelowPeakInFlight() {
+        AmqpInFlightWindow<Integer> window = new AmqpInFlightWindow<Integer>();
+        Set<Integer> slots = new HashSet<Integer>();
+
+        // Keep 100 in flight, settling the oldest as each new one is added.
+        int[] inFlight = new int[100];
+        for (int i = 0; i < 100; ++i) {
+            inFlight[i] = window.add(i);
+        }
+
+        for (int i = 100; i < 10000; ++i) {
+            window.remove(inFlight[i % 100]);
+            inFlight[i % 100] = window.add(i);
+            slots.add(inFlight[i % 100]);
+        }
+
+        assertEquals(100, window.size());
+        for (int slot : slots) {
+            assertTrue("Slot above peak in flight: " + slot, slot < 100);
+        }
+    }
+
+    @Test
+    public void testValuesInOrderAdded() {
+        AmqpInFlightWindow<String> window = new AmqpInFlightWindow<String>();
+
+        int a = window.add("a");
+        window.add("b");
+        int c = window.add("c");
+        window.remove(a);
+        window.add("d");
+        window.remove(c);
+        window.add("e");
+
+        assertEquals(Arrays.asList("b", "d", "e"), window.values());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+public class AmqpPrefetchBudgetTest {
+
+    @Test
+    public void testReserveAndRelease() {
+        AmqpPrefetchBudget budget = new AmqpPrefetchBudget(1000);
+        assertEquals(1000, budget.getLimit());
+        assertEquals(1000, budget.getAvailable());
+
+        budget.reserve(600);
+        assertEquals(600, budget.getUsed());
+        assertEquals(400, budget.getAvailable());
+
+        budget.reserve(600);
+        assertEquals(1200, budget.getUsed());
+        assertEquals(0, budget.getAvailable());
+
+        budget.release(600);
+        budget.release(600);
+        assertEquals(0, budget.getUsed());
+        assertEquals(1000, budget.getAvailable());
+    }
+
+    @Test
+    public void testThrottledConsumersNotifiedOnRelease() {
+        AmqpPrefetchBudget budget = new AmqpPrefetchBudget(1000);
+        AmqpConsumer throttled = mock(AmqpConsumer.class);
+        AmqpConsumer other = mock(AmqpConsumer.class);
+
+        budget.setThrottled(throttled, true);
+        budget.setThrottled(other, true);
+        budget.setThrottled(other, false);
+
+        budget.reserve(100);
+        budget.release(100);
+
+        verify(throttled, times(1)).onPrefetchBudgetReleased();
+        verify(other, never()).onPrefetchBudgetReleased();
+
+        budget.setThrottled(throttled, false);
+        budget.release(0);
+
+        verify(throttled, times(1)).onPrefetchBudgetReleased();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AmqpPrefetchWindowTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testStartsAtMinimumPrefetch() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(5, 1000, 500, 0);
+        assertEquals(5, window.getWindow());
+    }
+
+    @Test
+    public void testMinimumIsBoundedByMaximum() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(50, 10, 500, 0);
+        assertEquals(10, window.getWindow());
+    }
+
+    @Test
+    public void testGrowsForFastConsumerUpToMaximum() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(1, 1000, 500, 0);
+
+        // Ten thousand messages a second is far more than the maximum over the buffer time.
+        int previous = window.getWindow();
+        for (int i = 0; i < 100000; ++i) {
+            consume(window, 100000);
+
+            int current = window.getWindow();
+            assertTrue("Window should never more than double", current <= previous * 2);
+            previous = current;
+        }
+
+        assertEquals(1000, window.getWindow());
+    }
+
+    @Test
+    public void testWindowCoversRoundTripAndBufferTime() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(1, 10000, 100, 0);
+
+        // One message every millisecond with a 100ms round trip should settle on 200 messages.
+        for (int i = 0; i < 50; ++i) {
+            window.onCreditGranted(now, true);
+            now += 100 * MILLIS;
+            window.onMessageArrived(now, 100);
+        }
+
+        for (int i = 0; i < 10000; ++i) {
+            consume(window, MILLIS);
+        }
+
+        int size = window.getWindow();
+        assertTrue("Unexpected window size: " + size, size >= 190 && size <= 210);
+    }
+
+    @Test
+    public void testShrinksForStalledConsumer() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(1, 1000, 500, 0);
+
+        for (int i = 0; i < 100000; ++i) {
+            consume(window, 100000);
+        }
+        assertEquals(1000, window.getWindow());
+
+        // A stall halves the window at most, so repeated stalls are needed to reach the minimum.
+        consume(window, TimeUnit.SECONDS.toNanos(10));
+        assertEquals(500, window.getWindow());
+
+        for (int i = 0; i < 20; ++i) {
+            consume(window, TimeUnit.SECONDS.toNanos(10));
+        }
+        assertEquals(1, window.getWindow());
+    }
+
+    @Test
+    public void testLimitedByBytesForLargeMessages() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(1, 1000, 500, 1024 * 1024);
+
+        for (int i = 0; i < 100000; ++i) {
+            consume(window, 100000);
+        }
+        assertEquals(1000, window.getWindow());
+
+        window.onMessageArrived(now, 64 * 1024);
+        assertEquals(16, window.getWindow());
+    }
+
+    @Test
+    public void testByteLimitDoesNotGoBelowMinimum() {
+        AmqpPrefetchWindow window = new AmqpPrefetchWindow(4, 1000, 500, 1024);
+
+        window.onMessageArrived(now, 1024 * 1024);
+        assertEquals(4, window.getWindow());
+    }
+
+    private void consume(AmqpPrefetchWindow window, long interval) {
+        now += interval;
+        window.onMessageConsumed(now);
+    }
+}
@@ -116,7 +116,11 @@ public class AmqpProviderFactoryTest extends QpidJmsTestCase {
         URI configuredURI = new URI(peerURI.toString() +
             "?amqp.traceFrames=true" +
             "&amqp.traceBytes=true" +
-            "&amqp.channelMax=32");
+            "&amqp.channelMax=32" +
+            "&amqp.coalesceWrites=true" +
+            "&amqp.coalesceWritesLimit=4096" +
+            "&amqp.sharedSerializerThreads=2" +
+            "&amqp.lazyDecoding=true");
         Provider provider = AmqpProviderFactory.create(configuredURI);
         assertNotNull(provider);
         assertTrue(provider instanceof AmqpProvider);
@@ -126,5 +130,9 @@ public class AmqpProviderFactoryTest extends QpidJmsTestCase {
         assertEquals(true, amqpProvider.isTraceBytes());
         assertEquals(true, amqpProvider.isTraceFrames());
         assertEquals(32, amqpProvider.getChannelMax());
+        assertEquals(true, amqpProvider.isCoalesceWrites());
+        assertEquals(4096, amqpProvider.getCoalesceWritesLimit());
+        assertEquals(2, amqpProvider.getSharedSerializerThreads());
+        assertEquals(true, amqpProvider.isLazyDecoding());
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.jms.provider.amqp.AmqpTimeoutWheel.Timeout;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AmqpTimeoutWheelTest {
+
+    private ScheduledThreadPoolExecutor executor;
+    private AmqpTimeoutWheel wheel;
+
+    @Before
+    public void setUp() {
+        executor = new ScheduledThreadPoolExecutor(1);
+        wheel = new AmqpTimeoutWheel(executor, 10, 8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeoutRunsNoSoonerThanDelay() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final long[] ranAfter = new long[1];
+        final long start = System.nanoTime();
+
+        onExecutor(new Callable<Timeout>() {
+
+            @Override
+            public Timeout call() {
+                return wheel.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        ranAfter[0] = System.nanoTime() - start;
+                        expired.countDown();
+                    }
+                }, 50);
+            }
+        });
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue("Ran early: " + ranAfter[0], ranAfter[0] >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, (int) onExecutor(new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return wheel.getPending();
+            }
+        }));
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeoutBeyondOneRotation() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final long[] ranAfter = new long[1];
+        final long start = System.nanoTime();
+
+        // Eight buckets of 10ms cover 80ms, this needs more than two rotations.
+        onExecutor(new Callable<Timeout>() {
+
+            @Override
+            public Timeout call() {
+                return wheel.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        ranAfter[0] = System.nanoTime() - start;
+                        expired.countDown();
+                    }
+                }, 200);
+            }
+        });
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue("Ran early: " + ranAfter[0], ranAfter[0] >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledTimeoutDoesNotRun() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+
+        final Timeout cancelled = onExecutor(new Callable<Timeout>() {
+
+            @Override
+            public Timeout call() {
+                return wheel.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        ran.add("cancelled");
+                    }
+                }, 20);
+            }
+        });
+
+        final Timeout kept = onExecutor(new Callable<Timeout>() {
+
+            @Override
+            public Timeout call() {
+                Timeout timeout = wheel.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        ran.add("kept");
+                        expired.countDown();
+                    }
+                }, 40);
+
+                assertTrue(cancelled.cancel());
+                assertFalse(cancelled.cancel());
+                assertTrue(cancelled.isCancelled());
+
+                return timeout;
+            }
+        });
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("kept"), ran);
+
+        assertFalse(onExecutor(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() {
+                return kept.cancel();
+            }
+        }));
+        assertTrue(kept.isExpired());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeoutsRunInOrderScheduled() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(4);
+        final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+
+        onExecutor(new Callable<Void>() {
+
+            @Override
+            public Void call() {
+                long[] delays = new long[] { 10, 10, 30, 30 };
+                for (int i = 0; i < delays.length; ++i) {
+                    final int index = i;
+                    wheel.schedule(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            ran.add(index);
+                            expired.countDown();
+                        }
+                    }, delays[i]);
+                }
+
+                return null;
+            }
+        });
+
+        // Stall the executor past all of the deadlines so they expire together.
+        onExecutor(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                Thread.sleep(60);
+                return null;
+            }
+        });
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2, 3), ran);
+    }
+
+    private <T> T onExecutor(Callable<T> task) throws Exception {
+        return executor.submit(task).get(5, TimeUnit.SECONDS);
+    }
+}
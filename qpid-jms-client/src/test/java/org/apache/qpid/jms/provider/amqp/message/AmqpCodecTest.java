@@ -21,10 +21,12 @@
 package org.apache.qpid.jms.provider.amqp.message;
 
 import static org.apache.qpid.jms.provider.amqp.message.AmqpMessageSupport.encodeMessage;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -54,7 +56,9 @@ import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.messaging.AmqpSequence;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
 import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Footer;
 import org.apache.qpid.proton.amqp.messaging.Header;
 import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
 import org.apache.qpid.proton.message.Message;
@@ -64,6 +68,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 public class AmqpCodecTest extends QpidJmsTestCase {
     private AmqpConsumer mockConsumer;
@@ -893,4 +898,261 @@ public class AmqpCodecTest extends QpidJmsTestCase {
         AmqpObjectTypeDelegate delegate = ((AmqpJmsObjectMessageFacade) facade).getDelegate();
         assertTrue("Unexpected delegate type: " + delegate, delegate instanceof AmqpTypedObjectDelegate);
     }
+
+    //----- Data body decoding -----------------------------------------------//
+
+    @Test
+    public void testDecodeSmallDataBodyRefersToIncomingBytes() throws Exception {
+        doTestDecodeDataBodyRefersToIncomingBytes(100);
+    }
+
+    @Test
+    public void testDecodeLargeDataBodyRefersToIncomingBytes() throws Exception {
+        doTestDecodeDataBodyRefersToIncomingBytes(65536);
+    }
+
+    private void doTestDecodeDataBodyRefersToIncomingBytes(int size) throws Exception {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        Message message = Proton.message();
+        message.setBody(new Data(new Binary(payload)));
+        message.setContentType("unknown-content-type");
+        Map<Object, Object> footerValues = new HashMap<Object, Object>();
+        footerValues.put(Symbol.valueOf("footer-key"), "footer-value");
+        message.setFooter(new Footer(footerValues));
+
+        ByteBuf encoded = encodeMessage(message);
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeMessage(mockConsumer, encoded);
+        assertEquals("Unexpected facade class type", AmqpJmsBytesMessageFacade.class, facade.getClass());
+        assertNotNull("Footer after the body should have been decoded", facade.getFooter());
+
+        Binary body = ((Data) facade.getBody()).getValue();
+        assertSame("Body should refer to the incoming bytes", encoded.array(), body.getArray());
+        assertEquals(new Binary(payload), body);
+    }
+
+    //----- Lazy decoding ----------------------------------------------------//
+
+    @Test
+    public void testLazyDecodingLeavesApplicationPropertiesAndBodyEncoded() throws Exception {
+        Mockito.when(mockConsumer.isLazyDecoding()).thenReturn(true);
+
+        ByteBuf encoded = encodeMessage(createMessageForLazyDecoding(true));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeMessage(mockConsumer, encoded);
+        assertEquals("Unexpected facade class type", AmqpJmsBytesMessageFacade.class, facade.getClass());
+        assertNotNull(facade.getEncodedApplicationProperties());
+        assertNotNull(facade.getEncodedBody());
+
+        assertEquals("value", facade.getApplicationProperty("key"));
+        assertNull(facade.getEncodedApplicationProperties());
+        assertNotNull(facade.getEncodedBody());
+
+        Binary body = ((Data) facade.getBody()).getValue();
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), body);
+        assertNull(facade.getEncodedBody());
+        assertNotNull(facade.getFooter());
+    }
+
+    @Test
+    public void testLazyDecodingWithoutTypeAnnotationDecodesBody() throws Exception {
+        Mockito.when(mockConsumer.isLazyDecoding()).thenReturn(true);
+
+        ByteBuf encoded = encodeMessage(createMessageForLazyDecoding(false));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeMessage(mockConsumer, encoded);
+        assertEquals("Unexpected facade class type", AmqpJmsBytesMessageFacade.class, facade.getClass());
+        assertNotNull(facade.getEncodedApplicationProperties());
+        assertNull(facade.getEncodedBody());
+        assertNotNull(facade.getBody());
+        assertNotNull(facade.getFooter());
+    }
+
+    @Test
+    public void testLazilyDecodedMessageEncodesOriginalSections() throws Exception {
+        Mockito.when(mockConsumer.isLazyDecoding()).thenReturn(true);
+
+        ByteBuf encoded = encodeMessage(createMessageForLazyDecoding(true));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeMessage(mockConsumer, encoded);
+        ByteBuf reencoded = AmqpCodec.encodeMessage(facade);
+
+        // The sections left encoded should have been written without being decoded.
+        assertNotNull(facade.getEncodedApplicationProperties());
+        assertNotNull(facade.getEncodedBody());
+
+        Mockito.when(mockConsumer.isLazyDecoding()).thenReturn(false);
+
+        AmqpJmsMessageFacade decoded = AmqpCodec.decodeMessage(mockConsumer, reencoded);
+        assertEquals("value", decoded.getApplicationProperty("key"));
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), ((Data) decoded.getBody()).getValue());
+        assertNotNull(decoded.getFooter());
+    }
+
+    @Test
+    public void testLazyDecodedMessageCopyRetainsSections() throws Exception {
+        Mockito.when(mockConsumer.isLazyDecoding()).thenReturn(true);
+
+        ByteBuf encoded = encodeMessage(createMessageForLazyDecoding(true));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeMessage(mockConsumer, encoded);
+        AmqpJmsMessageFacade copy = facade.copy();
+
+        assertEquals("value", copy.getApplicationProperty("key"));
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), ((Data) copy.getBody()).getValue());
+        assertNotNull(copy.getFooter());
+    }
+
+    @Test
+    public void testEncodeMessageWithLargeDataBodyIntoPooledBuffer() throws Exception {
+        byte[] payload = new byte[64 * 1024];
+        for (int i = 0; i < payload.length; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        Message message = Proton.message();
+        message.setBody(new Data(new Binary(payload)));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeMessage(mockConsumer, encodeMessage(message));
+        ByteBuf encoded = AmqpCodec.encodeMessage(facade);
+
+        assertTrue("Buffer should be array backed", encoded.hasArray());
+        assertEquals(1, encoded.refCnt());
+        assertTrue(encoded.readableBytes() > payload.length);
+        assertTrue("Buffer should be sized from the body", encoded.capacity() < payload.length * 2);
+
+        AmqpJmsMessageFacade decoded = AmqpCodec.decodeMessage(mockConsumer, Unpooled.copiedBuffer(encoded));
+        assertEquals(new Binary(payload), ((Data) decoded.getBody()).getValue());
+
+        assertTrue(encoded.release());
+    }
+
+    @Test
+    public void testFindBodySectionOfDataBody() throws Exception {
+        Message message = Proton.message();
+        message.setMessageId("ID:streamed");
+        message.setContentType(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE);
+        message.setBody(new Data(new Binary(new byte[300])));
+
+        ByteBuf encoded = encodeMessage(message);
+
+        int offset = AmqpCodec.findBodySection(encoded);
+        assertTrue(offset > 0);
+        assertEquals(offset + 3, AmqpCodec.findBodyValue(encoded, offset));
+        assertEquals((byte) 0xb0, encoded.getByte(encoded.readerIndex() + offset + 3));
+        assertEquals(300, encoded.getUnsignedInt(encoded.readerIndex() + offset + 4));
+
+        // Only the sections ahead of the body are needed to find it.
+        assertEquals(AmqpCodec.BODY_SECTION_INCOMPLETE, AmqpCodec.findBodySection(encoded.slice(encoded.readerIndex(), offset)));
+        assertEquals(offset, AmqpCodec.findBodySection(encoded.slice(encoded.readerIndex(), offset + 3)));
+
+        AmqpJmsBytesMessageFacade facade = AmqpCodec.decodeStreamedMessage(mockConsumer, encoded.slice(encoded.readerIndex(), offset));
+        assertNotNull(facade);
+        assertEquals("ID:streamed", facade.getMessageId());
+    }
+
+    @Test
+    public void testFindBodySectionWithSymbolicDescriptors() throws Exception {
+        ByteBuf encoded = Unpooled.buffer();
+        encoded.writeByte(0x00).writeByte(0xa3).writeByte(20).writeBytes("amqp:properties:list".getBytes(StandardCharsets.US_ASCII));
+        encoded.writeByte(0x45);
+        encoded.writeByte(0x00).writeByte(0xa3).writeByte(16).writeBytes("amqp:data:binary".getBytes(StandardCharsets.US_ASCII));
+        encoded.writeByte(0xb0).writeInt(4).writeInt(0);
+
+        int offset = AmqpCodec.findBodySection(encoded);
+        assertEquals(24, offset);
+        assertEquals(offset + 19, AmqpCodec.findBodyValue(encoded, offset));
+    }
+
+    @Test
+    public void testFindBodySectionOfNonDataBody() throws Exception {
+        Message message = Proton.message();
+        message.setBody(new AmqpValue("text"));
+
+        assertEquals(AmqpCodec.BODY_SECTION_NOT_DATA, AmqpCodec.findBodySection(encodeMessage(message)));
+    }
+
+    @Test
+    public void testDecodeSpilledMessageLeavesDataBodyEncoded() throws Exception {
+        byte[] payload = new byte[2048];
+        for (int i = 0; i < payload.length; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        Message message = Proton.message();
+        message.setContentType(AmqpMessageSupport.OCTET_STREAM_CONTENT_TYPE);
+        message.setBody(new Data(new Binary(payload)));
+
+        // A spilled message is decoded from a buffer mapped from the spill file.
+        ByteBuf encoded = encodeMessage(message);
+        ByteBuf mapped = Unpooled.directBuffer(encoded.readableBytes());
+        mapped.writeBytes(encoded);
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeSpilledMessage(mockConsumer, mapped);
+        assertTrue(facade instanceof AmqpJmsBytesMessageFacade);
+        assertNotNull(facade.getEncodedBody());
+
+        AmqpJmsBytesMessageFacade bytesFacade = (AmqpJmsBytesMessageFacade) facade;
+        assertEquals(payload.length, bytesFacade.getBodyLength());
+
+        // The application's copy shares the body without decoding it.
+        AmqpJmsBytesMessageFacade copy = bytesFacade.copy();
+        assertNotNull(facade.getEncodedBody());
+        assertNotNull(copy.getEncodedBody());
+
+        byte[] received = new byte[payload.length];
+        assertEquals(payload.length, copy.getInputStream().read(received));
+        assertArrayEquals(payload, received);
+        assertArrayEquals(payload, bytesFacade.copyBody());
+        assertNotNull(copy.getEncodedBody());
+    }
+
+    @Test
+    public void testDecodeSpilledMessageWithTextContentType() throws Exception {
+        Message message = Proton.message();
+        message.setContentType("text/plain");
+        message.setBody(new Data(new Binary("spilled".getBytes(StandardCharsets.UTF_8))));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeSpilledMessage(mockConsumer, encodeMessage(message));
+        assertTrue(facade instanceof AmqpJmsTextMessageFacade);
+        assertEquals("spilled", ((AmqpJmsTextMessageFacade) facade).getText());
+    }
+
+    @Test
+    public void testDecodeSpilledMessageWithValueBody() throws Exception {
+        Message message = Proton.message();
+        message.setBody(new AmqpValue("value"));
+
+        AmqpJmsMessageFacade facade = AmqpCodec.decodeSpilledMessage(mockConsumer, encodeMessage(message));
+        assertTrue(facade instanceof AmqpJmsTextMessageFacade);
+        assertNull(facade.getEncodedBody());
+        assertEquals("value", ((AmqpJmsTextMessageFacade) facade).getText());
+    }
+
+    private Message createMessageForLazyDecoding(boolean annotated) {
+        Message message = Proton.message();
+        message.setMessageId("ID:lazy-decoding");
+
+        if (annotated) {
+            Map<Symbol, Object> annotations = new HashMap<Symbol, Object>();
+            annotations.put(Symbol.valueOf(AmqpMessageSupport.JMS_MSG_TYPE), AmqpMessageSupport.JMS_BYTES_MESSAGE);
+            message.setMessageAnnotations(new MessageAnnotations(annotations));
+        }
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("key", "value");
+        message.setApplicationProperties(new ApplicationProperties(properties));
+
+        message.setBody(new Data(new Binary(new byte[] { 1, 2, 3 })));
+
+        Map<Object, Object> footerValues = new HashMap<Object, Object>();
+        footerValues.put(Symbol.valueOf("footer-key"), "footer-value");
+        message.setFooter(new Footer(footerValues));
+
+        return message;
+    }
 }
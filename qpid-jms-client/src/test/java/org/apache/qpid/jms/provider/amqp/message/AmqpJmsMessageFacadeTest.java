@@ -2255,6 +2255,52 @@ public class AmqpJmsMessageFacadeTest extends AmqpJmsMessageTypesTestCase  {
         assertEquals(amqpTtl, copy.getProperty(AmqpMessageSupport.JMS_AMQP_TTL));
     }
 
+    @Test
+    public void testCopyIsIndependentOfSourceWhenCopyModified() throws JMSException {
+        AmqpJmsMessageFacade source = createNewMessageFacade();
+
+        source.setGroupId("TEST-GROUP");
+        source.setProperty("APP-Prop", "APP-Prop-Value");
+        source.setMessageAnnotation("test-annotation", "value");
+
+        AmqpJmsMessageFacade copy = source.copy();
+
+        copy.setGroupId("OTHER-GROUP");
+        copy.setProperty("APP-Prop", "Other-Value");
+        copy.removeMessageAnnotation("test-annotation");
+
+        assertEquals("TEST-GROUP", source.getGroupId());
+        assertEquals("APP-Prop-Value", source.getProperty("APP-Prop"));
+        assertEquals("value", source.getMessageAnnotation("test-annotation"));
+
+        assertEquals("OTHER-GROUP", copy.getGroupId());
+        assertEquals("Other-Value", copy.getProperty("APP-Prop"));
+        assertNull(copy.getMessageAnnotation("test-annotation"));
+    }
+
+    @Test
+    public void testCopyIsIndependentOfSourceWhenSourceModified() throws JMSException {
+        AmqpJmsMessageFacade source = createNewMessageFacade();
+
+        source.setGroupId("TEST-GROUP");
+        source.setProperty("APP-Prop", "APP-Prop-Value");
+        source.setMessageAnnotation("test-annotation", "value");
+
+        AmqpJmsMessageFacade copy = source.copy();
+
+        source.setGroupId(null);
+        source.clearProperties();
+        source.setMessageAnnotation("test-annotation", "other-value");
+
+        assertEquals("TEST-GROUP", copy.getGroupId());
+        assertEquals("APP-Prop-Value", copy.getProperty("APP-Prop"));
+        assertEquals("value", copy.getMessageAnnotation("test-annotation"));
+
+        assertNull(source.getGroupId());
+        assertFalse(source.propertyExists("APP-Prop"));
+        assertEquals("other-value", source.getMessageAnnotation("test-annotation"));
+    }
+
     // ====== AMQP Message Facade misc tests =========
     // ===============================================
 
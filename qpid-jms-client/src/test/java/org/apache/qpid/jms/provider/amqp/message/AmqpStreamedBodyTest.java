@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.provider.amqp.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class AmqpStreamedBodyTest {
+
+    @Test
+    public void testReadStripsDataSectionFraming() throws Exception {
+        byte[] first = createBody(300, 0);
+        byte[] second = createBody(20, 300);
+
+        ByteBuf encoded = Unpooled.buffer();
+        encoded.writeByte(0x00).writeByte(0x53).writeByte(0x75).writeByte(0xb0).writeInt(first.length).writeBytes(first);
+        encoded.writeByte(0x00).writeByte(0x53).writeByte(0x75).writeByte(0xa0).writeByte(second.length).writeBytes(second);
+        // A footer after the body sections is skipped.
+        encoded.writeByte(0x00).writeByte(0x53).writeByte(0x78).writeByte(0xc1).writeByte(1).writeByte(0);
+
+        AmqpStreamedBody body = new AmqpStreamedBody(first.length, 1024, null);
+        byte[] bytes = new byte[encoded.readableBytes()];
+        encoded.readBytes(bytes);
+
+        // Hand the bytes over in small pieces so the section headers are split.
+        for (int offset = 0; offset < bytes.length; offset += 3) {
+            byte[] piece = new byte[Math.min(3, bytes.length - offset)];
+            System.arraycopy(bytes, offset, piece, 0, piece.length);
+            body.offer(piece, 0, piece.length);
+        }
+        body.complete();
+
+        assertEquals(first.length, body.getLength());
+        assertArrayEquals(createBody(320, 0), readAll(body));
+    }
+
+    @Test
+    public void testReadStripsSymbolicDataSectionFraming() throws Exception {
+        byte[] content = createBody(100, 0);
+
+        ByteBuf encoded = Unpooled.buffer();
+        encoded.writeByte(0x00).writeByte(0xa3).writeByte(16).writeBytes("amqp:data:binary".getBytes("US-ASCII"));
+        encoded.writeByte(0xb0).writeInt(content.length).writeBytes(content);
+
+        AmqpStreamedBody body = new AmqpStreamedBody(content.length, 1024, null);
+        body.offer(encoded.array(), encoded.arrayOffset(), encoded.readableBytes());
+        body.complete();
+
+        assertArrayEquals(content, readAll(body));
+    }
+
+    @Test
+    public void testSpaceIsBoundedByCapacity() throws Exception {
+        final AtomicInteger resumed = new AtomicInteger();
+        AmqpStreamedBody body = new AmqpStreamedBody(200, 100, new Runnable() {
+
+            @Override
+            public void run() {
+                resumed.incrementAndGet();
+            }
+        });
+
+        byte[] header = new byte[] { 0x00, 0x53, 0x75, (byte) 0xb0, 0, 0, 0, (byte) 200 };
+        body.offer(header, 0, header.length);
+        assertEquals(100, body.space());
+
+        body.offer(new byte[100], 0, 100);
+        assertEquals(0, body.space());
+
+        byte[] target = new byte[60];
+        assertEquals(60, body.read(target));
+        assertEquals(1, resumed.get());
+        assertEquals(60, body.space());
+    }
+
+    @Test
+    public void testFailureReportedAfterBufferedBytes() throws Exception {
+        AmqpStreamedBody body = new AmqpStreamedBody(200, 1024, null);
+        byte[] header = new byte[] { 0x00, 0x53, 0x75, (byte) 0xb0, 0, 0, 0, (byte) 200 };
+        body.offer(header, 0, header.length);
+        body.offer(new byte[50], 0, 50);
+
+        IOException cause = new IOException("Link closed");
+        body.fail(cause);
+
+        assertEquals(50, body.read(new byte[100]));
+        try {
+            body.read();
+            fail("Should report that the body did not arrive in full");
+        } catch (IOException ioe) {
+            assertSame(cause, ioe.getCause());
+        }
+    }
+
+    @Test
+    public void testCloseDropsFurtherBytes() throws Exception {
+        AmqpStreamedBody body = new AmqpStreamedBody(200, 100, null);
+        byte[] header = new byte[] { 0x00, 0x53, 0x75, (byte) 0xb0, 0, 0, 0, (byte) 200 };
+        body.offer(header, 0, header.length);
+        body.offer(new byte[100], 0, 100);
+
+        assertFalse(body.isClosed());
+        body.close();
+        assertTrue(body.isClosed());
+        assertEquals(Integer.MAX_VALUE, body.space());
+
+        try {
+            body.read();
+            fail("Should not read from a closed stream");
+        } catch (IOException ioe) {
+        }
+    }
+
+    private static byte[] createBody(int length, int start) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            body[i] = (byte) (start + i);
+        }
+
+        return body;
+    }
+
+    private static byte[] readAll(AmqpStreamedBody body) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64];
+        int count;
+        while ((count = body.read(chunk)) >= 0) {
+            received.write(chunk, 0, count);
+        }
+
+        return received.toByteArray();
+    }
+}
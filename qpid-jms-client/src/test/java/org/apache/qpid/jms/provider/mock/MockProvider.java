@@ -18,6 +18,7 @@ package org.apache.qpid.jms.provider.mock;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
@@ -302,6 +303,35 @@ public class MockProvider implements Provider {
         });
     }
 
+    @Override
+    public void send(final List<JmsOutboundMessageDispatch> envelopes, final AsyncResult request) throws IOException, JMSException {
+        checkClosed();
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    checkClosed();
+
+                    for (JmsOutboundMessageDispatch envelope : envelopes) {
+                        stats.recordSendCall();
+
+                        if (context != null) {
+                            context.recordSend(MockProvider.this, envelope);
+                        }
+
+                        // Put the message back to usable state following send complete
+                        envelope.getMessage().onSendComplete();
+                    }
+
+                    request.onSuccess();
+                } catch (Exception error) {
+                    request.onFailure(error);
+                }
+            }
+        });
+    }
+
     @Override
     public void acknowledge(final JmsSessionId sessionId, final ACK_TYPE ackType, final AsyncResult request) throws IOException, JMSException {
         checkClosed();
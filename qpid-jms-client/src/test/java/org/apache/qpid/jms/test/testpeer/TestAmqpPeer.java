@@ -1367,6 +1367,18 @@ public class TestAmqpPeer implements AutoCloseable
         addHandler(flowMatcher);
     }
 
+    /**
+     * Expects a flow from the client that advertises a session incoming window matching the
+     * given matcher, whether it is sent for the session or along with the credit of a link.
+     */
+    public void expectIncomingWindowFlow(Matcher<?> incomingWindowMatcher)
+    {
+        final FlowMatcher flowMatcher = new FlowMatcher()
+                        .withIncomingWindow(incomingWindowMatcher);
+
+        addHandler(flowMatcher);
+    }
+
     public void expectLinkFlow()
     {
         expectLinkFlow(false, false, Matchers.greaterThan(UnsignedInteger.ZERO));
@@ -1758,6 +1770,19 @@ public class TestAmqpPeer implements AutoCloseable
         addHandler(transferMatcher);
     }
 
+    /**
+     * Expects a transfer frame from the client that is followed by more frames of the same
+     * delivery, the peer does not respond to it.
+     */
+    public void expectPartialTransfer(Matcher<Binary> expectedPayloadMatcher)
+    {
+        final TransferMatcher transferMatcher = new TransferMatcher();
+        transferMatcher.setPayloadMatcher(expectedPayloadMatcher);
+        transferMatcher.withMore(equalTo(true));
+
+        addHandler(transferMatcher);
+    }
+
     public void expectTransferRespondWithDrain(Matcher<Binary> expectedPayloadMatcher, int sentMessages)
     {
         expectTransferRespondWithDrain(expectedPayloadMatcher, DEFAULT_PRODUCER_CREDIT, sentMessages);
@@ -2243,6 +2268,88 @@ public class TestAmqpPeer implements AutoCloseable
         }
     }
 
+    public void sendSplitTransferToLastOpenedLinkOnLastOpenedSession(final Binary payload,
+                                                                     final int nextIncomingDeliveryId,
+                                                                     final int maxFramePayload) {
+        sendSplitTransferToLastOpenedLinkOnLastOpenedSession(payload, nextIncomingDeliveryId, maxFramePayload, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sends the given frames of a transfer split into frames of the given payload size, so
+     * that the rest of the transfer can be sent later, for instance once the client has
+     * widened its session window.
+     */
+    public void sendSplitTransferToLastOpenedLinkOnLastOpenedSession(final Binary payload,
+                                                                     final int nextIncomingDeliveryId,
+                                                                     final int maxFramePayload,
+                                                                     final int firstFrame,
+                                                                     final int frameCount) {
+        synchronized (_handlersLock) {
+            CompositeAmqpPeerRunnable comp = insertCompsiteActionForLastHandler();
+
+            String tagString = "theDeliveryTag" + nextIncomingDeliveryId;
+            Binary dtag = new Binary(tagString.getBytes());
+
+            long start = (long) firstFrame * maxFramePayload;
+            long end = Math.min(payload.getLength(), start + (long) frameCount * maxFramePayload);
+
+            for (int offset = (int) start; offset < end; offset += maxFramePayload) {
+                int length = Math.min(maxFramePayload, payload.getLength() - offset);
+
+                final TransferFrame transferResponse = new TransferFrame()
+                .setDeliveryId(UnsignedInteger.valueOf(nextIncomingDeliveryId))
+                .setMore(offset + length < payload.getLength());
+
+                if (offset == 0) {
+                    transferResponse.setDeliveryTag(dtag).setMessageFormat(UnsignedInteger.ZERO).setSettled(false);
+                }
+
+                // The response frame channel will be dynamically set based on the incoming frame. Using the -1 is an illegal placeholder.
+                final FrameSender transferSender = new FrameSender(this, FrameType.AMQP, -1, transferResponse, payload.subBinary(offset, length));
+                transferSender.setValueProvider(new ValueProvider()
+                {
+                    @Override
+                    public void setValues()
+                    {
+                        transferResponse.setHandle(_lastInitiatedLinkHandle);
+                        transferSender.setChannel(_lastInitiatedChannel);
+                    }
+                });
+
+                comp.add(transferSender);
+            }
+        }
+    }
+
+    /**
+     * Sends a flow for the last opened link, setting the session window the client may send
+     * into as well as the credit of the link, whose delivery count is taken to be zero.
+     */
+    public void sendFlowToLastOpenedLinkOnLastOpenedSession(final int nextIncomingId, final int incomingWindow, final int linkCredit) {
+        synchronized (_handlersLock) {
+            CompositeAmqpPeerRunnable comp = insertCompsiteActionForLastHandler();
+
+            final FlowFrame flowFrame = new FlowFrame().setNextIncomingId(UnsignedInteger.valueOf(nextIncomingId))
+                .setIncomingWindow(UnsignedInteger.valueOf(incomingWindow))
+                .setNextOutgoingId(UnsignedInteger.ONE) //TODO: shouldnt be hard coded
+                .setOutgoingWindow(UnsignedInteger.valueOf(2048))
+                .setDeliveryCount(UnsignedInteger.ZERO)
+                .setLinkCredit(UnsignedInteger.valueOf(linkCredit));
+
+            // The flow frame channel will be dynamically set based on the previous frames. Using the -1 is an illegal placeholder.
+            final FrameSender flowFrameSender = new FrameSender(this, FrameType.AMQP, -1, flowFrame, null);
+            flowFrameSender.setValueProvider(new ValueProvider() {
+                @Override
+                public void setValues() {
+                    flowFrameSender.setChannel(_lastInitiatedChannel);
+                    flowFrame.setHandle(_lastInitiatedLinkHandle);
+                }
+            });
+
+            comp.add(flowFrameSender);
+        }
+    }
+
     public void runAfterLastHandler(AmqpPeerRunnable action) {
         synchronized (_handlersLock) {
             // Prepare a composite to insert this action at the end of the handler sequence
@@ -97,6 +97,9 @@ class TestAmqpPeerRunner implements Runnable
             _clientSocket = clientSocket;
             _networkOutputStream = networkOutputStream;
 
+            // Frames are written one at a time, don't let a burst of them wait on delayed acks.
+            _clientSocket.setTcpNoDelay(true);
+
             if (_sendSaslHeaderPreEmptively) {
                 byte[] bytes = AmqpHeader.SASL_HEADER;
                 LOGGER.debug("Sending header pre-emptively: {}", new Binary(bytes));
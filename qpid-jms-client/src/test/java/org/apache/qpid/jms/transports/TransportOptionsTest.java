@@ -36,6 +36,10 @@ public class TransportOptionsTest extends QpidJmsTestCase {
     public static final int TEST_SO_TIMEOUT = 10;
     public static final int TEST_CONNECT_TIMEOUT = 90000;
     public static final int TEST_DEFAULT_TCP_PORT = 5682;
+    public static final int TEST_SHARED_EVENT_LOOP_THREADS = 4;
+    public static final boolean TEST_USE_EPOLL = !TransportOptions.DEFAULT_USE_EPOLL;
+    public static final boolean TEST_TCP_QUICK_ACK = !TransportOptions.DEFAULT_TCP_QUICK_ACK;
+    public static final boolean TEST_TCP_CORK = !TransportOptions.DEFAULT_TCP_CORK;
 
     @Test
     public void testCreate() {
@@ -57,6 +61,10 @@ public class TransportOptionsTest extends QpidJmsTestCase {
         assertEquals(TEST_SO_TIMEOUT, options.getSoTimeout());
         assertEquals(TEST_CONNECT_TIMEOUT, options.getConnectTimeout());
         assertEquals(TEST_DEFAULT_TCP_PORT, options.getDefaultTcpPort());
+        assertEquals(TEST_SHARED_EVENT_LOOP_THREADS, options.getSharedEventLoopThreads());
+        assertEquals(TEST_USE_EPOLL, options.isUseEpoll());
+        assertEquals(TEST_TCP_QUICK_ACK, options.isTcpQuickAck());
+        assertEquals(TEST_TCP_CORK, options.isTcpCork());
     }
 
     @Test
@@ -72,6 +80,10 @@ public class TransportOptionsTest extends QpidJmsTestCase {
         assertEquals(TEST_SO_TIMEOUT, options.getSoTimeout());
         assertEquals(TEST_CONNECT_TIMEOUT, options.getConnectTimeout());
         assertEquals(TEST_DEFAULT_TCP_PORT, options.getDefaultTcpPort());
+        assertEquals(TEST_SHARED_EVENT_LOOP_THREADS, options.getSharedEventLoopThreads());
+        assertEquals(TEST_USE_EPOLL, options.isUseEpoll());
+        assertEquals(TEST_TCP_QUICK_ACK, options.isTcpQuickAck());
+        assertEquals(TEST_TCP_CORK, options.isTcpCork());
     }
 
     @Test
@@ -139,6 +151,10 @@ public class TransportOptionsTest extends QpidJmsTestCase {
         options.setSoTimeout(TEST_SO_TIMEOUT);
         options.setConnectTimeout(TEST_CONNECT_TIMEOUT);
         options.setDefaultTcpPort(TEST_DEFAULT_TCP_PORT);
+        options.setSharedEventLoopThreads(TEST_SHARED_EVENT_LOOP_THREADS);
+        options.setUseEpoll(TEST_USE_EPOLL);
+        options.setTcpQuickAck(TEST_TCP_QUICK_ACK);
+        options.setTcpCork(TEST_TCP_CORK);
 
         return options;
     }
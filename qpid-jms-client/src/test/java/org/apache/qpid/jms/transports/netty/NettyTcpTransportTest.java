@@ -22,6 +22,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
 import java.net.URI;
@@ -40,6 +41,9 @@ import org.slf4j.LoggerFactory;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 
 /**
  * Test basic functionality of the Netty based TCP transport.
@@ -188,6 +192,62 @@ public class NettyTcpTransportTest extends QpidJmsTestCase {
         assertTrue(data.isEmpty());
     }
 
+    @Test(timeout = 60 * 1000)
+    public void testConnectToServerWithEpollEnabled() throws Exception {
+        doTestEpollSupport(true);
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testConnectToServerWithEpollDisabled() throws Exception {
+        doTestEpollSupport(false);
+    }
+
+    private void doTestEpollSupport(boolean useEpoll) throws Exception {
+        assumeTrue(!useEpoll || Epoll.isAvailable());
+
+        try (NettyEchoServer server = createEchoServer(createServerOptions())) {
+            server.start();
+
+            int port = server.getServerPort();
+            URI serverLocation = new URI("tcp://localhost:" + port);
+
+            TransportOptions options = createClientOptions();
+            options.setUseEpoll(useEpoll);
+            options.setTcpQuickAck(useEpoll);
+
+            NettyTcpTransport transport = (NettyTcpTransport) createTransport(serverLocation, testListener, options);
+            try {
+                transport.connect(null);
+                LOG.info("Connected to server:{} as expected.", serverLocation);
+            } catch (Exception e) {
+                fail("Should have connected to the server at " + serverLocation + " but got exception: " + e);
+            }
+
+            assertTrue(transport.isConnected());
+
+            if (useEpoll) {
+                assertTrue(transport.channel instanceof EpollSocketChannel);
+            } else {
+                assertTrue(transport.channel instanceof NioSocketChannel);
+            }
+
+            transport.send(createByteBuf(SEND_BYTE_COUNT));
+
+            assertTrue(Wait.waitFor(new Wait.Condition() {
+
+                @Override
+                public boolean isSatisified() throws Exception {
+                    return bytesRead.get() == SEND_BYTE_COUNT;
+                }
+            }));
+
+            transport.close();
+        }
+
+        assertTrue(!transportClosed);  // Normal shutdown does not trigger the event.
+        assertTrue(exceptions.isEmpty());
+    }
+
     @Test(timeout = 60 * 1000)
     public void testMultipleConnectionsToServer() throws Exception {
         final int CONNECTION_COUNT = 10;
@@ -379,6 +439,116 @@ public class NettyTcpTransportTest extends QpidJmsTestCase {
         assertTrue(exceptions.isEmpty());
     }
 
+    @Test(timeout = 60 * 1000)
+    public void testDataWrittenIsReceivedAfterFlush() throws Exception {
+        try (NettyEchoServer server = createEchoServer(createServerOptions())) {
+            server.start();
+
+            int port = server.getServerPort();
+            URI serverLocation = new URI("tcp://localhost:" + port);
+
+            Transport transport = createTransport(serverLocation, testListener, createClientOptions());
+            try {
+                transport.connect(null);
+                LOG.info("Connected to server:{} as expected.", serverLocation);
+            } catch (Exception e) {
+                fail("Should have connected to the server at " + serverLocation + " but got exception: " + e);
+            }
+
+            assertTrue(transport.isConnected());
+
+            final int writeCount = 4;
+            for (int i = 0; i < writeCount; ++i) {
+                ByteBuf writeBuffer = transport.allocateSendBuffer(SEND_BYTE_COUNT);
+                for (int j = 0; j < SEND_BYTE_COUNT; ++j) {
+                    writeBuffer.writeByte('A');
+                }
+
+                transport.write(writeBuffer);
+            }
+
+            transport.flush();
+
+            assertTrue(Wait.waitFor(new Wait.Condition() {
+
+                @Override
+                public boolean isSatisified() throws Exception {
+                    return bytesRead.get() == writeCount * SEND_BYTE_COUNT;
+                }
+            }));
+
+            transport.close();
+        }
+
+        assertTrue(!transportClosed);  // Normal shutdown does not trigger the event.
+        assertTrue(exceptions.isEmpty());
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void testTransportsWithSharedEventLoopGroup() throws Exception {
+        try (NettyEchoServer server = createEchoServer(createServerOptions())) {
+            server.start();
+
+            int port = server.getServerPort();
+            URI serverLocation = new URI("tcp://localhost:" + port);
+
+            TransportOptions options = createClientOptions();
+            options.setSharedEventLoopThreads(1);
+
+            Transport transport1 = createTransport(serverLocation, testListener, options);
+            Transport transport2 = createTransport(serverLocation, testListener, options);
+            try {
+                transport1.connect(null);
+                transport2.connect(null);
+                LOG.info("Connected to server:{} as expected.", serverLocation);
+            } catch (Exception e) {
+                fail("Should have connected to the server at " + serverLocation + " but got exception: " + e);
+            }
+
+            assertTrue(transport1.isConnected());
+            assertTrue(transport2.isConnected());
+
+            transport1.send(createByteBuf(SEND_BYTE_COUNT));
+            transport2.send(createByteBuf(SEND_BYTE_COUNT));
+
+            assertTrue(Wait.waitFor(new Wait.Condition() {
+
+                @Override
+                public boolean isSatisified() throws Exception {
+                    return bytesRead.get() == 2 * SEND_BYTE_COUNT;
+                }
+            }));
+
+            transport1.close();
+
+            // The remaining transport must be unaffected by the other releasing the group.
+            assertTrue(transport2.isConnected());
+            transport2.send(createByteBuf(SEND_BYTE_COUNT));
+
+            assertTrue(Wait.waitFor(new Wait.Condition() {
+
+                @Override
+                public boolean isSatisified() throws Exception {
+                    return bytesRead.get() == 3 * SEND_BYTE_COUNT;
+                }
+            }));
+
+            transport2.close();
+        }
+
+        assertTrue(!transportClosed);  // Normal shutdown does not trigger the event.
+        assertTrue(exceptions.isEmpty());
+    }
+
+    private ByteBuf createByteBuf(int length) {
+        ByteBuf buffer = Unpooled.buffer(length);
+        for (int i = 0; i < length; ++i) {
+            buffer.writeByte('A');
+        }
+
+        return buffer;
+    }
+
     @Test(timeout = 60 * 1000)
     public void testMultipleDataPacketsSentAreReceived() throws Exception {
         doMultipleDataPacketsSentAndReceive(SEND_BYTE_COUNT, 1);
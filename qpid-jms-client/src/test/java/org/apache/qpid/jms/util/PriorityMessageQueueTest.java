@@ -208,6 +208,65 @@ public class PriorityMessageQueueTest {
         }
     }
 
+    @Test
+    public void testOrderKeptAcrossGrowthAndWrapAround() throws JMSException {
+        // Interleave adds and removes so the rings wrap before growing past their initial size
+        List<JmsInboundMessageDispatch> expectedHigh = new ArrayList<JmsInboundMessageDispatch>();
+        List<JmsInboundMessageDispatch> expectedLow = new ArrayList<JmsInboundMessageDispatch>();
+        for (int i = 0; i < 10; ++i) {
+            queue.enqueue(createEnvelope(7));
+            queue.enqueue(createEnvelope(2));
+        }
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(7, queue.dequeueNoWait().getMessage().getJMSPriority());
+        }
+        for (int i = 0; i < 100; ++i) {
+            JmsInboundMessageDispatch high = createEnvelope(7);
+            JmsInboundMessageDispatch low = createEnvelope(2);
+            expectedHigh.add(high);
+            expectedLow.add(low);
+            queue.enqueue(high);
+            queue.enqueue(low);
+        }
+
+        JmsInboundMessageDispatch first = createEnvelope(0);
+        queue.enqueueFirst(first);
+
+        assertEquals(211, queue.size());
+        assertSame(first, queue.dequeueNoWait());
+        for (JmsInboundMessageDispatch envelope : expectedHigh) {
+            assertSame(envelope, queue.dequeueNoWait());
+        }
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(2, queue.dequeueNoWait().getMessage().getJMSPriority());
+        }
+
+        List<JmsInboundMessageDispatch> remaining = queue.removeAll();
+        assertEquals(expectedLow, remaining);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.dequeueNoWait());
+    }
+
+    @Test
+    public void testQueueUsableAfterClearAndRemoveAll() throws JMSException {
+        for (int i = 0; i < 50; ++i) {
+            queue.enqueue(createEnvelope(i % 10));
+        }
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+
+        queue.enqueue(createEnvelope(3));
+        queue.enqueue(createEnvelope(8));
+        assertEquals(8, queue.peek().getMessage().getJMSPriority());
+        assertEquals(2, queue.removeAll().size());
+
+        queue.enqueue(createEnvelope(1));
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.dequeueNoWait().getMessage().getJMSPriority());
+    }
+
     @Test
     public void testRemoveFirstOnEmptyQueue() {
         assertNull(queue.dequeueNoWait());
@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.jms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.jms.test.QpidJmsTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the SerialScheduledExecutor
+ */
+public class SerialScheduledExecutorTest extends QpidJmsTestCase {
+
+    private ScheduledThreadPoolExecutor pool;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        pool = new ScheduledThreadPoolExecutor(4);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        ThreadPoolUtils.shutdownNow(pool);
+        super.tearDown();
+    }
+
+    @Test(timeout = 10000, expected = IllegalArgumentException.class)
+    public void testCreateWithNullScheduler() {
+        new SerialScheduledExecutor(null);
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksRunInSubmissionOrder() throws Exception {
+        final int taskCount = 1000;
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(taskCount);
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        for (int i = 0; i < taskCount; ++i) {
+            final int sequence = i;
+            serializer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    executed.add(sequence);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < taskCount; ++i) {
+            assertEquals(i, executed.get(i).intValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksNeverRunConcurrently() throws Exception {
+        final int taskCount = 500;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(taskCount * 2);
+
+        SerialScheduledExecutor serializer1 = new SerialScheduledExecutor(pool);
+        SerialScheduledExecutor serializer2 = new SerialScheduledExecutor(pool);
+
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                if (active.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                active.decrementAndGet();
+                done.countDown();
+            }
+        };
+
+        Runnable otherTask = new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+
+        for (int i = 0; i < taskCount; ++i) {
+            serializer1.execute(task);
+            serializer2.execute(otherTask);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse("Tasks from one serializer ran concurrently", overlapped.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testTaskErrorDoesNotStopLaterTasks() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new RuntimeException("Expected");
+            }
+        });
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testScheduledTaskRuns() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        serializer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledScheduledTaskDoesNotRun() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        ScheduledFuture<?> future = serializer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(future.cancel(false));
+
+        TimeUnit.MILLISECONDS.sleep(400);
+        assertFalse(ran.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testScheduledCallableReturnsResult() throws Exception {
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        ScheduledFuture<String> future = serializer.schedule(new Callable<String>() {
+
+            @Override
+            public String call() {
+                return "result";
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertEquals("result", future.get(5, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+    }
+
+    @Test(timeout = 10000)
+    public void testFixedRateTaskRepeatsUntilCancelled() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch repeated = new CountDownLatch(3);
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        ScheduledFuture<?> future = serializer.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                repeated.countDown();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(repeated.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+
+        int count = runs.get();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(count, runs.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testFixedDelayTaskRunsDoNotOverlapOtherTasks() throws Exception {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(200);
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                if (active.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                active.decrementAndGet();
+                done.countDown();
+            }
+        };
+
+        ScheduledFuture<?> future = serializer.scheduleWithFixedDelay(task, 0, 1, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; ++i) {
+            serializer.execute(task);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        future.cancel(false);
+        assertFalse("Periodic task ran concurrently with another task", overlapped.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testPeriodicTaskThatFailsIsNotRepeated() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        ScheduledFuture<?> future = serializer.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                throw new RuntimeException("Expected");
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Should have failed with the task error");
+        } catch (ExecutionException expected) {
+        }
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(1, runs.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownCancelsPeriodicTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        ScheduledFuture<?> future = serializer.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                started.countDown();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        serializer.shutdown();
+        assertTrue(serializer.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+
+        int count = runs.get();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(count, runs.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownRunsQueuedTasksAndCancelsDelayed() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicBoolean delayedRan = new AtomicBoolean();
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+                executed.incrementAndGet();
+            }
+        });
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                executed.incrementAndGet();
+            }
+        });
+
+        serializer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                delayedRan.set(true);
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        serializer.shutdown();
+        assertTrue(serializer.isShutdown());
+        assertFalse(serializer.isTerminated());
+
+        try {
+            serializer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            });
+            fail("Should not accept new tasks after shutdown");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        blocked.countDown();
+
+        assertTrue(serializer.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(serializer.isTerminated());
+        assertEquals(2, executed.get());
+
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertFalse(delayedRan.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownNowReturnsUnexecuted() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+
+        serializer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Runnable> pending = serializer.shutdownNow();
+        assertEquals(1, pending.size());
+
+        blocked.countDown();
+
+        assertTrue(serializer.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownDoesNotAffectSharedScheduler() throws Exception {
+        SerialScheduledExecutor serializer = new SerialScheduledExecutor(pool);
+        serializer.shutdown();
+
+        assertTrue(serializer.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(pool.isShutdown());
+    }
+}